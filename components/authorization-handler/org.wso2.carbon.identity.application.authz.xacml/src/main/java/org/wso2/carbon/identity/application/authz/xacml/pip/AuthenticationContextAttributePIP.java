@@ -31,6 +31,7 @@ import org.wso2.carbon.identity.application.authentication.framework.util.Framew
 import org.wso2.carbon.identity.application.authz.xacml.constants.XACMLAppAuthzConstants;
 import org.wso2.carbon.identity.base.IdentityConstants;
 import org.wso2.carbon.identity.entitlement.pip.AbstractPIPAttributeFinder;
+import org.wso2.carbon.identity.entitlement.pip.RequestAttribute;
 
 import java.net.URI;
 import java.util.Arrays;
@@ -167,6 +168,13 @@ public class AuthenticationContextAttributePIP extends AbstractPIPAttributeFinde
         return SUPPORTED_ATTRIBUTES;
     }
 
+    @Override
+    public Set<RequestAttribute> getRequestAttributeDependencies() {
+
+        return Collections.singleton(new RequestAttribute(XACMLAppAuthzConstants.AUTH_CATEGORY,
+                XACMLAppAuthzConstants.AUTH_CTX_ID));
+    }
+
     protected Set<String> getAuthenticationContextProperty(AuthenticationContext authCtx, URI attributeType, URI
             attributeId, URI category, String issuer, EvaluationCtx evaluationCtx) {
 
@@ -31,6 +31,7 @@ import org.wso2.balana.ctx.xacml3.RequestCtx;
 import org.wso2.carbon.identity.entitlement.dto.EntitledResultSetDTO;
 import org.wso2.carbon.identity.entitlement.endpoint.exception.ExceptionBean;
 import org.wso2.carbon.identity.entitlement.endpoint.exception.RequestParseException;
+import org.wso2.carbon.identity.entitlement.endpoint.exception.ResponseWriteException;
 import org.wso2.carbon.identity.entitlement.endpoint.resources.models.AllEntitlementsRequestModel;
 import org.wso2.carbon.identity.entitlement.endpoint.resources.models.AllEntitlementsResponseModel;
 import org.wso2.carbon.identity.entitlement.endpoint.resources.models.DecisionRequestModel;
@@ -43,12 +44,16 @@ import org.wso2.carbon.identity.entitlement.endpoint.util.JSONResponseWriter;
 import org.wso2.carbon.identity.entitlement.pdp.EntitlementEngine;
 import org.wso2.carbon.identity.entitlement.policy.search.PolicySearch;
 
+import java.util.concurrent.CompletionException;
+import java.util.function.BiConsumer;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.GET;
 import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.MediaType;
 
 /**
@@ -89,9 +94,9 @@ public class DecisionResource extends AbstractResource {
     }
 
     /**
-     * API endpoint for evaluating XACML XML policies
-     *
-     * @return XML Policy result String
+     * API endpoint for evaluating XACML XML policies. The request is evaluated asynchronously, hence the
+     * container thread is released while the decision is evaluated, and the response is resumed with the
+     * XML Policy result String.
      */
     @POST
     @Path("pdp")
@@ -107,16 +112,17 @@ public class DecisionResource extends AbstractResource {
             @ApiResponse(code = 40010, message = EntitlementEndpointConstants.ERROR_RESPONSE_READ_MESSAGE,
                     response = ExceptionBean.class)
     })
-    public String getDecision(@ApiParam(value = "Request Media Type", required = true)
-                              @HeaderParam(EntitlementEndpointConstants.ACCEPT_HEADER) String format,
-                              @ApiParam(value = "Authentication Type", required = true)
-                              @HeaderParam(EntitlementEndpointConstants.AUTHENTICATION_TYPE_HEADER) String authMechanism,
-                              @ApiParam(value = "Add HTTP Basic Authorization", required = true)
-                              @HeaderParam(EntitlementEndpointConstants.AUTHORIZATION_HEADER) String authorization,
-                              @ApiParam(value = "Response Media Type", required = true)
-                              @HeaderParam(EntitlementEndpointConstants.CONTENT_TYPE_HEADER) String contentType,
-                              @ApiParam(value = "XACML JSON/XML Request", required = true)
-                                      String xacmlRequest) throws Exception {
+    public void getDecision(@ApiParam(value = "Request Media Type", required = true)
+                            @HeaderParam(EntitlementEndpointConstants.ACCEPT_HEADER) String format,
+                            @ApiParam(value = "Authentication Type", required = true)
+                            @HeaderParam(EntitlementEndpointConstants.AUTHENTICATION_TYPE_HEADER) String authMechanism,
+                            @ApiParam(value = "Add HTTP Basic Authorization", required = true)
+                            @HeaderParam(EntitlementEndpointConstants.AUTHORIZATION_HEADER) String authorization,
+                            @ApiParam(value = "Response Media Type", required = true)
+                            @HeaderParam(EntitlementEndpointConstants.CONTENT_TYPE_HEADER) String contentType,
+                            @ApiParam(value = "XACML JSON/XML Request", required = true)
+                                    String xacmlRequest,
+                            @Suspended final AsyncResponse asyncResponse) throws Exception {
 
         if (log.isDebugEnabled()) {
             log.debug("recieved :" + xacmlRequest);
@@ -125,14 +131,54 @@ public class DecisionResource extends AbstractResource {
 
         if (contentType.equals(EntitlementEndpointConstants.APPLICATION_JSON)) {
             RequestCtx requestCtx = JSONRequestParser.parse(xacmlRequest);
-            ResponseCtx responseCtx = entitlementEngine.evaluate(requestCtx, xacmlRequest);
-            return gson.toJson(JSONResponseWriter.write(responseCtx));
+            entitlementEngine.evaluateAsync(requestCtx, xacmlRequest).whenComplete(
+                    new BiConsumer<ResponseCtx, Throwable>() {
+                        @Override
+                        public void accept(ResponseCtx responseCtx, Throwable throwable) {
+
+                            if (throwable != null) {
+                                resume(asyncResponse, null, throwable);
+                                return;
+                            }
+                            try {
+                                resume(asyncResponse, gson.toJson(JSONResponseWriter.write(responseCtx)), null);
+                            } catch (ResponseWriteException e) {
+                                resume(asyncResponse, null, e);
+                            }
+                        }
+                    });
         } else {
-            return entitlementEngine.evaluate(xacmlRequest);
+            entitlementEngine.evaluateAsync(xacmlRequest).whenComplete(new BiConsumer<String, Throwable>() {
+                @Override
+                public void accept(String xacmlResponse, Throwable throwable) {
+
+                    resume(asyncResponse, xacmlResponse, throwable);
+                }
+            });
         }
 
     }
 
+    /**
+     * Resumes the suspended response with the evaluated decision, or with the error which occurred while
+     * evaluating it, so that the error is mapped in the same way as a synchronous one.
+     *
+     * @param asyncResponse suspended response
+     * @param response      XACML response String
+     * @param throwable     error occurred while evaluating the request, null if none
+     */
+    private void resume(AsyncResponse asyncResponse, String response, Throwable throwable) {
+
+        if (throwable == null) {
+            asyncResponse.resume(response);
+            return;
+        }
+        if (throwable instanceof CompletionException && throwable.getCause() != null) {
+            throwable = throwable.getCause();
+        }
+        asyncResponse.resume(throwable);
+    }
+
     /**
      * API endpoint for evaluating policy by attributes as queries
      *
@@ -54,7 +54,10 @@ import java.io.InputStreamReader;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -89,13 +92,64 @@ public class EntitlementPolicyAdminService {
      */
     public void addPolicies(PolicyDTO[] policies) throws EntitlementException {
 
-        if (policies != null) {
-            for (PolicyDTO policyDTO : policies) {
-                addOrUpdatePolicy(policyDTO, true);
-            }
-        } else {
+        if (policies == null) {
             throw new EntitlementException("No Entitlement policies are provided.");
         }
+
+        PAPPolicyStoreManager policyAdmin = EntitlementAdminEngine.getInstance().getPapPolicyStoreManager();
+        String operation = EntitlementConstants.StatusTypes.ADD_POLICY;
+        List<PolicyDTO> policyDTOs = new ArrayList<>();
+        Set<String> policyIds = new HashSet<>();
+        for (PolicyDTO policyDTO : policies) {
+            if (policyDTO == null || policyDTO.getPolicy() == null) {
+                throw new EntitlementException("Entitlement Policy can not be null.");
+            }
+            try {
+                preparePolicy(policyDTO, true, policyAdmin);
+                if (!policyIds.add(policyDTO.getPolicyId())) {
+                    throw new EntitlementException("An Entitlement Policy with the given Id already exists");
+                }
+            } catch (EntitlementException e) {
+                handleStatus(operation, policyDTO, false, e.getMessage());
+                throw e;
+            }
+            policyDTOs.add(policyDTO);
+        }
+
+        try {
+            policyAdmin.addPolicies(policyDTOs);
+        } catch (EntitlementException e) {
+            // policies are stored in chunks, hence some of them may have been added before the failure
+            for (PolicyDTO policyDTO : policyDTOs) {
+                if (policyAdmin.isExistPolicy(policyDTO.getPolicyId())) {
+                    handleStatus(operation, policyDTO, true, null);
+                } else {
+                    handleStatus(operation, policyDTO, false, e.getMessage());
+                }
+            }
+            throw e;
+        }
+
+        // publish promoted policies to PDP directly, grouped by their status and order
+        Map<String, List<PolicyDTO>> promotedPolicies = new LinkedHashMap<>();
+        for (PolicyDTO policyDTO : policyDTOs) {
+            handleStatus(operation, policyDTO, true, null);
+            if (policyDTO.isPromote()) {
+                String key = policyDTO.isActive() + ":" + policyDTO.getPolicyOrder();
+                if (!promotedPolicies.containsKey(key)) {
+                    promotedPolicies.put(key, new ArrayList<PolicyDTO>());
+                }
+                promotedPolicies.get(key).add(policyDTO);
+            }
+        }
+        for (List<PolicyDTO> group : promotedPolicies.values()) {
+            String[] groupIds = new String[group.size()];
+            for (int i = 0; i < group.size(); i++) {
+                groupIds[i] = group.get(i).getPolicyId();
+            }
+            publishToPDP(groupIds, EntitlementConstants.PolicyPublish.ACTION_CREATE, null, group.get(0).isActive(),
+                    group.get(0).getPolicyOrder());
+        }
     }
 
     /**
@@ -707,17 +761,8 @@ public class EntitlementPolicyAdminService {
     private void addOrUpdatePolicy(PolicyDTO policyDTO, boolean isAdd) throws EntitlementException {
 
 
-        String regString = EntitlementServiceComponent.getEntitlementConfig().
-                getEngineProperties().getProperty(PDPConstants.POLICY_ID_REGEXP_PATTERN);
-        if (regString == null || regString.trim().length() == 0) {
-            regString = "[a-zA-Z0-9._:-]{3,100}$";
-        }
-
         PAPPolicyStoreManager policyAdmin = EntitlementAdminEngine.getInstance().getPapPolicyStoreManager();
 
-        AbstractPolicy policyObj;
-        String policyId = null;
-        String policy = null;
         String operation = EntitlementConstants.StatusTypes.UPDATE_POLICY;
         if (isAdd) {
             operation = EntitlementConstants.StatusTypes.ADD_POLICY;
@@ -731,40 +776,7 @@ public class EntitlementPolicyAdminService {
         }
 
         try {
-            policy = policyDTO.getPolicy();
-            if (policy != null) {
-                policyDTO.setPolicy(policy.replaceAll(">\\s+<", "><"));
-                if (!EntitlementUtil.validatePolicy(policyDTO)) {
-                    throw new EntitlementException("Invalid Entitlement Policy. " +
-                                                   "Policy is not valid according to XACML schema");
-                }
-                policyObj = PAPPolicyReader.getInstance(null).getPolicy(policy);
-                if (policyObj != null) {
-                    policyId = policyObj.getId().toASCIIString();
-                    policyDTO.setPolicyId(policyId);
-                    // All the policies wont be active at the time been added.
-                    policyDTO.setActive(policyDTO.isActive());
-
-                    if (policyId.contains("/")) {
-                        throw new EntitlementException(
-                                " Policy Id cannot contain / characters. Please correct and upload again");
-                    }
-                    if (!policyId.matches(regString)) {
-                        throw new EntitlementException(
-                                "An Entitlement Policy Id is not valid. It contains illegal characters");
-                    }
-
-                    policyDTO.setPolicyId(policyId);
-                    if (isAdd) {
-                        if (policyAdmin.isExistPolicy(policyId)) {
-                            throw new EntitlementException(
-                                    "An Entitlement Policy with the given Id already exists");
-                        }
-                    }
-                } else {
-                    throw new EntitlementException("Unsupported Entitlement Policy. Policy can not be parsed");
-                }
-            }
+            preparePolicy(policyDTO, isAdd, policyAdmin);
             policyAdmin.addOrUpdatePolicy(policyDTO, true);
         } catch (EntitlementException e) {
             handleStatus(operation, policyDTO, false, e.getMessage());
@@ -787,6 +799,63 @@ public class EntitlementPolicyAdminService {
     }
 
 
+    /**
+     * This method validates a XACML policy and sets its policy id from the policy content
+     *
+     * @param policyDTO   PolicyDTO object
+     * @param isAdd       whether this is policy adding or updating
+     * @param policyAdmin PAP policy store manager
+     * @throws EntitlementException throws if invalid policy or if policy
+     *                              with same id is exist
+     */
+    private void preparePolicy(PolicyDTO policyDTO, boolean isAdd, PAPPolicyStoreManager policyAdmin)
+            throws EntitlementException {
+
+        String regString = EntitlementServiceComponent.getEntitlementConfig().
+                getEngineProperties().getProperty(PDPConstants.POLICY_ID_REGEXP_PATTERN);
+        if (regString == null || regString.trim().length() == 0) {
+            regString = "[a-zA-Z0-9._:-]{3,100}$";
+        }
+
+        AbstractPolicy policyObj;
+        String policyId;
+        String policy = policyDTO.getPolicy();
+        if (policy != null) {
+            policyDTO.setPolicy(policy.replaceAll(">\\s+<", "><"));
+            if (!EntitlementUtil.validatePolicy(policyDTO)) {
+                throw new EntitlementException("Invalid Entitlement Policy. " +
+                                               "Policy is not valid according to XACML schema");
+            }
+            policyObj = PAPPolicyReader.getInstance(null).getPolicy(policy);
+            if (policyObj != null) {
+                policyId = policyObj.getId().toASCIIString();
+                policyDTO.setPolicyId(policyId);
+                // All the policies wont be active at the time been added.
+                policyDTO.setActive(policyDTO.isActive());
+
+                if (policyId.contains("/")) {
+                    throw new EntitlementException(
+                            " Policy Id cannot contain / characters. Please correct and upload again");
+                }
+                if (!policyId.matches(regString)) {
+                    throw new EntitlementException(
+                            "An Entitlement Policy Id is not valid. It contains illegal characters");
+                }
+
+                policyDTO.setPolicyId(policyId);
+                if (isAdd) {
+                    if (policyAdmin.isExistPolicy(policyId)) {
+                        throw new EntitlementException(
+                                "An Entitlement Policy with the given Id already exists");
+                    }
+                }
+            } else {
+                throw new EntitlementException("Unsupported Entitlement Policy. Policy can not be parsed");
+            }
+        }
+    }
+
+
     /**
      * This method is used internally to do the pagination purposes.
      *
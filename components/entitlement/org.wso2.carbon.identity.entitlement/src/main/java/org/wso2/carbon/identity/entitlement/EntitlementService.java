@@ -19,12 +19,20 @@ package org.wso2.carbon.identity.entitlement;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.w3c.dom.Element;
+import org.wso2.balana.ctx.AbstractRequestCtx;
+import org.wso2.balana.ctx.RequestCtxFactory;
+import org.wso2.balana.ctx.ResponseCtx;
 import org.wso2.carbon.identity.entitlement.dto.AttributeDTO;
 import org.wso2.carbon.identity.entitlement.dto.EntitledResultSetDTO;
 import org.wso2.carbon.identity.entitlement.pdp.EntitlementEngine;
+import org.wso2.carbon.identity.entitlement.policy.PolicyRequestBuilder;
 import org.wso2.carbon.identity.entitlement.policy.search.PolicySearch;
 import org.wso2.carbon.identity.entitlement.wsxacml.XACMLHandler;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Entitlement Service class which exposes the PDP
  */
@@ -79,6 +87,39 @@ public class EntitlementService implements XACMLHandler {
     }
 
 
+    /**
+     * Evaluates the given independent XACML requests as a batch and returns the Responses in the order of
+     * the requests. The requests are evaluated concurrently and share the attribute values resolved from
+     * the PIPs, hence this is cheaper than evaluating the requests one by one. The batch evaluation is not
+     * exposed through the Thrift entitlement service.
+     *
+     * @param requests XACML requests as String Objects
+     * @return XACML responses as String Objects
+     * @throws EntitlementException throws
+     */
+    public String[] getBatchDecision(String[] requests) throws EntitlementException {
+
+        try {
+            PolicyRequestBuilder policyRequestBuilder = new PolicyRequestBuilder();
+            List<AbstractRequestCtx> requestCtxs = new ArrayList<AbstractRequestCtx>(requests.length);
+            for (String request : requests) {
+                Element xacmlRequestElement = policyRequestBuilder.getXacmlRequest(request);
+                requestCtxs.add(RequestCtxFactory.getFactory().getRequestCtx(xacmlRequestElement));
+            }
+
+            EntitlementEngine entitlementEngine = EntitlementEngine.getInstance();
+            List<ResponseCtx> responseCtxs = entitlementEngine.evaluateBatch(requestCtxs);
+            String[] responses = new String[responseCtxs.size()];
+            for (int i = 0; i < responses.length; i++) {
+                responses[i] = responseCtxs.get(i).encode();
+            }
+            return responses;
+        } catch (Exception e) {
+            log.error("Error occurred while evaluating XACML requests", e);
+            throw new EntitlementException("Error occurred while evaluating XACML requests");
+        }
+    }
+
     /**
      * Evaluates the given XACML request and returns the Response as boolean value.
      * Here PEP does not need construct the XACML request before sending it to the
@@ -67,6 +67,7 @@ import org.wso2.carbon.identity.entitlement.pap.EntitlementAdminEngine;
 import org.wso2.carbon.identity.entitlement.pap.store.PAPPolicyStoreManager;
 import org.wso2.carbon.identity.entitlement.pap.store.PAPPolicyStoreReader;
 import org.wso2.carbon.identity.entitlement.persistence.PolicyPersistenceManager;
+import org.wso2.carbon.identity.entitlement.policy.search.PolicyReferenceGraph;
 import org.wso2.carbon.registry.core.Registry;
 import org.wso2.carbon.utils.CarbonUtils;
 import org.xml.sax.SAXException;
@@ -80,8 +81,6 @@ import java.net.URISyntaxException;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -383,6 +382,32 @@ public class EntitlementUtil {
         return maxRecords;
     }
 
+    /**
+     * Gets the number of policies which are written with a single batch and transaction, when policies are
+     * added or published in bulk.
+     *
+     * @return policy store batch size
+     */
+    public static int getPolicyStoreBatchSize() {
+
+        int batchSize = 0;
+        String batchSizeString = EntitlementServiceComponent.getEntitlementConfig().getEngineProperties().
+                getProperty(PDPConstants.POLICY_STORE_BATCH_SIZE);
+
+        if (batchSizeString != null) {
+            try {
+                batchSize = Integer.parseInt(batchSizeString.trim());
+            } catch (NumberFormatException e) {
+                log.warn("Invalid value for " + PDPConstants.POLICY_STORE_BATCH_SIZE + " : " + batchSizeString);
+            }
+        }
+        if (batchSize <= 0) {
+            batchSize = PDPConstants.DEFAULT_POLICY_STORE_BATCH_SIZE;
+        }
+
+        return batchSize;
+    }
+
     /**
      * Gets the maximum no of policy versions allowed
      *
@@ -615,35 +640,11 @@ public class EntitlementUtil {
      * Get policy attributes for search.
      *
      * @param policyDTOs PolicyDTO array.
-     * @return Map of policy id to self and referenced policy attributes.
+     * @return Map of policy id to self and referenced policy attributes, following references transitively.
      */
     public static Map<String, Set<AttributeDTO>> getAttributesFromPolicies(PolicyDTO[] policyDTOs) {
 
-        Map<String, Set<AttributeDTO>> attributeMap = new HashMap<>();
-        for (PolicyDTO policyDTO : policyDTOs) {
-            Set<AttributeDTO> attributeDTOs = new HashSet<>(Arrays.asList(policyDTO.getAttributeDTOs()));
-            String[] policyIdRef = policyDTO.getPolicyIdReferences();
-            String[] policySetIdRef = policyDTO.getPolicySetIdReferences();
-
-            if (ArrayUtils.isNotEmpty(policyIdRef) || ArrayUtils.isNotEmpty(policySetIdRef)) {
-                for (PolicyDTO dto : policyDTOs) {
-                    if (policyIdRef != null) {
-                        for (String policyId : policyIdRef) {
-                            if (dto.getPolicyId().equals(policyId)) {
-                                attributeDTOs.addAll(Arrays.asList(dto.getAttributeDTOs()));
-                            }
-                        }
-                    }
-                    for (String policySetId : policySetIdRef) {
-                        if (dto.getPolicyId().equals(policySetId)) {
-                            attributeDTOs.addAll(Arrays.asList(dto.getAttributeDTOs()));
-                        }
-                    }
-                }
-            }
-            attributeMap.put(policyDTO.getPolicyId(), attributeDTOs);
-        }
-        return attributeMap;
+        return new PolicyReferenceGraph(policyDTOs).getSearchAttributes();
     }
 
     /**
@@ -245,17 +245,61 @@ public class PDPConstants {
 
     public static final int MAX_NO_OF_IN_MEMORY_POLICIES = 10;
 
+    public static final String POLICY_LOADING_PARALLELISM = "PDP.PolicyLoading.Parallelism";
+
+    public static final String POLICY_SNAPSHOT_ENABLE = "PDP.PolicySnapshot.Enable";
+
+    public static final String POLICY_SNAPSHOT_DIRECTORY = "PDP.PolicySnapshot.Directory";
+
+    public static final String POLICY_SYNC_INTERVAL = "PDP.PolicySync.Interval";
+
+    public static final String EVALUATION_THREADS = "PDP.Evaluation.Threads";
+
+    public static final String EVALUATION_VIRTUAL_THREADS = "PDP.Evaluation.VirtualThreads";
+
+    public static final String ATTRIBUTE_PREFETCH_ENABLE = "PDP.AttributePrefetch.Enable";
+
+    public static final String ATTRIBUTE_PREFETCH_THREADS = "PDP.AttributePrefetch.Threads";
+
+    public static final String ATTRIBUTE_PREFETCH_TIMEOUT = "PDP.AttributePrefetch.Timeout";
+
+    public static final String ATTRIBUTE_FINDERS_PARALLEL_ENABLE = "PDP.AttributeFinders.Parallel.Enable";
+
+    public static final String ATTRIBUTE_FINDERS_PARALLEL_TIMEOUT = "PDP.AttributeFinders.Parallel.Timeout";
+
     public static final String DECISION_CACHING = "PDP.DecisionCaching.Enable";
 
     public static final String DECISION_CACHING_INTERVAL = "PDP.DecisionCaching.CachingInterval";
 
+    public static final String DECISION_CACHING_EXCLUDED_ATTRIBUTES = "PDP.DecisionCaching.ExcludedAttributes";
+
+    public static final String DECISION_CACHING_MAX_DEPENDENCY_ENTRIES = "PDP.DecisionCaching.MaxDependencyEntries";
+
+    public static final int MAX_NO_OF_DECISION_DEPENDENCY_ENTRIES = 10000;
+
+    public static final int MAX_NO_OF_SUBJECT_INDEX_ENTRIES = 100000;
+
     public static final String ATTRIBUTE_CACHING = "PDP.AttributeCaching.Enable";
 
     public static final String ATTRIBUTE_CACHING_INTERVAL = "PDP.AttributeCaching.CachingInterval";
 
+    public static final String ATTRIBUTE_CACHING_STALE_WHILE_REVALIDATE =
+            "PDP.AttributeCaching.StaleWhileRevalidate.Enable";
+
+    public static final String ATTRIBUTE_CACHING_STALE_INTERVAL =
+            "PDP.AttributeCaching.StaleWhileRevalidate.StaleInterval";
+
+    public static final String ATTRIBUTE_CACHING_REFRESH_AHEAD_FACTOR =
+            "PDP.AttributeCaching.StaleWhileRevalidate.RefreshAheadFactor";
+
+    public static final String ATTRIBUTE_CACHING_REFRESH_THREADS =
+            "PDP.AttributeCaching.StaleWhileRevalidate.RefreshThreads";
+
+    public static final String APPLICATION_ROLE_CACHING_INTERVAL = "PDP.ApplicationRoleCaching.CachingInterval";
+
     public static final String RESOURCE_CACHING = "PDP.ResourceCaching.Enable";
 
-    public static final String RESOURCE_CACHING_INTERVAL = "PDP.DecisionCaching.CachingInterval";
+    public static final String RESOURCE_CACHING_INTERVAL = "PDP.ResourceCaching.CachingInterval";
 
     public static final String PDP_ENABLE = "PDP.Enable";
 
@@ -291,6 +335,11 @@ public class PDPConstants {
 
     public static final String STORE_POLICY_META_DATA = "PAP.Policy.Store.MetaData";
 
+    // number of policies written with a single JDBC batch and transaction when policies are added in bulk
+    public static final String POLICY_STORE_BATCH_SIZE = "PAP.Policy.Store.BatchSize";
+
+    public static final int DEFAULT_POLICY_STORE_BATCH_SIZE = 500;
+
     public static final String MAX_NO_OF_STATUS_RECORDS = "maxRecodesToPersist";
 
     public static final int DEFAULT_MAX_NO_OF_STATUS_RECORDS = 50;
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2024, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.entitlement.cache;
+
+import org.wso2.carbon.identity.core.cache.BaseCache;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Cache implementation for the roles associated with applications, used to filter the role claim of the
+ * subject down to the roles of the application being accessed. Entries are only served for the given caching
+ * interval, as not all changes of the role associations are notified to the listeners which clear the cache.
+ * Cache entry: <application name, names of the associated roles and the time they were cached>
+ */
+public class ApplicationRoleCache extends BaseCache<String, IdentityCacheEntry> {
+
+    private static final String CACHE_NAME = "ApplicationRoleCache";
+    private static final ApplicationRoleCache instance = new ApplicationRoleCache();
+
+    private ApplicationRoleCache() {
+
+        super(CACHE_NAME);
+    }
+
+    public static ApplicationRoleCache getInstance() {
+
+        return instance;
+    }
+
+    /**
+     * Adds the roles associated with an application.
+     *
+     * @param applicationName name of the application
+     * @param roleNames       names of the associated roles
+     * @param tenantId        tenant id of the application
+     */
+    public void addToCache(String applicationName, Set<String> roleNames, int tenantId) {
+
+        super.addToCache(applicationName, new IdentityCacheEntry(new HashSet<String>(roleNames), new Date()),
+                tenantId);
+    }
+
+    /**
+     * Returns the roles associated with an application. Roles which were cached before the caching interval
+     * are removed from the cache.
+     *
+     * @param applicationName name of the application
+     * @param tenantId        tenant id of the application
+     * @param cachingInterval interval in milliseconds for which the roles are served
+     * @return unmodifiable set of the names of the associated roles, or null if they are not cached
+     */
+    public Set<String> getRolesFromCache(String applicationName, int tenantId, long cachingInterval) {
+
+        IdentityCacheEntry entry = super.getValueFromCache(applicationName, tenantId);
+        if (entry == null || entry.getCacheEntrySet() == null) {
+            return null;
+        }
+        Date date = entry.getDate();
+        if (date == null || System.currentTimeMillis() - date.getTime() >= cachingInterval) {
+            super.clearCacheEntry(applicationName, tenantId);
+            return null;
+        }
+        return Collections.unmodifiableSet(entry.getCacheEntrySet());
+    }
+}
@@ -82,6 +82,20 @@ public class DecisionCache extends EntitlementBaseCache<IdentityCacheKey, Object
         return null;
     }
 
+    /**
+     * Removes the decision of the given key from the cache.
+     *
+     * @param key
+     */
+    public void clearCacheEntry(String key) {
+
+        int tenantId = CarbonContext.getThreadLocalCarbonContext().getTenantId();
+        if (log.isDebugEnabled()) {
+            log.debug("DecisionCache entry is removed for tenantId : " + tenantId + " cache key : " + key);
+        }
+        clearCacheEntry(new IdentityCacheKey(tenantId, key));
+    }
+
     /**
      * Clear all decision cache
      */
@@ -65,6 +65,11 @@ public class IdentityCacheEntry implements Serializable {
         this.cacheEntrySet = cacheEntrySet;
     }
 
+    public IdentityCacheEntry(Set<String> cacheEntrySet, Date date) {
+        this.cacheEntrySet = cacheEntrySet;
+        this.date = new Date(date.getTime());
+    }
+
     public IdentityCacheEntry(String cacheEntry, Key secretKey, Date date) {
         this.cacheEntry = cacheEntry;
         this.secretKey = secretKey;
@@ -100,6 +105,6 @@ public class IdentityCacheEntry implements Serializable {
     }
 
     public Date getDate() {
-        return new Date(date.getTime());
+        return date != null ? new Date(date.getTime()) : null;
     }
 }
@@ -21,39 +21,30 @@ package org.wso2.carbon.identity.entitlement.cache;
 import org.wso2.carbon.caching.impl.CachingConstants;
 import org.wso2.carbon.identity.entitlement.PDPConstants;
 
+import java.util.Properties;
 import java.util.Set;
 
 /**
  *
  */
-public class PIPAbstractAttributeCache extends EntitlementBaseCache<IdentityCacheKey, IdentityCacheEntry> {
+public class PIPAbstractAttributeCache extends PIPBaseAttributeCache {
 
     public PIPAbstractAttributeCache(int timeOut) {
         super(CachingConstants.LOCAL_CACHE_PREFIX + PDPConstants.PIP_ABSTRACT_ATTRIBUTE_CACHE, timeOut);
     }
 
-    public void addToCache(int tenantId, String key, Set<String> attributes) {
-
-        IdentityCacheKey cacheKey = new IdentityCacheKey(tenantId, key);
-        IdentityCacheEntry cacheEntry = new IdentityCacheEntry(attributes);
-        addToCache(cacheKey, cacheEntry);
-    }
-
-    public Set<String> getFromCache(int tenantId, String key) {
-
-        Set<String> attributes = null;
-        IdentityCacheKey cacheKey = new IdentityCacheKey(tenantId, key);
-        Object entry = getValueFromCache(cacheKey);
-        if (entry != null) {
-            IdentityCacheEntry cacheEntry = (IdentityCacheEntry) entry;
-            attributes = cacheEntry.getCacheEntrySet();
-        }
-
-        return attributes;
+    public PIPAbstractAttributeCache(int timeOut, Properties properties) {
+        super(CachingConstants.LOCAL_CACHE_PREFIX + PDPConstants.PIP_ABSTRACT_ATTRIBUTE_CACHE, timeOut,
+                properties);
     }
 
-    public void clearCache() {
+    /**
+     * Empty attribute sets are not cached, as in the default implementation of the abstract PIP attribute
+     * finder.
+     */
+    @Override
+    protected boolean isCacheable(Set<String> attributes) {
 
-        clear();
+        return attributes != null && !attributes.isEmpty();
     }
 }
@@ -20,36 +20,18 @@ package org.wso2.carbon.identity.entitlement.cache;
 
 import org.wso2.carbon.identity.entitlement.PDPConstants;
 
-import java.util.Set;
+import java.util.Properties;
 
 /**
  *
  */
-public class PIPAttributeCache extends EntitlementBaseCache<IdentityCacheKey, IdentityCacheEntry> {
+public class PIPAttributeCache extends PIPBaseAttributeCache {
 
     public PIPAttributeCache(int timeOut) {
         super(PDPConstants.PIP_ATTRIBUTE_CACHE, timeOut);
     }
 
-    public void addToCache(int tenantId, String key, Set<String> attributes) {
-
-        IdentityCacheKey cacheKey = new IdentityCacheKey(tenantId, key);
-        IdentityCacheEntry cacheEntry = new IdentityCacheEntry(attributes);
-        addToCache(cacheKey, cacheEntry);
-    }
-
-    public Set<String> getFromCache(int tenantId, String key) {
-
-        Set<String> attributes = null;
-        IdentityCacheKey cacheKey = new IdentityCacheKey(tenantId, key);
-        IdentityCacheEntry cacheEntry = getValueFromCache(cacheKey);
-        if (cacheEntry != null) {
-            attributes = cacheEntry.getCacheEntrySet();
-        }
-        return attributes;
-    }
-
-    public void clearCache() {
-        clear();
+    public PIPAttributeCache(int timeOut, Properties properties) {
+        super(PDPConstants.PIP_ATTRIBUTE_CACHE, timeOut, properties);
     }
 }
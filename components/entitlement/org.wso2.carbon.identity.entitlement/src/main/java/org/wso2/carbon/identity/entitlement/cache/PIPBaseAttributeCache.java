@@ -0,0 +1,390 @@
+/*
+ * Copyright (c) 2024, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.entitlement.cache;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.context.CarbonContext;
+import org.wso2.carbon.context.PrivilegedCarbonContext;
+import org.wso2.carbon.identity.entitlement.PDPConstants;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Base of the PIP attribute caches. The keys of the cached attributes are indexed by the subject which they
+ * were resolved for, so that the attributes of a user can be evicted when the user is updated.
+ * <p/>
+ * In the stale-while-revalidate mode, attributes are served for up to the stale interval after the caching
+ * interval, while a single background task reloads them. Attributes which are read after the refresh ahead
+ * factor of the caching interval are reloaded as well, so that frequently used attributes are refreshed
+ * before they become stale. Concurrent misses of an attribute are coalesced into a single load.
+ */
+public class PIPBaseAttributeCache extends EntitlementBaseCache<IdentityCacheKey, IdentityCacheEntry> {
+
+    private static final Log log = LogFactory.getLog(PIPBaseAttributeCache.class);
+
+    private static final int DEFAULT_REFRESH_THREADS = 4;
+
+    /**
+     * maximum number of refreshes waiting for a refresh thread. Further refreshes are dropped, and the cached
+     * attributes are refreshed on a later read
+     */
+    private static final int MAX_QUEUED_REFRESHES = 1000;
+
+    /**
+     * lower bound of the refresh ahead factor, so that a cache hit does not reload the attributes each time
+     */
+    private static final double MIN_REFRESH_AHEAD_FACTOR = 0.1;
+
+    private static volatile ExecutorService refreshExecutor;
+
+    private SubjectCacheKeyIndex subjectIndex = new SubjectCacheKeyIndex(PDPConstants.MAX_NO_OF_SUBJECT_INDEX_ENTRIES);
+
+    /**
+     * age in milliseconds after which a cached attribute is reloaded in the background, -1 if disabled
+     */
+    private long refreshInterval = -1;
+
+    private int refreshThreads = DEFAULT_REFRESH_THREADS;
+
+    private ConcurrentMap<IdentityCacheKey, FutureTask<Set<String>>> loads =
+            new ConcurrentHashMap<IdentityCacheKey, FutureTask<Set<String>>>();
+
+    /**
+     * incremented whenever cached attributes are evicted, so that values loaded before are not cached
+     */
+    private AtomicLong generation = new AtomicLong();
+
+    public PIPBaseAttributeCache(String cacheName, int timeOut) {
+
+        super(cacheName, timeOut);
+    }
+
+    /**
+     * Creates a PIP attribute cache, in the stale-while-revalidate mode if it is enabled in the given
+     * entitlement engine properties.
+     *
+     * @param cacheName  name of the cache
+     * @param timeOut    caching interval in seconds
+     * @param properties entitlement engine properties
+     */
+    public PIPBaseAttributeCache(String cacheName, int timeOut, Properties properties) {
+
+        super(cacheName, getExpiryInterval(timeOut, properties));
+        if (isStaleWhileRevalidate(timeOut, properties)) {
+            double refreshAheadFactor = 1;
+            String factor = properties.getProperty(PDPConstants.ATTRIBUTE_CACHING_REFRESH_AHEAD_FACTOR);
+            if (factor != null) {
+                try {
+                    refreshAheadFactor = Math.min(1, Double.parseDouble(factor.trim()));
+                } catch (Exception e) {
+                    //ignore
+                }
+                if (!(refreshAheadFactor >= MIN_REFRESH_AHEAD_FACTOR)) {
+                    log.warn("Invalid value for " + PDPConstants.ATTRIBUTE_CACHING_REFRESH_AHEAD_FACTOR + " : " +
+                            factor + ". Using the minimum refresh ahead factor " + MIN_REFRESH_AHEAD_FACTOR);
+                    refreshAheadFactor = MIN_REFRESH_AHEAD_FACTOR;
+                }
+            }
+            refreshInterval = (long) (timeOut * 1000L * refreshAheadFactor);
+            String threads = properties.getProperty(PDPConstants.ATTRIBUTE_CACHING_REFRESH_THREADS);
+            if (threads != null) {
+                try {
+                    refreshThreads = Math.max(1, Integer.parseInt(threads.trim()));
+                } catch (Exception e) {
+                    //ignore
+                }
+            }
+        }
+    }
+
+    public void addToCache(int tenantId, String key, Set<String> attributes) {
+
+        addToCache(tenantId, key, attributes, null);
+    }
+
+    /**
+     * Adds the attributes resolved for a subject, so that they can be evicted when the subject changes.
+     *
+     * @param tenantId   tenant id
+     * @param key        cache key
+     * @param attributes attribute values
+     * @param subject    subject for which the attributes were resolved, null if they do not belong to a single
+     *                   subject
+     */
+    public void addToCache(int tenantId, String key, Set<String> attributes, String subject) {
+
+        if (subjectIndex.isFull()) {
+            clearCache();
+        }
+        subjectIndex.addKey(tenantId, subject, key);
+        IdentityCacheKey cacheKey = new IdentityCacheKey(tenantId, key);
+        IdentityCacheEntry cacheEntry = new IdentityCacheEntry(attributes, new Date());
+        addToCache(cacheKey, cacheEntry);
+    }
+
+    public Set<String> getFromCache(int tenantId, String key) {
+
+        Set<String> attributes = null;
+        IdentityCacheKey cacheKey = new IdentityCacheKey(tenantId, key);
+        IdentityCacheEntry cacheEntry = getValueFromCache(cacheKey);
+        if (cacheEntry != null) {
+            attributes = cacheEntry.getCacheEntrySet();
+        }
+        return attributes;
+    }
+
+    /**
+     * Returns the cached attributes, loading and caching them if they are not cached. The loader is also used
+     * to reload the attributes in the background, so it must not refer to the evaluation which requested them.
+     *
+     * @param tenantId tenant id
+     * @param key      cache key
+     * @param subject  subject for which the attributes are resolved, null if they do not belong to a single
+     *                 subject
+     * @param loader   resolves the attribute values
+     * @return attribute values
+     * @throws Exception if the attributes are not cached and can not be resolved
+     */
+    public Set<String> getFromCache(int tenantId, String key, String subject, Callable<Set<String>> loader)
+            throws Exception {
+
+        return getFromCache(tenantId, key, subject, loader, loader);
+    }
+
+    /**
+     * Returns the cached attributes, loading and caching them if they are not cached. In the
+     * stale-while-revalidate mode, concurrent loads of the same attributes are coalesced, and attributes
+     * which are due for a refresh are returned while they are reloaded in the background.
+     *
+     * @param tenantId  tenant id
+     * @param key       cache key
+     * @param subject   subject for which the attributes are resolved, null if they do not belong to a single
+     *                  subject
+     * @param loader    resolves the attribute values for the calling thread
+     * @param refresher resolves the attribute values in the background, after the evaluation which requested
+     *                  them may have completed
+     * @return attribute values
+     * @throws Exception if the attributes are not cached and can not be resolved
+     */
+    public Set<String> getFromCache(int tenantId, String key, String subject, Callable<Set<String>> loader,
+                                    Callable<Set<String>> refresher) throws Exception {
+
+        IdentityCacheKey cacheKey = new IdentityCacheKey(tenantId, key);
+        IdentityCacheEntry cacheEntry = getValueFromCache(cacheKey);
+        if (cacheEntry != null && cacheEntry.getCacheEntrySet() != null) {
+            if (refreshInterval >= 0 && cacheEntry.getDate() != null &&
+                    System.currentTimeMillis() - cacheEntry.getDate().getTime() >= refreshInterval) {
+                refresh(cacheKey, subject, refresher);
+            }
+            return cacheEntry.getCacheEntrySet();
+        }
+
+        if (refreshInterval < 0) {
+            Set<String> attributes = loader.call();
+            if (isCacheable(attributes)) {
+                addToCache(tenantId, key, attributes, subject);
+            }
+            return attributes;
+        }
+
+        FutureTask<Set<String>> load = newLoad(cacheKey, subject, loader);
+        FutureTask<Set<String>> existingLoad = loads.putIfAbsent(cacheKey, load);
+        if (existingLoad == null) {
+            try {
+                load.run();
+            } finally {
+                loads.remove(cacheKey, load);
+            }
+            existingLoad = load;
+        }
+        try {
+            return existingLoad.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    public void clearCache() {
+
+        generation.incrementAndGet();
+        subjectIndex.clear();
+        clear();
+    }
+
+    /**
+     * Evicts the attributes resolved for the given subjects, and the attributes which do not belong to a
+     * single subject.
+     *
+     * @param tenantId tenant id
+     * @param subjects user names
+     */
+    public void clearCache(int tenantId, Collection<String> subjects) {
+
+        generation.incrementAndGet();
+        for (String key : subjectIndex.removeSubjects(tenantId, subjects)) {
+            clearCacheEntry(new IdentityCacheKey(tenantId, key));
+        }
+    }
+
+    /**
+     * @param attributes resolved attribute values
+     * @return whether the attribute values are added to the cache
+     */
+    protected boolean isCacheable(Set<String> attributes) {
+
+        return attributes != null;
+    }
+
+    private FutureTask<Set<String>> newLoad(final IdentityCacheKey cacheKey, final String subject,
+                                            final Callable<Set<String>> loader) {
+
+        final long loadGeneration = generation.get();
+        return new FutureTask<Set<String>>(new Callable<Set<String>>() {
+            @Override
+            public Set<String> call() throws Exception {
+
+                Set<String> attributes = loader.call();
+                // attributes may have been evicted while they were being loaded
+                if (isCacheable(attributes) && generation.get() == loadGeneration) {
+                    addToCache(cacheKey.getTenantId(), cacheKey.getKey(), attributes, subject);
+                }
+                return attributes;
+            }
+        });
+    }
+
+    /**
+     * Reloads the attributes in the background, unless they are already being loaded.
+     */
+    private void refresh(final IdentityCacheKey cacheKey, String subject, Callable<Set<String>> loader) {
+
+        final FutureTask<Set<String>> load = newLoad(cacheKey, subject, loader);
+        if (loads.putIfAbsent(cacheKey, load) != null) {
+            return;
+        }
+
+        final String tenantDomain = CarbonContext.getThreadLocalCarbonContext().getTenantDomain();
+        try {
+            getRefreshExecutor(refreshThreads).execute(new Runnable() {
+                @Override
+                public void run() {
+
+                    PrivilegedCarbonContext.startTenantFlow();
+                    PrivilegedCarbonContext carbonContext = PrivilegedCarbonContext.getThreadLocalCarbonContext();
+                    carbonContext.setTenantId(cacheKey.getTenantId());
+                    carbonContext.setTenantDomain(tenantDomain);
+                    try {
+                        load.run();
+                        load.get();
+                    } catch (Exception e) {
+                        if (log.isDebugEnabled()) {
+                            log.debug("Error while refreshing the cached attributes of key " + cacheKey.getKey() +
+                                    ". Cached attributes are served until they expire.", e);
+                        }
+                    } finally {
+                        loads.remove(cacheKey, load);
+                        PrivilegedCarbonContext.endTenantFlow();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            loads.remove(cacheKey, load);
+            if (log.isDebugEnabled()) {
+                log.debug("Refreshing the cached attributes of key " + cacheKey.getKey() + " is rejected.", e);
+            }
+        }
+    }
+
+    private static boolean isStaleWhileRevalidate(int timeOut, Properties properties) {
+
+        return timeOut > 0 && properties != null &&
+                "true".equals(properties.getProperty(PDPConstants.ATTRIBUTE_CACHING_STALE_WHILE_REVALIDATE));
+    }
+
+    /**
+     * Returns the time after which cached attributes expire. In the stale-while-revalidate mode, attributes
+     * are kept for the stale interval after the caching interval, which defaults to the caching interval.
+     */
+    private static int getExpiryInterval(int timeOut, Properties properties) {
+
+        if (!isStaleWhileRevalidate(timeOut, properties)) {
+            return timeOut;
+        }
+        int staleInterval = timeOut;
+        String interval = properties.getProperty(PDPConstants.ATTRIBUTE_CACHING_STALE_INTERVAL);
+        if (interval != null) {
+            try {
+                staleInterval = Math.max(0, Integer.parseInt(interval.trim()));
+            } catch (Exception e) {
+                //ignore
+            }
+        }
+        return timeOut + staleInterval;
+    }
+
+    /**
+     * Returns the executor shared by the background refreshes of all PIP attribute caches.
+     *
+     * @param threads number of threads, used when the executor is created
+     * @return refresh executor
+     */
+    private static ExecutorService getRefreshExecutor(int threads) {
+
+        if (refreshExecutor == null) {
+            synchronized (PIPBaseAttributeCache.class) {
+                if (refreshExecutor == null) {
+                    ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                            new ArrayBlockingQueue<Runnable>(MAX_QUEUED_REFRESHES), new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable, "PIPAttributeCache-refresh");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+                    executor.allowCoreThreadTimeOut(true);
+                    refreshExecutor = executor;
+                }
+            }
+        }
+        return refreshExecutor;
+    }
+}
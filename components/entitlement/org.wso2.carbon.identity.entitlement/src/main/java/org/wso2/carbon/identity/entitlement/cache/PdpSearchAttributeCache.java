@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2024, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.entitlement.cache;
+
+import org.wso2.carbon.identity.core.cache.BaseCache;
+import org.wso2.carbon.identity.entitlement.policy.search.PolicyReferenceGraph;
+
+/**
+ * Cache implementation for the search attributes of the active PDP policies. The cached reference graph only
+ * carries the policy ID, attributes and references of the published version of each policy, and is updated
+ * in place as policies are published.
+ * Cache entry: <constant key, policy reference graph>
+ */
+public class PdpSearchAttributeCache extends BaseCache<String, PolicyReferenceGraph> {
+
+    private static final String CACHE_NAME = "PdpSearchAttributeCache";
+    private static final PdpSearchAttributeCache instance = new PdpSearchAttributeCache();
+
+    private PdpSearchAttributeCache() {
+
+        super(CACHE_NAME);
+    }
+
+    public static PdpSearchAttributeCache getInstance() {
+
+        return instance;
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2024, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.entitlement.cache;
+
+import org.wso2.carbon.identity.core.cache.BaseCache;
+import org.wso2.carbon.identity.entitlement.extension.UserPermissionTree;
+
+/**
+ * Cache implementation for the UI permissions of users, used by the eval-permission-tree XACML function.
+ * Cache entry: <user name, permission tree of the user>
+ */
+public class PermissionTreeCache extends BaseCache<String, UserPermissionTree> {
+
+    private static final String CACHE_NAME = "PermissionTreeCache";
+    private static final PermissionTreeCache instance = new PermissionTreeCache();
+
+    private PermissionTreeCache() {
+
+        super(CACHE_NAME);
+    }
+
+    public static PermissionTreeCache getInstance() {
+
+        return instance;
+    }
+}
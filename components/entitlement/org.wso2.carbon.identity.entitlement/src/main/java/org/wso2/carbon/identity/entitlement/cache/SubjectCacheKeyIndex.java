@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2024, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.entitlement.cache;
+
+import org.wso2.carbon.user.core.UserCoreConstants;
+import org.wso2.carbon.utils.multitenancy.MultitenantUtils;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index from the subjects to the keys of the attribute cache entries which were resolved for them. It is
+ * used to evict only the entries of the users affected by a user store change, instead of clearing the whole
+ * attribute cache. Entries which were not resolved for a single subject are evicted on every change.
+ * <p/>
+ * Subjects are matched by their user name, ignoring the tenant domain, the user store domain and the case,
+ * so that an entry may be evicted for a user of another user store with the same name, but is never missed.
+ */
+public class SubjectCacheKeyIndex {
+
+    private static final String ANY_SUBJECT = "";
+
+    private int maxEntries;
+
+    private int size;
+
+    private Map<IdentityCacheKey, Set<String>> subjectKeys = new HashMap<IdentityCacheKey, Set<String>>();
+
+    public SubjectCacheKeyIndex(int maxEntries) {
+
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Returns the form in which a subject is indexed.
+     *
+     * @param subject user name, optionally qualified with the user store and tenant domains
+     * @return indexed form of the subject, or null if the subject is empty
+     */
+    public static String getSubjectKey(String subject) {
+
+        if (subject == null) {
+            return null;
+        }
+        String userName = MultitenantUtils.getTenantAwareUsername(subject.trim());
+        int index = userName.indexOf(UserCoreConstants.DOMAIN_SEPARATOR);
+        if (index > 0) {
+            userName = userName.substring(index + 1);
+        }
+        if (userName.isEmpty()) {
+            return null;
+        }
+        return userName.toLowerCase(Locale.ENGLISH);
+    }
+
+    public synchronized boolean isFull() {
+
+        return size >= maxEntries;
+    }
+
+    /**
+     * Adds the key of a cache entry.
+     *
+     * @param tenantId tenant id
+     * @param subject  subject for which the entry was resolved, null if the entry does not belong to a single
+     *                 subject
+     * @param key      cache key
+     */
+    public synchronized void addKey(int tenantId, String subject, String key) {
+
+        String subjectKey = getSubjectKey(subject);
+        IdentityCacheKey indexKey = new IdentityCacheKey(tenantId, subjectKey != null ? subjectKey : ANY_SUBJECT);
+        Set<String> keys = subjectKeys.get(indexKey);
+        if (keys == null) {
+            keys = new HashSet<String>();
+            subjectKeys.put(indexKey, keys);
+        }
+        if (keys.add(key)) {
+            size++;
+        }
+    }
+
+    /**
+     * Removes the keys of the entries which were resolved for the given subjects, or which do not belong to a
+     * single subject.
+     *
+     * @param tenantId tenant id
+     * @param subjects user names
+     * @return cache keys to be evicted
+     */
+    public synchronized Set<String> removeSubjects(int tenantId, Collection<String> subjects) {
+
+        Set<String> keys = new HashSet<String>();
+        removeSubject(new IdentityCacheKey(tenantId, ANY_SUBJECT), keys);
+        for (String subject : subjects) {
+            String subjectKey = getSubjectKey(subject);
+            if (subjectKey != null) {
+                removeSubject(new IdentityCacheKey(tenantId, subjectKey), keys);
+            }
+        }
+        return keys;
+    }
+
+    public synchronized void clear() {
+
+        subjectKeys.clear();
+        size = 0;
+    }
+
+    private void removeSubject(IdentityCacheKey indexKey, Set<String> keys) {
+
+        Set<String> removed = subjectKeys.remove(indexKey);
+        if (removed != null) {
+            size -= removed.size();
+            keys.addAll(removed);
+        }
+    }
+}
@@ -27,8 +27,11 @@ import org.wso2.balana.cond.Evaluatable;
 import org.wso2.balana.cond.EvaluationResult;
 import org.wso2.balana.cond.FunctionBase;
 import org.wso2.balana.ctx.EvaluationCtx;
+import org.wso2.carbon.identity.entitlement.cache.PermissionTreeCache;
 import org.wso2.carbon.identity.entitlement.internal.EntitlementServiceComponent;
+import org.wso2.carbon.user.core.AuthorizationManager;
 import org.wso2.carbon.user.core.UserStoreException;
+import org.wso2.carbon.utils.multitenancy.MultitenantConstants;
 
 import java.util.HashSet;
 import java.util.List;
@@ -44,6 +47,8 @@ public class EvalPermissionTreeFunction extends FunctionBase {
     // private identifiers for the supported functions
     private static final int ID_EVAL_PERMISSION_TREE = 0;
 
+    private static final String UI_EXECUTE = "ui.execute";
+
     private static final Log log = LogFactory.getLog(EvalPermissionTreeFunction.class);
 
     public EvalPermissionTreeFunction() {
@@ -76,8 +81,7 @@ public class EvalPermissionTreeFunction extends FunctionBase {
                 boolean isAuthorised = false;
 
                 try {
-                    isAuthorised = EntitlementServiceComponent.getRealmservice().getBootstrapRealm().
-                            getAuthorizationManager().isUserAuthorized(subject, resource, "ui.execute");
+                    isAuthorised = isUserAuthorized(subject, resource);
                 } catch (UserStoreException e) {
                     log.error("Error while authorising" + subject + " to perform ui.execute on " + resource, e);
                 }
@@ -88,4 +92,32 @@ public class EvalPermissionTreeFunction extends FunctionBase {
 
         return result;
     }
+
+    /**
+     * Checks the UI permission of the user against the permission tree of the user, which is resolved once
+     * and cached until the roles or permissions of the tenant are updated.
+     *
+     * @param subject  user name
+     * @param resource resource of the permission
+     * @return whether the user is authorized to the resource
+     * @throws UserStoreException if fails to resolve the permissions of the user
+     */
+    private boolean isUserAuthorized(String subject, String resource) throws UserStoreException {
+
+        AuthorizationManager authorizationManager = EntitlementServiceComponent.getRealmservice()
+                .getBootstrapRealm().getAuthorizationManager();
+        if (!UserPermissionTree.isPermissionResource(resource)) {
+            return authorizationManager.isUserAuthorized(subject, resource, UI_EXECUTE);
+        }
+
+        UserPermissionTree permissionTree = PermissionTreeCache.getInstance().getValueFromCache(subject,
+                MultitenantConstants.SUPER_TENANT_ID);
+        if (permissionTree == null) {
+            permissionTree = new UserPermissionTree(authorizationManager.getAllowedUIResourcesForUser(subject,
+                    UserPermissionTree.PERMISSION_ROOT));
+            PermissionTreeCache.getInstance().addToCache(subject, permissionTree,
+                    MultitenantConstants.SUPER_TENANT_ID);
+        }
+        return permissionTree.isAuthorized(resource);
+    }
 }
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2024, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.entitlement.extension;
+
+import java.io.Serializable;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The UI permissions of a user, resolved once from the permission tree. Only the top most permissions which
+ * are granted to the user are kept, since a permission grants every permission below it. A permission check
+ * is a lookup of the resource and each of its ancestors.
+ * <p/>
+ * Permissions which are explicitly denied below a granted permission are not represented, as UI permissions
+ * are only granted.
+ */
+public class UserPermissionTree implements Serializable {
+
+    /**
+     * root of the UI permissions
+     */
+    public static final String PERMISSION_ROOT = "/permission";
+
+    private static final long serialVersionUID = -2318713405936640924L;
+
+    private static final char SEPARATOR = '/';
+
+    private final HashSet<String> grantedPermissions = new HashSet<String>();
+
+    /**
+     * @param grantedPermissions UI permissions granted to the user
+     */
+    public UserPermissionTree(String[] grantedPermissions) {
+
+        if (grantedPermissions != null) {
+            for (String permission : grantedPermissions) {
+                if (permission != null && !permission.trim().isEmpty()) {
+                    this.grantedPermissions.add(normalize(permission.trim()));
+                }
+            }
+        }
+    }
+
+    /**
+     * @param resource resource of a permission
+     * @return whether the permission is resolved through the permission tree of the user
+     */
+    public static boolean isPermissionResource(String resource) {
+
+        return resource.equals(PERMISSION_ROOT) || resource.startsWith(PERMISSION_ROOT + SEPARATOR);
+    }
+
+    /**
+     * @param resource resource of a UI permission
+     * @return whether the permission or any permission above it is granted to the user
+     */
+    public boolean isAuthorized(String resource) {
+
+        if (grantedPermissions.isEmpty()) {
+            return false;
+        }
+        String permission = normalize(resource);
+        while (!permission.isEmpty()) {
+            if (grantedPermissions.contains(permission)) {
+                return true;
+            }
+            int index = permission.lastIndexOf(SEPARATOR);
+            permission = index > 0 ? permission.substring(0, index) : "";
+        }
+        return grantedPermissions.contains(String.valueOf(SEPARATOR));
+    }
+
+    public Set<String> getGrantedPermissions() {
+
+        return new HashSet<String>(grantedPermissions);
+    }
+
+    private static String normalize(String resource) {
+
+        if (resource.length() > 1 && resource.charAt(resource.length() - 1) == SEPARATOR) {
+            return resource.substring(0, resource.length() - 1);
+        }
+        return resource;
+    }
+}
@@ -195,8 +195,15 @@ public class EntitlementExtensionBuilder {
         setProperty(properties, pdpProperties, PDPConstants.ON_DEMAND_POLICY_MAX_POLICY_ENTRIES);
         setProperty(properties, pdpProperties, PDPConstants.DECISION_CACHING);
         setProperty(properties, pdpProperties, PDPConstants.DECISION_CACHING_INTERVAL);
+        setProperty(properties, pdpProperties, PDPConstants.DECISION_CACHING_EXCLUDED_ATTRIBUTES);
+        setProperty(properties, pdpProperties, PDPConstants.DECISION_CACHING_MAX_DEPENDENCY_ENTRIES);
         setProperty(properties, pdpProperties, PDPConstants.ATTRIBUTE_CACHING);
         setProperty(properties, pdpProperties, PDPConstants.ATTRIBUTE_CACHING_INTERVAL);
+        setProperty(properties, pdpProperties, PDPConstants.ATTRIBUTE_CACHING_STALE_WHILE_REVALIDATE);
+        setProperty(properties, pdpProperties, PDPConstants.ATTRIBUTE_CACHING_STALE_INTERVAL);
+        setProperty(properties, pdpProperties, PDPConstants.ATTRIBUTE_CACHING_REFRESH_AHEAD_FACTOR);
+        setProperty(properties, pdpProperties, PDPConstants.ATTRIBUTE_CACHING_REFRESH_THREADS);
+        setProperty(properties, pdpProperties, PDPConstants.APPLICATION_ROLE_CACHING_INTERVAL);
         setProperty(properties, pdpProperties, PDPConstants.RESOURCE_CACHING);
         setProperty(properties, pdpProperties, PDPConstants.RESOURCE_CACHING_INTERVAL);
         setProperty(properties, pdpProperties, PDPConstants.PDP_ENABLE);
@@ -204,6 +211,17 @@ public class EntitlementExtensionBuilder {
         setProperty(properties, pdpProperties, PDPConstants.BALANA_CONFIG_ENABLE);
         setProperty(properties, pdpProperties, PDPConstants.MULTIPLE_DECISION_PROFILE_ENABLE);
         setProperty(properties, pdpProperties, PDPConstants.MAX_POLICY_REFERENCE_ENTRIES);
+        setProperty(properties, pdpProperties, PDPConstants.POLICY_LOADING_PARALLELISM);
+        setProperty(properties, pdpProperties, PDPConstants.POLICY_SNAPSHOT_ENABLE);
+        setProperty(properties, pdpProperties, PDPConstants.POLICY_SNAPSHOT_DIRECTORY);
+        setProperty(properties, pdpProperties, PDPConstants.POLICY_SYNC_INTERVAL);
+        setProperty(properties, pdpProperties, PDPConstants.EVALUATION_THREADS);
+        setProperty(properties, pdpProperties, PDPConstants.EVALUATION_VIRTUAL_THREADS);
+        setProperty(properties, pdpProperties, PDPConstants.ATTRIBUTE_PREFETCH_ENABLE);
+        setProperty(properties, pdpProperties, PDPConstants.ATTRIBUTE_PREFETCH_THREADS);
+        setProperty(properties, pdpProperties, PDPConstants.ATTRIBUTE_PREFETCH_TIMEOUT);
+        setProperty(properties, pdpProperties, PDPConstants.ATTRIBUTE_FINDERS_PARALLEL_ENABLE);
+        setProperty(properties, pdpProperties, PDPConstants.ATTRIBUTE_FINDERS_PARALLEL_TIMEOUT);
         setProperty(properties, pdpProperties, PDPConstants.FILESYSTEM_POLICY_PATH);
         setProperty(properties, pdpProperties, PDPConstants.POLICY_ID_REGEXP_PATTERN);
         setProperty(properties, pdpProperties, PDPConstants.PDP_GLOBAL_COMBINING_ALGORITHM);
@@ -215,6 +233,14 @@ public class EntitlementExtensionBuilder {
         setProperty(properties, pdpProperties, PDPConstants.POLICY_CACHING_INTERVAL);
         setProperty(properties, pdpProperties, PDPConstants.XACML_JSON_SHORT_FORM_ENABLED);
         setProperty(properties, pdpProperties, PDPConstants.STORE_POLICY_META_DATA);
+        setProperty(properties, pdpProperties, PDPConstants.POLICY_STORE_BATCH_SIZE);
+
+        // tenant specific exclusions are defined as PDP.DecisionCaching.ExcludedAttributes.<tenant domain>
+        for (String name : properties.stringPropertyNames()) {
+            if (name.startsWith(PDPConstants.DECISION_CACHING_EXCLUDED_ATTRIBUTES + ".")) {
+                setProperty(properties, pdpProperties, name);
+            }
+        }
 
         holder.setEngineProperties(pdpProperties);
     }
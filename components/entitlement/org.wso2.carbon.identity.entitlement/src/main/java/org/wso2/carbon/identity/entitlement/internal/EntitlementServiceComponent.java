@@ -37,12 +37,14 @@ import org.osgi.service.component.annotations.ReferenceCardinality;
 import org.osgi.service.component.annotations.ReferencePolicy;
 import org.wso2.carbon.context.PrivilegedCarbonContext;
 import org.wso2.carbon.identity.application.mgt.ApplicationManagementService;
+import org.wso2.carbon.identity.application.mgt.listener.ApplicationMgtListener;
 import org.wso2.carbon.identity.core.util.IdentityCoreInitializedEvent;
 import org.wso2.carbon.identity.core.util.IdentityUtil;
 import org.wso2.carbon.identity.entitlement.EntitlementUtil;
 import org.wso2.carbon.identity.entitlement.PDPConstants;
 import org.wso2.carbon.identity.entitlement.persistence.PolicyPersistenceManager;
 import org.wso2.carbon.identity.entitlement.dto.PolicyDTO;
+import org.wso2.carbon.identity.entitlement.listener.ApplicationRoleCacheClearingListener;
 import org.wso2.carbon.identity.entitlement.listener.CacheClearingUserOperationListener;
 import org.wso2.carbon.identity.entitlement.pap.EntitlementAdminEngine;
 import org.wso2.carbon.identity.entitlement.thrift.EntitlementService;
@@ -284,6 +286,10 @@ public class EntitlementServiceComponent {
             ctxt.getBundleContext().registerService(
                     UserOperationEventListener.class.getName(), pipUserOperationListener, null);
 
+            // clear the cached roles of applications when an application is updated
+            ctxt.getBundleContext().registerService(ApplicationMgtListener.class.getName(),
+                    new ApplicationRoleCacheClearingListener(), null);
+
             // Register Notification sending on user operations. Even though this is registered
             // only subscribed modules will send messages.
             if (log.isDebugEnabled()) {
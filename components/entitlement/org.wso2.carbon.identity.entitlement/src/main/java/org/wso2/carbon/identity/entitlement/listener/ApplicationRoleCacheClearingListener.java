@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2024, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.entitlement.listener;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.application.common.IdentityApplicationManagementException;
+import org.wso2.carbon.identity.application.common.model.ServiceProvider;
+import org.wso2.carbon.identity.application.mgt.listener.AbstractApplicationMgtListener;
+import org.wso2.carbon.identity.core.util.IdentityTenantUtil;
+import org.wso2.carbon.identity.entitlement.cache.ApplicationRoleCache;
+
+/**
+ * This listener is registered as an application management listener. Whenever an application is updated or
+ * deleted, the cached roles associated with applications are cleared.
+ */
+public class ApplicationRoleCacheClearingListener extends AbstractApplicationMgtListener {
+
+    private static final Log log = LogFactory.getLog(ApplicationRoleCacheClearingListener.class);
+
+    @Override
+    public int getDefaultOrderId() {
+        return 205;
+    }
+
+    /**
+     * Clears the cached application roles of the tenant, as the update may rename the application as well as
+     * change its role associations.
+     */
+    @Override
+    public boolean doPostUpdateApplication(ServiceProvider serviceProvider, String tenantDomain, String userName)
+            throws IdentityApplicationManagementException {
+
+        if (!isEnable()) {
+            return true;
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Clearing application role cache on post update application operation for application " +
+                    serviceProvider.getApplicationName() + " of tenant " + tenantDomain);
+        }
+        ApplicationRoleCache.getInstance().clear(IdentityTenantUtil.getTenantId(tenantDomain));
+        return true;
+    }
+
+    @Override
+    public boolean doPostDeleteApplication(String applicationName, String tenantDomain, String userName)
+            throws IdentityApplicationManagementException {
+
+        if (!isEnable()) {
+            return true;
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Clearing application role cache on post delete application operation for application " +
+                    applicationName + " of tenant " + tenantDomain);
+        }
+        ApplicationRoleCache.getInstance().clearCacheEntry(applicationName, IdentityTenantUtil.getTenantId(
+                tenantDomain));
+        return true;
+    }
+}
@@ -18,9 +18,16 @@
 
 package org.wso2.carbon.identity.entitlement.listener;
 
+import org.apache.axis2.clustering.ClusteringAgent;
+import org.apache.axis2.clustering.ClusteringFault;
+import org.apache.axis2.clustering.ClusteringMessage;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.context.CarbonContext;
 import org.wso2.carbon.identity.core.AbstractIdentityUserOperationEventListener;
+import org.wso2.carbon.identity.entitlement.cache.ApplicationRoleCache;
+import org.wso2.carbon.identity.entitlement.cache.PermissionTreeCache;
+import org.wso2.carbon.identity.entitlement.internal.EntitlementConfigHolder;
 import org.wso2.carbon.identity.entitlement.internal.EntitlementServiceComponent;
 import org.wso2.carbon.identity.entitlement.pdp.EntitlementEngine;
 import org.wso2.carbon.identity.entitlement.pip.CarbonAttributeFinder;
@@ -29,20 +36,29 @@ import org.wso2.carbon.user.api.Permission;
 import org.wso2.carbon.user.core.UserStoreException;
 import org.wso2.carbon.user.core.UserStoreManager;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 
 /**
  * This listener is registered as a user operation listener. Whenever a user operation takes place
- * this listener fires and responsible for clearing caches within entitlement engine. This will
- * clear all 3 caches including  PIP_ATTRIBUTE_CACHE, PDP_DECISION_INVALIDATION_CACHE,
- * ENTITLEMENT_POLICY_INVALIDATION_CACHE
+ * this listener fires and responsible for clearing caches within entitlement engine. Only the cached
+ * attributes and decisions of the affected users are cleared, i.e. the updated user or the users of the
+ * updated role.
  */
 public class CacheClearingUserOperationListener extends AbstractIdentityUserOperationEventListener {
 
     private static final Log log = LogFactory.getLog(CacheClearingUserOperationListener.class);
 
+    /**
+     * users of the role which is being deleted in the current thread
+     */
+    private static final ThreadLocal<String[]> DELETED_ROLE_USERS = new ThreadLocal<String[]>();
+
     @Override
     public int getExecutionOrderId() {
         return 6;
@@ -67,7 +83,8 @@ public class CacheClearingUserOperationListener extends AbstractIdentityUserOper
             log.debug("Clearing entitlement cache on post delete user operation for user " +
                       userName);
         }
-        clearCarbonAttributeCache();
+        clearCarbonAttributeCache(Collections.singleton(userName));
+        clearPermissionTreeCache(userStoreManager);
         // Always returns true since cache clearing failure does not make an effect on subsequent
         // User Operation Listeners
         return true;
@@ -94,7 +111,7 @@ public class CacheClearingUserOperationListener extends AbstractIdentityUserOper
         }
         // Always returns true since cache clearing failure does not make an effect on subsequent
         // User Operation Listeners
-        clearCarbonAttributeCache();
+        clearCarbonAttributeCache(Collections.singleton(userName));
         return true;
     }
 
@@ -122,7 +139,7 @@ public class CacheClearingUserOperationListener extends AbstractIdentityUserOper
         }
         // Always returns true since cache clearing failure does not make an effect on subsequent
         // User Operation Listeners
-        clearCarbonAttributeCache();
+        clearCarbonAttributeCache(Collections.singleton(userName));
         return true;
     }
 
@@ -148,7 +165,7 @@ public class CacheClearingUserOperationListener extends AbstractIdentityUserOper
         }
         // Always returns true since cache clearing failure does not make an effect on subsequent
         // User Operation Listeners
-        clearCarbonAttributeCache();
+        clearCarbonAttributeCache(Collections.singleton(userName));
         return true;
     }
 
@@ -173,7 +190,7 @@ public class CacheClearingUserOperationListener extends AbstractIdentityUserOper
         }
         // Always returns true since cache clearing failure does not make an effect on subsequent
         // User Operation Listeners
-        clearCarbonAttributeCache();
+        clearCarbonAttributeCache(Collections.singleton(userName));
         return true;
     }
 
@@ -198,12 +215,41 @@ public class CacheClearingUserOperationListener extends AbstractIdentityUserOper
             log.debug("Clearing entitlement cache on post add role operation for role " +
                       roleName);
         }
-        clearCarbonAttributeCache();
+        clearCarbonAttributeCache(getUserNames(userList));
+        // the role may be created for the audience of an application
+        ApplicationRoleCache.getInstance().clear(userStoreManager.getTenantId());
+        clearPermissionTreeCache(userStoreManager);
         // Always returns true since cache clearing failure does not make an effect on subsequent
         // User Operation Listeners
         return true;
     }
 
+    /**
+     * This method is overridden to find the users of the role before it is deleted, so that only their caches
+     * are cleared on doPostDeleteRole operation
+     *
+     * @param roleName         Name of the role to be deleted
+     * @param userStoreManager UserStoreManagerClass
+     * @return Always Returns true, since no major effect on further procedures
+     * @throws org.wso2.carbon.user.core.UserStoreException
+     */
+    @Override
+    public boolean doPreDeleteRole(String roleName, UserStoreManager userStoreManager) throws UserStoreException {
+
+        DELETED_ROLE_USERS.remove();
+        if (!isEnable()) {
+            return true;
+        }
+
+        try {
+            DELETED_ROLE_USERS.set(userStoreManager.getUserListOfRole(roleName));
+        } catch (UserStoreException e) {
+            log.warn("Error while retrieving the users of role " + roleName + ". Clearing the entitlement " +
+                    "cache of all users on post delete role operation.", e);
+        }
+        return true;
+    }
+
     /**
      * This method is overridden to clear caches on doPostDeleteRole operation
      *
@@ -223,7 +269,16 @@ public class CacheClearingUserOperationListener extends AbstractIdentityUserOper
             log.debug("Clearing entitlement cache on post delete role operation for role " +
                       roleName);
         }
-        clearCarbonAttributeCache();
+        String[] roleUsers = DELETED_ROLE_USERS.get();
+        DELETED_ROLE_USERS.remove();
+        if (roleUsers != null) {
+            clearCarbonAttributeCache(getUserNames(roleUsers));
+        } else {
+            clearCarbonAttributeCache();
+        }
+        // the role may be associated with applications
+        ApplicationRoleCache.getInstance().clear(userStoreManager.getTenantId());
+        clearPermissionTreeCache(userStoreManager);
         // Always returns true since cache clearing failure does not make an effect on subsequent
         // User Operation Listeners
         return true;
@@ -248,7 +303,21 @@ public class CacheClearingUserOperationListener extends AbstractIdentityUserOper
             log.debug("Clearing entitlement cache on post update role operation for role " +
                       roleName);
         }
-        clearCarbonAttributeCache();
+        String[] roleUsers = null;
+        try {
+            roleUsers = userStoreManager.getUserListOfRole(newRoleName);
+        } catch (UserStoreException e) {
+            log.warn("Error while retrieving the users of role " + newRoleName + ". Clearing the entitlement " +
+                    "cache of all users.", e);
+        }
+        if (roleUsers != null) {
+            clearCarbonAttributeCache(getUserNames(roleUsers));
+        } else {
+            clearCarbonAttributeCache();
+        }
+        // the role may be associated with applications
+        ApplicationRoleCache.getInstance().clear(userStoreManager.getTenantId());
+        clearPermissionTreeCache(userStoreManager);
         // Always returns true since cache clearing failure does not make an effect on subsequent
         // User Operation Listeners
         return true;
@@ -268,7 +337,8 @@ public class CacheClearingUserOperationListener extends AbstractIdentityUserOper
             log.debug("Clearing entitlement cache on post update user operation for role " +
                     roleName);
         }
-        clearCarbonAttributeCache();
+        clearCarbonAttributeCache(getUserNames(deletedUsers, newUsers));
+        clearPermissionTreeCache(userStoreManager);
         // Always returns true since cache clearing failure does not make an effect on subsequent
         // User Operation Listeners
         return true;
@@ -288,12 +358,134 @@ public class CacheClearingUserOperationListener extends AbstractIdentityUserOper
             log.debug("Clearing entitlement cache on post update role operation for user " +
                     userName);
         }
-        clearCarbonAttributeCache();
+        clearCarbonAttributeCache(Collections.singleton(userName));
+        clearPermissionTreeCache(userStoreManager);
         // Always returns true since cache clearing failure does not make an effect on subsequent
         // User Operation Listeners
         return true;
     }
 
+    /**
+     * This method is overridden to clear the cached UI permissions on doPostUpdatePermissionsOfRole operation
+     *
+     * @param roleName         Role to be updated with permissions
+     * @param permissions      New permissions of the role
+     * @param userStoreManager UserStoreManager instance got called
+     * @return Always returns true since no major effect on further procedure.
+     * @throws org.wso2.carbon.user.core.UserStoreException
+     */
+    @Override
+    public boolean doPostUpdatePermissionsOfRole(String roleName, Permission[] permissions,
+                                                 UserStoreManager userStoreManager) throws UserStoreException {
+        if (!isEnable()) {
+            return true;
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Clearing permission tree cache on post update permissions operation for role " +
+                    roleName);
+        }
+        clearPermissionTreeCache(userStoreManager);
+        return true;
+    }
+
+    /**
+     * Clears the cached UI permissions of the users of the tenant. User names are not matched against the
+     * cached users, since they may be cached in a different form, e.g. with the user store domain.
+     *
+     * @param userStoreManager user store manager of the tenant
+     */
+    private void clearPermissionTreeCache(UserStoreManager userStoreManager) throws UserStoreException {
+
+        PermissionTreeCache.getInstance().clear(userStoreManager.getTenantId());
+    }
+
+    /**
+     * Clears the cached attributes and the dependent decisions of the given users only, instead of the caches
+     * of all users. The subject indexes of these caches are kept per node, hence the other nodes of the cluster
+     * are notified to evict the entries they have indexed.
+     *
+     * @param userNames user names of the updated users
+     */
+    private void clearCarbonAttributeCache(Collection<String> userNames) {
+
+        clearLocalAttributeCache(userNames);
+
+        if (isClusteringEnabled()) {
+            int tenantId = CarbonContext.getThreadLocalCarbonContext().getTenantId();
+            sendClusterMessage(new SubjectCacheInvalidationClusteringMessage(tenantId, userNames));
+        } else if (log.isDebugEnabled()) {
+            log.debug("Clustering not enabled. Not sending cluster message to other nodes.");
+        }
+    }
+
+    /**
+     * Clears the cached attributes and the dependent decisions of the given users, which are indexed by this node.
+     *
+     * @param userNames user names of the updated users
+     */
+    static void clearLocalAttributeCache(Collection<String> userNames) {
+
+        CarbonAttributeFinder finder = EntitlementEngine.getInstance().getCarbonAttributeFinder();
+        if (finder == null) {
+            return;
+        }
+        finder.clearAttributeCache(userNames);
+
+        Map<PIPAttributeFinder, Properties> designators =
+                EntitlementServiceComponent.getEntitlementConfig().getDesignators();
+        if (designators != null && !designators.isEmpty()) {
+            for (PIPAttributeFinder pipAttributeFinder : designators.keySet()) {
+                pipAttributeFinder.clearSubjectCache(userNames);
+            }
+        }
+    }
+
+    /**
+     * Send out the subject cache invalidation to other nodes.
+     *
+     * @param clusterMessage cluster message
+     */
+    private void sendClusterMessage(ClusteringMessage clusterMessage) {
+
+        try {
+            if (log.isDebugEnabled()) {
+                log.debug("Sending cluster message to all other nodes");
+            }
+            ClusteringAgent clusteringAgent = EntitlementConfigHolder.getInstance().getConfigurationContextService()
+                    .getServerConfigContext().getAxisConfiguration().getClusteringAgent();
+            if (clusteringAgent != null) {
+                clusteringAgent.sendMessage(clusterMessage, true);
+            } else {
+                log.error("Clustering Agent not available.");
+            }
+        } catch (ClusteringFault clusteringFault) {
+            log.error("Error while sending cluster message", clusteringFault);
+        }
+    }
+
+    /**
+     * Check whether clustering is enabled.
+     *
+     * @return boolean returns true if clustering enabled, false otherwise.
+     */
+    private boolean isClusteringEnabled() {
+
+        return EntitlementConfigHolder.getInstance().getConfigurationContextService()
+                .getServerConfigContext().getAxisConfiguration().getClusteringAgent() != null;
+    }
+
+    private Collection<String> getUserNames(String[]... userLists) {
+
+        Set<String> userNames = new HashSet<String>();
+        for (String[] userList : userLists) {
+            if (userList != null) {
+                userNames.addAll(Arrays.asList(userList));
+            }
+        }
+        return userNames;
+    }
+
     /**
      * this method is responsible for clearing all 3 major caches of entitlement engine
      * including  PIP_ATTRIBUTE_CACHE , PDP_DECISION_INVALIDATION_CACHE, ENTITLEMENT_POLICY_INVALIDATION_CACHE
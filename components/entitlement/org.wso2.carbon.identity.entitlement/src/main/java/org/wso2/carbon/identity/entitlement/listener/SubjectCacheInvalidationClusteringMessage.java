@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2024, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.entitlement.listener;
+
+import org.apache.axis2.clustering.ClusteringCommand;
+import org.apache.axis2.clustering.ClusteringFault;
+import org.apache.axis2.clustering.ClusteringMessage;
+import org.apache.axis2.context.ConfigurationContext;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.context.PrivilegedCarbonContext;
+import org.wso2.carbon.identity.core.util.IdentityTenantUtil;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * ClusterMessage to evict the cached PIP attributes and decisions of the given users in other nodes. The
+ * subject indexes of these caches are kept per node, hence each node evicts the entries it has indexed.
+ */
+public class SubjectCacheInvalidationClusteringMessage extends ClusteringMessage {
+
+    private static Log log = LogFactory.getLog(SubjectCacheInvalidationClusteringMessage.class);
+    private static final long serialVersionUID = 2381094476610263455L;
+
+    private int tenantId;
+
+    private ArrayList<String> userNames;
+
+    public SubjectCacheInvalidationClusteringMessage(int tenantId, Collection<String> userNames) {
+
+        this.tenantId = tenantId;
+        this.userNames = new ArrayList<String>(userNames);
+    }
+
+    @Override
+    public ClusteringCommand getResponse() {
+
+        return null;
+    }
+
+    @Override
+    public void execute(ConfigurationContext configurationContext) throws ClusteringFault {
+
+        if (log.isDebugEnabled()) {
+            log.debug("Received SubjectCacheInvalidationClusteringMessage.");
+        }
+        int tenantIdInThreadLocalContext = PrivilegedCarbonContext.getThreadLocalCarbonContext().getTenantId();
+        try {
+            // Clear the local caches of the tenant included with the cluster message.
+            PrivilegedCarbonContext.getThreadLocalCarbonContext().setTenantId(tenantId, true);
+
+            CacheClearingUserOperationListener.clearLocalAttributeCache(userNames);
+            if (log.isDebugEnabled()) {
+                log.debug("Local PIP attribute and decision caches of " + userNames.size() +
+                        " users are cleared for the tenant: " + IdentityTenantUtil.getTenantDomain(tenantId) + ".");
+            }
+        } finally {
+            // Switch back to the original tenant domain used in this thread local context.
+            PrivilegedCarbonContext.getThreadLocalCarbonContext().setTenantId(tenantIdInThreadLocalContext, true);
+        }
+    }
+}
@@ -25,6 +25,8 @@ import org.wso2.carbon.identity.entitlement.persistence.PolicyPersistenceManager
 import org.wso2.carbon.identity.entitlement.dto.PolicyDTO;
 import org.wso2.carbon.registry.core.Resource;
 
+import java.util.List;
+
 public class PAPPolicyStoreManager {
 
     private static final Log log = LogFactory.getLog(PAPPolicyStoreManager.class);
@@ -40,6 +42,10 @@ public class PAPPolicyStoreManager {
         store.addOrUpdatePolicy(policy, enableVersioning);
     }
 
+    public void addPolicies(List<PolicyDTO> policies) throws EntitlementException {
+        store.addPolicies(policies);
+    }
+
     public void removePolicy(String policyId) throws EntitlementException {
         store.removePolicy(policyId);
     }
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2024, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.entitlement.pdp;
+
+import org.wso2.carbon.identity.entitlement.PDPConstants;
+import org.wso2.carbon.identity.entitlement.pip.RequestAttribute;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tracks what the decision of the current evaluation depends on, so that the decision can be evicted from the
+ * decision cache when one of its dependencies changes. The policies which contributed to the decision, the
+ * attributes which were resolved through the PIP attribute finders and the string attribute values of the
+ * request are recorded.
+ * <p/>
+ * Request attributes which are excluded from the decision cache key (i.e. per request tokens) must not
+ * influence a cached decision. When a PIP attribute finder which reads an excluded attribute is invoked while
+ * evaluating a request, the decision is marked as not cacheable.
+ * <p/>
+ * PIP attribute finders which depend on the subject-id of the request are expected to resolve the attributes
+ * of that subject only. The decision is marked as subject scoped while only such finders are invoked, so that
+ * it is evicted only by the changes of its own subject.
+ */
+public class DecisionCacheContext {
+
+    private static final ThreadLocal<DecisionCacheContext> CURRENT = new ThreadLocal<DecisionCacheContext>();
+
+    private Set<RequestAttribute> excludedAttributes;
+
+    private Map<String, Set<String>> requestValues;
+
+    private long generation;
+
+    private Set<String> policyIds = new HashSet<String>();
+
+    private Set<String> attributeIds = new HashSet<String>();
+
+    private boolean cacheable = true;
+
+    private boolean subjectScoped = true;
+
+    private DecisionCacheContext(Set<RequestAttribute> excludedAttributes, Map<String, Set<String>> requestValues,
+                                 long generation) {
+
+        this.excludedAttributes = excludedAttributes;
+        this.requestValues = requestValues;
+        this.generation = generation;
+    }
+
+    /**
+     * Starts tracking the evaluation of a request in the current thread.
+     *
+     * @param excludedAttributes request attributes which are excluded from the decision cache key
+     * @param requestValues      string attribute values of the request keyed by attribute key, null if unknown
+     * @param generation         generation of the decision dependency index at the start of the evaluation
+     */
+    public static void start(Set<RequestAttribute> excludedAttributes, Map<String, Set<String>> requestValues,
+                             long generation) {
+
+        CURRENT.set(new DecisionCacheContext(excludedAttributes != null ? excludedAttributes :
+                Collections.<RequestAttribute>emptySet(), requestValues, generation));
+    }
+
+    /**
+     * Records the request attributes which a PIP attribute finder depends on.
+     *
+     * @param dependencies request attributes read by the PIP attribute finder, null if unknown
+     */
+    public static void recordPIPDependencies(Set<RequestAttribute> dependencies) {
+
+        DecisionCacheContext context = CURRENT.get();
+        if (context == null) {
+            return;
+        }
+
+        if (dependencies == null || !dependencies.contains(new RequestAttribute(PDPConstants.SUBJECT_CATEGORY_URI,
+                PDPConstants.SUBJECT_ID_DEFAULT))) {
+            context.subjectScoped = false;
+        }
+        if (!context.cacheable || context.excludedAttributes.isEmpty()) {
+            return;
+        }
+
+        if (dependencies == null || !Collections.disjoint(dependencies, context.excludedAttributes)) {
+            context.cacheable = false;
+        }
+    }
+
+    /**
+     * Records a policy which contributed to the decision.
+     *
+     * @param policyId policy id
+     */
+    public static void recordPolicy(String policyId) {
+
+        DecisionCacheContext context = CURRENT.get();
+        if (context != null && policyId != null) {
+            context.policyIds.add(policyId);
+        }
+    }
+
+    /**
+     * Records an attribute which was resolved through the PIP attribute finders.
+     *
+     * @param attributeId attribute id
+     */
+    public static void recordAttribute(String attributeId) {
+
+        DecisionCacheContext context = CURRENT.get();
+        if (context != null && attributeId != null) {
+            context.attributeIds.add(attributeId);
+        }
+    }
+
+    /**
+     * Marks the decision of the current evaluation as not cacheable.
+     */
+    public static void markNotCacheable() {
+
+        DecisionCacheContext context = CURRENT.get();
+        if (context != null) {
+            context.cacheable = false;
+        }
+    }
+
+    /**
+     * Stops tracking the evaluation of the current thread.
+     *
+     * @return the dependencies recorded for the evaluation, or null if tracking was not started
+     */
+    public static DecisionCacheContext end() {
+
+        DecisionCacheContext context = CURRENT.get();
+        CURRENT.remove();
+        return context;
+    }
+
+    /**
+     * @return whether the decision can be added to the decision cache
+     */
+    public boolean isCacheable() {
+
+        return cacheable;
+    }
+
+    /**
+     * @return whether the PIP attributes of the decision were resolved only from the subject of the request
+     */
+    public boolean isSubjectScoped() {
+
+        return subjectScoped;
+    }
+
+    public Map<String, Set<String>> getRequestValues() {
+
+        return requestValues;
+    }
+
+    public long getGeneration() {
+
+        return generation;
+    }
+
+    public Set<String> getPolicyIds() {
+
+        return policyIds;
+    }
+
+    public Set<String> getAttributeIds() {
+
+        return attributeIds;
+    }
+}
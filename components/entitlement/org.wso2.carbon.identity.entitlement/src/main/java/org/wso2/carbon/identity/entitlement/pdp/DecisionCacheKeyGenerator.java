@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2024, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.entitlement.pdp;
+
+import org.wso2.balana.XACMLConstants;
+import org.wso2.balana.attr.AttributeValue;
+import org.wso2.balana.ctx.AbstractRequestCtx;
+import org.wso2.balana.ctx.Attribute;
+import org.wso2.balana.ctx.xacml3.RequestCtx;
+import org.wso2.balana.xacml3.Attributes;
+import org.wso2.carbon.identity.entitlement.PDPConstants;
+import org.wso2.carbon.identity.entitlement.pip.RequestAttribute;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Generates decision cache keys from the parsed XACML request. Attributes are sorted within each category
+ * and the categories are sorted by their identifier, so that requests which differ only in encoding
+ * (whitespace, attribute order, namespace prefixes, XML or JSON) share a single cache entry. The canonical
+ * form is hashed into a 128 bit fingerprint. Attributes which are configured as excluded (i.e. per request
+ * tokens) are left out of the key.
+ */
+public class DecisionCacheKeyGenerator {
+
+    private static final String HASH_ALGORITHM = "MD5";
+
+    private static final char SEPARATOR = '\u0000';
+
+    private static final Comparator<String[]> CATEGORY_COMPARATOR = new Comparator<String[]>() {
+        @Override
+        public int compare(String[] o1, String[] o2) {
+            return o1[0].compareTo(o2[0]);
+        }
+    };
+
+    private Set<RequestAttribute> excludedAttributes;
+
+    public DecisionCacheKeyGenerator() {
+
+        this(Collections.<RequestAttribute>emptySet());
+    }
+
+    public DecisionCacheKeyGenerator(Set<RequestAttribute> excludedAttributes) {
+
+        this.excludedAttributes = excludedAttributes;
+    }
+
+    public Set<RequestAttribute> getExcludedAttributes() {
+
+        return excludedAttributes;
+    }
+
+    /**
+     * Generates the cache key of a parsed XACML request.
+     *
+     * @param requestCtx Balana Object model for request
+     * @return cache key, or null if the request can not be represented canonically
+     */
+    public String generateKey(AbstractRequestCtx requestCtx) {
+
+        StringBuilder header = new StringBuilder();
+        header.append(requestCtx.getXacmlVersion());
+        if (requestCtx instanceof RequestCtx) {
+            RequestCtx xacml3RequestCtx = (RequestCtx) requestCtx;
+            if (xacml3RequestCtx.getMultiRequests() != null) {
+                // request references depend on the xml:id of each category, hence order can not be ignored
+                return null;
+            }
+            header.append(SEPARATOR).append(xacml3RequestCtx.isCombinedDecision())
+                    .append(SEPARATOR).append(xacml3RequestCtx.isReturnPolicyIdList());
+            if (xacml3RequestCtx.getDefaults() != null) {
+                header.append(SEPARATOR).append(xacml3RequestCtx.getDefaults().getXPathVersion());
+            }
+        }
+
+        Set<Attributes> attributesSet = requestCtx.getAttributesSet();
+        List<String[]> categories = new ArrayList<String[]>();
+        if (attributesSet != null) {
+            for (Attributes attributes : attributesSet) {
+                if (attributes.getContent() != null) {
+                    // attribute selectors may depend on the exact content, which is not canonicalized
+                    return null;
+                }
+                String category = attributes.getCategory() != null ? attributes.getCategory().toString() : "";
+                List<String> attributeList = new ArrayList<String>();
+                if (attributes.getAttributes() != null) {
+                    for (Attribute attribute : attributes.getAttributes()) {
+                        if (isExcluded(category, attribute.getId().toString())) {
+                            continue;
+                        }
+                        attributeList.add(encodeAttribute(attribute.getId().toString(),
+                                attribute.getType() != null ? attribute.getType().toString() : null,
+                                attribute.getIssuer(), attribute.isIncludeInResult(), encodeValues(attribute)));
+                    }
+                }
+                categories.add(new String[]{category, encodeCategory(attributes.getId(), attributeList)});
+            }
+        }
+
+        return digest(header.toString(), categories);
+    }
+
+    /**
+     * Generates the cache key of the request built by
+     * <code>EntitlementUtil.createSimpleXACMLRequest</code> for the given values, without building it.
+     *
+     * @param subject     subject
+     * @param resource    resource
+     * @param action      action
+     * @param environment environment
+     * @return cache key
+     */
+    public String generateKey(String subject, String resource, String action, String environment) {
+
+        String header = XACMLConstants.XACML_VERSION_3_0 + String.valueOf(SEPARATOR) + false + SEPARATOR + false;
+
+        List<String[]> categories = new ArrayList<String[]>();
+        categories.add(simpleCategory(PDPConstants.ACTION_CATEGORY_URI, PDPConstants.ACTION_ID_DEFAULT, action));
+        categories.add(simpleCategory(PDPConstants.SUBJECT_CATEGORY_URI, PDPConstants.SUBJECT_ID_DEFAULT,
+                subject));
+        categories.add(simpleCategory(PDPConstants.ENVIRONMENT_CATEGORY_URI, PDPConstants.ENVIRONMENT_ID_DEFAULT,
+                environment));
+        categories.add(simpleCategory(PDPConstants.RESOURCE_CATEGORY_URI, PDPConstants.RESOURCE_ID_DEFAULT,
+                resource));
+
+        return digest(header, categories);
+    }
+
+    /**
+     * Generates the cache key of a request which could not be parsed.
+     *
+     * @param request XACML request as String
+     * @return cache key
+     */
+    public String generateKey(String request) {
+
+        return encode(newDigest().digest(request.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private String[] simpleCategory(String category, String attributeId, String value) {
+
+        List<String> attributeList = new ArrayList<String>();
+        if (!isExcluded(category, attributeId)) {
+            List<String> values = new ArrayList<String>();
+            values.add(String.valueOf(value));
+            attributeList.add(encodeAttribute(attributeId, PDPConstants.STRING_DATA_TYPE, null, false, values));
+        }
+        return new String[]{category, encodeCategory(null, attributeList)};
+    }
+
+    private boolean isExcluded(String category, String attributeId) {
+
+        return !excludedAttributes.isEmpty() && excludedAttributes.contains(new RequestAttribute(category,
+                attributeId));
+    }
+
+    private List<String> encodeValues(Attribute attribute) {
+
+        List<String> values = new ArrayList<String>();
+        if (attribute.getValues() != null) {
+            for (AttributeValue value : attribute.getValues()) {
+                values.add(value.encode());
+            }
+        }
+        return values;
+    }
+
+    private String encodeAttribute(String attributeId, String dataType, String issuer, boolean includeInResult,
+                                   List<String> values) {
+
+        Collections.sort(values);
+        StringBuilder builder = new StringBuilder();
+        builder.append(attributeId).append(SEPARATOR).append(dataType).append(SEPARATOR).append(issuer)
+                .append(SEPARATOR).append(includeInResult);
+        for (String value : values) {
+            builder.append(SEPARATOR).append(value.length()).append(':').append(value);
+        }
+        return builder.toString();
+    }
+
+    private String encodeCategory(String id, List<String> attributeList) {
+
+        Collections.sort(attributeList);
+        StringBuilder builder = new StringBuilder();
+        builder.append(id);
+        for (String attribute : attributeList) {
+            builder.append(SEPARATOR).append(attribute.length()).append(':').append(attribute);
+        }
+        return builder.toString();
+    }
+
+    private String digest(String header, List<String[]> categories) {
+
+        // stable sort, repeated categories keep their relative order
+        Collections.sort(categories, CATEGORY_COMPARATOR);
+
+        MessageDigest messageDigest = newDigest();
+        messageDigest.update(header.getBytes(StandardCharsets.UTF_8));
+        for (String[] category : categories) {
+            messageDigest.update((byte) SEPARATOR);
+            messageDigest.update(category[0].getBytes(StandardCharsets.UTF_8));
+            messageDigest.update((byte) SEPARATOR);
+            messageDigest.update(category[1].getBytes(StandardCharsets.UTF_8));
+        }
+        return encode(messageDigest.digest());
+    }
+
+    private MessageDigest newDigest() {
+
+        try {
+            return MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support MD5
+            throw new IllegalStateException("Hash algorithm " + HASH_ALGORITHM + " is not available", e);
+        }
+    }
+
+    private String encode(byte[] fingerprint) {
+
+        return Base64.getEncoder().withoutPadding().encodeToString(fingerprint);
+    }
+}
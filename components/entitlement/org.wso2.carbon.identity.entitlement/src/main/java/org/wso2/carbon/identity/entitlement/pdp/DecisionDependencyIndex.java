@@ -0,0 +1,339 @@
+/*
+ * Copyright (c) 2024, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.entitlement.pdp;
+
+import org.wso2.balana.AbstractTarget;
+import org.wso2.carbon.identity.entitlement.PDPConstants;
+import org.wso2.carbon.identity.entitlement.cache.SubjectCacheKeyIndex;
+import org.wso2.carbon.identity.entitlement.policy.collection.PolicyTargetIndexUtil;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reverse index from the dependencies of the cached decisions to their decision cache keys. It is used to
+ * evict only the decisions which may be affected by a policy or attribute change, instead of clearing the
+ * whole decision cache.
+ * <p/>
+ * A decision depends on the policies which contributed to it and the attributes which were resolved through
+ * the PIP attribute finders. A new or updated policy may start to apply to requests which it did not apply
+ * before, hence the string attribute values of the request are indexed as well, and matched against the
+ * target of the new policy. Every change increments the generation of the index, so that a decision which
+ * was evaluated before the change is not added afterwards.
+ * <p/>
+ * The decisions which depend on PIP attributes are indexed by the subject of the request as well, so that a
+ * user store change evicts only the decisions of the affected users. Decisions of requests without a subject,
+ * or which depend on PIP attributes which are not resolved from the subject, are evicted by every user change.
+ */
+public class DecisionDependencyIndex {
+
+    private int maxEntries;
+
+    private long generation;
+
+    private Map<String, DecisionCacheContext> entries = new HashMap<String, DecisionCacheContext>();
+
+    private Map<String, Set<String>> policyDependents = new HashMap<String, Set<String>>();
+
+    private Map<String, Set<String>> attributeDependents = new HashMap<String, Set<String>>();
+
+    /**
+     * attribute key -> attribute value -> cache keys
+     */
+    private Map<String, Map<String, Set<String>>> requestValueDependents =
+            new HashMap<String, Map<String, Set<String>>>();
+
+    /**
+     * attribute key -> cache keys of the requests which carry the attribute
+     */
+    private Map<String, Set<String>> requestAttributeDependents = new HashMap<String, Set<String>>();
+
+    /**
+     * subject -> cache keys of the decisions which depend on PIP attributes of the subject
+     */
+    private Map<String, Set<String>> subjectDependents = new HashMap<String, Set<String>>();
+
+    /**
+     * cache keys of the decisions which depend on PIP attributes, but not on a single subject
+     */
+    private Set<String> unscopedDependents = new HashSet<String>();
+
+    public DecisionDependencyIndex(int maxEntries) {
+
+        this.maxEntries = maxEntries;
+    }
+
+    public synchronized long getGeneration() {
+
+        return generation;
+    }
+
+    public synchronized boolean isFull() {
+
+        return entries.size() >= maxEntries;
+    }
+
+    /**
+     * Adds the dependencies of a decision.
+     *
+     * @param cacheKey decision cache key
+     * @param context  dependencies recorded while evaluating the decision
+     * @return false if the index has changed since the evaluation started, hence the decision must not be cached
+     */
+    public synchronized boolean addDependencies(String cacheKey, DecisionCacheContext context) {
+
+        if (context.getGeneration() != generation) {
+            return false;
+        }
+
+        remove(cacheKey);
+        entries.put(cacheKey, context);
+        for (String policyId : context.getPolicyIds()) {
+            addDependent(policyDependents, policyId, cacheKey);
+        }
+        for (String attributeId : context.getAttributeIds()) {
+            addDependent(attributeDependents, attributeId, cacheKey);
+        }
+        if (!context.getAttributeIds().isEmpty()) {
+            Set<String> subjects = getSubjects(context);
+            if (subjects.isEmpty()) {
+                unscopedDependents.add(cacheKey);
+            }
+            for (String subject : subjects) {
+                addDependent(subjectDependents, subject, cacheKey);
+            }
+        }
+        if (context.getRequestValues() != null) {
+            for (Map.Entry<String, Set<String>> entry : context.getRequestValues().entrySet()) {
+                addDependent(requestAttributeDependents, entry.getKey(), cacheKey);
+                Map<String, Set<String>> valueDependents = requestValueDependents.get(entry.getKey());
+                if (valueDependents == null) {
+                    valueDependents = new HashMap<String, Set<String>>();
+                    requestValueDependents.put(entry.getKey(), valueDependents);
+                }
+                for (String value : entry.getValue()) {
+                    addDependent(valueDependents, value, cacheKey);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes the decisions to which the given policy contributed.
+     *
+     * @param policyId policy id
+     * @return decision cache keys to be evicted
+     */
+    public synchronized Set<String> removePolicyDependents(String policyId) {
+
+        generation++;
+        Set<String> cacheKeys = new HashSet<String>();
+        Set<String> dependents = policyDependents.get(policyId);
+        if (dependents != null) {
+            cacheKeys.addAll(dependents);
+        }
+        removeAll(cacheKeys);
+        return cacheKeys;
+    }
+
+    /**
+     * Removes the decisions of the requests to which a policy with the given target may apply.
+     *
+     * @param target policy target
+     * @return decision cache keys to be evicted, or null if all decisions may be affected
+     */
+    public synchronized Set<String> removeTargetDependents(AbstractTarget target) {
+
+        generation++;
+        List<String[]> indexEntries = PolicyTargetIndexUtil.getIndexEntries(target);
+        if (indexEntries == null) {
+            return null;
+        }
+
+        Set<String> cacheKeys = new HashSet<String>();
+        for (String[] indexEntry : indexEntries) {
+            Map<String, Set<String>> valueDependents = requestValueDependents.get(indexEntry[0]);
+            if (valueDependents != null && valueDependents.get(indexEntry[1]) != null) {
+                cacheKeys.addAll(valueDependents.get(indexEntry[1]));
+            }
+            // the attribute may be resolved through a PIP when the request does not carry it
+            Set<String> requestsWithAttribute = requestAttributeDependents.get(indexEntry[0]);
+            for (String cacheKey : entries.keySet()) {
+                if (requestsWithAttribute == null || !requestsWithAttribute.contains(cacheKey)) {
+                    cacheKeys.add(cacheKey);
+                }
+            }
+        }
+        removeAll(cacheKeys);
+        return cacheKeys;
+    }
+
+    /**
+     * Removes the decisions which depend on the given attributes resolved through the PIP attribute finders.
+     *
+     * @param attributeIds attribute ids, null for any attribute
+     * @return decision cache keys to be evicted
+     */
+    public synchronized Set<String> removeAttributeDependents(Collection<String> attributeIds) {
+
+        generation++;
+        Set<String> cacheKeys = new HashSet<String>();
+        if (attributeIds == null) {
+            for (Set<String> dependents : attributeDependents.values()) {
+                cacheKeys.addAll(dependents);
+            }
+        } else {
+            for (String attributeId : attributeIds) {
+                Set<String> dependents = attributeDependents.get(attributeId);
+                if (dependents != null) {
+                    cacheKeys.addAll(dependents);
+                }
+            }
+        }
+        removeAll(cacheKeys);
+        return cacheKeys;
+    }
+
+    /**
+     * Removes the decisions which depend on PIP attributes of the given subjects, or which depend on PIP
+     * attributes but not on a single subject.
+     *
+     * @param subjects user names
+     * @return decision cache keys to be evicted
+     */
+    public synchronized Set<String> removeSubjectDependents(Collection<String> subjects) {
+
+        generation++;
+        Set<String> cacheKeys = new HashSet<String>(unscopedDependents);
+        for (String subject : subjects) {
+            String subjectKey = SubjectCacheKeyIndex.getSubjectKey(subject);
+            Set<String> dependents = subjectKey != null ? subjectDependents.get(subjectKey) : null;
+            if (dependents != null) {
+                cacheKeys.addAll(dependents);
+            }
+        }
+        removeAll(cacheKeys);
+        return cacheKeys;
+    }
+
+    public synchronized void clear() {
+
+        generation++;
+        entries.clear();
+        policyDependents.clear();
+        attributeDependents.clear();
+        requestValueDependents.clear();
+        requestAttributeDependents.clear();
+        subjectDependents.clear();
+        unscopedDependents.clear();
+    }
+
+    /**
+     * Returns the subjects by which a decision is indexed.
+     *
+     * @param context dependencies of the decision
+     * @return indexed forms of the subjects, empty if the decision does not depend on a single subject
+     */
+    private Set<String> getSubjects(DecisionCacheContext context) {
+
+        Set<String> subjects = new HashSet<String>();
+        if (!context.isSubjectScoped() || context.getRequestValues() == null) {
+            return subjects;
+        }
+        Set<String> values = context.getRequestValues().get(PolicyTargetIndexUtil.getAttributeKey(
+                PDPConstants.SUBJECT_CATEGORY_URI, PDPConstants.SUBJECT_ID_DEFAULT));
+        if (values != null) {
+            for (String value : values) {
+                String subject = SubjectCacheKeyIndex.getSubjectKey(value);
+                if (subject != null) {
+                    subjects.add(subject);
+                }
+            }
+        }
+        return subjects;
+    }
+
+    private void removeAll(Set<String> cacheKeys) {
+
+        for (String cacheKey : cacheKeys) {
+            remove(cacheKey);
+        }
+    }
+
+    private void remove(String cacheKey) {
+
+        DecisionCacheContext context = entries.remove(cacheKey);
+        if (context == null) {
+            return;
+        }
+        for (String policyId : context.getPolicyIds()) {
+            removeDependent(policyDependents, policyId, cacheKey);
+        }
+        for (String attributeId : context.getAttributeIds()) {
+            removeDependent(attributeDependents, attributeId, cacheKey);
+        }
+        if (!context.getAttributeIds().isEmpty()) {
+            unscopedDependents.remove(cacheKey);
+            for (String subject : getSubjects(context)) {
+                removeDependent(subjectDependents, subject, cacheKey);
+            }
+        }
+        if (context.getRequestValues() != null) {
+            for (Map.Entry<String, Set<String>> entry : context.getRequestValues().entrySet()) {
+                removeDependent(requestAttributeDependents, entry.getKey(), cacheKey);
+                Map<String, Set<String>> valueDependents = requestValueDependents.get(entry.getKey());
+                if (valueDependents == null) {
+                    continue;
+                }
+                for (String value : entry.getValue()) {
+                    removeDependent(valueDependents, value, cacheKey);
+                }
+                if (valueDependents.isEmpty()) {
+                    requestValueDependents.remove(entry.getKey());
+                }
+            }
+        }
+    }
+
+    private void addDependent(Map<String, Set<String>> dependents, String dependency, String cacheKey) {
+
+        Set<String> cacheKeys = dependents.get(dependency);
+        if (cacheKeys == null) {
+            cacheKeys = new HashSet<String>();
+            dependents.put(dependency, cacheKeys);
+        }
+        cacheKeys.add(cacheKey);
+    }
+
+    private void removeDependent(Map<String, Set<String>> dependents, String dependency, String cacheKey) {
+
+        Set<String> cacheKeys = dependents.get(dependency);
+        if (cacheKeys != null) {
+            cacheKeys.remove(cacheKey);
+            if (cacheKeys.isEmpty()) {
+                dependents.remove(dependency);
+            }
+        }
+    }
+}
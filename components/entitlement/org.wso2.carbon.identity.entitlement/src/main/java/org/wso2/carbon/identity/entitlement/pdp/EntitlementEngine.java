@@ -23,13 +23,17 @@ import com.google.common.cache.LoadingCache;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.w3c.dom.Element;
+import org.wso2.balana.AbstractPolicy;
 import org.wso2.balana.Balana;
 import org.wso2.balana.PDP;
 import org.wso2.balana.PDPConfig;
 import org.wso2.balana.ParsingException;
 import org.wso2.balana.ctx.AbstractRequestCtx;
+import org.wso2.balana.ctx.EvaluationCtx;
+import org.wso2.balana.ctx.EvaluationCtxFactory;
 import org.wso2.balana.ctx.RequestCtxFactory;
 import org.wso2.balana.ctx.ResponseCtx;
+import org.wso2.balana.ctx.xacml3.RequestCtx;
 import org.wso2.balana.finder.AttributeFinder;
 import org.wso2.balana.finder.AttributeFinderModule;
 import org.wso2.balana.finder.PolicyFinder;
@@ -39,6 +43,7 @@ import org.wso2.balana.finder.ResourceFinderModule;
 import org.wso2.balana.finder.impl.CurrentEnvModule;
 import org.wso2.balana.finder.impl.SelectorModule;
 import org.wso2.carbon.context.CarbonContext;
+import org.wso2.carbon.context.PrivilegedCarbonContext;
 import org.wso2.carbon.identity.base.IdentityConstants;
 import org.wso2.carbon.identity.core.util.IdentityUtil;
 import org.wso2.carbon.identity.entitlement.EntitlementException;
@@ -52,10 +57,13 @@ import org.wso2.carbon.identity.entitlement.internal.EntitlementServiceComponent
 import org.wso2.carbon.identity.entitlement.pap.EntitlementAdminEngine;
 import org.wso2.carbon.identity.entitlement.pap.store.PAPPolicyFinder;
 import org.wso2.carbon.identity.entitlement.pap.store.PAPPolicyStoreReader;
+import org.wso2.carbon.identity.entitlement.pip.BatchAttributeMemo;
 import org.wso2.carbon.identity.entitlement.pip.CarbonAttributeFinder;
 import org.wso2.carbon.identity.entitlement.pip.CarbonResourceFinder;
 import org.wso2.carbon.identity.entitlement.pip.PIPExtension;
+import org.wso2.carbon.identity.entitlement.pip.RequestAttribute;
 import org.wso2.carbon.identity.entitlement.policy.PolicyRequestBuilder;
+import org.wso2.carbon.identity.entitlement.policy.collection.PolicyTargetIndexUtil;
 import org.wso2.carbon.identity.entitlement.policy.finder.CarbonPolicyFinder;
 import org.wso2.carbon.identity.entitlement.policy.search.PolicySearch;
 import org.wso2.carbon.utils.multitenancy.MultitenantConstants;
@@ -64,12 +72,22 @@ import org.xml.sax.SAXException;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
@@ -82,6 +100,7 @@ public class EntitlementEngine {
     private PolicyFinder carbonPolicyFinder;
     private PolicySearch policySearch;
     private PDP pdp;
+    private PDPConfig pdpConfig;
     private PDP pdpTest;
     private Balana balana;
     private int tenantId;
@@ -92,12 +111,19 @@ public class EntitlementEngine {
     private static EntitlementEngine entitlementEngine;
     private static final long DEFAULT_ENTITLEMENT_ENGINE_CACHING_INTERVAL = 900;
     private static LoadingCache<Integer, EntitlementEngine> entitlementEngineLoadingCache;
+    private static volatile ExecutorService evaluationExecutor;
 
     private DecisionCache decisionCache = null;
     private PolicyCache policyCache = null;
 
     private SimpleDecisionCache simpleDecisionCache = null;
 
+    private DecisionCacheKeyGenerator decisionCacheKeyGenerator;
+
+    private DecisionDependencyIndex decisionDependencyIndex;
+
+    private CarbonPolicyFinder carbonPolicyFinderModule;
+
     private static final Log log = LogFactory.getLog(EntitlementEngine.class);
 
     public PolicyCache getPolicyCache() {
@@ -105,10 +131,76 @@ public class EntitlementEngine {
     }
 
     public void clearDecisionCache() {
+        this.decisionDependencyIndex.clear();
         this.decisionCache.clear();
         this.simpleDecisionCache.clear();
     }
 
+    /**
+     * Evicts the decisions which may be affected by a change of the given policy. These are the decisions to
+     * which the policy contributed and, if the policy is created or updated, the decisions of the requests to
+     * which the new policy may apply.
+     *
+     * @param policyId policy id
+     * @param policy   new version of the policy, null if the policy is deleted or reordered
+     */
+    public void invalidateDecisionCache(String policyId, AbstractPolicy policy) {
+
+        Set<String> cacheKeys = decisionDependencyIndex.removePolicyDependents(policyId);
+        if (policy != null) {
+            Set<String> targetDependents = decisionDependencyIndex.removeTargetDependents(policy.getTarget());
+            if (targetDependents == null) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Target of policy " + policyId + " can not be indexed. Clearing the decision cache.");
+                }
+                clearDecisionCache();
+                return;
+            }
+            cacheKeys.addAll(targetDependents);
+        }
+        removeFromCache(cacheKeys);
+        if (log.isDebugEnabled()) {
+            log.debug(cacheKeys.size() + " decisions are evicted from the decision cache for policy " + policyId);
+        }
+    }
+
+    /**
+     * Evicts the decisions which depend on the given attributes resolved through the PIP attribute finders.
+     *
+     * @param attributeIds attribute ids, null for any attribute
+     */
+    public void invalidateDecisionCache(Collection<String> attributeIds) {
+
+        Set<String> cacheKeys = decisionDependencyIndex.removeAttributeDependents(attributeIds);
+        removeFromCache(cacheKeys);
+        if (log.isDebugEnabled()) {
+            log.debug(cacheKeys.size() + " decisions are evicted from the decision cache for attribute changes");
+        }
+    }
+
+    /**
+     * Evicts the decisions which depend on PIP attributes of the given subjects, when the users are updated
+     * in the user store.
+     *
+     * @param subjects user names of the updated users
+     */
+    public void invalidateSubjectDecisionCache(Collection<String> subjects) {
+
+        Set<String> cacheKeys = decisionDependencyIndex.removeSubjectDependents(subjects);
+        removeFromCache(cacheKeys);
+        if (log.isDebugEnabled()) {
+            log.debug(cacheKeys.size() + " decisions are evicted from the decision cache for changes of " +
+                    subjects.size() + " users");
+        }
+    }
+
+    private void removeFromCache(Set<String> cacheKeys) {
+
+        for (String cacheKey : cacheKeys) {
+            decisionCache.clearCacheEntry(cacheKey);
+        }
+    }
+
     /**
      * Get a EntitlementEngine instance for that tenant. This method will return an
      * EntitlementEngine instance if exists, or creates a new one
@@ -232,6 +324,19 @@ public class EntitlementEngine {
         }
 
 
+        decisionCacheKeyGenerator = new DecisionCacheKeyGenerator(getExcludedAttributes(properties));
+
+        int maxDependencyEntries = PDPConstants.MAX_NO_OF_DECISION_DEPENDENCY_ENTRIES;
+        String maxEntries = properties.getProperty(PDPConstants.DECISION_CACHING_MAX_DEPENDENCY_ENTRIES);
+        if (maxEntries != null) {
+            try {
+                maxDependencyEntries = Integer.parseInt(maxEntries.trim());
+            } catch (Exception e) {
+                //ignore
+            }
+        }
+        decisionDependencyIndex = new DecisionDependencyIndex(maxDependencyEntries);
+
         //init caches
         decisionCache = new DecisionCache(pdpDecisionCachingInterval);
         simpleDecisionCache = new SimpleDecisionCache(pdpDecisionCachingInterval);
@@ -270,8 +375,7 @@ public class EntitlementEngine {
             ResourceFinder resourceFinder = new ResourceFinder();
             resourceFinder.setModules(resourceModules);
 
-            PDPConfig pdpConfig =
-                    new PDPConfig(attributeFinder, carbonPolicyFinder, resourceFinder, pdpMultipleDecision);
+            pdpConfig = new PDPConfig(attributeFinder, carbonPolicyFinder, resourceFinder, pdpMultipleDecision);
             pdp = new PDP(pdpConfig);
         }
     }
@@ -316,40 +420,92 @@ public class EntitlementEngine {
         }
 
         String xacmlResponse;
+        AbstractRequestCtx requestCtx = getRequestCtx(xacmlRequest);
+        String cacheKey = getCacheKey(requestCtx, xacmlRequest);
 
-        if ((xacmlResponse = (String) getFromCache(xacmlRequest, false)) != null) {
+        if ((xacmlResponse = getResponseFromCache(cacheKey)) != null) {
             if (log.isDebugEnabled() && IdentityUtil.isTokenLoggable(IdentityConstants.IdentityTokens.XACML_RESPONSE)) {
                 log.debug("XACML Response : " + xacmlResponse);
             }
             return xacmlResponse;
         }
 
-        Map<PIPExtension, Properties> extensions = EntitlementServiceComponent.getEntitlementConfig()
-                .getExtensions();
+        return evaluateRequest(xacmlRequest, requestCtx, cacheKey);
+    }
 
-        if (extensions != null && !extensions.isEmpty()) {
-            PolicyRequestBuilder policyRequestBuilder = new PolicyRequestBuilder();
-            Element xacmlRequestElement = policyRequestBuilder.getXacmlRequest(xacmlRequest);
-            AbstractRequestCtx requestCtx = RequestCtxFactory.getFactory().
-                    getRequestCtx(xacmlRequestElement);
-            Set<PIPExtension> pipExtensions = extensions.keySet();
-            for (PIPExtension pipExtension : pipExtensions) {
-                pipExtension.update(requestCtx);
+    /**
+     * Evaluates the given XACML request without blocking the caller. If the decision is cached, the returned
+     * future is already completed. Otherwise the request is evaluated on the evaluation executor, so that the
+     * caller is not blocked while PIP attribute finders call the user store or other external sources.
+     *
+     * @param xacmlRequest XACML request as String
+     * @return future which completes with the XACML response as String
+     * @throws org.wso2.balana.ParsingException                          throws
+     * @throws org.wso2.carbon.identity.entitlement.EntitlementException throws
+     */
+    public CompletableFuture<String> evaluateAsync(final String xacmlRequest) throws EntitlementException,
+            ParsingException {
+
+        if (log.isDebugEnabled() && IdentityUtil.isTokenLoggable(IdentityConstants.IdentityTokens.XACML_REQUEST)) {
+            log.debug("XACML Request : " + xacmlRequest);
+        }
+
+        final AbstractRequestCtx requestCtx = getRequestCtx(xacmlRequest);
+        final String cacheKey = getCacheKey(requestCtx, xacmlRequest);
+
+        String xacmlResponse = getResponseFromCache(cacheKey);
+        if (xacmlResponse != null) {
+            if (log.isDebugEnabled() && IdentityUtil.isTokenLoggable(IdentityConstants.IdentityTokens.XACML_RESPONSE)) {
+                log.debug("XACML Response : " + xacmlResponse);
             }
-            ResponseCtx responseCtx = pdp.evaluate(requestCtx);
-            xacmlResponse = responseCtx.encode();
-        } else {
-            xacmlResponse = pdp.evaluate(xacmlRequest);
+            return CompletableFuture.completedFuture(xacmlResponse);
         }
 
-        addToCache(xacmlRequest, xacmlResponse, false);
+        return submitEvaluation(new Callable<String>() {
+            @Override
+            public String call() {
+
+                return evaluateRequest(xacmlRequest, requestCtx, cacheKey);
+            }
+        });
+    }
+
+    /**
+     * Evaluates a XACML request which is not found in the decision cache and caches the response.
+     *
+     * @param xacmlRequest XACML request as String
+     * @param requestCtx   Balana Object model for request, null if the request can not be parsed
+     * @param cacheKey     decision cache key, null if decision caching is disabled
+     * @return XACML response as String
+     */
+    private String evaluateRequest(String xacmlRequest, AbstractRequestCtx requestCtx, String cacheKey) {
+
+        String xacmlResponse;
+        if (requestCtx != null) {
+            updateWithExtensions(requestCtx);
+        }
+
+        DecisionCacheContext context;
+        startDecisionTracking(getRequestValues(requestCtx));
+        try {
+            if (requestCtx != null) {
+                ResponseCtx responseCtx = pdp.evaluate(requestCtx);
+                xacmlResponse = responseCtx.encode();
+            } else {
+                xacmlResponse = pdp.evaluate(xacmlRequest);
+            }
+        } finally {
+            CarbonAttributeFinder.clearPrefetchedAttributes();
+            context = DecisionCacheContext.end();
+        }
+
+        addToCache(cacheKey, xacmlResponse, context);
 
         if (log.isDebugEnabled() && IdentityUtil.isTokenLoggable(IdentityConstants.IdentityTokens.XACML_RESPONSE)) {
             log.debug("XACML Response : " + xacmlResponse);
         }
 
         return xacmlResponse;
-
     }
 
     /**
@@ -375,41 +531,40 @@ public class EntitlementEngine {
 
         String xacmlResponse;
         ResponseCtx responseCtx;
-
-        if ((xacmlResponse = (String) getFromCache(xacmlRequest, false)) != null) {
+        AbstractRequestCtx requestCtx = getRequestCtx(xacmlRequest);
+        String cacheKey = getCacheKey(requestCtx, xacmlRequest);
+
+        Object cachedResponse = getFromCache(cacheKey);
+        if (cachedResponse instanceof ResponseCtx) {
+            return (ResponseCtx) cachedResponse;
+        } else if (cachedResponse != null) {
+            xacmlResponse = (String) cachedResponse;
             if (log.isDebugEnabled() && IdentityUtil.isTokenLoggable(IdentityConstants.IdentityTokens.XACML_RESPONSE)) {
                 log.debug("XACML Response : " + xacmlResponse);
             }
-
-            DocumentBuilderFactory documentBuilderFactory = IdentityUtil.getSecuredDocumentBuilderFactory();
-            Element node = documentBuilderFactory.newDocumentBuilder().parse
-                    (new ByteArrayInputStream(xacmlResponse.getBytes())).getDocumentElement();
-
-
-            return (ResponseCtx.getInstance(node));
-
+            return toResponseCtx(xacmlResponse);
         }
 
-        Map<PIPExtension, Properties> extensions = EntitlementServiceComponent.getEntitlementConfig()
-                .getExtensions();
+        if (requestCtx != null) {
+            updateWithExtensions(requestCtx);
+        }
 
-        if (extensions != null && !extensions.isEmpty()) {
-            PolicyRequestBuilder policyRequestBuilder = new PolicyRequestBuilder();
-            Element xacmlRequestElement = policyRequestBuilder.getXacmlRequest(xacmlRequest);
-            AbstractRequestCtx requestCtx = RequestCtxFactory.getFactory().
-                    getRequestCtx(xacmlRequestElement);
-            Set<PIPExtension> pipExtensions = extensions.keySet();
-            for (PIPExtension pipExtension : pipExtensions) {
-                pipExtension.update(requestCtx);
+        DecisionCacheContext context;
+        startDecisionTracking(getRequestValues(requestCtx));
+        try {
+            if (requestCtx != null) {
+                responseCtx = pdp.evaluate(requestCtx);
+            } else {
+                responseCtx = pdp.evaluateReturnResponseCtx(xacmlRequest);
             }
-            responseCtx = pdp.evaluate(requestCtx);
-        } else {
-            responseCtx = pdp.evaluateReturnResponseCtx(xacmlRequest);
+        } finally {
+            CarbonAttributeFinder.clearPrefetchedAttributes();
+            context = DecisionCacheContext.end();
         }
 
         xacmlResponse = responseCtx.encode();
 
-        addToCache(xacmlRequest, xacmlResponse, false);
+        addToCache(cacheKey, xacmlResponse, context);
 
         if (log.isDebugEnabled() && IdentityUtil.isTokenLoggable(IdentityConstants.IdentityTokens.XACML_RESPONSE)) {
             log.debug("XACML Response : " + xacmlResponse);
@@ -444,17 +599,74 @@ public class EntitlementEngine {
         }
 
         ResponseCtx xacmlResponse;
+        String cacheKey = getCacheKey(requestCtx, xacmlRequest);
 
-        if ((xacmlResponse = (ResponseCtx) getFromCache(xacmlRequest, false)) != null) {
+        if ((xacmlResponse = getResponseCtxFromCache(cacheKey)) != null) {
             if (log.isDebugEnabled() && IdentityUtil.isTokenLoggable(IdentityConstants.IdentityTokens.XACML_RESPONSE)) {
                 log.debug("XACML Response : " + xacmlResponse);
             }
             return xacmlResponse;
         }
 
-        xacmlResponse = pdp.evaluate(requestCtx);
+        return evaluateRequestCtx(requestCtx, cacheKey);
+    }
+
+    /**
+     * Evaluates the given XACML request without blocking the caller. If the decision is cached, the returned
+     * future is already completed. Otherwise the request is evaluated on the evaluation executor.
+     *
+     * @param requestCtx   Balana Object model for request
+     * @param xacmlRequest XACML request as String
+     * @return future which completes with the ResponseCtx Balana Object model for response
+     */
+    public CompletableFuture<ResponseCtx> evaluateAsync(final AbstractRequestCtx requestCtx, String xacmlRequest) {
+
+        if (log.isDebugEnabled() && IdentityUtil.isTokenLoggable(IdentityConstants.IdentityTokens.XACML_REQUEST)) {
+            log.debug("XACML Request : " + xacmlRequest);
+        }
+
+        final String cacheKey = getCacheKey(requestCtx, xacmlRequest);
+
+        ResponseCtx xacmlResponse = getResponseCtxFromCache(cacheKey);
+        if (xacmlResponse != null) {
+            if (log.isDebugEnabled() && IdentityUtil.isTokenLoggable(IdentityConstants.IdentityTokens.XACML_RESPONSE)) {
+                log.debug("XACML Response : " + xacmlResponse);
+            }
+            return CompletableFuture.completedFuture(xacmlResponse);
+        }
+
+        return submitEvaluation(new Callable<ResponseCtx>() {
+            @Override
+            public ResponseCtx call() {
 
-        addToCache(xacmlRequest, xacmlResponse, false);
+                return evaluateRequestCtx(requestCtx, cacheKey);
+            }
+        });
+    }
+
+    /**
+     * Evaluates a XACML request which is not found in the decision cache and caches the response. The
+     * request is updated with the PIP extensions after its cache key is derived, as it is for String requests.
+     *
+     * @param requestCtx Balana Object model for request
+     * @param cacheKey   decision cache key, null if decision caching is disabled
+     * @return ResponseCtx Balana Object model for response
+     */
+    private ResponseCtx evaluateRequestCtx(AbstractRequestCtx requestCtx, String cacheKey) {
+
+        updateWithExtensions(requestCtx);
+
+        ResponseCtx xacmlResponse;
+        DecisionCacheContext context;
+        startDecisionTracking(getRequestValues(requestCtx));
+        try {
+            xacmlResponse = pdp.evaluate(requestCtx);
+        } finally {
+            CarbonAttributeFinder.clearPrefetchedAttributes();
+            context = DecisionCacheContext.end();
+        }
+
+        addToCache(cacheKey, xacmlResponse, context);
 
         if (log.isDebugEnabled() && IdentityUtil.isTokenLoggable(IdentityConstants.IdentityTokens.XACML_RESPONSE)) {
             log.debug("XACML Response : " + xacmlResponse);
@@ -462,6 +674,150 @@ public class EntitlementEngine {
         return xacmlResponse;
     }
 
+    /**
+     * Evaluates a batch of independent XACML requests concurrently and returns the responses in the order
+     * of the requests. Attribute values resolved through the PIP attribute finders are shared among the
+     * requests of the batch, hence the roles and claims of a subject are fetched once per batch.
+     *
+     * @param requestCtxs Balana Object models of the requests
+     * @return ResponseCtx Balana Object models of the responses, in request order
+     * @throws EntitlementException if a request of the batch can not be evaluated
+     */
+    public List<ResponseCtx> evaluateBatch(List<AbstractRequestCtx> requestCtxs) throws EntitlementException {
+
+        List<ResponseCtx> responses = new ArrayList<ResponseCtx>(requestCtxs.size());
+        final BatchAttributeMemo memo = new BatchAttributeMemo();
+        if (requestCtxs.size() == 1) {
+            responses.add(evaluateInBatch(requestCtxs.get(0), memo));
+            return responses;
+        }
+
+        List<Future<ResponseCtx>> futures = new ArrayList<Future<ResponseCtx>>(requestCtxs.size());
+        for (final AbstractRequestCtx requestCtx : requestCtxs) {
+            futures.add(submitEvaluation(new Callable<ResponseCtx>() {
+                @Override
+                public ResponseCtx call() {
+
+                    return evaluateInBatch(requestCtx, memo);
+                }
+            }));
+        }
+
+        try {
+            for (Future<ResponseCtx> future : futures) {
+                responses.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            cancel(futures);
+            Thread.currentThread().interrupt();
+            throw new EntitlementException("Interrupted while evaluating the batch of XACML requests", e);
+        } catch (ExecutionException e) {
+            cancel(futures);
+            throw new EntitlementException("Error while evaluating the batch of XACML requests", e.getCause());
+        }
+        return responses;
+    }
+
+    private ResponseCtx evaluateInBatch(AbstractRequestCtx requestCtx, BatchAttributeMemo memo) {
+
+        BatchAttributeMemo.bind(memo);
+        try {
+            return evaluate(requestCtx, null);
+        } finally {
+            BatchAttributeMemo.unbind();
+        }
+    }
+
+    private void cancel(List<Future<ResponseCtx>> futures) {
+
+        for (Future<ResponseCtx> future : futures) {
+            future.cancel(true);
+        }
+    }
+
+    /**
+     * Evaluates the given evaluation on the evaluation executor, in the tenant flow of the caller.
+     *
+     * @param evaluation evaluation
+     * @return future which completes with the result of the evaluation
+     */
+    private <T> CompletableFuture<T> submitEvaluation(final Callable<T> evaluation) {
+
+        final CompletableFuture<T> future = new CompletableFuture<T>();
+        final String tenantDomain = CarbonContext.getThreadLocalCarbonContext().getTenantDomain();
+        try {
+            getEvaluationExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+
+                    PrivilegedCarbonContext.startTenantFlow();
+                    PrivilegedCarbonContext context = PrivilegedCarbonContext.getThreadLocalCarbonContext();
+                    context.setTenantId(tenantId);
+                    context.setTenantDomain(tenantDomain);
+                    try {
+                        future.complete(evaluation.call());
+                    } catch (Throwable e) {
+                        future.completeExceptionally(e);
+                    } finally {
+                        PrivilegedCarbonContext.endTenantFlow();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Returns the executor shared by the asynchronous and batch evaluations of all tenants. The number of
+     * threads is read from the entitlement engine properties and defaults to the number of processors.
+     * If virtual threads are enabled and supported by the runtime, each evaluation runs on a new virtual
+     * thread instead.
+     *
+     * @return evaluation executor
+     */
+    private static ExecutorService getEvaluationExecutor() {
+
+        if (evaluationExecutor == null) {
+            synchronized (lock) {
+                if (evaluationExecutor == null) {
+                    Properties properties = EntitlementServiceComponent.getEntitlementConfig().getEngineProperties();
+                    if (Boolean.parseBoolean(properties.getProperty(PDPConstants.EVALUATION_VIRTUAL_THREADS))) {
+                        try {
+                            // looked up reflectively, as virtual threads are not available in all supported runtimes
+                            evaluationExecutor = (ExecutorService) Executors.class
+                                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+                            return evaluationExecutor;
+                        } catch (ReflectiveOperationException e) {
+                            log.warn("Virtual threads are not supported by the runtime. Using a fixed number of " +
+                                    "evaluation threads.");
+                        }
+                    }
+
+                    int threads = Runtime.getRuntime().availableProcessors();
+                    String evaluationThreads = properties.getProperty(PDPConstants.EVALUATION_THREADS);
+                    if (evaluationThreads != null) {
+                        try {
+                            threads = Math.max(1, Integer.parseInt(evaluationThreads.trim()));
+                        } catch (Exception e) {
+                            //ignore
+                        }
+                    }
+                    evaluationExecutor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable, "EntitlementEngine-evaluation");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+                }
+            }
+        }
+        return evaluationExecutor;
+    }
+
     /**
      * Evaluates the given XACML request and returns the Response that the EntitlementEngine will
      * hand back to the PEP. Here PEP does not need construct the XACML request before sending it to the
@@ -483,10 +839,10 @@ public class EntitlementEngine {
             environmentValue = environment[0];
         }
         String response;
-        String request = (subject != null ? subject : "") + (resource != null ? resource : "") +
-                (action != null ? action : "") + (environmentValue != null ? environmentValue : "");
+        String cacheKey = pdpDecisionCacheEnable ?
+                decisionCacheKeyGenerator.generateKey(subject, resource, action, environmentValue) : null;
 
-        if ((response = (String) getFromCache(request, true)) != null) {
+        if ((response = getResponseFromCache(cacheKey)) != null) {
             if (log.isDebugEnabled() && IdentityUtil.isTokenLoggable(IdentityConstants.IdentityTokens.XACML_REQUEST)) {
                 log.debug("XACML Request : " + EntitlementUtil.
                         createSimpleXACMLRequest(subject, resource, action, environmentValue));
@@ -503,9 +859,22 @@ public class EntitlementEngine {
             log.debug("XACML Request : " + requestAsString);
         }
 
-        response = pdp.evaluate(requestAsString);
+        // the request is updated with the PIP extensions as XML requests are, since both share the decision cache
+        AbstractRequestCtx requestCtx = hasExtensions() ? getRequestCtx(requestAsString) : null;
+        if (requestCtx != null) {
+            updateWithExtensions(requestCtx);
+        }
 
-        addToCache(request, response, true);
+        DecisionCacheContext context;
+        startDecisionTracking(getRequestValues(subject, resource, action, environmentValue));
+        try {
+            response = requestCtx != null ? pdp.evaluate(requestCtx).encode() : pdp.evaluate(requestAsString);
+        } finally {
+            CarbonAttributeFinder.clearPrefetchedAttributes();
+            context = DecisionCacheContext.end();
+        }
+
+        addToCache(cacheKey, response, context);
 
         if (log.isDebugEnabled() && IdentityUtil.isTokenLoggable(IdentityConstants.IdentityTokens.XACML_RESPONSE)) {
             log.debug("XACML Response : " + response);
@@ -534,6 +903,19 @@ public class EntitlementEngine {
         return carbonAttributeFinder;
     }
 
+    /**
+     * Creates an evaluation context of the given request for the PDP, which is not part of an evaluation of
+     * the PDP. Attributes which are not in the request are resolved through the attribute finders of the PDP.
+     *
+     * @param requestCtx request
+     * @return evaluation context of the request
+     * @throws ParsingException if the request is invalid
+     */
+    public EvaluationCtx getEvaluationCtx(AbstractRequestCtx requestCtx) throws ParsingException {
+
+        return EvaluationCtxFactory.getFactory().getEvaluationCtx(requestCtx, pdpConfig);
+    }
+
     /**
      * This method returns the carbon based resource finder for the current tenant
      *
@@ -553,17 +935,236 @@ public class EntitlementEngine {
     }
 
     /**
-     * get entry from decision caching
+     * Returns the attributes designated by the policies loaded in to the PDP.
      *
-     * @param request     XACML request as String
-     * @param simpleCache whether using simple cache or not
+     * @return attributes designated by the loaded policies
+     */
+    public Set<RequestAttribute> getPolicyDesignators() {
+
+        if (carbonPolicyFinderModule == null) {
+            return Collections.emptySet();
+        }
+        return carbonPolicyFinderModule.getPolicyDesignators();
+    }
+
+    /**
+     * Parses the XACML request in to the Balana object model, so that the cache key can be derived from
+     * the request attributes.
+     *
+     * @param xacmlRequest XACML request as String
+     * @return Balana Object model for request, or null if the request can not be parsed
+     * @throws EntitlementException if the request can not be parsed and PIP extensions are registered
+     * @throws ParsingException     if the request can not be parsed and PIP extensions are registered
+     */
+    private AbstractRequestCtx getRequestCtx(String xacmlRequest) throws EntitlementException, ParsingException {
+
+        try {
+            PolicyRequestBuilder policyRequestBuilder = new PolicyRequestBuilder();
+            Element xacmlRequestElement = policyRequestBuilder.getXacmlRequest(xacmlRequest);
+            return RequestCtxFactory.getFactory().getRequestCtx(xacmlRequestElement);
+        } catch (EntitlementException | ParsingException e) {
+            if (hasExtensions()) {
+                throw e;
+            }
+            // let the PDP build the error response for the invalid request
+            if (log.isDebugEnabled()) {
+                log.debug("Error while parsing the XACML request : " + e.getMessage());
+            }
+            return null;
+        }
+    }
+
+    private boolean hasExtensions() {
+
+        Map<PIPExtension, Properties> extensions = EntitlementServiceComponent.getEntitlementConfig()
+                .getExtensions();
+        return extensions != null && !extensions.isEmpty();
+    }
+
+    /**
+     * Updates the request with the registered PIP extensions
+     *
+     * @param requestCtx Balana Object model for request
+     */
+    private void updateWithExtensions(AbstractRequestCtx requestCtx) {
+
+        Map<PIPExtension, Properties> extensions = EntitlementServiceComponent.getEntitlementConfig()
+                .getExtensions();
+        if (extensions != null && !extensions.isEmpty()) {
+            Set<PIPExtension> pipExtensions = extensions.keySet();
+            for (PIPExtension pipExtension : pipExtensions) {
+                pipExtension.update(requestCtx);
+            }
+        }
+    }
+
+    /**
+     * Derives the decision cache key of a request. The key is built from the parsed request when possible,
+     * so that the XML and JSON encoding of the same request share a cache entry. On every evaluation path the
+     * key is derived before the request is updated with the PIP extensions.
+     *
+     * @param requestCtx   Balana Object model for request, may be null
+     * @param xacmlRequest XACML request as String
+     * @return cache key, or null if decision caching is disabled
+     */
+    private String getCacheKey(AbstractRequestCtx requestCtx, String xacmlRequest) {
+
+        if (!pdpDecisionCacheEnable) {
+            return null;
+        }
+
+        String cacheKey = null;
+        if (requestCtx != null) {
+            cacheKey = decisionCacheKeyGenerator.generateKey(requestCtx);
+        }
+        if (cacheKey == null && xacmlRequest != null) {
+            cacheKey = decisionCacheKeyGenerator.generateKey(xacmlRequest);
+        }
+        return cacheKey;
+    }
+
+    /**
+     * Starts tracking the dependencies of the decision evaluated in the current thread.
+     *
+     * @param requestValues string attribute values of the request, null if unknown
+     */
+    private void startDecisionTracking(Map<String, Set<String>> requestValues) {
+
+        DecisionCacheContext.start(decisionCacheKeyGenerator.getExcludedAttributes(), requestValues,
+                decisionDependencyIndex.getGeneration());
+    }
+
+    /**
+     * Collects the string attribute values of the request, which are matched against the target of new or
+     * updated policies to find the affected decisions.
+     *
+     * @param requestCtx Balana Object model for request, may be null
+     * @return attribute key -> attribute values, or null if the values are not known
+     */
+    private Map<String, Set<String>> getRequestValues(AbstractRequestCtx requestCtx) {
+
+        if (requestCtx == null || (requestCtx instanceof RequestCtx &&
+                ((RequestCtx) requestCtx).getMultiRequests() != null)) {
+            // individual requests of a multiple decision request may not carry all the attributes
+            return null;
+        }
+        return PolicyTargetIndexUtil.getRequestValues(requestCtx);
+    }
+
+    private Map<String, Set<String>> getRequestValues(String subject, String resource, String action,
+                                                      String environment) {
+
+        Map<String, Set<String>> requestValues = new HashMap<String, Set<String>>();
+        addRequestValue(requestValues, PDPConstants.SUBJECT_CATEGORY_URI, PDPConstants.SUBJECT_ID_DEFAULT, subject);
+        addRequestValue(requestValues, PDPConstants.RESOURCE_CATEGORY_URI, PDPConstants.RESOURCE_ID_DEFAULT,
+                resource);
+        addRequestValue(requestValues, PDPConstants.ACTION_CATEGORY_URI, PDPConstants.ACTION_ID_DEFAULT, action);
+        addRequestValue(requestValues, PDPConstants.ENVIRONMENT_CATEGORY_URI, PDPConstants.ENVIRONMENT_ID_DEFAULT,
+                environment);
+        return requestValues;
+    }
+
+    private void addRequestValue(Map<String, Set<String>> requestValues, String category, String attributeId,
+                                 String value) {
+
+        if (value != null) {
+            requestValues.put(PolicyTargetIndexUtil.getAttributeKey(category, attributeId),
+                    Collections.singleton(value));
+        }
+    }
+
+    /**
+     * Reads the request attributes which are excluded from the decision cache key. The value is a comma
+     * separated list of category|attributeId pairs. A tenant specific list can be defined by suffixing the
+     * property name with the tenant domain, which replaces the global list for that tenant.
+     *
+     * @param properties entitlement engine properties
+     * @return <code>Set</code> of excluded request attributes
+     */
+    private Set<RequestAttribute> getExcludedAttributes(Properties properties) {
+
+        String tenantDomain = CarbonContext.getThreadLocalCarbonContext().getTenantDomain();
+        String excludedAttributes = null;
+        if (tenantDomain != null) {
+            excludedAttributes = properties.getProperty(PDPConstants.DECISION_CACHING_EXCLUDED_ATTRIBUTES + "." +
+                    tenantDomain);
+        }
+        if (excludedAttributes == null) {
+            excludedAttributes = properties.getProperty(PDPConstants.DECISION_CACHING_EXCLUDED_ATTRIBUTES);
+        }
+
+        Set<RequestAttribute> attributes = new HashSet<RequestAttribute>();
+        if (excludedAttributes == null) {
+            return attributes;
+        }
+        for (String excludedAttribute : excludedAttributes.split(",")) {
+            String[] attribute = excludedAttribute.trim().split("\\|");
+            if (attribute.length != 2 || attribute[0].trim().isEmpty() || attribute[1].trim().isEmpty()) {
+                if (!excludedAttribute.trim().isEmpty()) {
+                    log.warn("Invalid value " + excludedAttribute + " for " +
+                            PDPConstants.DECISION_CACHING_EXCLUDED_ATTRIBUTES + ". Expected category|attributeId");
+                }
+                continue;
+            }
+            attributes.add(new RequestAttribute(attribute[0].trim(), attribute[1].trim()));
+        }
+        return attributes;
+    }
+
+    /**
+     * get XACML response from decision caching
+     *
+     * @param cacheKey decision cache key
      * @return XACML response as String
      */
-    private Object getFromCache(String request, boolean simpleCache) {
+    private String getResponseFromCache(String cacheKey) {
 
-        if (pdpDecisionCacheEnable) {
+        Object decision = getFromCache(cacheKey);
+        if (decision instanceof ResponseCtx) {
+            return ((ResponseCtx) decision).encode();
+        }
+        return (String) decision;
+    }
+
+    /**
+     * get XACML response from decision caching
+     *
+     * @param cacheKey decision cache key
+     * @return ResponseCtx response
+     */
+    private ResponseCtx getResponseCtxFromCache(String cacheKey) {
+
+        Object decision = getFromCache(cacheKey);
+        if (decision == null || decision instanceof ResponseCtx) {
+            return (ResponseCtx) decision;
+        }
+        try {
+            return toResponseCtx((String) decision);
+        } catch (ParsingException | ParserConfigurationException | SAXException | IOException e) {
+            log.error("Error while building the XACML response from decision cache", e);
+            return null;
+        }
+    }
+
+    private ResponseCtx toResponseCtx(String xacmlResponse) throws ParsingException, ParserConfigurationException,
+            SAXException, IOException {
+
+        DocumentBuilderFactory documentBuilderFactory = IdentityUtil.getSecuredDocumentBuilderFactory();
+        Element node = documentBuilderFactory.newDocumentBuilder().parse
+                (new ByteArrayInputStream(xacmlResponse.getBytes())).getDocumentElement();
+        return ResponseCtx.getInstance(node);
+    }
+
+    /**
+     * get entry from decision caching
+     *
+     * @param cacheKey decision cache key
+     * @return XACML response as String or ResponseCtx
+     */
+    private Object getFromCache(String cacheKey) {
+
+        if (pdpDecisionCacheEnable && cacheKey != null) {
 
-            String tenantRequest = tenantId + "+" + request;
             Object decision;
 
 
@@ -573,21 +1174,12 @@ public class EntitlementEngine {
                 simpleDecisionCache.clearCache();
             }*/
 
-            // Check whether the policy cache is invalidated, if so clear the decision cache.
-            if (EntitlementEngine.getInstance().getPolicyCache().isInvalidate()) {
-                if (log.isDebugEnabled()) {
-                    log.debug("Policy Cache is invalidated. Clearing the decision cache.");
-                }
-                decisionCache.clear();
-                simpleDecisionCache.clear();
-                return null;
+            // Apply the invalidated policies, so that the decisions which depend on them are evicted.
+            if (carbonPolicyFinderModule != null) {
+                carbonPolicyFinderModule.refreshInvalidatedPolicies();
             }
 
-            if (simpleCache) {
-                decision = simpleDecisionCache.getFromCache(tenantRequest);
-            } else {
-                decision = decisionCache.getFromCache(tenantRequest);
-            }
+            decision = decisionCache.getFromCache(cacheKey);
             return decision;
         }
 
@@ -600,17 +1192,24 @@ public class EntitlementEngine {
     /**
      * put entry in to cache
      *
-     * @param request     XACML request as String
-     * @param response    XACML response as String
-     * @param simpleCache whether using simple cache or not
+     * @param cacheKey decision cache key
+     * @param response XACML response as String or ResponseCtx
+     * @param context  dependencies recorded while evaluating the request
      */
-    private void addToCache(String request, Object response, boolean simpleCache) {
+    private void addToCache(String cacheKey, Object response, DecisionCacheContext context) {
         if (pdpDecisionCacheEnable) {
-            String tenantRequest = tenantId + "+" + request;
-            if (simpleCache) {
-                simpleDecisionCache.addToCache(tenantRequest, response);
-            } else {
-                decisionCache.addToCache(tenantRequest, response);
+            if (cacheKey != null && context != null && context.isCacheable()) {
+                if (decisionDependencyIndex.isFull()) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("Decision dependency index is full. Clearing the decision cache.");
+                    }
+                    clearDecisionCache();
+                }
+                if (decisionDependencyIndex.addDependencies(cacheKey, context)) {
+                    decisionCache.addToCache(cacheKey, response);
+                } else if (log.isDebugEnabled()) {
+                    log.debug("Policies or attributes have changed during the evaluation. Decision is not cached.");
+                }
             }
         } else {
             if (log.isDebugEnabled()) {
@@ -677,6 +1276,7 @@ public class EntitlementEngine {
         policyModules.add(tmpCarbonPolicyFinder);
         carbonPolicyFinder.setModules(policyModules);
         carbonPolicyFinder.init();
+        carbonPolicyFinderModule = tmpCarbonPolicyFinder;
 
     }
 
@@ -27,7 +27,9 @@ import org.wso2.carbon.identity.entitlement.dto.PolicyStoreDTO;
 import org.wso2.carbon.identity.entitlement.policy.finder.AbstractPolicyFinderModule;
 import org.wso2.carbon.identity.entitlement.policy.finder.PolicyFinderModule;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -71,6 +73,29 @@ public class HybridPolicyPersistenceManager extends AbstractPolicyFinderModule i
         }
     }
 
+    /**
+     * Adds the given new policies in bulk. Policies which already have versions in the registry are maintained
+     * there, and the rest are added to the database in bulk.
+     *
+     * @param policies policies.
+     * @throws EntitlementException If an error occurs.
+     */
+    @Override
+    public void addPolicies(List<PolicyDTO> policies) throws EntitlementException {
+
+        List<PolicyDTO> jdbcPolicies = new ArrayList<>();
+        for (PolicyDTO policy : policies) {
+            if (registryPolicyPersistenceManager.isPolicyExistsInPap(policy.getPolicyId())) {
+                registryPolicyPersistenceManager.addOrUpdatePolicy(policy, true);
+            } else {
+                jdbcPolicies.add(policy);
+            }
+        }
+        if (!jdbcPolicies.isEmpty()) {
+            jdbcPolicyPersistenceManager.addPolicies(jdbcPolicies);
+        }
+    }
+
     /**
      * Gets the requested policy from DB or registry.
      *
@@ -321,6 +346,32 @@ public class HybridPolicyPersistenceManager extends AbstractPolicyFinderModule i
         }
     }
 
+    /**
+     * Publishes the given policies in either DB or registry according to the existence. Policies in the DB are
+     * published in a single transaction.
+     *
+     * @param policies policies.
+     * @throws EntitlementException If an error occurs.
+     */
+    @Override
+    public void addPolicies(PolicyStoreDTO[] policies) throws EntitlementException {
+
+        List<PolicyStoreDTO> jdbcPolicies = new ArrayList<>();
+        for (PolicyStoreDTO policy : policies) {
+            if (policy == null || StringUtils.isBlank(policy.getPolicyId())) {
+                throw new EntitlementException("Policy and policy id can not be null");
+            }
+            if (jdbcPolicyPersistenceManager.isPolicyExistsInPap(policy.getPolicyId())) {
+                jdbcPolicies.add(policy);
+            } else {
+                registryPolicyPersistenceManager.addPolicy(policy);
+            }
+        }
+        if (!jdbcPolicies.isEmpty()) {
+            jdbcPolicyPersistenceManager.addPolicies(jdbcPolicies.toArray(new PolicyStoreDTO[0]));
+        }
+    }
+
     /**
      * Updates the policy in either DB or registry according to the existence.
      *
@@ -353,6 +404,23 @@ public class HybridPolicyPersistenceManager extends AbstractPolicyFinderModule i
                 registryPolicyPersistenceManager.isPolicyExist(policyId);
     }
 
+    /**
+     * Gets the given policies which are published in either DB or registry.
+     *
+     * @param policyIds policy IDs.
+     * @return IDs of the published policies out of the given policies.
+     * @throws EntitlementException If an error occurs.
+     */
+    @Override
+    public Set<String> getExistingPolicies(Collection<String> policyIds) throws EntitlementException {
+
+        Set<String> existingPolicies = jdbcPolicyPersistenceManager.getExistingPolicies(policyIds);
+        List<String> registryPolicyIds = new ArrayList<>(policyIds);
+        registryPolicyIds.removeAll(existingPolicies);
+        existingPolicies.addAll(registryPolicyPersistenceManager.getExistingPolicies(registryPolicyIds));
+        return existingPolicies;
+    }
+
     /**
      * Gets the requested published policy from either DB or registry.
      *
@@ -35,12 +35,16 @@ import org.wso2.carbon.identity.entitlement.persistence.cache.CacheBackedPolicyD
 import org.wso2.carbon.identity.entitlement.policy.PolicyAttributeBuilder;
 import org.wso2.carbon.identity.entitlement.policy.finder.AbstractPolicyFinderModule;
 import org.wso2.carbon.identity.entitlement.policy.finder.PolicyFinderModule;
+import org.wso2.carbon.identity.entitlement.policy.search.PolicyReferenceGraph;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -87,6 +91,36 @@ public class JDBCPolicyPersistenceManager extends AbstractPolicyFinderModule imp
             return;
         }
 
+        preparePolicy(policy);
+        int tenantId = CarbonContext.getThreadLocalCarbonContext().getTenantId();
+        policyDAO.insertPolicy(policy, tenantId);
+    }
+
+    /**
+     * Adds the given new policies in bulk. Policies are written in chunks of the configured policy store batch
+     * size, each in a single transaction.
+     *
+     * @param policies policies.
+     * @throws EntitlementException If an error occurs.
+     */
+    @Override
+    public void addPolicies(List<PolicyDTO> policies) throws EntitlementException {
+
+        for (PolicyDTO policy : policies) {
+            preparePolicy(policy);
+        }
+        int tenantId = CarbonContext.getThreadLocalCarbonContext().getTenantId();
+        policyDAO.insertPolicies(policies, EntitlementUtil.getPolicyStoreBatchSize(), tenantId);
+    }
+
+    /**
+     * Sets the new version, type, editor type, references and attributes of a policy which is to be added.
+     *
+     * @param policy policy.
+     * @throws EntitlementException If an error occurs.
+     */
+    private void preparePolicy(PolicyDTO policy) throws EntitlementException {
+
         String policyId = policy.getPolicyId();
         if (StringUtils.isBlank(policyId)) {
             throw new EntitlementException("Invalid Entitlement Policy. Policy or policyId can not be Null");
@@ -156,9 +190,6 @@ public class JDBCPolicyPersistenceManager extends AbstractPolicyFinderModule imp
         if (attributeDTOs != null && !attributeDTOs.isEmpty()) {
             policy.setAttributeDTOs(attributeDTOs.toArray(new AttributeDTO[0]));
         }
-
-        int tenantId = CarbonContext.getThreadLocalCarbonContext().getTenantId();
-        policyDAO.insertPolicy(policy, tenantId);
     }
 
     /**
@@ -345,6 +376,38 @@ public class JDBCPolicyPersistenceManager extends AbstractPolicyFinderModule imp
         return policies.toArray(new String[0]);
     }
 
+    /**
+     * Gets the published versions of all supported active policies, ordered in the same way as
+     * <code>getActivePolicies</code>. The version of a policy is its revision, i.e. the published version and
+     * the time the version was created, so that a policy which is deleted and created again gets a new version.
+     *
+     * @return map of policy id and version, or null if the versions can not be retrieved.
+     */
+    @Override
+    public Map<String, String> getActivePolicyVersions() {
+
+        int tenantId = CarbonContext.getThreadLocalCarbonContext().getTenantId();
+        try {
+            List<PolicyStoreDTO> policyDTOList = new ArrayList<>();
+            for (PolicyStoreDTO policy : policyDAO.getAllPDPPolicyRevisions(tenantId)) {
+                if (policy.isActive()) {
+                    policyDTOList.add(policy);
+                }
+            }
+            PolicyStoreDTO[] policyDTOs = policyDTOList.toArray(new PolicyStoreDTO[0]);
+            Arrays.sort(policyDTOs, new PolicyOrderComparator());
+
+            Map<String, String> versions = new LinkedHashMap<>();
+            for (PolicyStoreDTO dto : policyDTOs) {
+                versions.put(dto.getPolicyId(), dto.getVersion());
+            }
+            return versions;
+        } catch (EntitlementException e) {
+            LOG.error("Policy versions can not be retrieved from the policy finder module", e);
+            return null;
+        }
+    }
+
     /**
      * Gets all supported ordered policy ids.
      * If policy ordering is supported by the module itself, these policy ids must be ordered.
@@ -424,15 +487,12 @@ public class JDBCPolicyPersistenceManager extends AbstractPolicyFinderModule imp
     @Override
     public Map<String, Set<AttributeDTO>> getSearchAttributes(String identifier, Set<AttributeDTO> givenAttribute) {
 
+        int tenantId = CarbonContext.getThreadLocalCarbonContext().getTenantId();
         try {
-            PolicyStoreDTO[] policyDTOs = getAllPolicies(true, true);
-            List<PolicyDTO> policyDTOList = new ArrayList<>();
-            for (PolicyStoreDTO policyStoreDTO : policyDTOs) {
-                PolicyDTO policyDTO = getPAPPolicy(policyStoreDTO.getPolicyId());
-                policyDTOList.add(policyDTO);
-            }
-            if (policyDTOs.length > 0) {
-                return EntitlementUtil.getAttributesFromPolicies(policyDTOList.toArray(new PolicyDTO[0]));
+            // the reference graph of the active policies is cached and updated when policies are published
+            PolicyReferenceGraph graph = policyDAO.getPDPPolicyReferenceGraph(tenantId);
+            if (!graph.isEmpty()) {
+                return graph.getSearchAttributes();
             }
         } catch (EntitlementException e) {
             LOG.error(ERROR_RETRIEVING_POLICIES_FROM_POLICY_FINDER, e);
@@ -472,6 +532,28 @@ public class JDBCPolicyPersistenceManager extends AbstractPolicyFinderModule imp
         policyDAO.insertOrUpdatePolicy(policy, tenantId);
     }
 
+    /**
+     * Publishes the given policies in a single transaction.
+     *
+     * @param policies policies.
+     * @throws EntitlementException If an error occurs.
+     */
+    @Override
+    public void addPolicies(PolicyStoreDTO[] policies) throws EntitlementException {
+
+        int tenantId = CarbonContext.getThreadLocalCarbonContext().getTenantId();
+        for (PolicyStoreDTO policy : policies) {
+            if (policy == null || StringUtils.isBlank(policy.getPolicyId())) {
+                throw new EntitlementException("Policy and policy id can not be null");
+            }
+            if (StringUtils.isBlank(policy.getVersion())) {
+                throw new EntitlementException(String.format("Cannot publish policy %s. Invalid policy version.",
+                        policy.getPolicyId()));
+            }
+        }
+        policyDAO.insertOrUpdatePolicies(Arrays.asList(policies), tenantId);
+    }
+
     /**
      * Updates the policy.
      *
@@ -521,6 +603,22 @@ public class JDBCPolicyPersistenceManager extends AbstractPolicyFinderModule imp
         return policyDAO.isPolicyPublished(policyId, tenantId);
     }
 
+    /**
+     * Gets the given policies which are published, with a single query.
+     *
+     * @param policyIds policy IDs.
+     * @return IDs of the published policies out of the given policies.
+     * @throws EntitlementException If an error occurs.
+     */
+    @Override
+    public Set<String> getExistingPolicies(Collection<String> policyIds) throws EntitlementException {
+
+        int tenantId = CarbonContext.getThreadLocalCarbonContext().getTenantId();
+        Set<String> existingPolicies = new HashSet<>(policyDAO.getPublishedPolicyIds(tenantId));
+        existingPolicies.retainAll(policyIds);
+        return existingPolicies;
+    }
+
     /**
      * Gets the requested published policy.
      *
@@ -167,6 +167,27 @@ public class PersistenceManagerConstants {
                 "t1.POLICY_EDITOR, t1.POLICY, t1.TENANT_ID FROM IDN_XACML_POLICY t1 WHERE t1.IS_IN_PAP = :IS_IN_PAP; " +
                 "AND t1.VERSION =(SELECT MAX(VERSION) FROM IDN_XACML_POLICY t2 WHERE " +
                 "t2.POLICY_ID = t1.POLICY_ID AND t2.TENANT_ID = :TENANT_ID;) AND t1.TENANT_ID = :TENANT_ID;";
+        public static final String GET_ALL_PAP_POLICY_REFS_SQL = "SELECT r.POLICY_ID, r.VERSION, r.REFERENCE " +
+                "FROM IDN_XACML_POLICY_REFERENCE r INNER JOIN IDN_XACML_POLICY t1 ON r.POLICY_ID = t1.POLICY_ID " +
+                "AND r.VERSION = t1.VERSION AND r.TENANT_ID = t1.TENANT_ID WHERE t1.IS_IN_PAP = :IS_IN_PAP; " +
+                "AND t1.VERSION =(SELECT MAX(VERSION) FROM IDN_XACML_POLICY t2 WHERE " +
+                "t2.POLICY_ID = t1.POLICY_ID AND t2.TENANT_ID = :TENANT_ID;) AND t1.TENANT_ID = :TENANT_ID;";
+        public static final String GET_ALL_PAP_POLICY_SET_REFS_SQL = "SELECT r.POLICY_ID, r.VERSION, " +
+                "r.SET_REFERENCE FROM IDN_XACML_POLICY_SET_REFERENCE r INNER JOIN IDN_XACML_POLICY t1 ON " +
+                "r.POLICY_ID = t1.POLICY_ID AND r.VERSION = t1.VERSION AND r.TENANT_ID = t1.TENANT_ID WHERE " +
+                "t1.IS_IN_PAP = :IS_IN_PAP; AND t1.VERSION =(SELECT MAX(VERSION) FROM IDN_XACML_POLICY t2 WHERE " +
+                "t2.POLICY_ID = t1.POLICY_ID AND t2.TENANT_ID = :TENANT_ID;) AND t1.TENANT_ID = :TENANT_ID;";
+        public static final String GET_ALL_PAP_POLICY_EDITOR_DATA_SQL = "SELECT e.POLICY_ID, e.VERSION, " +
+                "e.DATA_ORDER, e.DATA FROM IDN_XACML_POLICY_EDITOR_DATA e INNER JOIN IDN_XACML_POLICY t1 ON " +
+                "e.POLICY_ID = t1.POLICY_ID AND e.VERSION = t1.VERSION AND e.TENANT_ID = t1.TENANT_ID WHERE " +
+                "t1.IS_IN_PAP = :IS_IN_PAP; AND t1.VERSION =(SELECT MAX(VERSION) FROM IDN_XACML_POLICY t2 WHERE " +
+                "t2.POLICY_ID = t1.POLICY_ID AND t2.TENANT_ID = :TENANT_ID;) AND t1.TENANT_ID = :TENANT_ID;";
+        public static final String GET_ALL_PAP_POLICY_META_DATA_SQL = "SELECT a.POLICY_ID, a.VERSION, " +
+                "a.ATTRIBUTE_ID, a.ATTRIBUTE_VALUE, a.DATA_TYPE, a.CATEGORY FROM IDN_XACML_POLICY_ATTRIBUTE a " +
+                "INNER JOIN IDN_XACML_POLICY t1 ON a.POLICY_ID = t1.POLICY_ID AND a.VERSION = t1.VERSION AND " +
+                "a.TENANT_ID = t1.TENANT_ID WHERE t1.IS_IN_PAP = :IS_IN_PAP; AND t1.VERSION =(SELECT MAX(VERSION) " +
+                "FROM IDN_XACML_POLICY t2 WHERE t2.POLICY_ID = t1.POLICY_ID AND t2.TENANT_ID = :TENANT_ID;) AND " +
+                "t1.TENANT_ID = :TENANT_ID; ORDER BY a.ID";
         public static final String DELETE_PAP_POLICY_SQL = "UPDATE IDN_XACML_POLICY SET IS_IN_PAP=:IS_IN_PAP; " +
                 "WHERE IS_IN_PDP=:IS_IN_PDP; AND POLICY_ID=:POLICY_ID; AND TENANT_ID=:TENANT_ID;";
         public static final String DELETE_PAP_POLICY_BY_VERSION_SQL =
@@ -196,8 +217,26 @@ public class PersistenceManagerConstants {
                 "WHERE IS_IN_PDP=:IS_IN_PDP; AND POLICY_ID=:POLICY_ID; AND VERSION=:VERSION; AND TENANT_ID=:TENANT_ID;";
         public static final String GET_ALL_PDP_POLICIES_SQL = "SELECT POLICY_ID, POLICY, POLICY_ORDER, IS_ACTIVE, " +
                 "VERSION FROM IDN_XACML_POLICY WHERE IS_IN_PDP=:IS_IN_PDP; AND TENANT_ID=:TENANT_ID;";
+        public static final String GET_ALL_PDP_POLICY_META_DATA_SQL = "SELECT a.POLICY_ID, a.VERSION, " +
+                "a.ATTRIBUTE_ID, a.ATTRIBUTE_VALUE, a.DATA_TYPE, a.CATEGORY FROM IDN_XACML_POLICY_ATTRIBUTE a " +
+                "INNER JOIN IDN_XACML_POLICY t1 ON a.POLICY_ID = t1.POLICY_ID AND a.VERSION = t1.VERSION AND " +
+                "a.TENANT_ID = t1.TENANT_ID WHERE t1.IS_IN_PDP = :IS_IN_PDP; AND t1.TENANT_ID = :TENANT_ID; " +
+                "ORDER BY a.ID";
+        public static final String GET_ALL_PDP_POLICY_REFS_SQL = "SELECT r.POLICY_ID, r.VERSION, r.REFERENCE " +
+                "FROM IDN_XACML_POLICY_REFERENCE r INNER JOIN IDN_XACML_POLICY t1 ON r.POLICY_ID = t1.POLICY_ID " +
+                "AND r.VERSION = t1.VERSION AND r.TENANT_ID = t1.TENANT_ID WHERE t1.IS_IN_PDP = :IS_IN_PDP; " +
+                "AND t1.TENANT_ID = :TENANT_ID;";
+        public static final String GET_ALL_PDP_POLICY_SET_REFS_SQL = "SELECT r.POLICY_ID, r.VERSION, " +
+                "r.SET_REFERENCE FROM IDN_XACML_POLICY_SET_REFERENCE r INNER JOIN IDN_XACML_POLICY t1 ON " +
+                "r.POLICY_ID = t1.POLICY_ID AND r.VERSION = t1.VERSION AND r.TENANT_ID = t1.TENANT_ID WHERE " +
+                "t1.IS_IN_PDP = :IS_IN_PDP; AND t1.TENANT_ID = :TENANT_ID;";
+        public static final String GET_PUBLISHED_POLICY_VERSION_AND_STATUS_SQL = "SELECT VERSION, IS_ACTIVE FROM " +
+                "IDN_XACML_POLICY WHERE IS_IN_PDP=:IS_IN_PDP; AND POLICY_ID=:POLICY_ID; AND TENANT_ID=:TENANT_ID;";
         public static final String GET_PDP_POLICY_IDS_SQL = "SELECT DISTINCT POLICY_ID FROM IDN_XACML_POLICY WHERE " +
                 "IS_IN_PDP=:IS_IN_PDP; AND TENANT_ID=:TENANT_ID;";
+        public static final String GET_ALL_PDP_POLICY_VERSIONS_SQL = "SELECT POLICY_ID, POLICY_ORDER, IS_ACTIVE, " +
+                "VERSION, LAST_MODIFIED_TIME FROM IDN_XACML_POLICY WHERE IS_IN_PDP=:IS_IN_PDP; AND " +
+                "TENANT_ID=:TENANT_ID;";
         public static final String GET_PUBLISHED_POLICY_VERSION_SQL = "SELECT VERSION FROM IDN_XACML_POLICY WHERE " +
                 "IS_IN_PDP=:IS_IN_PDP; AND POLICY_ID=:POLICY_ID; AND TENANT_ID=:TENANT_ID;";
         public static final String GET_ACTIVE_STATUS_AND_ORDER_SQL = "SELECT IS_ACTIVE, POLICY_ORDER FROM " +
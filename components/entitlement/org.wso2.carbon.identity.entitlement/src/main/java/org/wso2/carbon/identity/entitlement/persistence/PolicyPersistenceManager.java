@@ -39,6 +39,19 @@ public interface PolicyPersistenceManager extends PolicyStoreManageModule {
      */
     void addOrUpdatePolicy(PolicyDTO policy, boolean isFromPapAction) throws EntitlementException;
 
+    /**
+     * Adds the given new policies in bulk, as a PAP action.
+     *
+     * @param policies policies
+     * @throws EntitlementException If an error occurs
+     */
+    default void addPolicies(List<PolicyDTO> policies) throws EntitlementException {
+
+        for (PolicyDTO policy : policies) {
+            addOrUpdatePolicy(policy, true);
+        }
+    }
+
     /**
      * Gets the requested policy.
      *
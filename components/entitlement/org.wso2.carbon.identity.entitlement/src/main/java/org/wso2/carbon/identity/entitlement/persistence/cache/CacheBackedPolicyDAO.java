@@ -26,9 +26,11 @@ import org.wso2.carbon.identity.entitlement.cache.PapPolicyCache;
 import org.wso2.carbon.identity.entitlement.cache.PapPolicyListCache;
 import org.wso2.carbon.identity.entitlement.cache.PdpPolicyCache;
 import org.wso2.carbon.identity.entitlement.cache.PdpPolicyListCache;
+import org.wso2.carbon.identity.entitlement.cache.PdpSearchAttributeCache;
 import org.wso2.carbon.identity.entitlement.dto.PolicyDTO;
 import org.wso2.carbon.identity.entitlement.dto.PolicyStoreDTO;
 import org.wso2.carbon.identity.entitlement.persistence.dao.PolicyDAO;
+import org.wso2.carbon.identity.entitlement.policy.search.PolicyReferenceGraph;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -40,8 +42,10 @@ public class CacheBackedPolicyDAO extends PolicyDAO {
     private final PapPolicyListCache papPolicyListCache = PapPolicyListCache.getInstance();
     private final PdpPolicyCache pdpPolicyCache = PdpPolicyCache.getInstance();
     private final PdpPolicyListCache pdpPolicyListCache = PdpPolicyListCache.getInstance();
+    private final PdpSearchAttributeCache pdpSearchAttributeCache = PdpSearchAttributeCache.getInstance();
     private static final String PAP_POLICY_LIST_CACHE_KEY = "PAP_POLICY_LIST_CACHE_KEY";
     private static final String PDP_POLICY_LIST_CACHE_KEY = "PDP_POLICY_LIST_CACHE_KEY";
+    private static final String PDP_SEARCH_ATTRIBUTE_CACHE_KEY = "PDP_SEARCH_ATTRIBUTE_CACHE_KEY";
 
     private static final CacheBackedPolicyDAO instance = new CacheBackedPolicyDAO();
 
@@ -62,6 +66,20 @@ public class CacheBackedPolicyDAO extends PolicyDAO {
         papPolicyListCache.clearCacheEntry(PAP_POLICY_LIST_CACHE_KEY, tenantId);
     }
 
+    @Override
+    public void insertPolicies(List<PolicyDTO> policies, int batchSize, int tenantId) throws EntitlementException {
+
+        try {
+            super.insertPolicies(policies, batchSize, tenantId);
+        } finally {
+            // policies of the chunks written before a failure are kept, hence the list is cleared in any case
+            for (PolicyDTO policy : policies) {
+                papPolicyCache.clearCacheEntry(policy.getPolicyId(), tenantId);
+            }
+            papPolicyListCache.clearCacheEntry(PAP_POLICY_LIST_CACHE_KEY, tenantId);
+        }
+    }
+
     @Override
     public PolicyDTO getPAPPolicy(String policyId, int tenantId) throws EntitlementException {
 
@@ -152,6 +170,21 @@ public class CacheBackedPolicyDAO extends PolicyDAO {
         pdpPolicyListCache.clearCacheEntry(PDP_POLICY_LIST_CACHE_KEY, tenantId);
         papPolicyCache.clearCacheEntry(policy.getPolicyId(), tenantId);
         papPolicyListCache.clearCacheEntry(PAP_POLICY_LIST_CACHE_KEY, tenantId);
+        updateSearchAttributeCache(policy.getPolicyId(), tenantId);
+    }
+
+    @Override
+    public void insertOrUpdatePolicies(List<PolicyStoreDTO> policies, int tenantId) throws EntitlementException {
+
+        super.insertOrUpdatePolicies(policies, tenantId);
+        for (PolicyStoreDTO policy : policies) {
+            pdpPolicyCache.addToCache(policy.getPolicyId(), policy, tenantId);
+            papPolicyCache.clearCacheEntry(policy.getPolicyId(), tenantId);
+        }
+        pdpPolicyListCache.clearCacheEntry(PDP_POLICY_LIST_CACHE_KEY, tenantId);
+        papPolicyListCache.clearCacheEntry(PAP_POLICY_LIST_CACHE_KEY, tenantId);
+        // the search attributes are reloaded with set-based queries, instead of one policy at a time
+        pdpSearchAttributeCache.clearCacheEntry(PDP_SEARCH_ATTRIBUTE_CACHE_KEY, tenantId);
     }
 
     @Override
@@ -162,6 +195,7 @@ public class CacheBackedPolicyDAO extends PolicyDAO {
         pdpPolicyListCache.clearCacheEntry(PDP_POLICY_LIST_CACHE_KEY, tenantId);
         papPolicyCache.clearCacheEntry(policy.getPolicyId(), tenantId);
         papPolicyListCache.clearCacheEntry(PAP_POLICY_LIST_CACHE_KEY, tenantId);
+        updateSearchAttributeCache(policy.getPolicyId(), tenantId);
     }
 
     @Override
@@ -190,6 +224,55 @@ public class CacheBackedPolicyDAO extends PolicyDAO {
         pdpPolicyListCache.clearCacheEntry(PDP_POLICY_LIST_CACHE_KEY, tenantId);
         papPolicyCache.clearCacheEntry(policyId, tenantId);
         papPolicyListCache.clearCacheEntry(PAP_POLICY_LIST_CACHE_KEY, tenantId);
+        updateSearchAttributeCache(policyId, tenantId);
         return isSuccess;
     }
+
+    @Override
+    public PolicyReferenceGraph getPDPPolicyReferenceGraph(int tenantId) throws EntitlementException {
+
+        PolicyReferenceGraph graph =
+                pdpSearchAttributeCache.getValueFromCache(PDP_SEARCH_ATTRIBUTE_CACHE_KEY, tenantId);
+        if (graph != null) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(String.format("Cache hit in PdpSearchAttributeCache for tenant: %s", tenantId));
+            }
+            return graph;
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug(String.format("Cache miss in PdpSearchAttributeCache for tenant: %s", tenantId));
+        }
+        graph = super.getPDPPolicyReferenceGraph(tenantId);
+        pdpSearchAttributeCache.addToCache(PDP_SEARCH_ATTRIBUTE_CACHE_KEY, graph, tenantId);
+        return graph;
+    }
+
+    /**
+     * Replaces the search attributes of the given policy in the cached policy reference graph, if it is cached,
+     * so that the search attributes of the other policies are not retrieved or resolved again.
+     *
+     * @param policyId policy ID.
+     * @param tenantId tenant ID.
+     */
+    private synchronized void updateSearchAttributeCache(String policyId, int tenantId) {
+
+        PolicyReferenceGraph graph =
+                pdpSearchAttributeCache.getValueFromCache(PDP_SEARCH_ATTRIBUTE_CACHE_KEY, tenantId);
+        if (graph == null) {
+            return;
+        }
+
+        try {
+            PolicyDTO policy = super.getPDPPolicySearchAttributes(policyId, tenantId);
+            if (policy != null) {
+                graph.addPolicy(policy);
+            } else {
+                graph.removePolicy(policyId);
+            }
+            pdpSearchAttributeCache.addToCache(PDP_SEARCH_ATTRIBUTE_CACHE_KEY, graph, tenantId);
+        } catch (EntitlementException e) {
+            LOG.error(String.format("Error while updating the search attributes of policy %s", policyId), e);
+            pdpSearchAttributeCache.clearCacheEntry(PDP_SEARCH_ATTRIBUTE_CACHE_KEY, tenantId);
+        }
+    }
 }
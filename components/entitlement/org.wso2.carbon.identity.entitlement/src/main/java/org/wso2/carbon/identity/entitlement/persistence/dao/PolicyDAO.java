@@ -28,6 +28,7 @@ import org.wso2.carbon.identity.entitlement.EntitlementUtil;
 import org.wso2.carbon.identity.entitlement.dto.AttributeDTO;
 import org.wso2.carbon.identity.entitlement.dto.PolicyDTO;
 import org.wso2.carbon.identity.entitlement.dto.PolicyStoreDTO;
+import org.wso2.carbon.identity.entitlement.policy.search.PolicyReferenceGraph;
 
 import java.sql.Connection;
 import java.sql.ResultSet;
@@ -35,7 +36,10 @@ import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.TimeZone;
 
 import static org.wso2.carbon.identity.entitlement.persistence.PersistenceManagerConstants.EntitlementTableColumns.ATTRIBUTE_ID;
@@ -72,7 +76,15 @@ import static org.wso2.carbon.identity.entitlement.persistence.PersistenceManage
 import static org.wso2.carbon.identity.entitlement.persistence.PersistenceManagerConstants.SQLQueries.DELETE_UNUSED_POLICY_SQL;
 import static org.wso2.carbon.identity.entitlement.persistence.PersistenceManagerConstants.SQLQueries.GET_ACTIVE_STATUS_AND_ORDER_SQL;
 import static org.wso2.carbon.identity.entitlement.persistence.PersistenceManagerConstants.SQLQueries.GET_ALL_PAP_POLICIES_SQL;
+import static org.wso2.carbon.identity.entitlement.persistence.PersistenceManagerConstants.SQLQueries.GET_ALL_PAP_POLICY_EDITOR_DATA_SQL;
+import static org.wso2.carbon.identity.entitlement.persistence.PersistenceManagerConstants.SQLQueries.GET_ALL_PAP_POLICY_META_DATA_SQL;
+import static org.wso2.carbon.identity.entitlement.persistence.PersistenceManagerConstants.SQLQueries.GET_ALL_PAP_POLICY_REFS_SQL;
+import static org.wso2.carbon.identity.entitlement.persistence.PersistenceManagerConstants.SQLQueries.GET_ALL_PAP_POLICY_SET_REFS_SQL;
 import static org.wso2.carbon.identity.entitlement.persistence.PersistenceManagerConstants.SQLQueries.GET_ALL_PDP_POLICIES_SQL;
+import static org.wso2.carbon.identity.entitlement.persistence.PersistenceManagerConstants.SQLQueries.GET_ALL_PDP_POLICY_META_DATA_SQL;
+import static org.wso2.carbon.identity.entitlement.persistence.PersistenceManagerConstants.SQLQueries.GET_ALL_PDP_POLICY_REFS_SQL;
+import static org.wso2.carbon.identity.entitlement.persistence.PersistenceManagerConstants.SQLQueries.GET_ALL_PDP_POLICY_SET_REFS_SQL;
+import static org.wso2.carbon.identity.entitlement.persistence.PersistenceManagerConstants.SQLQueries.GET_ALL_PDP_POLICY_VERSIONS_SQL;
 import static org.wso2.carbon.identity.entitlement.persistence.PersistenceManagerConstants.SQLQueries.GET_LATEST_POLICY_VERSION_SQL;
 import static org.wso2.carbon.identity.entitlement.persistence.PersistenceManagerConstants.SQLQueries.GET_PAP_POLICY_BY_VERSION_SQL;
 import static org.wso2.carbon.identity.entitlement.persistence.PersistenceManagerConstants.SQLQueries.GET_PAP_POLICY_EDITOR_DATA_SQL;
@@ -87,6 +99,7 @@ import static org.wso2.carbon.identity.entitlement.persistence.PersistenceManage
 import static org.wso2.carbon.identity.entitlement.persistence.PersistenceManagerConstants.SQLQueries.GET_POLICY_PDP_PRESENCE_BY_VERSION_SQL;
 import static org.wso2.carbon.identity.entitlement.persistence.PersistenceManagerConstants.SQLQueries.GET_POLICY_PDP_PRESENCE_SQL;
 import static org.wso2.carbon.identity.entitlement.persistence.PersistenceManagerConstants.SQLQueries.GET_POLICY_VERSIONS_SQL;
+import static org.wso2.carbon.identity.entitlement.persistence.PersistenceManagerConstants.SQLQueries.GET_PUBLISHED_POLICY_VERSION_AND_STATUS_SQL;
 import static org.wso2.carbon.identity.entitlement.persistence.PersistenceManagerConstants.SQLQueries.GET_PUBLISHED_POLICY_VERSION_SQL;
 import static org.wso2.carbon.identity.entitlement.persistence.PersistenceManagerConstants.SQLQueries.PUBLISH_POLICY_VERSION_SQL;
 import static org.wso2.carbon.identity.entitlement.persistence.PersistenceManagerConstants.SQLQueries.RESTORE_ACTIVE_STATUS_AND_ORDER_SQL;
@@ -119,12 +132,7 @@ public class PolicyDAO {
         Connection connection = IdentityDatabaseUtil.getDBConnection(true);
         try {
 
-            insertPolicy(connection, policy, tenantId);
-            insertPolicyReferences(connection, policy, tenantId);
-            if (policy.getAttributeDTOs() != null && EntitlementUtil.isPolicyMetadataStoringEnabled()) {
-                insertPolicyAttributes(connection, policy, tenantId);
-            }
-            insertPolicyEditorData(connection, policy, tenantId);
+            insertPolicies(connection, Collections.singletonList(policy), tenantId);
             IdentityDatabaseUtil.commitTransaction(connection);
 
         } catch (SQLException e) {
@@ -135,6 +143,33 @@ public class PolicyDAO {
         }
     }
 
+    /**
+     * Insert policies to PAP in bulk. The rows of each chunk of <code>batchSize</code> policies are written with
+     * JDBC batches in a single transaction. If a chunk fails, it is rolled back and the chunks written before it
+     * are kept.
+     *
+     * @param policies  policies.
+     * @param batchSize number of policies written in a single transaction.
+     * @param tenantId  tenant ID.
+     * @throws EntitlementException throws, if fails.
+     */
+    public void insertPolicies(List<PolicyDTO> policies, int batchSize, int tenantId) throws EntitlementException {
+
+        for (int i = 0; i < policies.size(); i += batchSize) {
+            List<PolicyDTO> chunk = policies.subList(i, Math.min(i + batchSize, policies.size()));
+            Connection connection = IdentityDatabaseUtil.getDBConnection(true);
+            try {
+                insertPolicies(connection, chunk, tenantId);
+                IdentityDatabaseUtil.commitTransaction(connection);
+            } catch (SQLException e) {
+                IdentityDatabaseUtil.rollbackTransaction(connection);
+                throw new EntitlementException("Error while adding entitlement policies in policy store", e);
+            } finally {
+                IdentityDatabaseUtil.closeConnection(connection);
+            }
+        }
+    }
+
     /**
      * Delete the given policy version from the PAP.
      *
@@ -216,7 +251,8 @@ public class PolicyDAO {
     }
 
     /**
-     * Get all PAP policies.
+     * Get all PAP policies. The references, set references, editor data and attributes of all the policies are
+     * loaded with one query each, instead of one query each per policy.
      *
      * @param tenantId tenant ID.
      * @return list of policy DTOs.
@@ -231,10 +267,30 @@ public class PolicyDAO {
 
                 try (ResultSet policies = prepStmt.executeQuery()) {
                     while (policies.next()) {
-                        policyDTOs.add(getPolicyDTO(policies, connection));
+                        policyDTOs.add(getPolicyDTOWithoutMetaData(policies));
                     }
                 }
             }
+            if (policyDTOs.isEmpty()) {
+                return policyDTOs;
+            }
+
+            Map<String, List<String>> policyReferences = getAllPolicyReferences(connection, tenantId,
+                    GET_ALL_PAP_POLICY_REFS_SQL, REFERENCE, IS_IN_PAP, IN_PAP);
+            Map<String, List<String>> policySetReferences = getAllPolicyReferences(connection, tenantId,
+                    GET_ALL_PAP_POLICY_SET_REFS_SQL, SET_REFERENCE, IS_IN_PAP, IN_PAP);
+            Map<String, String[]> policyEditorData = getAllPAPPolicyEditorData(connection, tenantId);
+            Map<String, List<AttributeDTO>> policyAttributes = getAllPolicyAttributes(connection, tenantId,
+                    GET_ALL_PAP_POLICY_META_DATA_SQL, IS_IN_PAP, IN_PAP);
+
+            for (PolicyDTO dto : policyDTOs) {
+                String key = getPolicyKey(dto.getPolicyId(), Integer.parseInt(dto.getVersion()));
+                dto.setPolicyIdReferences(getOrEmpty(policyReferences, key).toArray(new String[0]));
+                dto.setPolicySetIdReferences(getOrEmpty(policySetReferences, key).toArray(new String[0]));
+                String[] editorData = policyEditorData.get(key);
+                dto.setPolicyEditorData(editorData != null ? editorData : new String[0]);
+                dto.setAttributeDTOs(getOrEmpty(policyAttributes, key).toArray(new AttributeDTO[0]));
+            }
         } catch (SQLException e) {
             throw new EntitlementException("Error while retrieving entitlement policies from the PAP policy store", e);
         }
@@ -480,7 +536,8 @@ public class PolicyDAO {
     }
 
     /**
-     * Returns all the published policies as PolicyDTOs.
+     * Returns all the published policies as PolicyDTOs. The attributes of all the policies are loaded with a
+     * single query.
      *
      * @return policies as PolicyDTO[].
      * @throws EntitlementException throws if fails.
@@ -497,28 +554,171 @@ public class PolicyDAO {
 
                 try (ResultSet policySet = prepStmt.executeQuery()) {
                     while (policySet.next()) {
-                        String policy = policySet.getString(POLICY);
-                        String policyId = policySet.getString(POLICY_ID);
-                        int version = policySet.getInt(VERSION);
-                        AttributeDTO[] attributes = getPolicyAttributes(connection, tenantId, policyId, version);
-
                         PolicyStoreDTO dto = new PolicyStoreDTO();
-                        dto.setPolicyId(policyId);
-                        dto.setPolicy(policy);
+                        dto.setPolicyId(policySet.getString(POLICY_ID));
+                        dto.setPolicy(policySet.getString(POLICY));
                         dto.setPolicyOrder(policySet.getInt(POLICY_ORDER));
                         dto.setActive(policySet.getBoolean(IS_ACTIVE));
-                        dto.setVersion(String.valueOf(version));
-                        dto.setAttributeDTOs(attributes);
+                        dto.setVersion(String.valueOf(policySet.getInt(VERSION)));
                         policies.add(dto);
                     }
-                    return policies.toArray(new PolicyStoreDTO[0]);
                 }
             }
+            if (!policies.isEmpty()) {
+                Map<String, List<AttributeDTO>> policyAttributes = getAllPolicyAttributes(connection, tenantId,
+                        GET_ALL_PDP_POLICY_META_DATA_SQL, IS_IN_PDP, IN_PDP);
+                for (PolicyStoreDTO dto : policies) {
+                    String key = getPolicyKey(dto.getPolicyId(), Integer.parseInt(dto.getVersion()));
+                    dto.setAttributeDTOs(getOrEmpty(policyAttributes, key).toArray(new AttributeDTO[0]));
+                }
+            }
+            return policies.toArray(new PolicyStoreDTO[0]);
         } catch (SQLException e) {
             throw new EntitlementException("Error while retrieving PDP policies", e);
         }
     }
 
+    /**
+     * Returns the published revision, order and active status of all the published policies, without loading
+     * the policies or their attributes. The revision of a policy is its published version and the time the
+     * version was created, since the versions of a policy are numbered again once the policy is deleted.
+     *
+     * @param tenantId tenant ID.
+     * @return policies as PolicyStoreDTO[] without the policy content, with the revision set as the version.
+     * @throws EntitlementException throws if fails.
+     */
+    public PolicyStoreDTO[] getAllPDPPolicyRevisions(int tenantId) throws EntitlementException {
+
+        LOG.debug("Retrieving revisions of all PDP entitlement policies");
+        List<PolicyStoreDTO> policies = new ArrayList<>();
+        try (Connection connection = IdentityDatabaseUtil.getDBConnection(false);
+             NamedPreparedStatement prepStmt = new NamedPreparedStatement(connection,
+                     GET_ALL_PDP_POLICY_VERSIONS_SQL)) {
+            prepStmt.setBoolean(IS_IN_PDP, IN_PDP);
+            prepStmt.setInt(TENANT_ID, tenantId);
+
+            try (ResultSet policySet = prepStmt.executeQuery()) {
+                while (policySet.next()) {
+                    PolicyStoreDTO dto = new PolicyStoreDTO();
+                    dto.setPolicyId(policySet.getString(POLICY_ID));
+                    dto.setPolicyOrder(policySet.getInt(POLICY_ORDER));
+                    dto.setActive(policySet.getBoolean(IS_ACTIVE));
+                    dto.setVersion(policySet.getInt(VERSION) + "@" +
+                            policySet.getTimestamp(LAST_MODIFIED_TIME).getTime());
+                    policies.add(dto);
+                }
+            }
+            return policies.toArray(new PolicyStoreDTO[0]);
+        } catch (SQLException e) {
+            throw new EntitlementException("Error while retrieving PDP policy revisions", e);
+        }
+    }
+
+    /**
+     * Returns the search attributes of all the active published policies. Only the policy ID, attributes,
+     * policy references and policy set references of the published version are set in the returned DTOs.
+     *
+     * @param tenantId tenant ID.
+     * @return search attributes of the active published policies.
+     * @throws EntitlementException throws if fails.
+     */
+    public PolicyDTO[] getPDPPolicySearchAttributes(int tenantId) throws EntitlementException {
+
+        List<PolicyDTO> policies = new ArrayList<>();
+
+        LOG.debug("Retrieving search attributes of all PDP entitlement policies");
+        try (Connection connection = IdentityDatabaseUtil.getDBConnection(false)) {
+            try (NamedPreparedStatement prepStmt = new NamedPreparedStatement(connection,
+                    GET_ALL_PDP_POLICY_VERSIONS_SQL)) {
+                prepStmt.setBoolean(IS_IN_PDP, IN_PDP);
+                prepStmt.setInt(TENANT_ID, tenantId);
+
+                try (ResultSet policySet = prepStmt.executeQuery()) {
+                    while (policySet.next()) {
+                        if (policySet.getBoolean(IS_ACTIVE)) {
+                            PolicyDTO dto = new PolicyDTO(policySet.getString(POLICY_ID));
+                            dto.setVersion(String.valueOf(policySet.getInt(VERSION)));
+                            policies.add(dto);
+                        }
+                    }
+                }
+            }
+            if (policies.isEmpty()) {
+                return new PolicyDTO[0];
+            }
+
+            Map<String, List<String>> policyReferences = getAllPolicyReferences(connection, tenantId,
+                    GET_ALL_PDP_POLICY_REFS_SQL, REFERENCE, IS_IN_PDP, IN_PDP);
+            Map<String, List<String>> policySetReferences = getAllPolicyReferences(connection, tenantId,
+                    GET_ALL_PDP_POLICY_SET_REFS_SQL, SET_REFERENCE, IS_IN_PDP, IN_PDP);
+            Map<String, List<AttributeDTO>> policyAttributes = getAllPolicyAttributes(connection, tenantId,
+                    GET_ALL_PDP_POLICY_META_DATA_SQL, IS_IN_PDP, IN_PDP);
+
+            for (PolicyDTO dto : policies) {
+                String key = getPolicyKey(dto.getPolicyId(), Integer.parseInt(dto.getVersion()));
+                dto.setPolicyIdReferences(getOrEmpty(policyReferences, key).toArray(new String[0]));
+                dto.setPolicySetIdReferences(getOrEmpty(policySetReferences, key).toArray(new String[0]));
+                dto.setAttributeDTOs(getOrEmpty(policyAttributes, key).toArray(new AttributeDTO[0]));
+            }
+            return policies.toArray(new PolicyDTO[0]);
+        } catch (SQLException e) {
+            throw new EntitlementException("Error while retrieving search attributes of PDP policies", e);
+        }
+    }
+
+    /**
+     * Returns the reference graph of the search attributes of all the active published policies.
+     *
+     * @param tenantId tenant ID.
+     * @return policy reference graph of the active published policies.
+     * @throws EntitlementException throws if fails.
+     */
+    public PolicyReferenceGraph getPDPPolicyReferenceGraph(int tenantId) throws EntitlementException {
+
+        return new PolicyReferenceGraph(getPDPPolicySearchAttributes(tenantId));
+    }
+
+    /**
+     * Returns the search attributes of a published policy, in the same form as
+     * <code>getPDPPolicySearchAttributes(int)</code>.
+     *
+     * @param policyId policy ID.
+     * @param tenantId tenant ID.
+     * @return search attributes of the policy, or null if the policy is not published or not active.
+     * @throws EntitlementException throws if fails.
+     */
+    public PolicyDTO getPDPPolicySearchAttributes(String policyId, int tenantId) throws EntitlementException {
+
+        try (Connection connection = IdentityDatabaseUtil.getDBConnection(false)) {
+            int version;
+            try (NamedPreparedStatement prepStmt = new NamedPreparedStatement(connection,
+                    GET_PUBLISHED_POLICY_VERSION_AND_STATUS_SQL)) {
+                prepStmt.setBoolean(IS_IN_PDP, IN_PDP);
+                prepStmt.setString(POLICY_ID, policyId);
+                prepStmt.setInt(TENANT_ID, tenantId);
+
+                try (ResultSet resultSet = prepStmt.executeQuery()) {
+                    if (!resultSet.next() || !resultSet.getBoolean(IS_ACTIVE)) {
+                        return null;
+                    }
+                    version = resultSet.getInt(VERSION);
+                }
+            }
+
+            PolicyDTO dto = new PolicyDTO(policyId);
+            dto.setVersion(String.valueOf(version));
+            dto.setPolicyIdReferences(getPolicyReferences(connection, tenantId, policyId, version)
+                    .toArray(new String[0]));
+            dto.setPolicySetIdReferences(getPolicySetReferences(connection, tenantId, policyId, version)
+                    .toArray(new String[0]));
+            dto.setAttributeDTOs(getPolicyAttributes(connection, tenantId, policyId, version));
+            return dto;
+        } catch (SQLException e) {
+            throw new EntitlementException(String.format("Error while retrieving search attributes of PDP " +
+                    "policy %s", policyId), e);
+        }
+    }
+
     /**
      * DAO method to get PDP policy ids.
      *
@@ -631,6 +831,118 @@ public class PolicyDAO {
         }
     }
 
+    /**
+     * Publish new versions of several policies in a single transaction. The state changes of the policies are
+     * written with JDBC batches, in the same order as <code>insertOrUpdatePolicy</code> writes them for a single
+     * policy. The policies should have distinct policy IDs.
+     *
+     * @param policies policies.
+     * @param tenantId tenant ID.
+     * @throws EntitlementException If an error occurs.
+     */
+    public void insertOrUpdatePolicies(List<PolicyStoreDTO> policies, int tenantId) throws EntitlementException {
+
+        List<PolicyStoreDTO> updatedPolicies = new ArrayList<>();
+        for (PolicyStoreDTO policy : policies) {
+            if (!policy.isSetActive() && !policy.isSetOrder()) {
+                updatedPolicies.add(policy);
+            }
+        }
+
+        Connection connection = IdentityDatabaseUtil.getDBConnection(true);
+        try (NamedPreparedStatement updateActiveStatusPrepStmt = new NamedPreparedStatement(connection,
+                UPDATE_ACTIVE_STATUS_SQL);
+             NamedPreparedStatement updateOrderPrepStmt = new NamedPreparedStatement(connection,
+                     UPDATE_ORDER_SQL);
+             NamedPreparedStatement updatePublishStatusPrepStmt = new NamedPreparedStatement(connection,
+                     DELETE_PUBLISHED_VERSIONS_SQL);
+             NamedPreparedStatement removePolicyPrepStmt = new NamedPreparedStatement(connection,
+                     DELETE_UNUSED_POLICY_SQL);
+             NamedPreparedStatement publishPolicyPrepStmt = new NamedPreparedStatement(connection,
+                     PUBLISH_POLICY_VERSION_SQL);
+             NamedPreparedStatement updatePolicyStatusAndOrderPrepStmt = new NamedPreparedStatement(connection,
+                     RESTORE_ACTIVE_STATUS_AND_ORDER_SQL)) {
+
+            for (PolicyStoreDTO policy : policies) {
+                int version = Integer.parseInt(policy.getVersion());
+                if (policy.isSetActive()) {
+                    updateActiveStatusPrepStmt.setBoolean(IS_ACTIVE, policy.isActive());
+                    updateActiveStatusPrepStmt.setString(POLICY_ID, policy.getPolicyId());
+                    updateActiveStatusPrepStmt.setInt(VERSION, version);
+                    updateActiveStatusPrepStmt.setInt(TENANT_ID, tenantId);
+                    updateActiveStatusPrepStmt.addBatch();
+                }
+                if (policy.isSetOrder() && policy.getPolicyOrder() > 0) {
+                    updateOrderPrepStmt.setInt(POLICY_ORDER, policy.getPolicyOrder());
+                    updateOrderPrepStmt.setString(POLICY_ID, policy.getPolicyId());
+                    updateOrderPrepStmt.setInt(VERSION, version);
+                    updateOrderPrepStmt.setInt(TENANT_ID, tenantId);
+                    updateOrderPrepStmt.addBatch();
+                }
+            }
+            updateActiveStatusPrepStmt.executeBatch();
+            updateOrderPrepStmt.executeBatch();
+
+            // Get active status and order of the previously published versions, and remove those versions.
+            Map<String, PolicyStoreDTO> previousPolicies = new HashMap<>();
+            if (!updatedPolicies.isEmpty()) {
+                for (PolicyStoreDTO previousPolicy : getAllPDPPolicyVersions(connection, tenantId)) {
+                    previousPolicies.put(previousPolicy.getPolicyId(), previousPolicy);
+                }
+                for (PolicyStoreDTO policy : updatedPolicies) {
+                    updatePublishStatusPrepStmt.setBoolean(IS_IN_PDP, !IN_PDP);
+                    updatePublishStatusPrepStmt.setBoolean(IS_ACTIVE, INACTIVE);
+                    updatePublishStatusPrepStmt.setInt(POLICY_ORDER, DEFAULT_POLICY_ORDER);
+                    updatePublishStatusPrepStmt.setBoolean(IS_IN_PDP_1, IN_PDP);
+                    updatePublishStatusPrepStmt.setString(POLICY_ID, policy.getPolicyId());
+                    updatePublishStatusPrepStmt.setInt(TENANT_ID, tenantId);
+                    updatePublishStatusPrepStmt.addBatch();
+
+                    removePolicyPrepStmt.setBoolean(IS_IN_PAP, !IN_PAP);
+                    removePolicyPrepStmt.setBoolean(IS_IN_PDP, !IN_PDP);
+                    removePolicyPrepStmt.setString(POLICY_ID, policy.getPolicyId());
+                    removePolicyPrepStmt.setInt(TENANT_ID, tenantId);
+                    removePolicyPrepStmt.addBatch();
+                }
+                updatePublishStatusPrepStmt.executeBatch();
+                removePolicyPrepStmt.executeBatch();
+            }
+
+            // Publish the given versions of the policies
+            for (PolicyStoreDTO policy : policies) {
+                publishPolicyPrepStmt.setBoolean(IS_IN_PDP, IN_PDP);
+                publishPolicyPrepStmt.setString(POLICY_ID, policy.getPolicyId());
+                publishPolicyPrepStmt.setInt(VERSION, Integer.parseInt(policy.getVersion()));
+                publishPolicyPrepStmt.setInt(TENANT_ID, tenantId);
+                publishPolicyPrepStmt.addBatch();
+            }
+            publishPolicyPrepStmt.executeBatch();
+
+            // For updates, keep the previous active status and order
+            if (!updatedPolicies.isEmpty()) {
+                for (PolicyStoreDTO policy : updatedPolicies) {
+                    PolicyStoreDTO previousPolicy = previousPolicies.get(policy.getPolicyId());
+                    updatePolicyStatusAndOrderPrepStmt.setBoolean(IS_ACTIVE,
+                            previousPolicy != null && previousPolicy.isActive());
+                    updatePolicyStatusAndOrderPrepStmt.setInt(POLICY_ORDER,
+                            previousPolicy != null ? previousPolicy.getPolicyOrder() : 0);
+                    updatePolicyStatusAndOrderPrepStmt.setString(POLICY_ID, policy.getPolicyId());
+                    updatePolicyStatusAndOrderPrepStmt.setInt(VERSION, Integer.parseInt(policy.getVersion()));
+                    updatePolicyStatusAndOrderPrepStmt.setInt(TENANT_ID, tenantId);
+                    updatePolicyStatusAndOrderPrepStmt.addBatch();
+                }
+                updatePolicyStatusAndOrderPrepStmt.executeBatch();
+            }
+            IdentityDatabaseUtil.commitTransaction(connection);
+
+        } catch (SQLException e) {
+            IdentityDatabaseUtil.rollbackTransaction(connection);
+            throw new EntitlementException("Error while publishing policies", e);
+        } finally {
+            IdentityDatabaseUtil.closeConnection(connection);
+        }
+    }
+
     /**
      * Update the active status or order of a published policy.
      *
@@ -837,100 +1149,255 @@ public class PolicyDAO {
         return attributeDTOs.toArray(new AttributeDTO[0]);
     }
 
-    private void insertPolicy(Connection connection, PolicyDTO policy, int tenantId) throws SQLException {
+    private Map<String, List<String>> getAllPolicyReferences(Connection connection, int tenantId, String query,
+                                                             String referenceColumn, String presenceColumn,
+                                                             boolean presence) throws SQLException {
+
+        Map<String, List<String>> policyReferences = new HashMap<>();
+        try (NamedPreparedStatement prepStmt = new NamedPreparedStatement(connection, query)) {
+            prepStmt.setBoolean(presenceColumn, presence);
+            prepStmt.setInt(TENANT_ID, tenantId);
+            try (ResultSet references = prepStmt.executeQuery()) {
+                while (references.next()) {
+                    String key = getPolicyKey(references.getString(POLICY_ID), references.getInt(VERSION));
+                    List<String> referenceList = policyReferences.get(key);
+                    if (referenceList == null) {
+                        referenceList = new ArrayList<>();
+                        policyReferences.put(key, referenceList);
+                    }
+                    referenceList.add(references.getString(referenceColumn));
+                }
+            }
+        }
+        return policyReferences;
+    }
+
+    private Map<String, String[]> getAllPAPPolicyEditorData(Connection connection, int tenantId)
+            throws SQLException {
+
+        Map<String, List<String>> editorDataLists = new HashMap<>();
+        try (NamedPreparedStatement prepStmt = new NamedPreparedStatement(connection,
+                GET_ALL_PAP_POLICY_EDITOR_DATA_SQL)) {
+            prepStmt.setBoolean(IS_IN_PAP, IN_PAP);
+            prepStmt.setInt(TENANT_ID, tenantId);
+            try (ResultSet editorMetadata = prepStmt.executeQuery()) {
+                while (editorMetadata.next()) {
+                    String key = getPolicyKey(editorMetadata.getString(POLICY_ID), editorMetadata.getInt(VERSION));
+                    List<String> basicPolicyEditorMetaDataList = editorDataLists.get(key);
+                    if (basicPolicyEditorMetaDataList == null) {
+                        basicPolicyEditorMetaDataList = new ArrayList<>();
+                        editorDataLists.put(key, basicPolicyEditorMetaDataList);
+                    }
+                    int dataOrder = editorMetadata.getInt(EDITOR_DATA_ORDER);
+                    while (basicPolicyEditorMetaDataList.size() <= dataOrder) {
+                        basicPolicyEditorMetaDataList.add(null);
+                    }
+                    basicPolicyEditorMetaDataList.set(dataOrder, editorMetadata.getString(EDITOR_DATA));
+                }
+            }
+        }
+
+        Map<String, String[]> policyEditorData = new HashMap<>();
+        for (Map.Entry<String, List<String>> entry : editorDataLists.entrySet()) {
+            policyEditorData.put(entry.getKey(), entry.getValue().toArray(new String[0]));
+        }
+        return policyEditorData;
+    }
+
+    private Map<String, List<AttributeDTO>> getAllPolicyAttributes(Connection connection, int tenantId,
+                                                                   String query, String presenceColumn,
+                                                                   boolean presence) throws SQLException {
+
+        Map<String, List<AttributeDTO>> policyAttributes = new HashMap<>();
+        try (NamedPreparedStatement prepStmt = new NamedPreparedStatement(connection, query)) {
+            prepStmt.setBoolean(presenceColumn, presence);
+            prepStmt.setInt(TENANT_ID, tenantId);
+            try (ResultSet metadata = prepStmt.executeQuery()) {
+                while (metadata.next()) {
+                    String key = getPolicyKey(metadata.getString(POLICY_ID), metadata.getInt(VERSION));
+                    List<AttributeDTO> attributeDTOs = policyAttributes.get(key);
+                    if (attributeDTOs == null) {
+                        attributeDTOs = new ArrayList<>();
+                        policyAttributes.put(key, attributeDTOs);
+                    }
+                    AttributeDTO attributeDTO = new AttributeDTO();
+                    attributeDTO.setCategory(metadata.getString(CATEGORY));
+                    attributeDTO.setAttributeValue(metadata.getString(ATTRIBUTE_VALUE));
+                    attributeDTO.setAttributeId(metadata.getString(ATTRIBUTE_ID));
+                    attributeDTO.setAttributeDataType(metadata.getString(DATA_TYPE));
+                    attributeDTOs.add(attributeDTO);
+                }
+            }
+        }
+        return policyAttributes;
+    }
+
+    private List<PolicyStoreDTO> getAllPDPPolicyVersions(Connection connection, int tenantId) throws SQLException {
+
+        List<PolicyStoreDTO> policies = new ArrayList<>();
+        try (NamedPreparedStatement prepStmt = new NamedPreparedStatement(connection,
+                GET_ALL_PDP_POLICY_VERSIONS_SQL)) {
+            prepStmt.setBoolean(IS_IN_PDP, IN_PDP);
+            prepStmt.setInt(TENANT_ID, tenantId);
+
+            try (ResultSet policySet = prepStmt.executeQuery()) {
+                while (policySet.next()) {
+                    PolicyStoreDTO dto = new PolicyStoreDTO();
+                    dto.setPolicyId(policySet.getString(POLICY_ID));
+                    dto.setPolicyOrder(policySet.getInt(POLICY_ORDER));
+                    dto.setActive(policySet.getBoolean(IS_ACTIVE));
+                    dto.setVersion(String.valueOf(policySet.getInt(VERSION)));
+                    policies.add(dto);
+                }
+            }
+        }
+        return policies;
+    }
+
+    /**
+     * Returns the key used to group the rows loaded for several policies. The version is placed first since it
+     * can not contain the separator, while the policy ID may.
+     */
+    private static String getPolicyKey(String policyId, int version) {
+
+        return version + ":" + policyId;
+    }
+
+    private static <T> List<T> getOrEmpty(Map<String, List<T>> values, String key) {
+
+        List<T> list = values.get(key);
+        return list != null ? list : Collections.<T>emptyList();
+    }
+
+    private void insertPolicies(Connection connection, List<PolicyDTO> policies, int tenantId) throws SQLException {
+
+        insertPolicyVersions(connection, policies, tenantId);
+        insertPolicyReferences(connection, policies, tenantId);
+        if (EntitlementUtil.isPolicyMetadataStoringEnabled()) {
+            insertPolicyAttributes(connection, policies, tenantId);
+        }
+        insertPolicyEditorData(connection, policies, tenantId);
+    }
+
+    private void insertPolicyVersions(Connection connection, List<PolicyDTO> policies, int tenantId)
+            throws SQLException {
 
         try (NamedPreparedStatement createPolicyPrepStmt = new NamedPreparedStatement(connection,
                 CREATE_PAP_POLICY_SQL)) {
 
-            createPolicyPrepStmt.setString(POLICY_ID, policy.getPolicyId());
-            createPolicyPrepStmt.setInt(VERSION, Integer.parseInt(policy.getVersion()));
-            createPolicyPrepStmt.setBoolean(IS_IN_PDP, !IN_PDP);
-            createPolicyPrepStmt.setBoolean(IS_IN_PAP, IN_PAP);
-            createPolicyPrepStmt.setString(POLICY, policy.getPolicy());
-            createPolicyPrepStmt.setBoolean(IS_ACTIVE, policy.isActive());
-            createPolicyPrepStmt.setString(POLICY_TYPE, policy.getPolicyType());
-            createPolicyPrepStmt.setString(POLICY_EDITOR, policy.getPolicyEditor());
-            createPolicyPrepStmt.setInt(POLICY_ORDER, DEFAULT_POLICY_ORDER);
-            createPolicyPrepStmt.setTimeStamp(LAST_MODIFIED_TIME, new Timestamp(System.currentTimeMillis()),
-                    Calendar.getInstance(TimeZone.getTimeZone(UTC)));
-            createPolicyPrepStmt.setString(LAST_MODIFIED_USER,
-                    CarbonContext.getThreadLocalCarbonContext().getUsername());
-            createPolicyPrepStmt.setInt(TENANT_ID, tenantId);
-
-            createPolicyPrepStmt.executeUpdate();
+            Timestamp lastModifiedTime = new Timestamp(System.currentTimeMillis());
+            String lastModifiedUser = CarbonContext.getThreadLocalCarbonContext().getUsername();
+            for (PolicyDTO policy : policies) {
+                createPolicyPrepStmt.setString(POLICY_ID, policy.getPolicyId());
+                createPolicyPrepStmt.setInt(VERSION, Integer.parseInt(policy.getVersion()));
+                createPolicyPrepStmt.setBoolean(IS_IN_PDP, !IN_PDP);
+                createPolicyPrepStmt.setBoolean(IS_IN_PAP, IN_PAP);
+                createPolicyPrepStmt.setString(POLICY, policy.getPolicy());
+                createPolicyPrepStmt.setBoolean(IS_ACTIVE, policy.isActive());
+                createPolicyPrepStmt.setString(POLICY_TYPE, policy.getPolicyType());
+                createPolicyPrepStmt.setString(POLICY_EDITOR, policy.getPolicyEditor());
+                createPolicyPrepStmt.setInt(POLICY_ORDER, DEFAULT_POLICY_ORDER);
+                createPolicyPrepStmt.setTimeStamp(LAST_MODIFIED_TIME, lastModifiedTime,
+                        Calendar.getInstance(TimeZone.getTimeZone(UTC)));
+                createPolicyPrepStmt.setString(LAST_MODIFIED_USER, lastModifiedUser);
+                createPolicyPrepStmt.setInt(TENANT_ID, tenantId);
+                createPolicyPrepStmt.addBatch();
+            }
+            createPolicyPrepStmt.executeBatch();
         }
     }
 
-    private void insertPolicyReferences(Connection connection, PolicyDTO policy, int tenantId)
+    private void insertPolicyReferences(Connection connection, List<PolicyDTO> policies, int tenantId)
             throws SQLException {
 
-        String[] policyIdReferences = policy.getPolicyIdReferences();
-        String[] policySetIdReferences = policy.getPolicySetIdReferences();
-
         try (NamedPreparedStatement createPolicyReferencesPrepStmt = new NamedPreparedStatement(connection,
                 CREATE_PAP_POLICY_REFS_SQL);
              NamedPreparedStatement createPolicySetReferencesPrepStmt = new NamedPreparedStatement(connection,
                      CREATE_PAP_POLICY_SET_REFS_SQL)) {
 
-            for (String policyIdReference : policyIdReferences) {
-                createPolicyReferencesPrepStmt.setString(REFERENCE, policyIdReference);
-                createPolicyReferencesPrepStmt.setString(POLICY_ID, policy.getPolicyId());
-                createPolicyReferencesPrepStmt.setInt(VERSION, Integer.parseInt(policy.getVersion()));
-                createPolicyReferencesPrepStmt.setInt(TENANT_ID, tenantId);
-                createPolicyReferencesPrepStmt.addBatch();
+            boolean hasPolicyReferences = false;
+            boolean hasPolicySetReferences = false;
+            for (PolicyDTO policy : policies) {
+                for (String policyIdReference : policy.getPolicyIdReferences()) {
+                    createPolicyReferencesPrepStmt.setString(REFERENCE, policyIdReference);
+                    createPolicyReferencesPrepStmt.setString(POLICY_ID, policy.getPolicyId());
+                    createPolicyReferencesPrepStmt.setInt(VERSION, Integer.parseInt(policy.getVersion()));
+                    createPolicyReferencesPrepStmt.setInt(TENANT_ID, tenantId);
+                    createPolicyReferencesPrepStmt.addBatch();
+                    hasPolicyReferences = true;
+                }
+
+                for (String policySetReference : policy.getPolicySetIdReferences()) {
+                    createPolicySetReferencesPrepStmt.setString(SET_REFERENCE, policySetReference);
+                    createPolicySetReferencesPrepStmt.setString(POLICY_ID, policy.getPolicyId());
+                    createPolicySetReferencesPrepStmt.setInt(VERSION, Integer.parseInt(policy.getVersion()));
+                    createPolicySetReferencesPrepStmt.setInt(TENANT_ID, tenantId);
+                    createPolicySetReferencesPrepStmt.addBatch();
+                    hasPolicySetReferences = true;
+                }
+            }
+            if (hasPolicyReferences) {
+                createPolicyReferencesPrepStmt.executeBatch();
             }
-            createPolicyReferencesPrepStmt.executeBatch();
-
-            for (String policySetReference : policySetIdReferences) {
-                createPolicySetReferencesPrepStmt.setString(SET_REFERENCE, policySetReference);
-                createPolicySetReferencesPrepStmt.setString(POLICY_ID, policy.getPolicyId());
-                createPolicySetReferencesPrepStmt.setInt(VERSION, Integer.parseInt(policy.getVersion()));
-                createPolicySetReferencesPrepStmt.setInt(TENANT_ID, tenantId);
-                createPolicySetReferencesPrepStmt.addBatch();
+            if (hasPolicySetReferences) {
+                createPolicySetReferencesPrepStmt.executeBatch();
             }
-            createPolicySetReferencesPrepStmt.executeBatch();
         }
     }
 
-    private void insertPolicyAttributes(Connection connection, PolicyDTO policy, int tenantId) throws SQLException {
+    private void insertPolicyAttributes(Connection connection, List<PolicyDTO> policies, int tenantId)
+            throws SQLException {
 
         try (NamedPreparedStatement createAttributesPrepStmt = new NamedPreparedStatement(connection,
                 CREATE_PAP_POLICY_ATTRIBUTES_SQL)) {
 
-            AttributeDTO[] attributeDTOs = policy.getAttributeDTOs();
-            for (AttributeDTO attributeDTO : attributeDTOs) {
-
-                createAttributesPrepStmt.setString(ATTRIBUTE_ID, attributeDTO.getAttributeId());
-                createAttributesPrepStmt.setString(ATTRIBUTE_VALUE, attributeDTO.getAttributeValue());
-                createAttributesPrepStmt.setString(DATA_TYPE, attributeDTO.getAttributeDataType());
-                createAttributesPrepStmt.setString(CATEGORY, attributeDTO.getCategory());
-                createAttributesPrepStmt.setString(POLICY_ID, policy.getPolicyId());
-                createAttributesPrepStmt.setInt(VERSION, Integer.parseInt(policy.getVersion()));
-                createAttributesPrepStmt.setInt(TENANT_ID, tenantId);
-                createAttributesPrepStmt.addBatch();
+            boolean hasAttributes = false;
+            for (PolicyDTO policy : policies) {
+                AttributeDTO[] attributeDTOs = policy.getAttributeDTOs();
+                for (AttributeDTO attributeDTO : attributeDTOs) {
+
+                    createAttributesPrepStmt.setString(ATTRIBUTE_ID, attributeDTO.getAttributeId());
+                    createAttributesPrepStmt.setString(ATTRIBUTE_VALUE, attributeDTO.getAttributeValue());
+                    createAttributesPrepStmt.setString(DATA_TYPE, attributeDTO.getAttributeDataType());
+                    createAttributesPrepStmt.setString(CATEGORY, attributeDTO.getCategory());
+                    createAttributesPrepStmt.setString(POLICY_ID, policy.getPolicyId());
+                    createAttributesPrepStmt.setInt(VERSION, Integer.parseInt(policy.getVersion()));
+                    createAttributesPrepStmt.setInt(TENANT_ID, tenantId);
+                    createAttributesPrepStmt.addBatch();
+                    hasAttributes = true;
+                }
+            }
+            if (hasAttributes) {
+                createAttributesPrepStmt.executeBatch();
             }
-            createAttributesPrepStmt.executeBatch();
         }
     }
 
-    private void insertPolicyEditorData(Connection connection, PolicyDTO policy, int tenantId) throws SQLException {
-
-        // Find policy meta data
-        String[] policyMetaData = policy.getPolicyEditorData();
-        if (policyMetaData != null && policyMetaData.length > 0) {
-            try (NamedPreparedStatement createPolicyEditorDataPrepStmt = new NamedPreparedStatement(connection,
-                    CREATE_PAP_POLICY_EDITOR_DATA_SQL)) {
-                int index = 0;
-                for (String policyData : policyMetaData) {
-                    createPolicyEditorDataPrepStmt.setInt(EDITOR_DATA_ORDER, index);
-                    createPolicyEditorDataPrepStmt.setString(EDITOR_DATA, policyData);
-                    createPolicyEditorDataPrepStmt.setString(POLICY_ID, policy.getPolicyId());
-                    createPolicyEditorDataPrepStmt.setInt(VERSION, Integer.parseInt(policy.getVersion()));
-                    createPolicyEditorDataPrepStmt.setInt(TENANT_ID, tenantId);
-
-                    createPolicyEditorDataPrepStmt.addBatch();
-                    index++;
+    private void insertPolicyEditorData(Connection connection, List<PolicyDTO> policies, int tenantId)
+            throws SQLException {
+
+        try (NamedPreparedStatement createPolicyEditorDataPrepStmt = new NamedPreparedStatement(connection,
+                CREATE_PAP_POLICY_EDITOR_DATA_SQL)) {
+            boolean hasEditorData = false;
+            for (PolicyDTO policy : policies) {
+                // Find policy meta data
+                String[] policyMetaData = policy.getPolicyEditorData();
+                if (policyMetaData != null && policyMetaData.length > 0) {
+                    int index = 0;
+                    for (String policyData : policyMetaData) {
+                        createPolicyEditorDataPrepStmt.setInt(EDITOR_DATA_ORDER, index);
+                        createPolicyEditorDataPrepStmt.setString(EDITOR_DATA, policyData);
+                        createPolicyEditorDataPrepStmt.setString(POLICY_ID, policy.getPolicyId());
+                        createPolicyEditorDataPrepStmt.setInt(VERSION, Integer.parseInt(policy.getVersion()));
+                        createPolicyEditorDataPrepStmt.setInt(TENANT_ID, tenantId);
+
+                        createPolicyEditorDataPrepStmt.addBatch();
+                        index++;
+                    }
+                    hasEditorData = true;
                 }
+            }
+            if (hasEditorData) {
                 createPolicyEditorDataPrepStmt.executeBatch();
             }
         }
@@ -993,21 +1460,11 @@ public class PolicyDAO {
      */
     private PolicyDTO getPolicyDTO(ResultSet policy, Connection connection) throws SQLException {
 
-        String policyId = policy.getString(POLICY_ID);
-        String version = String.valueOf(policy.getInt(VERSION));
+        PolicyDTO dto = getPolicyDTOWithoutMetaData(policy);
+        String policyId = dto.getPolicyId();
+        String version = dto.getVersion();
         int tenantId = policy.getInt(TENANT_ID);
 
-        PolicyDTO dto = new PolicyDTO();
-        dto.setPolicyId(policyId);
-        dto.setVersion(version);
-        dto.setLastModifiedTime(String.valueOf(policy.getTimestamp(LAST_MODIFIED_TIME).getTime()));
-        dto.setLastModifiedUser(policy.getString(LAST_MODIFIED_USER));
-        dto.setActive(policy.getBoolean(IS_ACTIVE));
-        dto.setPolicyOrder(policy.getInt(POLICY_ORDER));
-        dto.setPolicyType(policy.getString(POLICY_TYPE));
-        dto.setPolicyEditor(policy.getString(POLICY_EDITOR));
-        dto.setPolicy(policy.getString(POLICY));
-
         // Get policy references
         List<String> policyReferences = getPolicyReferences(connection, tenantId, policyId, Integer.parseInt(version));
         dto.setPolicyIdReferences(policyReferences.toArray(new String[0]));
@@ -1028,4 +1485,26 @@ public class PolicyDAO {
 
         return dto;
     }
+
+    /**
+     * Returns given policy version as a PolicyDTO, without the references, editor data and attributes.
+     *
+     * @param policy policy.
+     * @return policy as a PolicyDTO.
+     * @throws SQLException throws, if fails.
+     */
+    private PolicyDTO getPolicyDTOWithoutMetaData(ResultSet policy) throws SQLException {
+
+        PolicyDTO dto = new PolicyDTO();
+        dto.setPolicyId(policy.getString(POLICY_ID));
+        dto.setVersion(String.valueOf(policy.getInt(VERSION)));
+        dto.setLastModifiedTime(String.valueOf(policy.getTimestamp(LAST_MODIFIED_TIME).getTime()));
+        dto.setLastModifiedUser(policy.getString(LAST_MODIFIED_USER));
+        dto.setActive(policy.getBoolean(IS_ACTIVE));
+        dto.setPolicyOrder(policy.getInt(POLICY_ORDER));
+        dto.setPolicyType(policy.getString(POLICY_TYPE));
+        dto.setPolicyEditor(policy.getString(POLICY_EDITOR));
+        dto.setPolicy(policy.getString(POLICY));
+        return dto;
+    }
 }
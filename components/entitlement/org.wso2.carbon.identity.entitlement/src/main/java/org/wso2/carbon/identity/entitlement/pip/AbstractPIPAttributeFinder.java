@@ -31,7 +31,9 @@ import org.wso2.carbon.CarbonConstants;
 import org.wso2.carbon.context.CarbonContext;
 import org.wso2.carbon.identity.application.common.model.ApplicationBasicInfo;
 import org.wso2.carbon.identity.application.common.model.RoleV2;
+import org.wso2.carbon.identity.core.util.IdentityTenantUtil;
 import org.wso2.carbon.identity.entitlement.PDPConstants;
+import org.wso2.carbon.identity.entitlement.cache.ApplicationRoleCache;
 import org.wso2.carbon.identity.entitlement.cache.PIPAbstractAttributeCache;
 import org.wso2.carbon.identity.entitlement.internal.EntitlementConfigHolder;
 import org.wso2.carbon.identity.entitlement.internal.EntitlementServiceComponent;
@@ -39,9 +41,12 @@ import org.wso2.carbon.user.core.UserCoreConstants;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.stream.Collectors;
 
 /**
@@ -53,6 +58,8 @@ public abstract class AbstractPIPAttributeFinder implements PIPAttributeFinder {
     protected int tenantId;
     private PIPAbstractAttributeCache abstractAttributeFinderCache = null;
     private boolean isAbstractAttributeCachingEnabled = false;
+    private static final long DEFAULT_APPLICATION_ROLE_CACHING_INTERVAL = 300;
+    private long applicationRoleCachingInterval = -1;
 
     /**
      * This is the overloaded simplify version of the getAttributeValues() method. Any one who extends the
@@ -87,7 +94,6 @@ public abstract class AbstractPIPAttributeFinder implements PIPAttributeFinder {
         String actionId = null;
         EvaluationResult environment;
         String environmentId = null;
-        Set<String> attributeValues = null;
 
         tenantId = CarbonContext.getThreadLocalCarbonContext().getTenantId();
 
@@ -147,52 +153,76 @@ public abstract class AbstractPIPAttributeFinder implements PIPAttributeFinder {
             }
         }
 
-        String key = null;
+        // the service provider of the request is resolved up front, so that the attribute values can be reloaded
+        // without the evaluation context once the evaluation is over
+        String spName = null;
+        String spTenantDomain = null;
+        if (isApplicationRoleAttribute(attributeId)) {
+            spName = getServiceProviderName(issuer, evaluationCtx);
+            spTenantDomain = getServiceProviderTenantDomain(issuer, evaluationCtx);
+        }
 
         if (isAbstractAttributeCachingEnabled) {
-            key = (subjectId != null ? subjectId : "") + (resourceId != null ? resourceId : "") +
+            String key = (subjectId != null ? subjectId : "") + (resourceId != null ? resourceId : "") +
                   (environmentId != null ? environmentId : "") + (attributeId != null ? attributeId : "") +
                   (issuer != null ? issuer : "") +
                   (actionId != null ? actionId : "");
 
-            attributeValues = abstractAttributeFinderCache.getFromCache(tenantId, key);
             if (log.isDebugEnabled()) {
                 log.debug("Retrieving attributes from cache, tenantId: " + tenantId + ", key: " + key);
             }
+            return abstractAttributeFinderCache.getFromCache(tenantId, key, subjectId, newLoader(subjectId,
+                    resourceId, actionId, environmentId, attributeId, issuer, spName, spTenantDomain));
         }
 
-        if (attributeValues == null) {
-            if (log.isDebugEnabled()) {
-                log.debug("Carbon Attribute Cache Miss");
-            }
-            attributeValues = getAttributeValues(subjectId, resourceId, actionId, environmentId,
-                                                 attributeId.toString(), issuer);
-            // Resolve application roles.
-            if (UserCoreConstants.INTERNAL_ROLES_CLAIM.equals(attributeId.toString()) &&
-                    !CarbonConstants.ENABLE_LEGACY_AUTHZ_RUNTIME) {
-                String spName =  getServiceProviderName(issuer, evaluationCtx);
-                String spTenantDomain = getServiceProviderTenantDomain(issuer, evaluationCtx);
-                if (StringUtils.isNotBlank(spName) && StringUtils.isNotBlank(spTenantDomain)) {
-                    Set<String> roleNames = getAssociatedRolesOfApplication(spName, spTenantDomain);
-                    if (roleNames != null && !roleNames.isEmpty()) {
-                        attributeValues = attributeValues.stream().filter(roleNames::contains).collect(
-                                Collectors.toSet());
-                    }
+        return resolveAttributeValues(subjectId, resourceId, actionId, environmentId, attributeId, issuer,
+                spName, spTenantDomain);
+    }
+
+    private Callable<Set<String>> newLoader(final String subjectId, final String resourceId, final String actionId,
+                                            final String environmentId, final URI attributeId, final String issuer,
+                                            final String spName, final String spTenantDomain) {
+
+        return new Callable<Set<String>>() {
+            @Override
+            public Set<String> call() throws Exception {
+                if (log.isDebugEnabled()) {
+                    log.debug("Carbon Attribute Cache Miss");
                 }
+                return resolveAttributeValues(subjectId, resourceId, actionId, environmentId, attributeId, issuer,
+                        spName, spTenantDomain);
             }
-            if (isAbstractAttributeCachingEnabled && key != null) {
-                if (attributeValues != null && !attributeValues.isEmpty()) {
-                    abstractAttributeFinderCache.addToCache(tenantId, key, attributeValues);
+        };
+    }
+
+    private Set<String> resolveAttributeValues(String subjectId, String resourceId, String actionId,
+                                               String environmentId, URI attributeId, String issuer, String spName,
+                                               String spTenantDomain) throws Exception {
+
+        Set<String> attributeValues = getAttributeValues(subjectId, resourceId, actionId, environmentId,
+                attributeId.toString(), issuer);
+        // Resolve application roles.
+        if (isApplicationRoleAttribute(attributeId)) {
+            if (StringUtils.isNotBlank(spName) && StringUtils.isNotBlank(spTenantDomain)) {
+                Set<String> roleNames = getAssociatedRolesOfApplication(spName, spTenantDomain);
+                if (roleNames != null && !roleNames.isEmpty() && attributeValues != null) {
+                    Set<String> applicationRoles = new HashSet<String>();
+                    for (String attributeValue : attributeValues) {
+                        if (roleNames.contains(attributeValue)) {
+                            applicationRoles.add(attributeValue);
+                        }
+                    }
+                    attributeValues = applicationRoles;
                 }
             }
-        } else {
-            if (log.isDebugEnabled()) {
-                log.debug("Carbon Attribute Cache Hit");
-            }
         }
-
         return attributeValues;
+    }
+
+    private boolean isApplicationRoleAttribute(URI attributeId) {
 
+        return UserCoreConstants.INTERNAL_ROLES_CLAIM.equals(attributeId.toString()) &&
+                !CarbonConstants.ENABLE_LEGACY_AUTHZ_RUNTIME;
     }
 
     @Override
@@ -210,7 +240,7 @@ public abstract class AbstractPIPAttributeFinder implements PIPAttributeFinder {
                         //ignore
                     }
                 }
-                abstractAttributeFinderCache = new PIPAbstractAttributeCache(attributeCachingInterval);
+                abstractAttributeFinderCache = new PIPAbstractAttributeCache(attributeCachingInterval, properties);
                 isAbstractAttributeCachingEnabled = true;
             }
         } else {
@@ -221,7 +251,8 @@ public abstract class AbstractPIPAttributeFinder implements PIPAttributeFinder {
     }
 
     /**
-     * Get roles associated with the application.
+     * Get roles associated with the application. The roles are cached per application until the application
+     * or a role is updated, or else for the application role caching interval.
      *
      * @param spName         Service provider name.
      * @param spTenantDomain Service provider tenant domain.
@@ -230,6 +261,46 @@ public abstract class AbstractPIPAttributeFinder implements PIPAttributeFinder {
      */
     private Set<String> getAssociatedRolesOfApplication(String spName, String spTenantDomain) throws Exception {
 
+        int spTenantId = IdentityTenantUtil.getTenantId(spTenantDomain);
+        Set<String> roleNames = ApplicationRoleCache.getInstance().getRolesFromCache(spName, spTenantId,
+                getApplicationRoleCachingInterval());
+        if (roleNames == null) {
+            roleNames = getAssociatedRolesOfApplicationFromService(spName, spTenantDomain);
+            ApplicationRoleCache.getInstance().addToCache(spName, roleNames, spTenantId);
+        }
+        return roleNames;
+    }
+
+    /**
+     * Returns the interval in milliseconds for which the roles associated with an application are cached, read
+     * from the entitlement engine properties.
+     */
+    private long getApplicationRoleCachingInterval() {
+
+        if (applicationRoleCachingInterval < 0) {
+            long interval = DEFAULT_APPLICATION_ROLE_CACHING_INTERVAL;
+            Properties properties = EntitlementServiceComponent.getEntitlementConfig().getEngineProperties();
+            String cachingInterval = properties.getProperty(PDPConstants.APPLICATION_ROLE_CACHING_INTERVAL);
+            if (cachingInterval != null) {
+                try {
+                    interval = Long.parseLong(cachingInterval.trim());
+                } catch (Exception e) {
+                    //ignore
+                }
+                if (interval < 0) {
+                    log.warn("Invalid " + PDPConstants.APPLICATION_ROLE_CACHING_INTERVAL + " : " + interval +
+                            ", the default of " + DEFAULT_APPLICATION_ROLE_CACHING_INTERVAL + " seconds is used");
+                    interval = DEFAULT_APPLICATION_ROLE_CACHING_INTERVAL;
+                }
+            }
+            applicationRoleCachingInterval = interval * 1000;
+        }
+        return applicationRoleCachingInterval;
+    }
+
+    private Set<String> getAssociatedRolesOfApplicationFromService(String spName, String spTenantDomain)
+            throws Exception {
+
         ApplicationBasicInfo applicationBasicInfo = EntitlementConfigHolder.getInstance()
                 .getApplicationManagementService().getApplicationBasicInfoByName(spName, spTenantDomain);
         List<RoleV2> roles = EntitlementConfigHolder.getInstance()
@@ -295,6 +366,20 @@ public abstract class AbstractPIPAttributeFinder implements PIPAttributeFinder {
         return roleName;
     }
 
+    @Override
+    public Set<RequestAttribute> getRequestAttributeDependencies() {
+
+        Set<RequestAttribute> dependencies = new HashSet<RequestAttribute>();
+        dependencies.add(new RequestAttribute(XACMLConstants.SUBJECT_CATEGORY, PDPConstants.SUBJECT_ID_DEFAULT));
+        dependencies.add(new RequestAttribute(XACMLConstants.RESOURCE_CATEGORY, PDPConstants.RESOURCE_ID_DEFAULT));
+        dependencies.add(new RequestAttribute(XACMLConstants.ACTION_CATEGORY, PDPConstants.ACTION_ID_DEFAULT));
+        dependencies.add(new RequestAttribute(XACMLConstants.ENT_CATEGORY, PDPConstants.ENVIRONMENT_ID_DEFAULT));
+        dependencies.add(new RequestAttribute(PDPConstants.SERVICE_PROVIDER, PDPConstants.SERVICE_PROVIDER_NAME));
+        dependencies.add(new RequestAttribute(PDPConstants.SERVICE_PROVIDER,
+                PDPConstants.SERVICE_PROVIDER_TENANT_DOMAIN));
+        return dependencies;
+    }
+
     @Override
     public void clearCache() {
         if (abstractAttributeFinderCache != null) {
@@ -306,4 +391,13 @@ public abstract class AbstractPIPAttributeFinder implements PIPAttributeFinder {
     public void clearCache(String[] attributeId) {
     }
 
+    @Override
+    public void clearSubjectCache(Collection<String> subjects) {
+
+        if (abstractAttributeFinderCache != null) {
+            abstractAttributeFinderCache.clearCache(CarbonContext.getThreadLocalCarbonContext().getTenantId(),
+                    subjects);
+        }
+    }
+
 }
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2024, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.entitlement.pip;
+
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Attribute values resolved through the PIP attribute finders while evaluating a batch of requests. The
+ * requests of a batch are evaluated concurrently, and a lookup which is already in progress for another
+ * request of the batch is awaited instead of being repeated, so that a subject's roles and claims are
+ * fetched from the user store once per batch.
+ * <p/>
+ * The memo of the batch is bound to each thread evaluating a request of the batch.
+ */
+public class BatchAttributeMemo {
+
+    private static final ThreadLocal<BatchAttributeMemo> CURRENT = new ThreadLocal<BatchAttributeMemo>();
+
+    private final ConcurrentMap<PIPAttributeFinder, ConcurrentMap<String, FutureTask<Set<String>>>> values =
+            new ConcurrentHashMap<PIPAttributeFinder, ConcurrentMap<String, FutureTask<Set<String>>>>();
+
+    /**
+     * Binds the given memo to the current thread.
+     *
+     * @param memo memo of the batch
+     */
+    public static void bind(BatchAttributeMemo memo) {
+
+        CURRENT.set(memo);
+    }
+
+    /**
+     * Removes the memo bound to the current thread.
+     */
+    public static void unbind() {
+
+        CURRENT.remove();
+    }
+
+    /**
+     * @return memo bound to the current thread, or null if the thread does not evaluate a batch
+     */
+    public static BatchAttributeMemo getCurrent() {
+
+        return CURRENT.get();
+    }
+
+    /**
+     * Returns the attribute values of the given lookup, resolving them with the given loader if no request
+     * of the batch has resolved them yet. Failed lookups are not remembered.
+     *
+     * @param finder PIP attribute finder
+     * @param key    key of the lookup, built from the request attributes the finder depends on
+     * @param loader resolves the attribute values
+     * @return attribute values
+     * @throws Exception if the attribute values can not be resolved
+     */
+    public Set<String> getAttributeValues(PIPAttributeFinder finder, String key, Callable<Set<String>> loader)
+            throws Exception {
+
+        ConcurrentMap<String, FutureTask<Set<String>>> finderValues = values.get(finder);
+        if (finderValues == null) {
+            finderValues = new ConcurrentHashMap<String, FutureTask<Set<String>>>();
+            ConcurrentMap<String, FutureTask<Set<String>>> existing = values.putIfAbsent(finder, finderValues);
+            if (existing != null) {
+                finderValues = existing;
+            }
+        }
+
+        FutureTask<Set<String>> task = finderValues.get(key);
+        if (task == null) {
+            FutureTask<Set<String>> newTask = new FutureTask<Set<String>>(loader);
+            task = finderValues.putIfAbsent(key, newTask);
+            if (task == null) {
+                task = newTask;
+                task.run();
+            }
+        }
+
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            finderValues.remove(key, task);
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw (Error) cause;
+        }
+    }
+}
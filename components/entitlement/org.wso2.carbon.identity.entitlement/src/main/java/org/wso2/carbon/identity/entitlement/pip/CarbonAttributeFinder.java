@@ -25,31 +25,44 @@ import org.apache.commons.logging.LogFactory;
 import org.wso2.balana.ParsingException;
 import org.wso2.balana.attr.AttributeValue;
 import org.wso2.balana.attr.BagAttribute;
+import org.wso2.balana.attr.xacml3.AttributeDesignator;
 import org.wso2.balana.cond.EvaluationResult;
+import org.wso2.balana.ctx.AbstractRequestCtx;
 import org.wso2.balana.ctx.Attribute;
 import org.wso2.balana.ctx.EvaluationCtx;
 import org.wso2.balana.ctx.Status;
 import org.wso2.balana.finder.AttributeFinderModule;
 import org.wso2.balana.xacml3.Attributes;
+import org.wso2.carbon.context.CarbonContext;
+import org.wso2.carbon.context.PrivilegedCarbonContext;
 import org.wso2.carbon.identity.entitlement.EntitlementUtil;
 import org.wso2.carbon.identity.entitlement.PDPConstants;
 import org.wso2.carbon.identity.entitlement.cache.PIPAttributeCache;
 import org.wso2.carbon.identity.entitlement.internal.EntitlementServiceComponent;
+import org.wso2.carbon.identity.entitlement.pdp.DecisionCacheContext;
 import org.wso2.carbon.identity.entitlement.pdp.EntitlementEngine;
 
-import javax.xml.transform.TransformerException;
-import java.io.ByteArrayOutputStream;
-import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * CarbonAttributeFinder registers with sun-xacml engine as an AttributeFinderModule and delegate
@@ -63,6 +76,16 @@ public class CarbonAttributeFinder extends AttributeFinderModule {
     private Map<String, List<PIPAttributeFinder>> attrFinders = new HashMap<String, List<PIPAttributeFinder>>();
     private static final Log log = LogFactory.getLog(CarbonAttributeFinder.class);
     private PIPAttributeCache attributeFinderCache = null;
+    private PIPAttributeCacheKeyGenerator cacheKeyGenerator = new PIPAttributeCacheKeyGenerator();
+    private static final int DEFAULT_PREFETCH_THREADS = 16;
+    private static final long DEFAULT_PARALLEL_FINDER_TIMEOUT = 2000;
+    private static final long DEFAULT_PREFETCH_TIMEOUT = 2000;
+    private static volatile ExecutorService prefetchExecutor;
+    private Map<PIPAttributeFinder, PIPAttributeFinderGuard> attributeFinderGuards =
+            new HashMap<PIPAttributeFinder, PIPAttributeFinderGuard>();
+    private boolean parallelFinders;
+    private long parallelFinderTimeout = DEFAULT_PARALLEL_FINDER_TIMEOUT;
+    private long prefetchTimeout = DEFAULT_PREFETCH_TIMEOUT;
     protected int tenantId;
 
     public CarbonAttributeFinder(int tenantId) {
@@ -88,13 +111,24 @@ public class CarbonAttributeFinder extends AttributeFinderModule {
                     //ignore
                 }
             }
-            attributeFinderCache = new PIPAttributeCache(attributeCachingInterval);
+            attributeFinderCache = new PIPAttributeCache(attributeCachingInterval, properties);
         }
+        parallelFinders = Boolean.parseBoolean(properties.getProperty(PDPConstants.ATTRIBUTE_FINDERS_PARALLEL_ENABLE));
+        parallelFinderTimeout = getTimeout(properties, PDPConstants.ATTRIBUTE_FINDERS_PARALLEL_TIMEOUT,
+                DEFAULT_PARALLEL_FINDER_TIMEOUT);
+        prefetchTimeout = getTimeout(properties, PDPConstants.ATTRIBUTE_PREFETCH_TIMEOUT, DEFAULT_PREFETCH_TIMEOUT);
         // clear decision cache
         if (designators != null && !designators.isEmpty()) {
             Set<PIPAttributeFinder> pipAttributeFinders = designators.keySet();
             for (Iterator iterator = pipAttributeFinders.iterator(); iterator.hasNext(); ) {
                 PIPAttributeFinder pipAttributeFinder = (PIPAttributeFinder) iterator.next();
+                Properties finderProperties = designators.get(pipAttributeFinder);
+                if (PIPAttributeFinderGuard.isConfigured(finderProperties)) {
+                    String finderName = pipAttributeFinder.getModuleName() != null ?
+                            pipAttributeFinder.getModuleName() : pipAttributeFinder.getClass().getName();
+                    attributeFinderGuards.put(pipAttributeFinder,
+                            new PIPAttributeFinderGuard(finderName, finderProperties));
+                }
                 Set<String> attrs = pipAttributeFinder.getSupportedAttributes();
                 if (attrs != null) {
                     for (Iterator attrsIter = attrs.iterator(); attrsIter.hasNext(); ) {
@@ -138,67 +172,35 @@ public class CarbonAttributeFinder extends AttributeFinderModule {
 
         List<AttributeValue> attrBag = new ArrayList<AttributeValue>();
         // Get the list of attribute finders who are registered with this particular attribute.
-
-
-        List<PIPAttributeFinder> finders = null;
-
-        if (StringUtils.isNotBlank(category.toString())) {
-            finders = attrFinders.get(category.toString());
-            if (log.isDebugEnabled()) {
-                log.debug("No attribute designators defined for the category " + category.toString());
-            }
-        }
-
+        List<PIPAttributeFinder> finders = getAttributeFinders(attributeId, category);
         if (CollectionUtils.isEmpty(finders)) {
-            finders = attrFinders.get(attributeId.toString());
-            if (CollectionUtils.isEmpty(finders)) {
-                if (log.isDebugEnabled()) {
-                    log.debug("No attribute designators defined for the attribute " + attributeId.toString());
-                }
-                return new EvaluationResult(BagAttribute.createEmptyBag(attributeType));
-
-            }
+            return new EvaluationResult(BagAttribute.createEmptyBag(attributeType));
         }
 
-        try {
-
-            for (Iterator iterator = finders.iterator(); iterator.hasNext(); ) {
-                PIPAttributeFinder pipAttributeFinder = (PIPAttributeFinder) iterator.next();
-                if (log.isDebugEnabled()) {
-                    log.debug(String.format(
-                            "Finding attributes with the PIP attribute handler %1$s",
-                            pipAttributeFinder.getClass()));
-                }
+        PrefetchedAttributes prefetchedAttributes = PrefetchedAttributes.getCurrent(context);
+        BatchAttributeMemo memo = BatchAttributeMemo.getCurrent();
 
-                Set<String> attrs = null;
-                String key = null;
-
-                if (attributeFinderCache != null && !pipAttributeFinder.overrideDefaultCache()) {
-
-                    key = "[" + attributeType.toString() + "][" + attributeId.toString() + "][" + category.toString() +
-                            "][" + encodeContext(context) + "]";
-
-                    if (issuer != null) {
-                        key += "[" + issuer + "]";
-                    }
-
-                    if (key != null) {
-                        if (log.isDebugEnabled()) {
-                            log.debug("Retrieving attributes from cache, tenantId: " + tenantId + ", key: " + key);
-                        }
-                        attrs = attributeFinderCache.getFromCache(tenantId, key);
-                    }
-                }
+        try {
 
-                if (attrs == null) {
-                    attrs = pipAttributeFinder.getAttributeValues(attributeType, attributeId, category,
-                                                                  issuer, context);
-                    if (attributeFinderCache != null && key != null
-                        && !pipAttributeFinder.overrideDefaultCache()) {
-                        attributeFinderCache.addToCache(tenantId, key, attrs);
-                    }
+            for (PIPAttributeFinder pipAttributeFinder : finders) {
+                DecisionCacheContext.recordPIPDependencies(pipAttributeFinder.getRequestAttributeDependencies());
+            }
+            DecisionCacheContext.recordAttribute(attributeId.toString());
+
+            List<Set<String>> finderAttributes;
+            if (parallelFinders && finders.size() > 1) {
+                finderAttributes = resolveAttributeValuesConcurrently(finders, prefetchedAttributes, memo,
+                        attributeType, attributeId, issuer, category, context);
+            } else {
+                finderAttributes = new ArrayList<Set<String>>(finders.size());
+                for (PIPAttributeFinder pipAttributeFinder : finders) {
+                    finderAttributes.add(resolveAttributeValues(pipAttributeFinder, prefetchedAttributes, memo,
+                            attributeType, attributeId, issuer, category, context));
                 }
+            }
 
+            // values are merged in the order the finders are registered
+            for (Set<String> attrs : finderAttributes) {
                 if (attrs != null) {
                     for (Iterator iterAttr = attrs.iterator(); iterAttr.hasNext(); ) {
                         final String attr = (String) iterAttr.next();
@@ -233,7 +235,20 @@ public class CarbonAttributeFinder extends AttributeFinderModule {
             Status status = new Status(code,
                                        "Error while parsing attribute values from EvaluationCtx :" + e.getMessage());
             return new EvaluationResult(status);
+        } catch (PIPCallRejectedException e) {
+            // the attribute is missing only while the finder is unavailable, hence the decision is not cached
+            DecisionCacheContext.markNotCacheable();
+            // rejections are counted by the guard of the finder, hence not logged as errors
+            if (log.isDebugEnabled()) {
+                log.debug(e.getMessage());
+            }
+            ArrayList<String> code = new ArrayList<String>();
+            code.add(Status.STATUS_MISSING_ATTRIBUTE);
+            Status status = new Status(code, e.getMessage());
+            return new EvaluationResult(status);
         } catch (Exception e) {
+            // failed and timed out calls leave the attribute missing, hence the decision is not cached
+            DecisionCacheContext.markNotCacheable();
             log.error("Error while retrieving attribute values from PIP  attribute finder : ", e);
             ArrayList<String> code = new ArrayList<String>();
             code.add(Status.STATUS_MISSING_ATTRIBUTE);
@@ -244,6 +259,238 @@ public class CarbonAttributeFinder extends AttributeFinderModule {
         return new EvaluationResult(new BagAttribute(attributeType, attrBag));
     }
 
+    /**
+     * Resolves the attribute values through a single PIP attribute finder, from the prefetched attributes or
+     * the attribute lookups shared by the current batch of requests when available.
+     */
+    private Set<String> resolveAttributeValues(final PIPAttributeFinder pipAttributeFinder,
+                                               PrefetchedAttributes prefetchedAttributes, BatchAttributeMemo memo,
+                                               final URI attributeType, final URI attributeId, final String issuer,
+                                               final URI category, final EvaluationCtx context) throws Exception {
+
+        if (log.isDebugEnabled()) {
+            log.debug(String.format(
+                    "Finding attributes with the PIP attribute handler %1$s",
+                    pipAttributeFinder.getClass()));
+        }
+
+        if (prefetchedAttributes != null) {
+            Set<String> attrs = prefetchedAttributes.getAttributeValues(pipAttributeFinder,
+                    getPrefetchKey(attributeType, attributeId, category, issuer));
+            if (attrs != null) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Prefetched attribute values are used for the attribute " + attributeId);
+                }
+                return attrs;
+            }
+        }
+
+        String memoKey = memo != null ? getMemoKey(pipAttributeFinder, attributeType, attributeId, category,
+                issuer, context) : null;
+        if (memoKey != null) {
+            return memo.getAttributeValues(pipAttributeFinder, memoKey, new Callable<Set<String>>() {
+                @Override
+                public Set<String> call() throws Exception {
+                    return getAttributeValues(pipAttributeFinder, attributeType, attributeId, issuer, category,
+                            context);
+                }
+            });
+        }
+        return getAttributeValues(pipAttributeFinder, attributeType, attributeId, issuer, category, context);
+    }
+
+    /**
+     * Resolves the attribute values through all the given PIP attribute finders concurrently, so that the
+     * latency is bound by the slowest finder instead of the sum of the finders. The first finder is called by
+     * the evaluating thread, as are the finders which the prefetch executor has not started, so that no finder
+     * waits in the queue behind the lookups of other evaluations. The values of each finder are returned in the
+     * order of the finders. Finders which do not return within the parallel finder timeout, counted once for
+     * all the finders, are cancelled and left out, and the decision is not cached. A failure of any finder
+     * fails the lookup, as it does when the finders are called one after another.
+     */
+    private List<Set<String>> resolveAttributeValuesConcurrently(List<PIPAttributeFinder> finders,
+                                                                 final PrefetchedAttributes prefetchedAttributes,
+                                                                 final BatchAttributeMemo memo,
+                                                                 final URI attributeType, final URI attributeId,
+                                                                 final String issuer, final URI category,
+                                                                 final EvaluationCtx context) throws Exception {
+
+        final String tenantDomain = CarbonContext.getThreadLocalCarbonContext().getTenantDomain();
+        List<Callable<Set<String>>> calls = new ArrayList<Callable<Set<String>>>(finders.size());
+        for (final PIPAttributeFinder finder : finders) {
+            calls.add(new Callable<Set<String>>() {
+                @Override
+                public Set<String> call() throws Exception {
+
+                    PrivilegedCarbonContext.startTenantFlow();
+                    PrivilegedCarbonContext carbonContext = PrivilegedCarbonContext.getThreadLocalCarbonContext();
+                    carbonContext.setTenantId(tenantId);
+                    carbonContext.setTenantDomain(tenantDomain);
+                    try {
+                        return resolveAttributeValues(finder, prefetchedAttributes, memo, attributeType,
+                                attributeId, issuer, category, context);
+                    } finally {
+                        PrivilegedCarbonContext.endTenantFlow();
+                    }
+                }
+            });
+        }
+
+        List<FutureTask<Set<String>>> futures;
+        try {
+            futures = ConcurrentCalls.call(getPrefetchExecutor(), calls, parallelFinderTimeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+
+        List<Set<String>> finderAttributes = new ArrayList<Set<String>>(finders.size());
+        for (int i = 0; i < futures.size(); i++) {
+            FutureTask<Set<String>> future = futures.get(i);
+            if (future.isCancelled()) {
+                DecisionCacheContext.markNotCacheable();
+                log.warn("PIP attribute finder " + finders.get(i).getModuleName() + " did not resolve the " +
+                        "attribute " + attributeId + " within " + parallelFinderTimeout + " ms, hence its " +
+                        "values are left out");
+                finderAttributes.add(null);
+                continue;
+            }
+            try {
+                finderAttributes.add(future.get());
+            } catch (ExecutionException e) {
+                // the other finders are completed or cancelled by now
+                if (e.getCause() instanceof Exception) {
+                    throw (Exception) e.getCause();
+                }
+                throw e;
+            }
+        }
+        return finderAttributes;
+    }
+
+    /**
+     * Resolves the given attributes concurrently through the PIP attribute finders, before the policy which
+     * designates them is evaluated. Attributes which are carried by the request are not resolved. The resolved
+     * values are served to the evaluation of the current thread, so that the latency of the evaluation is
+     * bound by the slowest lookup instead of the sum of the lookups. Lookups which fail, or which do not complete
+     * within the prefetch timeout, are left to be resolved again while evaluating the policy.
+     *
+     * @param designators attribute designators of the policy which is about to be evaluated
+     * @param context     EvaluationCtx which encapsulates the XACML request
+     */
+    public void prefetchAttributes(List<AttributeDesignator> designators, final EvaluationCtx context) {
+
+        Set<RequestAttribute> requestAttributes = new HashSet<RequestAttribute>();
+        Set<Attributes> attributesSet = context.getRequestCtx().getAttributesSet();
+        if (attributesSet != null) {
+            for (Attributes attributes : attributesSet) {
+                if (attributes.getCategory() == null || attributes.getAttributes() == null) {
+                    continue;
+                }
+                for (Attribute attribute : attributes.getAttributes()) {
+                    requestAttributes.add(new RequestAttribute(attributes.getCategory().toString(),
+                            attribute.getId().toString()));
+                }
+            }
+        }
+
+        final PrefetchedAttributes prefetchedAttributes = new PrefetchedAttributes(context);
+        List<Callable<Void>> lookups = new ArrayList<Callable<Void>>();
+        Set<String> keys = new HashSet<String>();
+        for (final AttributeDesignator designator : designators) {
+            if (requestAttributes.contains(new RequestAttribute(designator.getCategory().toString(),
+                    designator.getId().toString()))) {
+                continue;
+            }
+            List<PIPAttributeFinder> finders = getAttributeFinders(designator.getId(), designator.getCategory());
+            if (CollectionUtils.isEmpty(finders)) {
+                continue;
+            }
+            final String key = getPrefetchKey(designator.getType(), designator.getId(), designator.getCategory(),
+                    designator.getIssuer());
+            if (!keys.add(key)) {
+                continue;
+            }
+            for (final PIPAttributeFinder finder : finders) {
+                lookups.add(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+
+                        prefetchedAttributes.addAttributeValues(finder, key, getAttributeValues(finder,
+                                designator.getType(), designator.getId(), designator.getIssuer(),
+                                designator.getCategory(), context));
+                        return null;
+                    }
+                });
+            }
+        }
+        if (lookups.size() < 2) {
+            // nothing to gain from resolving a single attribute ahead of the evaluation
+            return;
+        }
+
+        final String tenantDomain = CarbonContext.getThreadLocalCarbonContext().getTenantDomain();
+        List<Callable<Void>> calls = new ArrayList<Callable<Void>>(lookups.size());
+        for (final Callable<Void> lookup : lookups) {
+            calls.add(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+
+                    PrivilegedCarbonContext.startTenantFlow();
+                    PrivilegedCarbonContext carbonContext = PrivilegedCarbonContext.getThreadLocalCarbonContext();
+                    carbonContext.setTenantId(tenantId);
+                    carbonContext.setTenantDomain(tenantDomain);
+                    try {
+                        return lookup.call();
+                    } finally {
+                        PrivilegedCarbonContext.endTenantFlow();
+                    }
+                }
+            });
+        }
+
+        List<FutureTask<Void>> futures;
+        try {
+            futures = ConcurrentCalls.call(getPrefetchExecutor(), calls, prefetchTimeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        for (FutureTask<Void> future : futures) {
+            if (future.isCancelled()) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Attribute prefetching did not complete within " + prefetchTimeout + " ms, the " +
+                            "attribute is resolved while evaluating the policy");
+                }
+                continue;
+            }
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Error while prefetching attribute values, the attribute is resolved while " +
+                            "evaluating the policy", e.getCause());
+                }
+            }
+        }
+
+        if (!prefetchedAttributes.isEmpty()) {
+            PrefetchedAttributes.bind(prefetchedAttributes);
+        }
+    }
+
+    /**
+     * Removes the attribute values prefetched for the evaluation of the current thread. Called once the
+     * evaluation is completed, so that the values are not retained by the thread.
+     */
+    public static void clearPrefetchedAttributes() {
+
+        PrefetchedAttributes.unbind();
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -290,34 +537,189 @@ public class CarbonAttributeFinder extends AttributeFinderModule {
     public void clearAttributeCache() {
         if (attributeFinderCache != null) {
             attributeFinderCache.clearCache();
-            // clear decision cache
-            EntitlementEngine.getInstance().clearDecisionCache();
+            // evict the decisions which depend on the PIP attributes
+            EntitlementEngine.getInstance().invalidateDecisionCache(null);
+        }
+    }
+
+    /**
+     * Clears the cached attributes of the given subjects, and evicts the decisions which depend on them.
+     *
+     * @param subjects user names of the updated users
+     */
+    public void clearAttributeCache(Collection<String> subjects) {
+
+        if (attributeFinderCache != null) {
+            attributeFinderCache.clearCache(tenantId, subjects);
+        }
+        EntitlementEngine.getInstance().invalidateSubjectDecisionCache(subjects);
+    }
+
+    /**
+     * Returns the PIP attribute finders registered for the category of the attribute or else, for the
+     * attribute itself.
+     */
+    private List<PIPAttributeFinder> getAttributeFinders(URI attributeId, URI category) {
+
+        List<PIPAttributeFinder> finders = null;
+
+        if (StringUtils.isNotBlank(category.toString())) {
+            finders = attrFinders.get(category.toString());
+            if (log.isDebugEnabled()) {
+                log.debug("No attribute designators defined for the category " + category.toString());
+            }
+        }
+
+        if (CollectionUtils.isEmpty(finders)) {
+            finders = attrFinders.get(attributeId.toString());
+            if (CollectionUtils.isEmpty(finders) && log.isDebugEnabled()) {
+                log.debug("No attribute designators defined for the attribute " + attributeId.toString());
+            }
         }
+        return finders;
+    }
+
+    private long getTimeout(Properties properties, String name, long defaultTimeout) {
+
+        String value = properties.getProperty(name);
+        if (value != null) {
+            try {
+                long timeout = Long.parseLong(value.trim());
+                if (timeout > 0) {
+                    return timeout;
+                }
+                log.warn("Invalid " + name + " : " + timeout + ", the default of " + defaultTimeout + " ms is used");
+            } catch (Exception e) {
+                //ignore
+            }
+        }
+        return defaultTimeout;
+    }
+
+    private String getPrefetchKey(URI attributeType, URI attributeId, URI category, String issuer) {
+
+        return "[" + attributeType + "][" + attributeId + "][" + category + "][" + issuer + "]";
     }
 
     /**
-     * Converts DOM object to String. This is a helper method for creating cache key
+     * Returns the executor shared by the attribute prefetching of all tenants. The number of threads is read
+     * from the entitlement engine properties. The queue is bound to the number of threads, and the lookups
+     * which the executor does not accept are made by the evaluating thread.
      *
-     * @param evaluationCtx EvaluationCtx
-     * @return String Object
-     * @throws TransformerException Exception throws if fails
+     * @return prefetch executor
+     */
+    private static ExecutorService getPrefetchExecutor() {
+
+        if (prefetchExecutor == null) {
+            synchronized (CarbonAttributeFinder.class) {
+                if (prefetchExecutor == null) {
+                    int threads = DEFAULT_PREFETCH_THREADS;
+                    Properties properties = EntitlementServiceComponent.getEntitlementConfig().getEngineProperties();
+                    String prefetchThreads = properties.getProperty(PDPConstants.ATTRIBUTE_PREFETCH_THREADS);
+                    if (prefetchThreads != null) {
+                        try {
+                            threads = Math.max(1, Integer.parseInt(prefetchThreads.trim()));
+                        } catch (Exception e) {
+                            //ignore
+                        }
+                    }
+                    ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                            new ArrayBlockingQueue<Runnable>(threads), new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable, "CarbonAttributeFinder-prefetch");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+                    executor.allowCoreThreadTimeOut(true);
+                    prefetchExecutor = executor;
+                }
+            }
+        }
+        return prefetchExecutor;
+    }
+
+    /**
+     * Resolves the attribute values through the given PIP attribute finder, using the attribute cache when
+     * it is enabled. Calls to the finder are made within the limits of its guard, if any.
      */
-    private String encodeContext(EvaluationCtx evaluationCtx) throws TransformerException {
-        OutputStream stream = new ByteArrayOutputStream();
-        evaluationCtx.getRequestCtx().encode(stream);
-        String rowContext = stream.toString();
-        String contextWithAttributeValues = rowContext + "][";
-
-        StringBuilder builder = new StringBuilder();
-        for (Attributes attributes : evaluationCtx.getRequestCtx().getAttributesSet()) {
-            builder.append("<Attributes ").append(">");
-            for (Attribute attribute : attributes.getAttributes()) {
-                attribute.encode(builder);
+    private Set<String> getAttributeValues(final PIPAttributeFinder pipAttributeFinder, final URI attributeType,
+                                           final URI attributeId, final String issuer, final URI category,
+                                           final EvaluationCtx context) throws Exception {
+
+        if (attributeFinderCache != null && !pipAttributeFinder.overrideDefaultCache()) {
+
+            Set<RequestAttribute> keyAttributes = pipAttributeFinder.getCacheKeyAttributes();
+            String key = cacheKeyGenerator.generateKey(pipAttributeFinder, attributeType, attributeId, category,
+                    issuer, keyAttributes, context.getRequestCtx());
+            String subject = cacheKeyGenerator.getSubject(keyAttributes, context.getRequestCtx());
+
+            if (log.isDebugEnabled()) {
+                log.debug("Retrieving attributes from cache, tenantId: " + tenantId + ", key: " + key);
             }
-            builder.append("</Attributes>");
+            // the attributes are reloaded in the background with the request alone, as the evaluation is over
+            final AbstractRequestCtx request = context.getRequestCtx();
+            return attributeFinderCache.getFromCache(tenantId, key, subject, new Callable<Set<String>>() {
+                @Override
+                public Set<String> call() throws Exception {
+                    return callAttributeFinder(pipAttributeFinder, attributeType, attributeId, issuer, category,
+                            context);
+                }
+            }, new Callable<Set<String>>() {
+                @Override
+                public Set<String> call() throws Exception {
+                    return callAttributeFinder(pipAttributeFinder, attributeType, attributeId, issuer, category,
+                            EntitlementEngine.getInstance().getEvaluationCtx(request));
+                }
+            });
         }
-        contextWithAttributeValues += builder.toString();
 
-        return contextWithAttributeValues;
+        return callAttributeFinder(pipAttributeFinder, attributeType, attributeId, issuer, category, context);
+    }
+
+    private Set<String> callAttributeFinder(final PIPAttributeFinder pipAttributeFinder, final URI attributeType,
+                                            final URI attributeId, final String issuer, final URI category,
+                                            final EvaluationCtx context) throws Exception {
+
+        PIPAttributeFinderGuard guard = attributeFinderGuards.get(pipAttributeFinder);
+        if (guard == null) {
+            return pipAttributeFinder.getAttributeValues(attributeType, attributeId, category, issuer, context);
+        }
+        return guard.call(new Callable<Set<String>>() {
+            @Override
+            public Set<String> call() throws Exception {
+                return pipAttributeFinder.getAttributeValues(attributeType, attributeId, category, issuer,
+                        context);
+            }
+        });
+    }
+
+    /**
+     * Returns the guards of the PIP attribute finders which have call limits configured, which keep the call
+     * counts, failure counts and latency of each finder.
+     *
+     * @return guards of the PIP attribute finders
+     */
+    public Map<PIPAttributeFinder, PIPAttributeFinderGuard> getAttributeFinderGuards() {
+
+        return Collections.unmodifiableMap(attributeFinderGuards);
+    }
+
+    /**
+     * Builds the key of an attribute lookup within a batch of requests. Requests which carry the same
+     * values for the request attributes the PIP attribute finder depends on share the lookup.
+     *
+     * @return key of the lookup, or null if the request attribute dependencies of the finder are not known
+     */
+    private String getMemoKey(PIPAttributeFinder pipAttributeFinder, URI attributeType, URI attributeId,
+                              URI category, String issuer, EvaluationCtx context) {
+
+        Set<RequestAttribute> dependencies = pipAttributeFinder.getRequestAttributeDependencies();
+        if (dependencies == null) {
+            return null;
+        }
+        return cacheKeyGenerator.generateKey(pipAttributeFinder, attributeType, attributeId, category, issuer,
+                dependencies, context.getRequestCtx());
     }
 }
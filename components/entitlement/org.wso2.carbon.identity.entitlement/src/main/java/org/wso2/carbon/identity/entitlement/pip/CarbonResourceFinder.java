@@ -20,7 +20,6 @@ package org.wso2.carbon.identity.entitlement.pip;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.w3c.dom.Node;
 import org.wso2.balana.attr.AttributeValue;
 import org.wso2.balana.ctx.EvaluationCtx;
 import org.wso2.balana.finder.ResourceFinderModule;
@@ -28,39 +27,32 @@ import org.wso2.balana.finder.ResourceFinderResult;
 import org.wso2.carbon.identity.entitlement.EntitlementException;
 import org.wso2.carbon.identity.entitlement.EntitlementUtil;
 import org.wso2.carbon.identity.entitlement.PDPConstants;
-import org.wso2.carbon.identity.entitlement.cache.EntitlementBaseCache;
-import org.wso2.carbon.identity.entitlement.cache.IdentityCacheEntry;
-import org.wso2.carbon.identity.entitlement.cache.IdentityCacheKey;
 import org.wso2.carbon.identity.entitlement.internal.EntitlementServiceComponent;
 
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-import java.io.StringWriter;
-import java.util.Arrays;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * CarbonResourceFinder implements the ResourceFinderModule in the sum-xacml. This class would find
  * children and descendant resources in the Registry resources which is running on the WSO2 Identity
- * Server
+ * Server. When resource caching is enabled, the resources returned by each finder are kept in a resource
+ * hierarchy index keyed by the parent resource, which serves the subtrees of loaded resources from memory.
  */
 
 public class CarbonResourceFinder extends ResourceFinderModule {
 
     private static final Log log = LogFactory.getLog(CarbonResourceFinder.class);
+    private static final long DEFAULT_RESOURCE_CACHING_INTERVAL = 900;
     boolean isResourceCachingEnabled = false;
     private int tenantId;
     private Set<PIPResourceFinder> resourceFinders = new HashSet<PIPResourceFinder>();
-    //private Cache<IdentityCacheKey,IdentityCacheEntry> resourceCache = null;
-    private EntitlementBaseCache<IdentityCacheKey, IdentityCacheEntry> resourceCache = null;
+    private ConcurrentMap<PIPResourceFinder, ResourceHierarchyIndex> resourceIndexes =
+            new ConcurrentHashMap<PIPResourceFinder, ResourceHierarchyIndex>();
+    private long resourceCachingInterval = DEFAULT_RESOURCE_CACHING_INTERVAL;
 
     public CarbonResourceFinder(int tenantId) {
         this.tenantId = tenantId;
@@ -78,8 +70,14 @@ public class CarbonResourceFinder extends ResourceFinderModule {
         }
         Properties properties = EntitlementServiceComponent.getEntitlementConfig().getEngineProperties();
         if ("true".equals(properties.getProperty(PDPConstants.RESOURCE_CACHING))) {
-            resourceCache = EntitlementUtil
-                    .getCommonCache(PDPConstants.PIP_RESOURCE_CACHE);
+            String cacheInterval = properties.getProperty(PDPConstants.RESOURCE_CACHING_INTERVAL);
+            if (cacheInterval != null) {
+                try {
+                    resourceCachingInterval = Long.parseLong(cacheInterval.trim());
+                } catch (Exception e) {
+                    //ignore
+                }
+            }
             isResourceCachingEnabled = true;
         }
     }
@@ -101,34 +99,28 @@ public class CarbonResourceFinder extends ResourceFinderModule {
         ResourceFinderResult resourceFinderResult = null;
         Set<AttributeValue> resources = null;
         String dataType = parentResourceId.getType().toString();
+        String parentResource = parentResourceId.encode();
 
         for (PIPResourceFinder finder : resourceFinders) {
             try {
                 Set<String> resourceNames = null;
                 if (isResourceCachingEnabled && !finder.overrideDefaultCache()) {
-                    IdentityCacheKey cacheKey = null;
-                    String key = PDPConstants.RESOURCE_DESCENDANTS + parentResourceId.encode() +
-                            domToString(context.getRequestRoot());
-                    cacheKey = new IdentityCacheKey(tenantId, key);
-                    IdentityCacheEntry cacheEntry = (IdentityCacheEntry) resourceCache.getValueFromCache(cacheKey);
-                    if (cacheEntry != null) {
-                        String[] values = cacheEntry.getCacheEntryArray();
-                        resourceNames = new HashSet<String>(Arrays.asList(values));
+                    ResourceHierarchyIndex index = getResourceIndex(finder);
+                    long generation = index.getGeneration();
+                    resourceNames = index.getDescendants(parentResource);
+                    if (resourceNames != null) {
                         if (log.isDebugEnabled()) {
                             log.debug("Carbon Resource Cache Hit");
                         }
-                    }
-
-                    if (resourceNames != null) {
-                        resourceNames = finder.findDescendantResources(parentResourceId.encode(), context);
+                    } else {
+                        resourceNames = finder.findDescendantResources(parentResource, context);
                         if (log.isDebugEnabled()) {
                             log.debug("Carbon Resource Cache Miss");
                         }
-                        cacheEntry = new IdentityCacheEntry(resourceNames.toArray(new String[resourceNames.size()]));
-                        resourceCache.addToCache(cacheKey, cacheEntry);
+                        index.addDescendants(parentResource, resourceNames, generation);
                     }
                 } else {
-                    resourceNames = finder.findDescendantResources(parentResourceId.encode(), context);
+                    resourceNames = finder.findDescendantResources(parentResource, context);
                 }
 
                 if (resourceNames != null && !resourceNames.isEmpty()) {
@@ -139,8 +131,6 @@ public class CarbonResourceFinder extends ResourceFinderModule {
                 }
             } catch (EntitlementException e) {
                 log.error("Error while finding descendant resources", e);
-            } catch (TransformerException e) {
-                log.error("Error while finding descendant resources", e);
             } catch (Exception e) {
                 log.error("Error while finding descendant resources", e);
             }
@@ -161,46 +151,28 @@ public class CarbonResourceFinder extends ResourceFinderModule {
         ResourceFinderResult resourceFinderResult = null;
         Set<AttributeValue> resources = null;
         String dataType = parentResourceId.getType().toString();
+        String parentResource = parentResourceId.encode();
 
         for (PIPResourceFinder finder : resourceFinders) {
             try {
                 Set<String> resourceNames = null;
                 if (isResourceCachingEnabled && !finder.overrideDefaultCache()) {
-                    IdentityCacheKey cacheKey = null;
-                    String key = PDPConstants.RESOURCE_CHILDREN + parentResourceId.encode() +
-                            domToString(context.getRequestRoot());
-                    cacheKey = new IdentityCacheKey(tenantId, key);
-                    IdentityCacheEntry cacheEntry = (IdentityCacheEntry) resourceCache.getValueFromCache(cacheKey);
-                    if (cacheEntry != null) {
-                        String cacheEntryString = cacheEntry.getCacheEntry();
-                        String[] attributes = cacheEntryString.split(PDPConstants.ATTRIBUTE_SEPARATOR);
-                        if (attributes != null && attributes.length > 0) {
-                            List<String> list = Arrays.asList(attributes);
-                            resourceNames = new HashSet<String>(list);
-                        }
+                    ResourceHierarchyIndex index = getResourceIndex(finder);
+                    long generation = index.getGeneration();
+                    resourceNames = index.getChildren(parentResource);
+                    if (resourceNames != null) {
                         if (log.isDebugEnabled()) {
                             log.debug("Carbon Resource Cache Hit");
                         }
                     } else {
-                        resourceNames = finder.findChildResources(parentResourceId.encode(), context);
+                        resourceNames = finder.findChildResources(parentResource, context);
                         if (log.isDebugEnabled()) {
                             log.debug("Carbon Resource Cache Miss");
                         }
-                        String cacheEntryString = "";
-                        if (resourceNames != null && resourceNames.size() > 0) {
-                            for (String attribute : resourceNames) {
-                                if (cacheEntryString.equals("")) {
-                                    cacheEntryString = attribute;
-                                } else {
-                                    cacheEntryString = cacheEntryString + PDPConstants.ATTRIBUTE_SEPARATOR + attribute;
-                                }
-                            }
-                        }
-                        cacheEntry = new IdentityCacheEntry(cacheEntryString);
-                        resourceCache.addToCache(cacheKey, cacheEntry);
+                        index.addChildren(parentResource, resourceNames, generation);
                     }
                 } else {
-                    resourceNames = finder.findChildResources(parentResourceId.encode(), context);
+                    resourceNames = finder.findChildResources(parentResource, context);
                 }
 
                 if (resourceNames != null && !resourceNames.isEmpty()) {
@@ -211,8 +183,6 @@ public class CarbonResourceFinder extends ResourceFinderModule {
                 }
             } catch (EntitlementException e) {
                 log.error("Error while finding child resources", e);
-            } catch (TransformerException e) {
-                log.error("Error while finding child resources", e);
             } catch (Exception e) {
                 log.error("Error while finding child resources", e);
             }
@@ -231,43 +201,55 @@ public class CarbonResourceFinder extends ResourceFinderModule {
      * Disables resource Caches
      */
     public void disableAttributeCache() {
-        resourceCache = null;
+        isResourceCachingEnabled = false;
+        resourceIndexes.clear();
     }
 
     /**
      * Enables resource caches
      */
     public void enableAttributeCache() {
-        resourceCache = EntitlementUtil
-                .getCommonCache(PDPConstants.PIP_RESOURCE_CACHE);
+        isResourceCachingEnabled = true;
     }
 
     /**
      * Clears attribute cache
      */
     public void clearAttributeCache() {
-        if (resourceCache != null) {
-            resourceCache.clear();
-            if (log.isDebugEnabled()) {
-                log.debug("Resource cache is cleared for tenant " + tenantId);
-            }
+        for (ResourceHierarchyIndex index : resourceIndexes.values()) {
+            index.clear();
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Resource cache is cleared for tenant " + tenantId);
         }
     }
 
     /**
-     * Converts DOM object to String. This is a helper method for creating cache key
+     * Clears the cached resources which may include the given resource, i.e. the descendants of its
+     * ancestors, the children of its parent and the resources below it. This is to be called when a resource
+     * is added, updated or deleted.
      *
-     * @param node Node value
-     * @return String Object
-     * @throws javax.xml.transform.TransformerException Exception throws if fails
+     * @param resourceId resource which is changed
      */
-    private String domToString(Node node) throws TransformerException {
-        TransformerFactory transFactory = TransformerFactory.newInstance();
-        Transformer transformer = transFactory.newTransformer();
-        StringWriter buffer = new StringWriter();
-        transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
-        transformer.transform(new DOMSource(node),
-                new StreamResult(buffer));
-        return buffer.toString();
+    public void invalidateResource(String resourceId) {
+        for (ResourceHierarchyIndex index : resourceIndexes.values()) {
+            index.invalidate(resourceId);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Cached resources of " + resourceId + " are cleared for tenant " + tenantId);
+        }
+    }
+
+    private ResourceHierarchyIndex getResourceIndex(PIPResourceFinder finder) {
+
+        ResourceHierarchyIndex index = resourceIndexes.get(finder);
+        if (index == null) {
+            index = new ResourceHierarchyIndex(resourceCachingInterval * 1000);
+            ResourceHierarchyIndex existing = resourceIndexes.putIfAbsent(finder, index);
+            if (existing != null) {
+                index = existing;
+            }
+        }
+        return index;
     }
 }
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2024, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.entitlement.pip;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Makes calls concurrently on an executor shared by all tenants, with the calling thread taking part. The
+ * first call is made on the calling thread, which then makes the calls the executor has not started yet, so
+ * that calls are never left waiting in the queue of a saturated executor. The calls made by the executor are
+ * awaited until a single deadline for all the calls, and those which are not completed by then are cancelled.
+ */
+final class ConcurrentCalls {
+
+    private ConcurrentCalls() {
+
+    }
+
+    /**
+     * Makes the given calls concurrently and waits for them.
+     *
+     * @param executor executor which makes the calls along with the calling thread
+     * @param calls    calls
+     * @param timeout  time in milliseconds to wait for the calls made by the executor
+     * @return futures of the calls in the order of the calls, which are either completed or cancelled
+     * @throws InterruptedException if the calling thread is interrupted while waiting, the calls are cancelled
+     */
+    static <V> List<FutureTask<V>> call(Executor executor, List<? extends Callable<V>> calls, long timeout)
+            throws InterruptedException {
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        List<FutureTask<V>> futures = new ArrayList<FutureTask<V>>(calls.size());
+        for (Callable<V> call : calls) {
+            FutureTask<V> future = new FutureTask<V>(call);
+            if (!futures.isEmpty()) {
+                try {
+                    executor.execute(future);
+                } catch (RejectedExecutionException e) {
+                    // made on the calling thread below
+                }
+            }
+            futures.add(future);
+        }
+
+        // a call which is already started or completed by the executor is not made again
+        for (FutureTask<V> future : futures) {
+            future.run();
+        }
+
+        try {
+            for (FutureTask<V> future : futures) {
+                if (future.isDone()) {
+                    continue;
+                }
+                try {
+                    future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    future.cancel(true);
+                } catch (ExecutionException e) {
+                    // the failure is reported through the future
+                }
+            }
+        } catch (InterruptedException e) {
+            for (FutureTask<V> future : futures) {
+                future.cancel(true);
+            }
+            throw e;
+        }
+        return futures;
+    }
+}
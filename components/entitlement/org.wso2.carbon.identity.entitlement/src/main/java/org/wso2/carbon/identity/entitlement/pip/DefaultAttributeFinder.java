@@ -21,6 +21,7 @@ package org.wso2.carbon.identity.entitlement.pip;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.wso2.balana.XACMLConstants;
 import org.wso2.balana.attr.AttributeValue;
 import org.wso2.balana.attr.BagAttribute;
 import org.wso2.balana.attr.StringAttribute;
@@ -29,6 +30,7 @@ import org.wso2.balana.ctx.EvaluationCtx;
 import org.wso2.carbon.context.CarbonContext;
 import org.wso2.carbon.identity.core.util.IdentityCoreConstants;
 import org.wso2.carbon.identity.entitlement.PDPConstants;
+import org.wso2.carbon.identity.entitlement.pdp.EntitlementEngine;
 import org.wso2.carbon.user.api.ClaimManager;
 import org.wso2.carbon.user.api.ClaimMapping;
 import org.wso2.carbon.user.api.UserStoreException;
@@ -36,10 +38,16 @@ import org.wso2.carbon.user.core.UserCoreConstants;
 import org.wso2.carbon.utils.multitenancy.MultitenantUtils;
 
 import java.net.URI;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 /**
  * DefaultAttributeFinder talks to the underlying user store to read user attributes.
@@ -53,6 +61,20 @@ public class DefaultAttributeFinder extends AbstractPIPAttributeFinder {
     private boolean mapFederatedUsersToLocal = false;
     private static final String MAP_FEDERATED_USERS_TO_LOCAL = "MapFederatedUsersToLocal";
     private static final String FEDERATED_USER_DOMAIN = "FEDERATED";
+    private static final String PREFETCH_CLAIMS = "PrefetchClaims";
+    private boolean prefetchClaims = false;
+
+    /**
+     * the evaluation whose subject attributes are being resolved by the current thread
+     */
+    private static final ThreadLocal<EvaluationCtx> CURRENT_EVALUATION = new ThreadLocal<EvaluationCtx>();
+
+    /**
+     * the claims prefetched for each evaluation, shared by the threads which resolve its attributes. Evaluations
+     * are weakly referenced, so that the claims are dropped with the evaluation.
+     */
+    private static final Map<EvaluationCtx, FutureTask<PrefetchedClaims>> PREFETCHED_CLAIMS =
+            Collections.synchronizedMap(new WeakHashMap<EvaluationCtx, FutureTask<PrefetchedClaims>>());
 
     /**
      * Loads all the claims defined under http://wso2.org/claims dialect.
@@ -62,6 +84,7 @@ public class DefaultAttributeFinder extends AbstractPIPAttributeFinder {
     public void init(Properties properties) throws Exception {
 
         mapFederatedUsersToLocal = Boolean.parseBoolean(properties.getProperty(MAP_FEDERATED_USERS_TO_LOCAL));
+        prefetchClaims = Boolean.parseBoolean(properties.getProperty(PREFETCH_CLAIMS));
         if (log.isDebugEnabled()) {
             log.debug("DefaultAttributeFinder is initialized successfully");
         }
@@ -102,13 +125,23 @@ public class DefaultAttributeFinder extends AbstractPIPAttributeFinder {
             }
         }
 
-        if (!StringUtils.equalsIgnoreCase(userTypeId, FEDERATED_USER_DOMAIN)) {
-            // If the user is not a federated user, user attributes should be be populated from local userstore.
-            values = super.getAttributeValues(attributeType, attributeId, category, issuer, evaluationCtx);
-        } else if (mapFederatedUsersToLocal) {
-            // If the user is federated and the MapFederatedToLocal config is enabled, then populate user attributes
-            // from userstore.
-            values = super.getAttributeValues(attributeType, attributeId, category, issuer, evaluationCtx);
+        boolean prefetch = prefetchClaims && XACMLConstants.SUBJECT_CATEGORY.equals(category.toString());
+        if (prefetch) {
+            CURRENT_EVALUATION.set(evaluationCtx);
+        }
+        try {
+            if (!StringUtils.equalsIgnoreCase(userTypeId, FEDERATED_USER_DOMAIN)) {
+                // If the user is not a federated user, user attributes should be be populated from local userstore.
+                values = super.getAttributeValues(attributeType, attributeId, category, issuer, evaluationCtx);
+            } else if (mapFederatedUsersToLocal) {
+                // If the user is federated and the MapFederatedToLocal config is enabled, then populate user
+                // attributes from userstore.
+                values = super.getAttributeValues(attributeType, attributeId, category, issuer, evaluationCtx);
+            }
+        } finally {
+            if (prefetch) {
+                CURRENT_EVALUATION.remove();
+            }
         }
         return values;
     }
@@ -150,6 +183,18 @@ public class DefaultAttributeFinder extends AbstractPIPAttributeFinder {
                 }
             }
         } else {
+            PrefetchedClaims prefetchedClaims = prefetchClaims ? getPrefetchedClaims(subjectId, attributeId) : null;
+            if (prefetchedClaims != null) {
+                String claimValue = prefetchedClaims.claimValues.get(attributeId);
+                if (claimValue == null && log.isDebugEnabled()) {
+                    log.debug(String.format("Request attribute %1$s not found", attributeId));
+                }
+                if (claimValue != null) {
+                    addClaimValues(values, claimValue, prefetchedClaims.claimSeparator);
+                }
+                return values;
+            }
+
             String claimValue = null;
             try {
                 claimValue = CarbonContext.getThreadLocalCarbonContext().getUserRealm().
@@ -172,25 +217,165 @@ public class DefaultAttributeFinder extends AbstractPIPAttributeFinder {
             }
             // Fix for multiple claim values
             if (claimValue != null) {
-                String claimSeparator = CarbonContext.getThreadLocalCarbonContext().getUserRealm().
-                        getRealmConfiguration().getUserStoreProperty(IdentityCoreConstants.MULTI_ATTRIBUTE_SEPARATOR);
-                if (StringUtils.isBlank(claimSeparator)) {
-                    claimSeparator = IdentityCoreConstants.MULTI_ATTRIBUTE_SEPARATOR_DEFAULT;
-                }
-                if (claimValue.contains(claimSeparator)) {
-                    StringTokenizer st = new StringTokenizer(claimValue, claimSeparator);
-                    while (st.hasMoreElements()) {
-                        String attributeValue = st.nextElement().toString();
-                        if (StringUtils.isNotBlank(attributeValue)) {
-                            values.add(attributeValue);
+                addClaimValues(values, claimValue, getClaimSeparator());
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Returns the claims of the subject prefetched for the current evaluation. On the first subject claim
+     * which is looked up in an evaluation, all the claims designated by the loaded policies are retrieved
+     * with a single user store call. Threads which look up the claims of the same evaluation concurrently wait
+     * for that call instead of making their own.
+     *
+     * @param subjectId   tenant aware user name of the subject
+     * @param attributeId claim which is looked up
+     * @return prefetched claims, or null if the claim can not be prefetched
+     * @throws UserStoreException if the claims can not be retrieved
+     */
+    private PrefetchedClaims getPrefetchedClaims(final String subjectId, String attributeId)
+            throws UserStoreException {
+
+        EvaluationCtx evaluationCtx = CURRENT_EVALUATION.get();
+        if (evaluationCtx == null) {
+            return null;
+        }
+
+        FutureTask<PrefetchedClaims> future = PREFETCHED_CLAIMS.get(evaluationCtx);
+        if (future == null) {
+            final Set<String> claimUris = getPrefetchableClaims();
+            if (!claimUris.contains(attributeId)) {
+                return null;
+            }
+            FutureTask<PrefetchedClaims> newFuture = new FutureTask<PrefetchedClaims>(
+                    new Callable<PrefetchedClaims>() {
+                        @Override
+                        public PrefetchedClaims call() throws Exception {
+                            return loadClaims(subjectId, claimUris);
                         }
-                    }
-                } else {
-                    values.add(claimValue);
+                    });
+            synchronized (PREFETCHED_CLAIMS) {
+                future = PREFETCHED_CLAIMS.get(evaluationCtx);
+                if (future == null) {
+                    PREFETCHED_CLAIMS.put(evaluationCtx, newFuture);
+                    future = newFuture;
                 }
             }
+            // a no-op if the claims are being loaded by another thread
+            future.run();
         }
-        return values;
+
+        PrefetchedClaims prefetchedClaims;
+        try {
+            prefetchedClaims = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            // the next lookup of the evaluation retries
+            synchronized (PREFETCHED_CLAIMS) {
+                if (PREFETCHED_CLAIMS.get(evaluationCtx) == future) {
+                    PREFETCHED_CLAIMS.remove(evaluationCtx);
+                }
+            }
+            if (e.getCause() instanceof UserStoreException) {
+                throw (UserStoreException) e.getCause();
+            }
+            throw new UserStoreException("Error while prefetching the claims of subjectId " + subjectId,
+                    e.getCause());
+        }
+        return prefetchedClaims.subjectId.equals(subjectId) && prefetchedClaims.claimUris.contains(attributeId) ?
+                prefetchedClaims : null;
+    }
+
+    /**
+     * Retrieves the given claims of the subject with a single user store call.
+     */
+    private PrefetchedClaims loadClaims(String subjectId, Set<String> claimUris) throws UserStoreException {
+
+        Map<String, String> claimValues = null;
+        try {
+            claimValues = CarbonContext.getThreadLocalCarbonContext().getUserRealm().getUserStoreManager()
+                    .getUserClaimValues(subjectId, claimUris.toArray(new String[claimUris.size()]), null);
+            if (log.isDebugEnabled()) {
+                log.debug(claimUris.size() + " claims prefetched for subjectId \'" + subjectId + "\'");
+            }
+        } catch (UserStoreException e) {
+            if (e.getMessage() != null && e.getMessage().startsWith(IdentityCoreConstants.USER_NOT_FOUND)) {
+                if (log.isDebugEnabled()) {
+                    log.debug("User: " + subjectId + " not found in user store");
+                }
+            } else {
+                throw e;
+            }
+        }
+        if (claimValues == null) {
+            claimValues = Collections.emptyMap();
+        }
+        return new PrefetchedClaims(subjectId, claimUris, claimValues, getClaimSeparator());
+    }
+
+    /**
+     * Returns the subject claims designated by the loaded policies, which can be retrieved together from the
+     * user store. Roles are resolved separately.
+     *
+     * @return claim URIs
+     */
+    private Set<String> getPrefetchableClaims() {
+
+        Set<String> claimUris = new HashSet<String>();
+        for (RequestAttribute designator : EntitlementEngine.getInstance().getPolicyDesignators()) {
+            String claimUri = designator.getAttributeId();
+            if (XACMLConstants.SUBJECT_CATEGORY.equals(designator.getCategory()) && claimUri != null &&
+                    claimUri.startsWith(UserCoreConstants.DEFAULT_CARBON_DIALECT) &&
+                    !UserCoreConstants.ClaimTypeURIs.ROLE.equals(claimUri) &&
+                    !UserCoreConstants.INTERNAL_ROLES_CLAIM.equals(claimUri)) {
+                claimUris.add(claimUri);
+            }
+        }
+        return claimUris;
+    }
+
+    private String getClaimSeparator() throws UserStoreException {
+
+        String claimSeparator = CarbonContext.getThreadLocalCarbonContext().getUserRealm().
+                getRealmConfiguration().getUserStoreProperty(IdentityCoreConstants.MULTI_ATTRIBUTE_SEPARATOR);
+        if (StringUtils.isBlank(claimSeparator)) {
+            claimSeparator = IdentityCoreConstants.MULTI_ATTRIBUTE_SEPARATOR_DEFAULT;
+        }
+        return claimSeparator;
+    }
+
+    private void addClaimValues(Set<String> values, String claimValue, String claimSeparator) {
+
+        if (claimValue.contains(claimSeparator)) {
+            StringTokenizer st = new StringTokenizer(claimValue, claimSeparator);
+            while (st.hasMoreElements()) {
+                String attributeValue = st.nextElement().toString();
+                if (StringUtils.isNotBlank(attributeValue)) {
+                    values.add(attributeValue);
+                }
+            }
+        } else {
+            values.add(claimValue);
+        }
+    }
+
+    /**
+     * User attributes only depend on the subject, the user type and, for application roles, the service
+     * provider of the request.
+     */
+    @Override
+    public Set<RequestAttribute> getRequestAttributeDependencies() {
+
+        Set<RequestAttribute> dependencies = new HashSet<RequestAttribute>();
+        dependencies.add(new RequestAttribute(XACMLConstants.SUBJECT_CATEGORY, PDPConstants.SUBJECT_ID_DEFAULT));
+        dependencies.add(new RequestAttribute(PDPConstants.USER_CATEGORY, PDPConstants.USER_TYPE_ID));
+        dependencies.add(new RequestAttribute(PDPConstants.SERVICE_PROVIDER, PDPConstants.SERVICE_PROVIDER_NAME));
+        dependencies.add(new RequestAttribute(PDPConstants.SERVICE_PROVIDER,
+                PDPConstants.SERVICE_PROVIDER_TENANT_DOMAIN));
+        return dependencies;
     }
 
     /*
@@ -211,4 +396,27 @@ public class DefaultAttributeFinder extends AbstractPIPAttributeFinder {
         }
         return supportedAttrs;
     }
+
+    /**
+     * Claims of a subject retrieved for an evaluation.
+     */
+    private static final class PrefetchedClaims {
+
+        private final String subjectId;
+
+        private final Set<String> claimUris;
+
+        private final Map<String, String> claimValues;
+
+        private final String claimSeparator;
+
+        private PrefetchedClaims(String subjectId, Set<String> claimUris, Map<String, String> claimValues,
+                                 String claimSeparator) {
+
+            this.subjectId = subjectId;
+            this.claimUris = claimUris;
+            this.claimValues = claimValues;
+            this.claimSeparator = claimSeparator;
+        }
+    }
 }
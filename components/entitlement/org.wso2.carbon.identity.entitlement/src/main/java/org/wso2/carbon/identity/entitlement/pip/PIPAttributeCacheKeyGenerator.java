@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2024, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.entitlement.pip;
+
+import org.wso2.balana.attr.AttributeValue;
+import org.wso2.balana.ctx.AbstractRequestCtx;
+import org.wso2.balana.ctx.Attribute;
+import org.wso2.balana.xacml3.Attributes;
+import org.wso2.carbon.identity.entitlement.PDPConstants;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Generates the keys of PIP attribute lookups. A key is built only from the looked up attribute, the PIP
+ * attribute finder and the values of the request attributes which the finder resolves the attribute from,
+ * so that requests of the same subject share the cached attribute values. If the finder does not declare
+ * those request attributes, the key is built from all the attributes of the request. The canonical form is hashed into
+ * a 128 bit fingerprint.
+ */
+public class PIPAttributeCacheKeyGenerator {
+
+    private static final String HASH_ALGORITHM = "MD5";
+
+    private static final char SEPARATOR = '\u0000';
+
+    private static final RequestAttribute SUBJECT_ID = new RequestAttribute(PDPConstants.SUBJECT_CATEGORY_URI,
+            PDPConstants.SUBJECT_ID_DEFAULT);
+
+    /**
+     * Generates the key of an attribute lookup.
+     *
+     * @param finder        PIP attribute finder which resolves the attribute
+     * @param attributeType data type of the attribute
+     * @param attributeId   attribute id
+     * @param category      category of the attribute
+     * @param issuer        issuer of the attribute, may be null
+     * @param keyAttributes request attributes which the finder resolves the attribute from, null if unknown
+     * @param requestCtx    Balana Object model for request
+     * @return key of the lookup
+     */
+    public String generateKey(PIPAttributeFinder finder, URI attributeType, URI attributeId, URI category,
+                              String issuer, Set<RequestAttribute> keyAttributes, AbstractRequestCtx requestCtx) {
+
+        List<String> keyValues = new ArrayList<String>();
+        Set<Attributes> attributesSet = requestCtx.getAttributesSet();
+        if (attributesSet != null && (keyAttributes == null || !keyAttributes.isEmpty())) {
+            for (Attributes attributes : attributesSet) {
+                if (attributes.getCategory() == null || attributes.getAttributes() == null) {
+                    continue;
+                }
+                String attributeCategory = attributes.getCategory().toString();
+                for (Attribute attribute : attributes.getAttributes()) {
+                    String keyAttributeId = attribute.getId().toString();
+                    if (keyAttributes == null ||
+                            keyAttributes.contains(new RequestAttribute(attributeCategory, keyAttributeId))) {
+                        keyValues.add(encodeAttribute(attributeCategory, keyAttributeId, attribute));
+                    }
+                }
+            }
+        }
+        Collections.sort(keyValues);
+
+        MessageDigest messageDigest = newDigest();
+        update(messageDigest, finder.getClass().getName());
+        update(messageDigest, String.valueOf(attributeType));
+        update(messageDigest, String.valueOf(attributeId));
+        update(messageDigest, String.valueOf(category));
+        update(messageDigest, String.valueOf(issuer));
+        for (String keyValue : keyValues) {
+            update(messageDigest, keyValue);
+        }
+        return Base64.getEncoder().withoutPadding().encodeToString(messageDigest.digest());
+    }
+
+    /**
+     * Returns the subject which the values of an attribute lookup are resolved for, i.e. the subject-id of the
+     * request when it is one of the key attributes of the lookup.
+     *
+     * @param keyAttributes request attributes which the finder resolves the attribute from, null if unknown
+     * @param requestCtx    Balana Object model for request
+     * @return subject-id, or null if the lookup does not belong to a single subject
+     */
+    public String getSubject(Set<RequestAttribute> keyAttributes, AbstractRequestCtx requestCtx) {
+
+        if ((keyAttributes != null && !keyAttributes.contains(SUBJECT_ID)) || requestCtx.getAttributesSet() == null) {
+            return null;
+        }
+        String subject = null;
+        for (Attributes attributes : requestCtx.getAttributesSet()) {
+            if (attributes.getCategory() == null || attributes.getAttributes() == null ||
+                    !SUBJECT_ID.getCategory().equals(attributes.getCategory().toString())) {
+                continue;
+            }
+            for (Attribute attribute : attributes.getAttributes()) {
+                if (!SUBJECT_ID.getAttributeId().equals(attribute.getId().toString()) ||
+                        attribute.getValues() == null) {
+                    continue;
+                }
+                for (AttributeValue value : attribute.getValues()) {
+                    if (subject != null && !subject.equals(value.encode())) {
+                        return null;
+                    }
+                    subject = value.encode();
+                }
+            }
+        }
+        return subject;
+    }
+
+    private String encodeAttribute(String category, String attributeId, Attribute attribute) {
+
+        List<String> values = new ArrayList<String>();
+        if (attribute.getValues() != null) {
+            for (AttributeValue value : attribute.getValues()) {
+                values.add(value.encode());
+            }
+        }
+        Collections.sort(values);
+
+        StringBuilder builder = new StringBuilder();
+        builder.append(category).append(SEPARATOR).append(attributeId).append(SEPARATOR)
+                .append(attribute.getType()).append(SEPARATOR).append(attribute.getIssuer());
+        for (String value : values) {
+            builder.append(SEPARATOR).append(value.length()).append(':').append(value);
+        }
+        return builder.toString();
+    }
+
+    private void update(MessageDigest messageDigest, String value) {
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        messageDigest.update(String.valueOf(bytes.length).getBytes(StandardCharsets.UTF_8));
+        messageDigest.update((byte) ':');
+        messageDigest.update(bytes);
+    }
+
+    private MessageDigest newDigest() {
+
+        try {
+            return MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support MD5
+            throw new IllegalStateException("Hash algorithm " + HASH_ALGORITHM + " is not available", e);
+        }
+    }
+}
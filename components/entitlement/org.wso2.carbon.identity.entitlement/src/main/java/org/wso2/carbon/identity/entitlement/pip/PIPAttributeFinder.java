@@ -21,6 +21,7 @@ package org.wso2.carbon.identity.entitlement.pip;
 import org.wso2.balana.ctx.EvaluationCtx;
 
 import java.net.URI;
+import java.util.Collection;
 import java.util.Properties;
 import java.util.Set;
 
@@ -83,6 +84,32 @@ public interface PIPAttributeFinder {
      */
     public boolean overrideDefaultCache();
 
+    /**
+     * Returns the request attributes which this module reads from the <code>EvaluationCtx</code> to
+     * resolve attribute values. The PDP uses this to find out whether a decision depends on a request
+     * attribute which is excluded from the decision cache key. A return value of null means that this
+     * module may depend on any request attribute.
+     *
+     * @return <code>Set</code> of request attributes, or null if unknown
+     */
+    public default Set<RequestAttribute> getRequestAttributeDependencies() {
+
+        return null;
+    }
+
+    /**
+     * Returns the request attributes whose values identify the attribute values resolved by this module,
+     * i.e. the attributes from which the key of the PIP attribute cache is built. By default, these are the
+     * request attribute dependencies of the module. A return value of null means that the values may depend
+     * on any request attribute, hence the key is built from all the attributes of the request.
+     *
+     * @return <code>Set</code> of request attributes, or null if unknown
+     */
+    public default Set<RequestAttribute> getCacheKeyAttributes() {
+
+        return getRequestAttributeDependencies();
+    }
+
     /**
      * Clears the entire cache.
      */
@@ -94,4 +121,15 @@ public interface PIPAttributeFinder {
      * @param attributeId attributeId that needs to be cleared
      */
     public void clearCache(String[] attributeId);
+
+    /**
+     * Clears only the cached attributes of the given subjects, when the users are updated in the user store.
+     * By default, the entire cache is cleared.
+     *
+     * @param subjects user names of the updated users
+     */
+    public default void clearSubjectCache(Collection<String> subjects) {
+
+        clearCache();
+    }
 }
@@ -0,0 +1,450 @@
+/*
+ * Copyright (c) 2024, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.entitlement.pip;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.context.CarbonContext;
+import org.wso2.carbon.context.PrivilegedCarbonContext;
+import org.wso2.carbon.identity.entitlement.EntitlementException;
+
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Guards the calls to a PIP attribute finder, so that a slow or failing attribute source can not block the
+ * evaluation threads. The following limits are read from the properties of the finder, and each one is
+ * disabled unless it is configured.
+ * <ul>
+ * <li><code>CallTimeout</code> - milliseconds to wait for a call. Calls are made on a separate thread when a
+ * timeout is configured</li>
+ * <li><code>MaxConcurrentCalls</code> - maximum number of calls in progress, including the calls which have
+ * timed out but not returned yet</li>
+ * <li><code>CircuitBreakerFailureRate</code> - percentage of failed calls, out of the last
+ * <code>CircuitBreakerWindowSize</code> calls (default 20), at which the finder is not called for
+ * <code>CircuitBreakerOpenInterval</code> milliseconds (default 30000). A single trial call is then allowed,
+ * which closes the circuit breaker if it succeeds</li>
+ * </ul>
+ * Calls which are rejected fail with a <code>PIPCallRejectedException</code> without calling the finder.
+ * The number of calls, failures, timeouts, rejections and the call latency are counted.
+ */
+public class PIPAttributeFinderGuard {
+
+    private static final Log log = LogFactory.getLog(PIPAttributeFinderGuard.class);
+
+    private static final String CALL_TIMEOUT = "CallTimeout";
+
+    private static final String MAX_CONCURRENT_CALLS = "MaxConcurrentCalls";
+
+    private static final String CIRCUIT_BREAKER_FAILURE_RATE = "CircuitBreakerFailureRate";
+
+    private static final String CIRCUIT_BREAKER_WINDOW_SIZE = "CircuitBreakerWindowSize";
+
+    private static final String CIRCUIT_BREAKER_OPEN_INTERVAL = "CircuitBreakerOpenInterval";
+
+    private static final int DEFAULT_WINDOW_SIZE = 20;
+
+    private static final long DEFAULT_OPEN_INTERVAL = 30000;
+
+    private static final int MAX_CALL_THREADS = 200;
+
+    private static final int ADMITTED = 0;
+
+    private static final int TRIAL = 1;
+
+    private static final int REJECTED = 2;
+
+    private static volatile ExecutorService callExecutor;
+
+    private String name;
+
+    private long callTimeout;
+
+    private Semaphore permits;
+
+    private int failureRate;
+
+    private long openInterval = DEFAULT_OPEN_INTERVAL;
+
+    /**
+     * outcomes of the last calls, true for a failure
+     */
+    private boolean[] window;
+
+    private int windowIndex;
+
+    private int windowCalls;
+
+    private int windowFailures;
+
+    private long openUntil;
+
+    private boolean trialCall;
+
+    private AtomicLong calls = new AtomicLong();
+
+    private AtomicLong failures = new AtomicLong();
+
+    private AtomicLong timeouts = new AtomicLong();
+
+    private AtomicLong bulkheadRejections = new AtomicLong();
+
+    private AtomicLong circuitBreakerRejections = new AtomicLong();
+
+    private AtomicLong totalLatency = new AtomicLong();
+
+    private AtomicLong maxLatency = new AtomicLong();
+
+    /**
+     * @param name       name of the guarded finder, used in log messages
+     * @param properties properties of the guarded finder
+     */
+    public PIPAttributeFinderGuard(String name, Properties properties) {
+
+        this.name = name;
+        callTimeout = getLong(properties, CALL_TIMEOUT, 0);
+        int maxConcurrentCalls = (int) getLong(properties, MAX_CONCURRENT_CALLS, 0);
+        if (maxConcurrentCalls > 0) {
+            permits = new Semaphore(maxConcurrentCalls);
+        }
+        failureRate = (int) Math.min(100, getLong(properties, CIRCUIT_BREAKER_FAILURE_RATE, 0));
+        if (failureRate > 0) {
+            window = new boolean[(int) Math.max(1, getLong(properties, CIRCUIT_BREAKER_WINDOW_SIZE,
+                    DEFAULT_WINDOW_SIZE))];
+            openInterval = getLong(properties, CIRCUIT_BREAKER_OPEN_INTERVAL, DEFAULT_OPEN_INTERVAL);
+        }
+    }
+
+    /**
+     * @param properties properties of a PIP attribute finder
+     * @return whether any limit is configured for the finder
+     */
+    public static boolean isConfigured(Properties properties) {
+
+        return properties != null && (getLong(properties, CALL_TIMEOUT, 0) > 0 ||
+                getLong(properties, MAX_CONCURRENT_CALLS, 0) > 0 ||
+                getLong(properties, CIRCUIT_BREAKER_FAILURE_RATE, 0) > 0);
+    }
+
+    /**
+     * Calls the finder within the configured limits.
+     *
+     * @param call call to the finder
+     * @return attribute values returned by the finder
+     * @throws PIPCallRejectedException if the call is rejected without calling the finder
+     * @throws Exception                if the call fails or times out
+     */
+    public Set<String> call(Callable<Set<String>> call) throws Exception {
+
+        int admission = admitCall();
+        if (admission == REJECTED) {
+            circuitBreakerRejections.incrementAndGet();
+            throw new PIPCallRejectedException("Circuit breaker of PIP attribute finder " + name + " is open");
+        }
+        if (permits != null && !permits.tryAcquire()) {
+            bulkheadRejections.incrementAndGet();
+            if (admission == TRIAL) {
+                releaseTrialCall();
+            }
+            throw new PIPCallRejectedException("Maximum number of concurrent calls to PIP attribute finder " +
+                    name + " is reached");
+        }
+
+        calls.incrementAndGet();
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            Set<String> values = callTimeout > 0 ? callWithTimeout(call) : callAndRelease(call);
+            failed = false;
+            return values;
+        } finally {
+            long latency = System.nanoTime() - start;
+            totalLatency.addAndGet(latency);
+            updateMaxLatency(latency);
+            if (failed) {
+                failures.incrementAndGet();
+            }
+            recordResult(admission == TRIAL, failed);
+        }
+    }
+
+    public String getName() {
+
+        return name;
+    }
+
+    public long getCalls() {
+
+        return calls.get();
+    }
+
+    public long getFailures() {
+
+        return failures.get();
+    }
+
+    public long getTimeouts() {
+
+        return timeouts.get();
+    }
+
+    public long getBulkheadRejections() {
+
+        return bulkheadRejections.get();
+    }
+
+    public long getCircuitBreakerRejections() {
+
+        return circuitBreakerRejections.get();
+    }
+
+    /**
+     * @return average call latency in milliseconds
+     */
+    public double getAverageLatency() {
+
+        long count = calls.get();
+        return count == 0 ? 0 : totalLatency.get() / (count * 1000000.0);
+    }
+
+    /**
+     * @return maximum call latency in milliseconds
+     */
+    public double getMaxLatency() {
+
+        return maxLatency.get() / 1000000.0;
+    }
+
+    public synchronized boolean isCircuitBreakerOpen() {
+
+        return openUntil > 0;
+    }
+
+    @Override
+    public String toString() {
+
+        return "PIP attribute finder " + name + " : calls " + getCalls() + ", failures " + getFailures() +
+                ", timeouts " + getTimeouts() + ", bulkhead rejections " + getBulkheadRejections() +
+                ", circuit breaker rejections " + getCircuitBreakerRejections() + ", average latency " +
+                getAverageLatency() + " ms, max latency " + getMaxLatency() + " ms";
+    }
+
+    private Set<String> callAndRelease(Callable<Set<String>> call) throws Exception {
+
+        try {
+            return call.call();
+        } finally {
+            if (permits != null) {
+                permits.release();
+            }
+        }
+    }
+
+    private Set<String> callWithTimeout(final Callable<Set<String>> call) throws Exception {
+
+        final int tenantId = CarbonContext.getThreadLocalCarbonContext().getTenantId();
+        final String tenantDomain = CarbonContext.getThreadLocalCarbonContext().getTenantDomain();
+        // claimed either by the call when it starts, or by the caller when the call times out before it starts,
+        // so that the permit is released exactly once
+        final AtomicBoolean claimed = new AtomicBoolean();
+        Future<Set<String>> future;
+        try {
+            future = getCallExecutor().submit(new Callable<Set<String>>() {
+                @Override
+                public Set<String> call() throws Exception {
+
+                    if (!claimed.compareAndSet(false, true)) {
+                        return null;
+                    }
+                    PrivilegedCarbonContext.startTenantFlow();
+                    PrivilegedCarbonContext carbonContext = PrivilegedCarbonContext.getThreadLocalCarbonContext();
+                    carbonContext.setTenantId(tenantId);
+                    carbonContext.setTenantDomain(tenantDomain);
+                    try {
+                        return callAndRelease(call);
+                    } finally {
+                        PrivilegedCarbonContext.endTenantFlow();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            if (permits != null) {
+                permits.release();
+            }
+            throw new PIPCallRejectedException("Maximum number of threads calling PIP attribute finders is " +
+                    "reached. Call to PIP attribute finder " + name + " is rejected");
+        }
+
+        try {
+            return future.get(callTimeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            timeouts.incrementAndGet();
+            abandon(future, claimed);
+            throw new EntitlementException("Call to PIP attribute finder " + name + " timed out after " +
+                    callTimeout + " ms");
+        } catch (InterruptedException e) {
+            abandon(future, claimed);
+            Thread.currentThread().interrupt();
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Cancels a call which is no longer waited for. If the call has started, the permit is held until the call
+     * returns, otherwise it is released here.
+     */
+    private void abandon(Future<Set<String>> future, AtomicBoolean claimed) {
+
+        future.cancel(true);
+        if (claimed.compareAndSet(false, true) && permits != null) {
+            permits.release();
+        }
+    }
+
+    private synchronized int admitCall() {
+
+        if (openUntil == 0) {
+            return ADMITTED;
+        }
+        if (trialCall || System.currentTimeMillis() < openUntil) {
+            return REJECTED;
+        }
+        trialCall = true;
+        return TRIAL;
+    }
+
+    private synchronized void releaseTrialCall() {
+
+        trialCall = false;
+    }
+
+    private synchronized void recordResult(boolean trial, boolean failed) {
+
+        if (window == null) {
+            return;
+        }
+        if (trial) {
+            trialCall = false;
+            if (failed) {
+                open();
+            } else {
+                openUntil = 0;
+                windowIndex = 0;
+                windowCalls = 0;
+                windowFailures = 0;
+                log.info("Circuit breaker of PIP attribute finder " + name + " is closed");
+            }
+            return;
+        }
+        if (openUntil > 0) {
+            // call which started before the circuit breaker opened
+            return;
+        }
+
+        if (windowCalls == window.length) {
+            if (window[windowIndex]) {
+                windowFailures--;
+            }
+        } else {
+            windowCalls++;
+        }
+        window[windowIndex] = failed;
+        if (failed) {
+            windowFailures++;
+        }
+        windowIndex = (windowIndex + 1) % window.length;
+
+        if (windowCalls == window.length && windowFailures * 100 >= failureRate * windowCalls) {
+            open();
+        }
+    }
+
+    private void open() {
+
+        openUntil = System.currentTimeMillis() + openInterval;
+        log.warn("Circuit breaker of PIP attribute finder " + name + " is open for " + openInterval + " ms. " +
+                this);
+    }
+
+    private void updateMaxLatency(long latency) {
+
+        long max = maxLatency.get();
+        while (latency > max && !maxLatency.compareAndSet(max, latency)) {
+            max = maxLatency.get();
+        }
+    }
+
+    private static long getLong(Properties properties, String name, long defaultValue) {
+
+        String value = properties.getProperty(name);
+        if (value != null) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (Exception e) {
+                //ignore
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Returns the executor shared by the calls of all guarded finders which have a call timeout. Calls which
+     * time out are left to return on their own, hence the number of threads is bounded, so that finders which
+     * ignore interrupts can not pile up threads. Calls are rejected when all the threads are busy.
+     *
+     * @return call executor
+     */
+    private static ExecutorService getCallExecutor() {
+
+        if (callExecutor == null) {
+            synchronized (PIPAttributeFinderGuard.class) {
+                if (callExecutor == null) {
+                    callExecutor = new ThreadPoolExecutor(0, MAX_CALL_THREADS, 60L, TimeUnit.SECONDS,
+                            new SynchronousQueue<Runnable>(), new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable, "PIPAttributeFinderGuard-call");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+                }
+            }
+        }
+        return callExecutor;
+    }
+}
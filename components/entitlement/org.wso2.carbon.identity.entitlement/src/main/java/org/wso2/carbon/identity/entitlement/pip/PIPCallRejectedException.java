@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2024, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.entitlement.pip;
+
+import org.wso2.carbon.identity.entitlement.EntitlementException;
+
+/**
+ * Thrown when a call to a PIP attribute finder is rejected without being made, because the finder has
+ * reached its maximum number of concurrent calls or its circuit breaker is open.
+ */
+public class PIPCallRejectedException extends EntitlementException {
+
+    private static final long serialVersionUID = -3841297735209563419L;
+
+    public PIPCallRejectedException(String message) {
+        super(message);
+    }
+}
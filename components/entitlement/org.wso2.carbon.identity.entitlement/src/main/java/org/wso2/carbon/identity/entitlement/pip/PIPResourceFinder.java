@@ -69,7 +69,9 @@ public interface PIPResourceFinder {
     public Set<String> findDescendantResources(String parentResourceId, EvaluationCtx context) throws Exception;
 
     /**
-     * This is to inform whether to ignore caching of descendant and child resources in carbon level
+     * This is to inform whether to ignore caching of descendant and child resources in carbon level. Resources
+     * are cached in carbon level against the parent resource only, hence finders whose resources depend on
+     * the rest of the request must ignore it.
      *
      * @return True/False
      */
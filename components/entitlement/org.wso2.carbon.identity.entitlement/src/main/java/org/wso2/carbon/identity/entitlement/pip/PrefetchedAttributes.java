@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2024, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.entitlement.pip;
+
+import org.wso2.balana.ctx.EvaluationCtx;
+
+import java.lang.ref.WeakReference;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Attribute values resolved through the PIP attribute finders before the effective policy of a request is
+ * evaluated. The values are bound to the thread evaluating the request and are only served for the
+ * evaluation they were resolved for. The evaluation is only weakly referenced, so that it is not retained by
+ * the thread after the evaluation.
+ */
+class PrefetchedAttributes {
+
+    private static final ThreadLocal<PrefetchedAttributes> CURRENT = new ThreadLocal<PrefetchedAttributes>();
+
+    private final WeakReference<EvaluationCtx> evaluationCtx;
+
+    private final ConcurrentMap<PIPAttributeFinder, ConcurrentMap<String, Set<String>>> values =
+            new ConcurrentHashMap<PIPAttributeFinder, ConcurrentMap<String, Set<String>>>();
+
+    PrefetchedAttributes(EvaluationCtx evaluationCtx) {
+
+        this.evaluationCtx = new WeakReference<EvaluationCtx>(evaluationCtx);
+    }
+
+    /**
+     * Binds the given attribute values to the current thread.
+     *
+     * @param prefetchedAttributes attribute values resolved for the evaluation of the current thread
+     */
+    static void bind(PrefetchedAttributes prefetchedAttributes) {
+
+        CURRENT.set(prefetchedAttributes);
+    }
+
+    /**
+     * Removes the attribute values bound to the current thread.
+     */
+    static void unbind() {
+
+        CURRENT.remove();
+    }
+
+    /**
+     * @param evaluationCtx evaluation which looks up an attribute
+     * @return attribute values bound to the current thread for the given evaluation, or null if none
+     */
+    static PrefetchedAttributes getCurrent(EvaluationCtx evaluationCtx) {
+
+        PrefetchedAttributes prefetchedAttributes = CURRENT.get();
+        if (prefetchedAttributes == null) {
+            return null;
+        }
+        if (prefetchedAttributes.evaluationCtx.get() != evaluationCtx) {
+            CURRENT.remove();
+            return null;
+        }
+        return prefetchedAttributes;
+    }
+
+    void addAttributeValues(PIPAttributeFinder finder, String key, Set<String> attributeValues) {
+
+        if (attributeValues == null) {
+            return;
+        }
+        ConcurrentMap<String, Set<String>> finderValues = values.get(finder);
+        if (finderValues == null) {
+            ConcurrentMap<String, Set<String>> newFinderValues = new ConcurrentHashMap<String, Set<String>>();
+            finderValues = values.putIfAbsent(finder, newFinderValues);
+            if (finderValues == null) {
+                finderValues = newFinderValues;
+            }
+        }
+        finderValues.put(key, attributeValues);
+    }
+
+    /**
+     * @param finder PIP attribute finder
+     * @param key    key of the lookup
+     * @return prefetched attribute values, or null if the lookup was not prefetched
+     */
+    Set<String> getAttributeValues(PIPAttributeFinder finder, String key) {
+
+        ConcurrentMap<String, Set<String>> finderValues = values.get(finder);
+        return finderValues != null ? finderValues.get(key) : null;
+    }
+
+    boolean isEmpty() {
+
+        return values.isEmpty();
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2024, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.entitlement.pip;
+
+import java.io.Serializable;
+
+/**
+ * Identifies an attribute of the XACML request by its category and attribute id.
+ */
+public class RequestAttribute implements Serializable {
+
+    private static final long serialVersionUID = -4182730514930117583L;
+
+    private String category;
+    private String attributeId;
+
+    public RequestAttribute(String category, String attributeId) {
+        this.category = category;
+        this.attributeId = attributeId;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public String getAttributeId() {
+        return attributeId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof RequestAttribute)) return false;
+
+        RequestAttribute that = (RequestAttribute) o;
+
+        if (category != null ? !category.equals(that.category) : that.category != null) return false;
+        if (attributeId != null ? !attributeId.equals(that.attributeId) : that.attributeId != null) return false;
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = category != null ? category.hashCode() : 0;
+        result = 31 * result + (attributeId != null ? attributeId.hashCode() : 0);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return category + "|" + attributeId;
+    }
+}
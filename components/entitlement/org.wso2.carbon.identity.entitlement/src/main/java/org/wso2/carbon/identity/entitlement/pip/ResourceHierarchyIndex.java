@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) 2024, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.entitlement.pip;
+
+import java.util.Collections;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In memory index of the resource hierarchy returned by a PIP resource finder, keyed only by the parent
+ * resource id. Descendants are kept sorted by path, so that the descendants of any resource within a loaded
+ * subtree are served as a range of the subtree, without calling the finder again. Resources are treated as
+ * paths separated by <code>/</code>, as the registry paths of <code>DefaultResourceFinder</code>. A subtree
+ * whose descendants are not all paths below its parent is only served for the parent itself.
+ * <p/>
+ * Changes to a resource invalidate the loaded subtrees which contain it, as well as the subtrees and children
+ * below it. Loads which started before an invalidation are not added to the index.
+ */
+class ResourceHierarchyIndex {
+
+    private static final char SEPARATOR = '/';
+
+    private static final int MAX_ENTRIES = 10000;
+
+    private final ConcurrentNavigableMap<String, Entry> descendants = new ConcurrentSkipListMap<String, Entry>();
+
+    private final ConcurrentNavigableMap<String, Entry> children = new ConcurrentSkipListMap<String, Entry>();
+
+    private final AtomicLong generation = new AtomicLong();
+
+    private final long timeout;
+
+    /**
+     * @param timeout time in milliseconds for which loaded resources are served, no expiry if not positive
+     */
+    ResourceHierarchyIndex(long timeout) {
+
+        this.timeout = timeout;
+    }
+
+    /**
+     * @return generation of the index, to be passed when adding the resources loaded after reading it
+     */
+    long getGeneration() {
+
+        return generation.get();
+    }
+
+    /**
+     * @param parentResourceId parent resource
+     * @return descendants of the resource, or null if they are not loaded
+     */
+    Set<String> getDescendants(String parentResourceId) {
+
+        String parent = normalize(parentResourceId);
+        Entry entry = getValidEntry(descendants, parent);
+        if (entry != null) {
+            return entry.resources;
+        }
+
+        for (String ancestor = getParent(parent); ancestor != null; ancestor = getParent(ancestor)) {
+            entry = getValidEntry(descendants, ancestor);
+            if (entry != null && entry.hierarchical) {
+                return getRange(entry.resources, parent);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param parentResourceId parent resource
+     * @return children of the resource, or null if they are not loaded
+     */
+    Set<String> getChildren(String parentResourceId) {
+
+        Entry entry = getValidEntry(children, normalize(parentResourceId));
+        return entry != null ? entry.resources : null;
+    }
+
+    /**
+     * @param parentResourceId parent resource
+     * @param resources        descendants returned by the finder, may be null
+     * @param generation       generation of the index read before calling the finder
+     */
+    void addDescendants(String parentResourceId, Set<String> resources, long generation) {
+
+        add(descendants, parentResourceId, resources, generation);
+    }
+
+    /**
+     * @param parentResourceId parent resource
+     * @param resources        children returned by the finder, may be null
+     * @param generation       generation of the index read before calling the finder
+     */
+    void addChildren(String parentResourceId, Set<String> resources, long generation) {
+
+        add(children, parentResourceId, resources, generation);
+    }
+
+    /**
+     * Invalidates the loaded resources which may include the given resource, i.e. the subtrees of its
+     * ancestors, the children of its parent and everything loaded for the resource or below it.
+     *
+     * @param resourceId resource which is added, updated or deleted
+     */
+    void invalidate(String resourceId) {
+
+        String resource = normalize(resourceId);
+        generation.incrementAndGet();
+
+        for (String ancestor = getParent(resource); ancestor != null; ancestor = getParent(ancestor)) {
+            descendants.remove(ancestor);
+        }
+        String parent = getParent(resource);
+        if (parent != null) {
+            children.remove(parent);
+        }
+        descendants.remove(resource);
+        children.remove(resource);
+        String prefix = getPrefix(resource);
+        descendants.subMap(prefix, true, getRangeEnd(prefix), false).clear();
+        children.subMap(prefix, true, getRangeEnd(prefix), false).clear();
+    }
+
+    void clear() {
+
+        generation.incrementAndGet();
+        descendants.clear();
+        children.clear();
+    }
+
+    private void add(ConcurrentNavigableMap<String, Entry> entries, String parentResourceId, Set<String> resources,
+                     long generation) {
+
+        if (this.generation.get() != generation) {
+            return;
+        }
+        if (entries.size() >= MAX_ENTRIES) {
+            entries.clear();
+        }
+        String parent = normalize(parentResourceId);
+        entries.put(parent, new Entry(parent, resources));
+        if (this.generation.get() != generation) {
+            // invalidated while adding
+            entries.remove(parent);
+        }
+    }
+
+    private Entry getValidEntry(ConcurrentNavigableMap<String, Entry> entries, String parent) {
+
+        Entry entry = entries.get(parent);
+        if (entry != null && timeout > 0 && System.currentTimeMillis() - entry.loadedAt > timeout) {
+            entries.remove(parent, entry);
+            return null;
+        }
+        return entry;
+    }
+
+    private static NavigableSet<String> getRange(NavigableSet<String> resources, String parent) {
+
+        String prefix = getPrefix(parent);
+        return resources.subSet(prefix, true, getRangeEnd(prefix), false);
+    }
+
+    private static String normalize(String resourceId) {
+
+        if (resourceId.length() > 1 && resourceId.charAt(resourceId.length() - 1) == SEPARATOR) {
+            return resourceId.substring(0, resourceId.length() - 1);
+        }
+        return resourceId;
+    }
+
+    private static String getParent(String resource) {
+
+        int index = resource.lastIndexOf(SEPARATOR);
+        if (index < 0 || resource.length() == 1) {
+            return null;
+        }
+        return index == 0 ? String.valueOf(SEPARATOR) : resource.substring(0, index);
+    }
+
+    private static String getPrefix(String resource) {
+
+        return resource.charAt(resource.length() - 1) == SEPARATOR ? resource : resource + SEPARATOR;
+    }
+
+    /**
+     * @return the smallest string greater than all the strings which start with the given prefix
+     */
+    private static String getRangeEnd(String prefix) {
+
+        return prefix.substring(0, prefix.length() - 1) + (char) (SEPARATOR + 1);
+    }
+
+    /**
+     * Resources loaded for a parent resource.
+     */
+    private static class Entry {
+
+        private final NavigableSet<String> resources;
+
+        private final boolean hierarchical;
+
+        private final long loadedAt = System.currentTimeMillis();
+
+        Entry(String parent, Set<String> resources) {
+
+            NavigableSet<String> sorted = new TreeSet<String>();
+            if (resources != null) {
+                sorted.addAll(resources);
+            }
+            this.resources = Collections.unmodifiableNavigableSet(sorted);
+            String prefix = getPrefix(parent);
+            // a finder which returns null may not support the parent, hence nothing is known below it
+            this.hierarchical = resources != null && (sorted.isEmpty() || (sorted.first().startsWith(prefix) &&
+                    sorted.last().compareTo(getRangeEnd(prefix)) < 0));
+        }
+    }
+}
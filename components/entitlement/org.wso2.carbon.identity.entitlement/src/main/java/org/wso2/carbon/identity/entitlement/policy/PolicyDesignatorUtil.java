@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2024, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.entitlement.policy;
+
+import org.wso2.balana.AbstractPolicy;
+import org.wso2.balana.AbstractTarget;
+import org.wso2.balana.PolicyReference;
+import org.wso2.balana.Rule;
+import org.wso2.balana.TargetMatch;
+import org.wso2.balana.attr.xacml3.AttributeDesignator;
+import org.wso2.balana.cond.Evaluatable;
+import org.wso2.balana.xacml3.AllOfSelection;
+import org.wso2.balana.xacml3.AnyOfSelection;
+import org.wso2.balana.xacml3.Target;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Helper methods to find the attribute designators of a parsed policy, i.e. the attributes which may be
+ * resolved through the PIP attribute finders while the policy is evaluated. The targets and conditions of the
+ * policy, its rules and its child policies are analysed. Referenced policies are not resolved.
+ */
+public class PolicyDesignatorUtil {
+
+    private static final char KEY_SEPARATOR = '\u0000';
+
+    private PolicyDesignatorUtil() {
+    }
+
+    /**
+     * Finds the XACML 3.0 attribute designators of a policy.
+     *
+     * @param policy parsed policy
+     * @return distinct attribute designators of the policy, in the order they are found
+     */
+    public static List<AttributeDesignator> getDesignators(AbstractPolicy policy) {
+
+        Map<String, AttributeDesignator> designators = new LinkedHashMap<String, AttributeDesignator>();
+        collectDesignators(policy, designators);
+        return new ArrayList<AttributeDesignator>(designators.values());
+    }
+
+    private static void collectDesignators(AbstractPolicy policy, Map<String, AttributeDesignator> designators) {
+
+        if (policy instanceof PolicyReference) {
+            // resolving the reference would load the referenced policy
+            return;
+        }
+        collectDesignators(policy.getTarget(), designators);
+        if (policy.getChildren() == null) {
+            return;
+        }
+        for (Object child : policy.getChildren()) {
+            if (child instanceof AbstractPolicy) {
+                collectDesignators((AbstractPolicy) child, designators);
+            } else if (child instanceof Rule) {
+                Rule rule = (Rule) child;
+                collectDesignators(rule.getTarget(), designators);
+                if (rule.getCondition() != null) {
+                    collectDesignators(rule.getCondition(), designators);
+                }
+            }
+        }
+    }
+
+    private static void collectDesignators(AbstractTarget target, Map<String, AttributeDesignator> designators) {
+
+        if (!(target instanceof Target) || ((Target) target).getAnyOfSelections() == null) {
+            return;
+        }
+        for (AnyOfSelection anyOf : ((Target) target).getAnyOfSelections()) {
+            if (anyOf.getAllOfSelections() == null) {
+                continue;
+            }
+            for (AllOfSelection allOf : anyOf.getAllOfSelections()) {
+                if (allOf.getMatches() == null) {
+                    continue;
+                }
+                for (TargetMatch match : allOf.getMatches()) {
+                    if (match.getMatchEvaluatable() != null) {
+                        collectDesignators(match.getMatchEvaluatable(), designators);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void collectDesignators(Evaluatable evaluatable, Map<String, AttributeDesignator> designators) {
+
+        if (evaluatable instanceof AttributeDesignator) {
+            AttributeDesignator designator = (AttributeDesignator) evaluatable;
+            if (designator.getCategory() != null) {
+                String key = designator.getCategory().toString() + KEY_SEPARATOR + designator.getId() +
+                        KEY_SEPARATOR + designator.getType() + KEY_SEPARATOR + designator.getIssuer();
+                if (!designators.containsKey(key)) {
+                    designators.put(key, designator);
+                }
+            }
+            return;
+        }
+        if (evaluatable.getChildren() == null) {
+            return;
+        }
+        for (Object child : evaluatable.getChildren()) {
+            if (child instanceof Evaluatable) {
+                collectDesignators((Evaluatable) child, designators);
+            }
+        }
+    }
+}
@@ -51,8 +51,16 @@ public class PolicyReader implements ErrorHandler {
     private static final Object lock = new Object();
     private static Log log = LogFactory.getLog(PolicyReader.class);
     private static volatile PolicyReader reader;
-    // the builder used to create DOM documents
-    private DocumentBuilder builder;
+    // the factory used to create a DOM document builder for each thread
+    private final DocumentBuilderFactory factory;
+
+    // document builders are not thread safe, hence each parsing thread uses its own builder
+    private final ThreadLocal<DocumentBuilder> builders = new ThreadLocal<DocumentBuilder>() {
+        @Override
+        protected DocumentBuilder initialValue() {
+            return newDocumentBuilder();
+        }
+    };
 
     // policy finder module to find  policies
     private PolicyFinder policyFinder;
@@ -61,14 +69,23 @@ public class PolicyReader implements ErrorHandler {
 
         this.policyFinder = policyFinder;
         // create the factory
-        DocumentBuilderFactory factory = IdentityUtil.getSecuredDocumentBuilderFactory();
+        factory = IdentityUtil.getSecuredDocumentBuilderFactory();
         factory.setIgnoringComments(true);
-        // now use the factory to create the document builder
-        try {
-            builder = factory.newDocumentBuilder();
-            builder.setErrorHandler(this);
-        } catch (ParserConfigurationException pce) {
-            throw new IllegalArgumentException("Filed to setup repository: ");
+        // create the document builder of the current thread, so that a wrong configuration fails here
+        builders.get();
+    }
+
+    private DocumentBuilder newDocumentBuilder() {
+
+        // document builder factories are not guaranteed to be thread safe
+        synchronized (factory) {
+            try {
+                DocumentBuilder builder = factory.newDocumentBuilder();
+                builder.setErrorHandler(this);
+                return builder;
+            } catch (ParserConfigurationException pce) {
+                throw new IllegalArgumentException("Filed to setup repository: ");
+            }
         }
     }
 
@@ -95,7 +112,7 @@ public class PolicyReader implements ErrorHandler {
         InputStream stream = null;
         try {
             stream = new ByteArrayInputStream(policy.getBytes("UTF-8"));
-            handleDocument(builder.parse(stream));
+            handleDocument(builders.get().parse(stream));
         } catch (Exception e) {
             return false;
         }
@@ -103,14 +120,17 @@ public class PolicyReader implements ErrorHandler {
     }
 
     /**
-     * @param policy
-     * @return
+     * Parses the given policy. This method can be called concurrently, each thread parses with its own
+     * document builder.
+     *
+     * @param policy policy as a String
+     * @return parsed policy, or null if the policy can not be parsed
      */
-    public synchronized AbstractPolicy getPolicy(String policy) {
+    public AbstractPolicy getPolicy(String policy) {
         InputStream stream = null;
         try {
             stream = new ByteArrayInputStream(policy.getBytes("UTF-8"));
-            return handleDocument(builder.parse(stream));
+            return handleDocument(builders.get().parse(stream));
         } catch (Exception e) {
             log.error("Error while parsing the policy", e);
             return null;
@@ -128,7 +148,7 @@ public class PolicyReader implements ErrorHandler {
         PolicyTarget policyTarget = new PolicyTarget();
         try {
             stream = new ByteArrayInputStream(policy.getBytes("UTF-8"));
-            AbstractPolicy abstractPolicy = handleDocument(builder.parse(stream));
+            AbstractPolicy abstractPolicy = handleDocument(builders.get().parse(stream));
             policyTarget.setTarget(abstractPolicy.getTarget());
             policyTarget.setPolicyId(abstractPolicy.getId().toString());
             return policyTarget;
@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2024, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.entitlement.policy.collection;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.balana.AbstractPolicy;
+import org.wso2.balana.MatchResult;
+import org.wso2.balana.Policy;
+import org.wso2.balana.PolicyReference;
+import org.wso2.balana.PolicySet;
+import org.wso2.balana.VersionConstraints;
+import org.wso2.balana.combine.PolicyCombiningAlgorithm;
+import org.wso2.balana.ctx.EvaluationCtx;
+import org.wso2.carbon.identity.entitlement.EntitlementException;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Policy collection which keeps an inverted index from (category, attribute id, value) to the top-level
+ * policies whose target can only match when the request carries that value. Only the candidate policies
+ * selected through the index, and the policies that can not be indexed, are matched against the request.
+ * Policy order is maintained in the same way as <code>SimplePolicyCollection</code>.
+ * <p/>
+ * A policy is indexed when its XACML 3.0 target has an <code>AnyOf</code> element in which every
+ * <code>AllOf</code> element contains a <code>string-equal</code> match on a string attribute designator.
+ * If the request does not carry the designated attribute at all, the value may still be resolved through a
+ * PIP, hence all policies indexed against that attribute are treated as candidates.
+ */
+public class IndexedPolicyCollection implements PolicyCollection {
+
+    private static final Log log = LogFactory.getLog(IndexedPolicyCollection.class);
+
+    /**
+     * the actual collection of policies
+     * to maintain the order of the policies, <code>LinkedHashMap</code> has been used.
+     */
+    private LinkedHashMap<URI, AbstractPolicy> policyCollection = new LinkedHashMap<URI, AbstractPolicy>();
+
+    /**
+     * target index of the policies in the collection
+     */
+    private PolicyTargetIndex targetIndex = new PolicyTargetIndex();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * the optional combining algorithm used when wrapping multiple policies
+     * if no algorithm is defined, only one applicable algorithm is used
+     */
+    private PolicyCombiningAlgorithm combiningAlg;
+
+    /**
+     * the optional policy id used when wrapping multiple policies
+     */
+    private URI parentId;
+
+    @Override
+    public void init(Properties properties) throws Exception {
+        String parentIdProperty = properties.getProperty("parentId");
+        if (parentIdProperty != null) {
+            parentId = new URI(parentIdProperty);
+        }
+    }
+
+    @Override
+    public boolean addPolicy(AbstractPolicy policy) {
+
+        URI identifier = policy.getId();
+        lock.writeLock().lock();
+        try {
+            AbstractPolicy existing = policyCollection.put(identifier, policy);
+            targetIndex.addPolicy(identifier, policy.getTarget());
+            return existing != null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public AbstractPolicy getEffectivePolicy(EvaluationCtx context) throws EntitlementException {
+
+        // setup a list of matching policies
+        ArrayList<AbstractPolicy> list = new ArrayList<AbstractPolicy>();
+
+        for (AbstractPolicy policy : getCandidatePolicies(context)) {
+
+            // see if we match
+            MatchResult match = policy.match(context);
+            int result = match.getResult();
+
+            // if there was an error, we stop right away
+            if (result == MatchResult.INDETERMINATE) {
+                log.error(match.getStatus().getMessage());
+                throw new EntitlementException(match.getStatus().getMessage());
+            }
+
+            if (result == MatchResult.MATCH) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Matching XACML policy found " + policy.getId().toString());
+                }
+
+                if ((combiningAlg == null) && (list.size() > 0)) {
+                    log.error("Too many applicable top-level policies");
+                    throw new EntitlementException("Too many applicable top-level policies");
+                }
+
+                list.add(policy);
+            }
+        }
+
+        switch (list.size()) {
+            case 0:
+                if (log.isDebugEnabled()) {
+                    log.debug("No matching XACML policy found");
+                }
+                return null;
+            case 1:
+                return list.get(0);
+            default:
+                return new PolicySet(parentId, combiningAlg, null, list);
+        }
+    }
+
+    /**
+     * Returns the policies that may match the given request, in policy order.
+     *
+     * @param context XACML request ctx
+     * @return candidate policies
+     */
+    List<AbstractPolicy> getCandidatePolicies(EvaluationCtx context) {
+
+        Map<String, Set<String>> requestValues = PolicyTargetIndexUtil.getRequestValues(context.getRequestCtx());
+
+        lock.readLock().lock();
+        try {
+            List<URI> orderedIds = targetIndex.getCandidates(requestValues);
+            List<AbstractPolicy> candidates = new ArrayList<AbstractPolicy>(orderedIds.size());
+            for (URI id : orderedIds) {
+                candidates.add(policyCollection.get(id));
+            }
+            if (log.isDebugEnabled()) {
+                log.debug(candidates.size() + " candidate policies selected out of " + policyCollection.size());
+            }
+            return candidates;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public AbstractPolicy getPolicy(URI policyId) {
+
+        lock.readLock().lock();
+        try {
+            return policyCollection.get(policyId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public AbstractPolicy getPolicy(URI identifier, int type, VersionConstraints constraints) {
+
+        AbstractPolicy policy = getPolicy(identifier);
+
+        if (policy != null) {
+            if (type == PolicyReference.POLICY_REFERENCE) {
+                if (policy instanceof Policy) {
+                    return policy;
+                }
+            } else {
+                if (policy instanceof PolicySet) {
+                    return policy;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public void setPolicyCombiningAlgorithm(PolicyCombiningAlgorithm algorithm) {
+        this.combiningAlg = algorithm;
+    }
+
+    @Override
+    public boolean deletePolicy(String policyId) {
+
+        URI identifier;
+        try {
+            identifier = new URI(policyId);
+        } catch (URISyntaxException ex) {
+            return false;
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (policyCollection.remove(identifier) == null) {
+                return false;
+            }
+            targetIndex.removePolicy(identifier);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public LinkedHashMap getPolicyMap() {
+        return this.policyCollection;
+    }
+
+    @Override
+    public void setPolicyMap(LinkedHashMap policyMap) {
+
+        lock.writeLock().lock();
+        try {
+            this.policyCollection = new LinkedHashMap<URI, AbstractPolicy>();
+            this.targetIndex = new PolicyTargetIndex();
+            for (Object entry : policyMap.entrySet()) {
+                URI identifier = (URI) ((Map.Entry) entry).getKey();
+                AbstractPolicy policy = (AbstractPolicy) ((Map.Entry) entry).getValue();
+                if (policy == null) {
+                    continue;
+                }
+                policyCollection.put(identifier, policy);
+                targetIndex.addPolicy(identifier, policy.getTarget());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
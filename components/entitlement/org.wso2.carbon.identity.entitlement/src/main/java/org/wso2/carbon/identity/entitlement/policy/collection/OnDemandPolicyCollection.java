@@ -0,0 +1,328 @@
+/*
+ * Copyright (c) 2024, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.entitlement.policy.collection;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.balana.AbstractPolicy;
+import org.wso2.balana.MatchResult;
+import org.wso2.balana.Policy;
+import org.wso2.balana.PolicyReference;
+import org.wso2.balana.PolicySet;
+import org.wso2.balana.VersionConstraints;
+import org.wso2.balana.combine.PolicyCombiningAlgorithm;
+import org.wso2.balana.ctx.EvaluationCtx;
+import org.wso2.carbon.identity.entitlement.EntitlementException;
+import org.wso2.carbon.identity.entitlement.EntitlementLRUCache;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Policy collection which keeps only the target index of its policies and a bounded number of parsed
+ * policies in memory. The candidate policies of a request are selected through the target index, and the
+ * candidates which are not in memory are loaded through the given <code>PolicyLoader</code>.
+ * <p/>
+ * A copy of the collection shares the in-memory policies with the original collection, but has its own
+ * target index. Hence a copy can be modified and published while the original collection is still used.
+ */
+public class OnDemandPolicyCollection implements PolicyCollection {
+
+    private static final Log log = LogFactory.getLog(OnDemandPolicyCollection.class);
+
+    /**
+     * loads a policy which is not in memory
+     */
+    public interface PolicyLoader {
+
+        /**
+         * loads the policy of the given identifier
+         *
+         * @param policyId policy identifier
+         * @return policy as AbstractPolicy object of Balana, or null if the policy can not be loaded
+         */
+        AbstractPolicy loadPolicy(String policyId);
+    }
+
+    private final PolicyLoader policyLoader;
+
+    /**
+     * least recently used policies, shared with the copies of the collection
+     */
+    private final Map<URI, AbstractPolicy> inMemoryPolicies;
+
+    private final PolicyTargetIndex targetIndex;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * the optional combining algorithm used when wrapping multiple policies
+     * if no algorithm is defined, only one applicable algorithm is used
+     */
+    private PolicyCombiningAlgorithm combiningAlg;
+
+    /**
+     * the optional policy id used when wrapping multiple policies
+     */
+    private URI parentId;
+
+    /**
+     * Creates a new <code>OnDemandPolicyCollection</code>.
+     *
+     * @param policyLoader        loader of the policies which are not in memory
+     * @param maxInMemoryPolicies maximum no of policies that keeps in memory
+     */
+    public OnDemandPolicyCollection(PolicyLoader policyLoader, int maxInMemoryPolicies) {
+
+        this.policyLoader = policyLoader;
+        this.inMemoryPolicies = Collections.synchronizedMap(
+                new EntitlementLRUCache<URI, AbstractPolicy>(maxInMemoryPolicies));
+        this.targetIndex = new PolicyTargetIndex();
+    }
+
+    private OnDemandPolicyCollection(OnDemandPolicyCollection collection) {
+
+        this.policyLoader = collection.policyLoader;
+        this.inMemoryPolicies = collection.inMemoryPolicies;
+        this.combiningAlg = collection.combiningAlg;
+        this.parentId = collection.parentId;
+        collection.lock.readLock().lock();
+        try {
+            this.targetIndex = new PolicyTargetIndex(collection.targetIndex);
+        } finally {
+            collection.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Creates a copy of the collection, which can be modified without affecting this collection.
+     *
+     * @return copy of the collection
+     */
+    public OnDemandPolicyCollection copy() {
+
+        return new OnDemandPolicyCollection(this);
+    }
+
+    @Override
+    public void init(Properties properties) throws Exception {
+        String parentIdProperty = properties.getProperty("parentId");
+        if (parentIdProperty != null) {
+            parentId = new URI(parentIdProperty);
+        }
+    }
+
+    @Override
+    public boolean addPolicy(AbstractPolicy policy) {
+
+        URI identifier = policy.getId();
+        lock.writeLock().lock();
+        try {
+            inMemoryPolicies.put(identifier, policy);
+            return targetIndex.addPolicy(identifier, policy.getTarget());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public AbstractPolicy getEffectivePolicy(EvaluationCtx context) throws EntitlementException {
+
+        Map<String, Set<String>> requestValues = PolicyTargetIndexUtil.getRequestValues(context.getRequestCtx());
+        List<URI> candidateIds;
+        lock.readLock().lock();
+        try {
+            candidateIds = targetIndex.getCandidates(requestValues);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // setup a list of matching policies
+        ArrayList<AbstractPolicy> list = new ArrayList<AbstractPolicy>();
+
+        for (URI candidateId : candidateIds) {
+
+            AbstractPolicy policy = getInMemoryPolicy(candidateId);
+            if (policy == null) {
+                // skipping the policy may change the decision, hence the evaluation fails
+                log.error("Policy " + candidateId + " can not be loaded");
+                throw new EntitlementException("Policy " + candidateId + " can not be loaded");
+            }
+
+            // see if we match
+            MatchResult match = policy.match(context);
+            int result = match.getResult();
+
+            // if there was an error, we stop right away
+            if (result == MatchResult.INDETERMINATE) {
+                log.error(match.getStatus().getMessage());
+                throw new EntitlementException(match.getStatus().getMessage());
+            }
+
+            if (result == MatchResult.MATCH) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Matching XACML policy found " + policy.getId().toString());
+                }
+
+                if ((combiningAlg == null) && (list.size() > 0)) {
+                    log.error("Too many applicable top-level policies");
+                    throw new EntitlementException("Too many applicable top-level policies");
+                }
+
+                list.add(policy);
+            }
+        }
+
+        switch (list.size()) {
+            case 0:
+                if (log.isDebugEnabled()) {
+                    log.debug("No matching XACML policy found");
+                }
+                return null;
+            case 1:
+                return list.get(0);
+            default:
+                return new PolicySet(parentId, combiningAlg, null, list);
+        }
+    }
+
+    @Override
+    public AbstractPolicy getPolicy(URI policyId) {
+
+        lock.readLock().lock();
+        try {
+            if (!targetIndex.containsPolicy(policyId)) {
+                return null;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return getInMemoryPolicy(policyId);
+    }
+
+    @Override
+    public AbstractPolicy getPolicy(URI identifier, int type, VersionConstraints constraints) {
+
+        AbstractPolicy policy = getPolicy(identifier);
+
+        if (policy != null) {
+            if (type == PolicyReference.POLICY_REFERENCE) {
+                if (policy instanceof Policy) {
+                    return policy;
+                }
+            } else {
+                if (policy instanceof PolicySet) {
+                    return policy;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public void setPolicyCombiningAlgorithm(PolicyCombiningAlgorithm algorithm) {
+        this.combiningAlg = algorithm;
+    }
+
+    /**
+     * Removes the policy from the target index. The in-memory policy is left to be evicted, as it may still be
+     * used by an earlier copy of the collection.
+     *
+     * @param policyId policy identifier
+     * @return whether the policy was in the collection
+     */
+    @Override
+    public boolean deletePolicy(String policyId) {
+
+        URI identifier;
+        try {
+            identifier = new URI(policyId);
+        } catch (URISyntaxException ex) {
+            return false;
+        }
+
+        lock.writeLock().lock();
+        try {
+            return targetIndex.removePolicy(identifier);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the policies which are currently in memory.
+     *
+     * @return in-memory policies
+     */
+    @Override
+    public LinkedHashMap getPolicyMap() {
+
+        synchronized (inMemoryPolicies) {
+            return new LinkedHashMap<URI, AbstractPolicy>(inMemoryPolicies);
+        }
+    }
+
+    @Override
+    public void setPolicyMap(LinkedHashMap policyMap) {
+
+        lock.writeLock().lock();
+        try {
+            targetIndex.clear();
+            for (Object entry : policyMap.entrySet()) {
+                AbstractPolicy policy = (AbstractPolicy) ((Map.Entry) entry).getValue();
+                if (policy == null) {
+                    continue;
+                }
+                inMemoryPolicies.put((URI) ((Map.Entry) entry).getKey(), policy);
+                targetIndex.addPolicy((URI) ((Map.Entry) entry).getKey(), policy.getTarget());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private AbstractPolicy getInMemoryPolicy(URI policyId) {
+
+        AbstractPolicy policy = inMemoryPolicies.get(policyId);
+        if (policy == null) {
+            policy = policyLoader.loadPolicy(policyId.toString());
+            if (policy != null) {
+                // a policy which is added by a policy update while this one was loading takes precedence
+                AbstractPolicy existing = inMemoryPolicies.putIfAbsent(policyId, policy);
+                if (existing != null) {
+                    return existing;
+                }
+                if (log.isDebugEnabled()) {
+                    log.debug("Policy " + policyId + " is loaded in to memory");
+                }
+            }
+        }
+        return policy;
+    }
+}
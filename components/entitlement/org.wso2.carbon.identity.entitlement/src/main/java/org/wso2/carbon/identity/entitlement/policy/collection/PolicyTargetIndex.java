@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2024, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.entitlement.policy.collection;
+
+import org.wso2.balana.AbstractTarget;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Inverted index from (category, attribute id, value) to the top-level policies whose target can only match
+ * when the request carries that value. Policies which can not be indexed are always selected as candidates.
+ * This class is not thread safe, the policy collections which use it guard the access.
+ */
+class PolicyTargetIndex {
+
+    /**
+     * position of each policy, used to return candidates in policy order
+     */
+    private final Map<URI, Long> policyOrdinals;
+
+    /**
+     * (category, attribute id) -> attribute value -> policy identifiers
+     */
+    private final Map<String, Map<String, Set<URI>>> targetIndex;
+
+    /**
+     * index entries of each indexed policy, so that the policy can be removed from the index
+     */
+    private final Map<URI, List<String[]>> policyIndexEntries;
+
+    /**
+     * policies which can not be indexed and must always be matched
+     */
+    private final Set<URI> unindexedPolicies;
+
+    private long nextOrdinal;
+
+    PolicyTargetIndex() {
+
+        policyOrdinals = new HashMap<URI, Long>();
+        targetIndex = new HashMap<String, Map<String, Set<URI>>>();
+        policyIndexEntries = new HashMap<URI, List<String[]>>();
+        unindexedPolicies = new HashSet<URI>();
+    }
+
+    /**
+     * Creates a copy of the given index, which can be modified independently.
+     *
+     * @param index index to copy
+     */
+    PolicyTargetIndex(PolicyTargetIndex index) {
+
+        policyOrdinals = new HashMap<URI, Long>(index.policyOrdinals);
+        targetIndex = new HashMap<String, Map<String, Set<URI>>>();
+        for (Map.Entry<String, Map<String, Set<URI>>> entry : index.targetIndex.entrySet()) {
+            Map<String, Set<URI>> valueMap = new HashMap<String, Set<URI>>();
+            for (Map.Entry<String, Set<URI>> valueEntry : entry.getValue().entrySet()) {
+                valueMap.put(valueEntry.getKey(), new HashSet<URI>(valueEntry.getValue()));
+            }
+            targetIndex.put(entry.getKey(), valueMap);
+        }
+        policyIndexEntries = new HashMap<URI, List<String[]>>(index.policyIndexEntries);
+        unindexedPolicies = new HashSet<URI>(index.unindexedPolicies);
+        nextOrdinal = index.nextOrdinal;
+    }
+
+    /**
+     * Adds a policy to the index. A policy which is already in the index keeps its position.
+     *
+     * @param identifier policy identifier
+     * @param target     target of the policy
+     * @return whether the policy was already in the index
+     */
+    boolean addPolicy(URI identifier, AbstractTarget target) {
+
+        boolean existing = policyOrdinals.containsKey(identifier);
+        if (existing) {
+            removeFromIndex(identifier);
+        } else {
+            policyOrdinals.put(identifier, nextOrdinal++);
+        }
+
+        List<String[]> entries = PolicyTargetIndexUtil.getIndexEntries(target);
+        if (entries == null) {
+            unindexedPolicies.add(identifier);
+            return existing;
+        }
+
+        for (String[] entry : entries) {
+            Map<String, Set<URI>> valueMap = targetIndex.get(entry[0]);
+            if (valueMap == null) {
+                valueMap = new HashMap<String, Set<URI>>();
+                targetIndex.put(entry[0], valueMap);
+            }
+            Set<URI> ids = valueMap.get(entry[1]);
+            if (ids == null) {
+                ids = new HashSet<URI>();
+                valueMap.put(entry[1], ids);
+            }
+            ids.add(identifier);
+        }
+        policyIndexEntries.put(identifier, entries);
+        return existing;
+    }
+
+    /**
+     * Removes a policy from the index.
+     *
+     * @param identifier policy identifier
+     * @return whether the policy was in the index
+     */
+    boolean removePolicy(URI identifier) {
+
+        if (policyOrdinals.remove(identifier) == null) {
+            return false;
+        }
+        removeFromIndex(identifier);
+        return true;
+    }
+
+    boolean containsPolicy(URI identifier) {
+
+        return policyOrdinals.containsKey(identifier);
+    }
+
+    int size() {
+
+        return policyOrdinals.size();
+    }
+
+    void clear() {
+
+        policyOrdinals.clear();
+        targetIndex.clear();
+        policyIndexEntries.clear();
+        unindexedPolicies.clear();
+        nextOrdinal = 0;
+    }
+
+    /**
+     * Returns the identifiers of the policies that may match a request, in policy order.
+     *
+     * @param requestValues string values of the request, as returned by
+     *                      <code>PolicyTargetIndexUtil.getRequestValues</code>
+     * @return candidate policy identifiers
+     */
+    List<URI> getCandidates(Map<String, Set<String>> requestValues) {
+
+        Set<URI> candidateIds = new HashSet<URI>(unindexedPolicies);
+        for (Map.Entry<String, Map<String, Set<URI>>> entry : targetIndex.entrySet()) {
+            Set<String> values = requestValues.get(entry.getKey());
+            if (values == null) {
+                // attribute is not in the request, it may be resolved by a PIP during the match
+                for (Set<URI> ids : entry.getValue().values()) {
+                    candidateIds.addAll(ids);
+                }
+            } else {
+                for (String value : values) {
+                    Set<URI> ids = entry.getValue().get(value);
+                    if (ids != null) {
+                        candidateIds.addAll(ids);
+                    }
+                }
+            }
+        }
+
+        List<URI> orderedIds = new ArrayList<URI>(candidateIds);
+        Collections.sort(orderedIds, new Comparator<URI>() {
+            @Override
+            public int compare(URI o1, URI o2) {
+                return Long.compare(policyOrdinals.get(o1), policyOrdinals.get(o2));
+            }
+        });
+        return orderedIds;
+    }
+
+    private void removeFromIndex(URI identifier) {
+
+        if (unindexedPolicies.remove(identifier)) {
+            return;
+        }
+
+        List<String[]> entries = policyIndexEntries.remove(identifier);
+        if (entries == null) {
+            return;
+        }
+        for (String[] entry : entries) {
+            Map<String, Set<URI>> valueMap = targetIndex.get(entry[0]);
+            if (valueMap == null) {
+                continue;
+            }
+            Set<URI> ids = valueMap.get(entry[1]);
+            if (ids != null) {
+                ids.remove(identifier);
+                if (ids.isEmpty()) {
+                    valueMap.remove(entry[1]);
+                }
+            }
+            if (valueMap.isEmpty()) {
+                targetIndex.remove(entry[0]);
+            }
+        }
+    }
+}
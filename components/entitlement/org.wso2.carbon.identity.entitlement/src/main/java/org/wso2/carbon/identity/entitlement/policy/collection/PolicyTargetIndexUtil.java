@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2024, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.entitlement.policy.collection;
+
+import org.wso2.balana.AbstractTarget;
+import org.wso2.balana.TargetMatch;
+import org.wso2.balana.attr.AttributeValue;
+import org.wso2.balana.attr.StringAttribute;
+import org.wso2.balana.attr.xacml3.AttributeDesignator;
+import org.wso2.balana.cond.Evaluatable;
+import org.wso2.balana.ctx.AbstractRequestCtx;
+import org.wso2.balana.ctx.Attribute;
+import org.wso2.balana.xacml3.AllOfSelection;
+import org.wso2.balana.xacml3.AnyOfSelection;
+import org.wso2.balana.xacml3.Attributes;
+import org.wso2.balana.xacml3.Target;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Helper methods to index policy targets by the string attribute values they require from the request.
+ * A target yields a list of {attribute key, value} entries of which at least one must hold in the request
+ * for the target to match. If the request does not carry the attribute of an entry, the value may still be
+ * resolved through a PIP, hence the target may match.
+ */
+public class PolicyTargetIndexUtil {
+
+    private static final String STRING_EQUAL_FUNCTION = "urn:oasis:names:tc:xacml:1.0:function:string-equal";
+
+    private static final String KEY_SEPARATOR = "\u0000";
+
+    private PolicyTargetIndexUtil() {
+    }
+
+    /**
+     * Finds the index entries of a policy target. One entry is picked from each <code>AllOf</code> of the
+     * first <code>AnyOf</code> in which every <code>AllOf</code> has an indexable match. The target can only
+     * match when at least one of these entries holds.
+     *
+     * @param target policy target
+     * @return index entries as {attribute key, value} pairs, or null if the target can not be indexed
+     */
+    public static List<String[]> getIndexEntries(AbstractTarget target) {
+
+        if (!(target instanceof Target) || ((Target) target).getAnyOfSelections() == null) {
+            return null;
+        }
+
+        for (AnyOfSelection anyOf : ((Target) target).getAnyOfSelections()) {
+            List<AllOfSelection> allOfs = anyOf.getAllOfSelections();
+            if (allOfs == null || allOfs.isEmpty()) {
+                continue;
+            }
+            List<String[]> entries = new ArrayList<String[]>();
+            for (AllOfSelection allOf : allOfs) {
+                String[] entry = null;
+                if (allOf.getMatches() != null) {
+                    for (TargetMatch match : allOf.getMatches()) {
+                        if ((entry = getIndexEntry(match)) != null) {
+                            break;
+                        }
+                    }
+                }
+                if (entry == null) {
+                    entries = null;
+                    break;
+                }
+                entries.add(entry);
+            }
+            if (entries != null) {
+                return entries;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Collects the string attribute values carried by the request, keyed by attribute key. Attributes with
+     * an empty bag are left out, as the engine falls back to the PIPs for them, same as for a missing
+     * attribute.
+     *
+     * @param requestCtx Balana Object model for request
+     * @return attribute key -> attribute values
+     */
+    public static Map<String, Set<String>> getRequestValues(AbstractRequestCtx requestCtx) {
+
+        Map<String, Set<String>> requestValues = new HashMap<String, Set<String>>();
+        Set<Attributes> attributesSet = requestCtx.getAttributesSet();
+        if (attributesSet == null) {
+            return requestValues;
+        }
+        for (Attributes attributes : attributesSet) {
+            if (attributes.getCategory() == null || attributes.getAttributes() == null) {
+                continue;
+            }
+            for (Attribute attribute : attributes.getAttributes()) {
+                if (attribute.getType() == null ||
+                        !StringAttribute.identifier.equals(attribute.getType().toString()) ||
+                        attribute.getValues() == null || attribute.getValues().isEmpty()) {
+                    continue;
+                }
+                String key = getAttributeKey(attributes.getCategory().toString(), attribute.getId().toString());
+                Set<String> values = requestValues.get(key);
+                if (values == null) {
+                    values = new HashSet<String>();
+                    requestValues.put(key, values);
+                }
+                for (AttributeValue value : attribute.getValues()) {
+                    values.add(value.encode());
+                }
+            }
+        }
+        return requestValues;
+    }
+
+    /**
+     * Builds the key of an attribute used in the index entries.
+     *
+     * @param category    attribute category
+     * @param attributeId attribute id
+     * @return attribute key
+     */
+    public static String getAttributeKey(String category, String attributeId) {
+
+        return category + KEY_SEPARATOR + attributeId;
+    }
+
+    private static String[] getIndexEntry(TargetMatch match) {
+
+        if (match.getMatchFunction() == null ||
+                !STRING_EQUAL_FUNCTION.equals(match.getMatchFunction().getIdentifier().toString())) {
+            return null;
+        }
+
+        Evaluatable evaluatable = match.getMatchEvaluatable();
+        AttributeValue value = match.getMatchValue();
+        if (!(evaluatable instanceof AttributeDesignator) || value == null ||
+                !StringAttribute.identifier.equals(value.getType().toString())) {
+            return null;
+        }
+
+        AttributeDesignator designator = (AttributeDesignator) evaluatable;
+        if (designator.getIssuer() != null || designator.getCategory() == null ||
+                !StringAttribute.identifier.equals(designator.getType().toString())) {
+            return null;
+        }
+
+        return new String[]{getAttributeKey(designator.getCategory().toString(), designator.getId().toString()),
+                value.encode()};
+    }
+}
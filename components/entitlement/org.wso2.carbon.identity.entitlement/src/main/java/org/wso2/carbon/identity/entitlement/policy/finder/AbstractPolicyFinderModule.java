@@ -28,6 +28,7 @@ import org.wso2.carbon.identity.entitlement.pdp.EntitlementEngine;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -45,8 +46,20 @@ public abstract class AbstractPolicyFinderModule implements PolicyFinderModule {
      * This method must be called by the module when its policies are updated
      */
     public static void invalidateCache(String policyId, String action) {
+        // decisions which depend on the policy are evicted when the policy change is applied by the PDP
         EntitlementEngine.getInstance().getPolicyCache().invalidateCache(policyId, action);
-        EntitlementEngine.getInstance().clearDecisionCache();
+        EntitlementEngine.getInstance().getPolicySearch().getPolicySearchCache().invalidateCache();
+    }
+
+    /**
+     * This method must be called by the module when a batch of its policies is updated. The policy search cache
+     * is invalidated once for the whole batch.
+     */
+    public static void invalidateCache(Collection<String> policyIds, String action) {
+
+        for (String policyId : policyIds) {
+            EntitlementEngine.getInstance().getPolicyCache().invalidateCache(policyId, action);
+        }
         EntitlementEngine.getInstance().getPolicySearch().getPolicySearchCache().invalidateCache();
     }
 
@@ -26,12 +26,14 @@ import org.wso2.balana.PolicyMetaData;
 import org.wso2.balana.PolicyReference;
 import org.wso2.balana.PolicySet;
 import org.wso2.balana.VersionConstraints;
+import org.wso2.balana.attr.xacml3.AttributeDesignator;
 import org.wso2.balana.combine.PolicyCombiningAlgorithm;
 import org.wso2.balana.ctx.EvaluationCtx;
 import org.wso2.balana.ctx.Status;
 import org.wso2.balana.finder.PolicyFinder;
 import org.wso2.balana.finder.PolicyFinderResult;
 import org.wso2.carbon.context.CarbonContext;
+import org.wso2.carbon.context.PrivilegedCarbonContext;
 import org.wso2.carbon.identity.entitlement.EntitlementException;
 import org.wso2.carbon.identity.entitlement.PDPConstants;
 import org.wso2.carbon.identity.entitlement.PolicyOrderComparator;
@@ -39,65 +41,157 @@ import org.wso2.carbon.identity.entitlement.cache.PolicyStatus;
 import org.wso2.carbon.identity.entitlement.common.EntitlementConstants;
 import org.wso2.carbon.identity.entitlement.persistence.ConfigPersistenceManager;
 import org.wso2.carbon.identity.entitlement.dto.PolicyDTO;
+import org.wso2.carbon.identity.entitlement.dto.PolicyStoreDTO;
 import org.wso2.carbon.identity.entitlement.internal.EntitlementServiceComponent;
 import org.wso2.carbon.identity.entitlement.pap.EntitlementAdminEngine;
+import org.wso2.carbon.identity.entitlement.pdp.DecisionCacheContext;
 import org.wso2.carbon.identity.entitlement.pdp.EntitlementEngine;
+import org.wso2.carbon.identity.entitlement.pip.CarbonAttributeFinder;
+import org.wso2.carbon.identity.entitlement.pip.RequestAttribute;
+import org.wso2.carbon.identity.entitlement.policy.PolicyDesignatorUtil;
 import org.wso2.carbon.identity.entitlement.policy.PolicyReader;
+import org.wso2.carbon.identity.entitlement.policy.collection.OnDemandPolicyCollection;
 import org.wso2.carbon.identity.entitlement.policy.collection.PolicyCollection;
 import org.wso2.carbon.identity.entitlement.policy.collection.SimplePolicyCollection;
+import org.wso2.carbon.utils.CarbonUtils;
 
+import java.io.File;
+import java.lang.ref.WeakReference;
 import java.net.URI;
-import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Policy finder of the WSO2 entitlement engine.  This an implementation of <code>PolicyFinderModule</code>
  * of Balana engine. Extensions can be plugged with this.
+ * <p/>
+ * The loaded policies are kept in an immutable snapshot which is published through a volatile reference.
+ * Requests are evaluated against the snapshot they read, without any locking. Policy changes are applied
+ * by building a new snapshot in the background and swapping the reference, hence requests never wait on
+ * a reload.
+ * <p/>
+ * When policy sync is enabled, each node periodically compares the versions of the active policies in the
+ * policy store with the versions of the loaded policies, and applies only the created, updated, deleted and
+ * reordered policies. Hence nodes converge after a publish even if the cluster invalidation message is lost.
  */
 public class CarbonPolicyFinder extends org.wso2.balana.finder.PolicyFinderModule {
 
     private static Log log = LogFactory.getLog(CarbonPolicyFinder.class);
+
+    /**
+     * number of policies parsed at once when policies are loaded on demand, so that only the target index and a
+     * bounded number of parsed policies are kept in memory
+     */
+    private static final int ON_DEMAND_PARSING_BATCH_SIZE = 1000;
+
+    /**
+     * number of threads shared by the policy refreshes and snapshot writes of all tenants
+     */
+    private static final int REFRESH_THREADS = 4;
+
+    private static final ThreadPoolExecutor refreshPool = createRefreshPool();
+
+    private static final ScheduledExecutorService syncExecutor = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "CarbonPolicyFinder-sync");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
     public PolicyReader policyReader;
     private List<PolicyFinderModule> finderModules = null;
-    private PolicyCollection policyCollection;
-
-    private List<PolicyDTO> policyCollectionOrder = new ArrayList<PolicyDTO>();
 
     private PolicyFinder finder;
+
+    /**
+     * snapshot of the loaded policies, which is replaced as a whole when policies change
+     */
+    private volatile PolicySnapshot snapshot = new PolicySnapshot(new SimplePolicyCollection(),
+            new LinkedHashMap<URI, AbstractPolicy>(), new ArrayList<PolicyDTO>(),
+            new LinkedHashMap<String, Map<String, String>>());
+
     /**
-     * this is a flag to keep whether init it has finished or not.
+     * runs the policy refreshes and snapshot writes of this tenant one after another on the shared refresh pool
      */
-    private volatile boolean initFinish;
-    private LinkedHashMap<URI, AbstractPolicy> policyReferenceCache = null;
+    private final Executor refreshExecutor = new SerialExecutor(refreshPool);
+
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean(false);
+
+    /**
+     * policy versions of the snapshot rewrite which is scheduled but not started, a later rewrite replaces them
+     */
+    private final AtomicReference<Map<String, Map<String, String>>> pendingSnapshotVersions =
+            new AtomicReference<Map<String, Map<String, String>>>();
+
     private int maxReferenceCacheEntries = PDPConstants.MAX_NO_OF_IN_MEMORY_POLICIES;
 
+    private int policyLoadingParallelism = Runtime.getRuntime().availableProcessors();
+
+    private PolicySnapshotStore snapshotStore;
+
+    private boolean onDemandPolicyLoading;
+
+    private int maxInMemoryPolicies = PDPConstants.MAX_NO_OF_IN_MEMORY_POLICIES;
+
+    private boolean attributePrefetch;
+
+    /**
+     * interval of the policy sync in milliseconds, the policy sync is disabled when it is not positive
+     */
+    private long policySyncInterval;
+
+    private ScheduledFuture<?> policySyncTask;
+
+    private int tenantId;
+
+    private String tenantDomain;
 
     @Override
     public void init(PolicyFinder finder) {
-        initFinish = false;
+
         this.finder = finder;
+        this.tenantId = CarbonContext.getThreadLocalCarbonContext().getTenantId();
+        this.tenantDomain = CarbonContext.getThreadLocalCarbonContext().getTenantDomain();
         init();
-        policyReferenceCache.clear();
+        schedulePolicySync();
     }
 
+    /**
+     * Loads all the active policies in to a new snapshot and publishes it.
+     */
     private synchronized void init() {
 
-        if (initFinish) {
-            return;
-        }
-
         log.info("Initializing of policy store is started at :  " + new Date());
 
-        String maxEntries = EntitlementServiceComponent.getEntitlementConfig().getEngineProperties().
-                getProperty(PDPConstants.MAX_POLICY_REFERENCE_ENTRIES);
+        Properties properties = EntitlementServiceComponent.getEntitlementConfig().getEngineProperties();
+        String maxEntries = properties.getProperty(PDPConstants.MAX_POLICY_REFERENCE_ENTRIES);
 
         if (maxEntries != null) {
             try {
@@ -107,17 +201,48 @@ public class CarbonPolicyFinder extends org.wso2.balana.finder.PolicyFinderModul
             }
         }
 
-        policyReferenceCache = new LinkedHashMap<URI, AbstractPolicy>() {
+        String parallelism = properties.getProperty(PDPConstants.POLICY_LOADING_PARALLELISM);
+        if (parallelism != null) {
+            try {
+                policyLoadingParallelism = Math.max(1, Integer.parseInt(parallelism.trim()));
+            } catch (Exception e) {
+                //ignore
+            }
+        }
 
-            @Override
-            protected boolean removeEldestEntry(Map.Entry eldest) {
-                // oldest entry of the cache would be removed when max cache size become, i.e 50
-                return size() > maxReferenceCacheEntries;
+        onDemandPolicyLoading = Boolean.parseBoolean(properties.getProperty(PDPConstants.ON_DEMAND_POLICY_LOADING));
+        String maxInMemoryEntries = properties.getProperty(PDPConstants.ON_DEMAND_POLICY_MAX_POLICY_ENTRIES);
+        if (maxInMemoryEntries != null) {
+            try {
+                maxInMemoryPolicies = Math.max(2, Integer.parseInt(maxInMemoryEntries.trim()));
+            } catch (Exception e) {
+                //ignore
             }
+        }
 
-        };
+        attributePrefetch = Boolean.parseBoolean(properties.getProperty(PDPConstants.ATTRIBUTE_PREFETCH_ENABLE));
+
+        policySyncInterval = 0;
+        String syncInterval = properties.getProperty(PDPConstants.POLICY_SYNC_INTERVAL);
+        if (syncInterval != null) {
+            try {
+                policySyncInterval = Long.parseLong(syncInterval.trim()) * 1000;
+            } catch (Exception e) {
+                //ignore
+            }
+        }
+
+        if (Boolean.parseBoolean(properties.getProperty(PDPConstants.POLICY_SNAPSHOT_ENABLE))) {
+            String directory = properties.getProperty(PDPConstants.POLICY_SNAPSHOT_DIRECTORY);
+            if (directory == null || directory.trim().isEmpty()) {
+                directory = CarbonUtils.getCarbonHome() + File.separator + "repository" + File.separator + "data" +
+                        File.separator + "xacml";
+            }
+            snapshotStore = new PolicySnapshotStore(new File(directory.trim()));
+        } else {
+            snapshotStore = null;
+        }
 
-        PolicyCombiningAlgorithm policyCombiningAlgorithm = null;
         // get registered finder modules
         Map<PolicyFinderModule, Properties> finderModules = EntitlementServiceComponent.
                 getEntitlementConfig().getPolicyFinderModules();
@@ -126,54 +251,257 @@ public class CarbonPolicyFinder extends org.wso2.balana.finder.PolicyFinderModul
             this.finderModules = new ArrayList<PolicyFinderModule>(finderModules.keySet());
         }
 
-        PolicyCollection tempPolicyCollection = null;
-
-        // get policy collection
-        Map<PolicyCollection, Properties> policyCollections = EntitlementServiceComponent.
-                getEntitlementConfig().getPolicyCollections();
-        if (policyCollections != null && policyCollections.size() > 0) {
-            tempPolicyCollection = policyCollections.entrySet().iterator().next().getKey();
-        } else {
-            tempPolicyCollection = new SimplePolicyCollection();
-        }
-
         // get policy reader
         policyReader = PolicyReader.getInstance(finder);
 
-        if (this.finderModules != null && this.finderModules.size() > 0) {
-            // find policy combining algorithm.
-
-            ConfigPersistenceManager configPersistenceManager = EntitlementAdminEngine.getInstance().getConfigPersistenceManager();
-            policyCombiningAlgorithm = configPersistenceManager.getGlobalPolicyAlgorithm();
-
-            tempPolicyCollection.setPolicyCombiningAlgorithm(policyCombiningAlgorithm);
+        LinkedHashMap<URI, AbstractPolicy> policies = new LinkedHashMap<URI, AbstractPolicy>();
+        List<PolicyDTO> policyCollectionOrder = new ArrayList<PolicyDTO>();
+        Map<String, Map<String, String>> policyVersions = new LinkedHashMap<String, Map<String, String>>();
+        // when policies are loaded on demand, parsed policies are only kept in the collection
+        OnDemandPolicyCollection onDemandPolicyCollection = null;
+        if (onDemandPolicyLoading) {
+            onDemandPolicyCollection = createOnDemandPolicyCollection();
+        }
 
+        if (this.finderModules != null && this.finderModules.size() > 0) {
             for (PolicyFinderModule finderModule : this.finderModules) {
                 log.info("Start retrieving policies from " + finderModule + " at : " + new Date());
-                String[] policies = finderModule.getActivePolicies();
-                for (int a = 0; a < policies.length; a++) {
-                    String policy = policies[a];
-                    AbstractPolicy abstractPolicy = policyReader.getPolicy(policy);
-                    if (abstractPolicy != null) {
-                        PolicyDTO policyDTO = new PolicyDTO();
-                        policyDTO.setPolicyId(abstractPolicy.getId().toString());
-                        policyDTO.setPolicyOrder(a);
-                        policyCollectionOrder.add(policyDTO);
-                        tempPolicyCollection.addPolicy(abstractPolicy);
+                // versions are retrieved before the policies, so that a policy which is changed in between is
+                // never stored in the snapshot with a newer version than its content
+                Map<String, String> versions = snapshotStore != null || policySyncInterval > 0 ?
+                        finderModule.getActivePolicyVersions() : null;
+                Map<String, PolicyStoreDTO> storedPolicies = null;
+                String[] activePolicies = null;
+                if (versions != null && snapshotStore != null) {
+                    storedPolicies = snapshotStore.read(tenantId, finderModule.getModuleName());
+                    activePolicies = getChangedActivePolicies(finderModule, versions, storedPolicies);
+                }
+                if (activePolicies == null) {
+                    activePolicies = finderModule.getActivePolicies();
+                }
+                String[] policyIds = new String[activePolicies.length];
+                int batchSize = onDemandPolicyCollection != null ? ON_DEMAND_PARSING_BATCH_SIZE :
+                        Math.max(1, activePolicies.length);
+                for (int start = 0; start < activePolicies.length; start += batchSize) {
+                    int end = Math.min(activePolicies.length, start + batchSize);
+                    AbstractPolicy[] abstractPolicies = parsePolicies(Arrays.copyOfRange(activePolicies, start, end));
+                    for (int a = start; a < end; a++) {
+                        AbstractPolicy abstractPolicy = abstractPolicies[a - start];
+                        if (abstractPolicy != null) {
+                            policyIds[a] = abstractPolicy.getId().toString();
+                            PolicyDTO policyDTO = new PolicyDTO();
+                            policyDTO.setPolicyId(policyIds[a]);
+                            policyDTO.setPolicyOrder(a);
+                            policyCollectionOrder.add(policyDTO);
+                            addPolicy(policies, onDemandPolicyCollection, abstractPolicy);
+                        }
                     }
                 }
+                if (versions != null && snapshotStore != null) {
+                    updateSnapshotStore(finderModule.getModuleName(), versions, storedPolicies, activePolicies,
+                            policyIds);
+                }
+                if (versions != null) {
+                    policyVersions.put(finderModule.getModuleName(), versions);
+                }
                 log.info("Finish retrieving policies from " + finderModule + " at : " + new Date());
             }
         } else {
             log.warn("No Carbon policy finder modules are registered");
-
         }
 
-        policyCollection = tempPolicyCollection;
-        initFinish = true;
+        PolicyCollection policyCollection = onDemandPolicyCollection != null ? onDemandPolicyCollection :
+                createPolicyCollection(policies);
+        snapshot = new PolicySnapshot(policyCollection, policies, policyCollectionOrder, policyVersions);
         log.info("Initializing of policy store is finished at :  " + new Date());
     }
 
+    /**
+     * Builds the active policies of a module from its local snapshot, retrieving only the policies whose versions
+     * have changed since the snapshot was written.
+     *
+     * @param finderModule   policy finder module
+     * @param versions       versions of the active policies of the module, in policy order
+     * @param storedPolicies policies of the local snapshot
+     * @return active policies in policy order, or null if all the policies must be retrieved from the module
+     */
+    private String[] getChangedActivePolicies(PolicyFinderModule finderModule, Map<String, String> versions,
+                                              Map<String, PolicyStoreDTO> storedPolicies) {
+
+        if (storedPolicies == null) {
+            return null;
+        }
+
+        int changedPolicies = 0;
+        for (Map.Entry<String, String> entry : versions.entrySet()) {
+            PolicyStoreDTO storedPolicy = storedPolicies.get(entry.getKey());
+            if (storedPolicy == null || !entry.getValue().equals(storedPolicy.getVersion())) {
+                changedPolicies++;
+            }
+        }
+        if (changedPolicies > versions.size() / 2) {
+            // retrieving the policies one by one is more expensive than retrieving all of them
+            return null;
+        }
+
+        List<String> policies = new ArrayList<String>();
+        for (Map.Entry<String, String> entry : versions.entrySet()) {
+            PolicyStoreDTO storedPolicy = storedPolicies.get(entry.getKey());
+            if (storedPolicy != null && entry.getValue().equals(storedPolicy.getVersion())) {
+                policies.add(storedPolicy.getPolicy());
+            } else {
+                String policy = finderModule.getPolicy(entry.getKey());
+                if (policy != null && !policy.trim().isEmpty()) {
+                    policies.add(policy);
+                }
+            }
+        }
+        log.info(changedPolicies + " of " + versions.size() + " policies are retrieved from " + finderModule +
+                ", others are loaded from the local policy snapshot");
+        return policies.toArray(new String[policies.size()]);
+    }
+
+    /**
+     * Writes the local snapshot of a module in the background, if the active policies differ from the snapshot.
+     *
+     * @param moduleName       name of the policy finder module
+     * @param versions         versions of the active policies of the module, in policy order
+     * @param storedPolicies   policies of the current local snapshot, or null
+     * @param activePolicies   active policies as Strings
+     * @param policyIds        identifiers of the active policies, null for the policies which can not be parsed
+     */
+    private void updateSnapshotStore(final String moduleName, Map<String, String> versions,
+                                     Map<String, PolicyStoreDTO> storedPolicies, String[] activePolicies,
+                                     String[] policyIds) {
+
+        if (storedPolicies != null) {
+            Map<String, String> storedVersions = new LinkedHashMap<String, String>();
+            for (PolicyStoreDTO storedPolicy : storedPolicies.values()) {
+                storedVersions.put(storedPolicy.getPolicyId(), storedPolicy.getVersion());
+            }
+            if (PolicySnapshotStore.getFingerprint(versions).equals(
+                    PolicySnapshotStore.getFingerprint(storedVersions))) {
+                return;
+            }
+        }
+
+        final List<PolicyStoreDTO> snapshotPolicies = new ArrayList<PolicyStoreDTO>();
+        for (int a = 0; a < activePolicies.length; a++) {
+            if (policyIds[a] == null) {
+                continue;
+            }
+            String version = versions.get(policyIds[a]);
+            if (version != null) {
+                PolicyStoreDTO dto = new PolicyStoreDTO();
+                dto.setPolicyId(policyIds[a]);
+                dto.setVersion(version);
+                dto.setPolicy(activePolicies[a]);
+                snapshotPolicies.add(dto);
+            }
+        }
+
+        final PolicySnapshotStore store = snapshotStore;
+        final int snapshotTenantId = tenantId;
+        refreshExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                store.write(snapshotTenantId, moduleName, snapshotPolicies);
+            }
+        });
+    }
+
+    /**
+     * Parses the given policies on a bounded fork-join pool. The parsed policies are returned in the same
+     * order as the given policies, so that the collection is assembled in the original policy order.
+     *
+     * @param policies policies as Strings
+     * @return parsed policies, an element is null if the respective policy can not be parsed
+     */
+    private AbstractPolicy[] parsePolicies(String[] policies) {
+
+        AbstractPolicy[] abstractPolicies = new AbstractPolicy[policies.length];
+        if (policyLoadingParallelism < 2 || policies.length <= PolicyParsingTask.THRESHOLD) {
+            for (int i = 0; i < policies.length; i++) {
+                abstractPolicies[i] = policyReader.getPolicy(policies[i]);
+            }
+            return abstractPolicies;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(policyLoadingParallelism);
+        try {
+            pool.invoke(new PolicyParsingTask(policyReader, policies, abstractPolicies, 0, policies.length));
+        } finally {
+            pool.shutdown();
+        }
+        return abstractPolicies;
+    }
+
+    /**
+     * Creates a new policy collection holding the given policies.
+     *
+     * @param policies policies in evaluation order
+     * @return policy collection
+     */
+    private PolicyCollection createPolicyCollection(LinkedHashMap<URI, AbstractPolicy> policies) {
+
+        PolicyCollection policyCollection = null;
+
+        // get policy collection
+        Map<PolicyCollection, Properties> policyCollections = EntitlementServiceComponent.
+                getEntitlementConfig().getPolicyCollections();
+        if (policyCollections != null && policyCollections.size() > 0) {
+            Map.Entry<PolicyCollection, Properties> entry = policyCollections.entrySet().iterator().next();
+            try {
+                // a new instance is created for each snapshot, so that a published snapshot is never modified
+                policyCollection = entry.getKey().getClass().newInstance();
+                policyCollection.init(entry.getValue());
+            } catch (Exception e) {
+                log.error("Error while creating policy collection " + entry.getKey().getClass().getName() +
+                        ". Using the default policy collection", e);
+                policyCollection = null;
+            }
+        }
+        if (policyCollection == null) {
+            policyCollection = new SimplePolicyCollection();
+        }
+
+        setPolicyCombiningAlgorithm(policyCollection);
+
+        for (AbstractPolicy policy : policies.values()) {
+            policyCollection.addPolicy(policy);
+        }
+        return policyCollection;
+    }
+
+    /**
+     * Creates a new policy collection which loads its policies on demand through the policy finder modules.
+     *
+     * @return policy collection
+     */
+    private OnDemandPolicyCollection createOnDemandPolicyCollection() {
+
+        OnDemandPolicyCollection policyCollection = new OnDemandPolicyCollection(
+                new OnDemandPolicyCollection.PolicyLoader() {
+                    @Override
+                    public AbstractPolicy loadPolicy(String policyId) {
+                        return CarbonPolicyFinder.this.loadPolicy(policyId);
+                    }
+                }, maxInMemoryPolicies);
+        setPolicyCombiningAlgorithm(policyCollection);
+        return policyCollection;
+    }
+
+    private void setPolicyCombiningAlgorithm(PolicyCollection policyCollection) {
+
+        if (this.finderModules != null && this.finderModules.size() > 0) {
+            // find policy combining algorithm.
+            ConfigPersistenceManager configPersistenceManager = EntitlementAdminEngine.getInstance()
+                    .getConfigPersistenceManager();
+            PolicyCombiningAlgorithm policyCombiningAlgorithm = configPersistenceManager.getGlobalPolicyAlgorithm();
+            policyCollection.setPolicyCombiningAlgorithm(policyCombiningAlgorithm);
+        }
+    }
+
     @Override
     public String getIdentifier() {
         return super.getIdentifier();
@@ -189,95 +517,578 @@ public class CarbonPolicyFinder extends org.wso2.balana.finder.PolicyFinderModul
         return true;
     }
 
+    /**
+     * Checks whether policy changes are notified through the policy cache, and if so schedules a refresh of
+     * the policy snapshot. This method does not wait for the refresh, requests keep evaluating against the
+     * current snapshot until the new one is published. The decisions which may be affected by the changed
+     * policies are evicted from the decision cache once the new snapshot is published.
+     */
+    public void refreshInvalidatedPolicies() {
 
-    private void orderPolicyCache() {
-        LinkedHashMap<URI, AbstractPolicy> policyMap = policyCollection.getPolicyMap();
-        Collections.sort(policyCollectionOrder, new PolicyOrderComparator());
-        LinkedHashMap<URI, AbstractPolicy> newPolicyMap = new LinkedHashMap<URI, AbstractPolicy>();
-        Iterator<PolicyDTO> policyDTOIterator = policyCollectionOrder.iterator();
-        while (policyDTOIterator.hasNext()) {
-            try {
-                URI policyURI = new URI(policyDTOIterator.next().getPolicyId());
-                newPolicyMap.put(policyURI, policyMap.get(policyURI));
+        if (refreshScheduled.get()) {
+            return;
+        }
 
-            } catch (URISyntaxException e) {
-                e.printStackTrace();
-            }
+        EntitlementEngine engine = EntitlementEngine.getInstance();
+        Collection<PolicyStatus> policies = engine.getPolicyCache().getInvalidatedPolicies();
+        if (!engine.getPolicyCache().isInvalidate() && (policies == null || policies.isEmpty())) {
+            return;
+        }
+
+        if (refreshScheduled.compareAndSet(false, true)) {
+            refreshExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    PrivilegedCarbonContext.startTenantFlow();
+                    PrivilegedCarbonContext context = PrivilegedCarbonContext.getThreadLocalCarbonContext();
+                    context.setTenantId(tenantId);
+                    context.setTenantDomain(tenantDomain);
+                    try {
+                        refreshSnapshot();
+                    } catch (Exception e) {
+                        log.error("Error while refreshing the policies of tenant : " + tenantId, e);
+                    } finally {
+                        PrivilegedCarbonContext.endTenantFlow();
+                    }
+                }
+            });
         }
     }
 
-    @Override
-    public PolicyFinderResult findPolicy(EvaluationCtx context) {
+    /**
+     * Builds a new snapshot with the policy changes notified through the policy cache and publishes it.
+     */
+    private synchronized void refreshSnapshot() {
 
-        if (EntitlementEngine.getInstance().getPolicyCache().isInvalidate()) {
+        // changes notified after this point schedule another refresh
+        refreshScheduled.set(false);
+        EntitlementEngine engine = EntitlementEngine.getInstance();
 
-            init(this.finder);
-            policyReferenceCache.clear();
-            EntitlementEngine.getInstance().clearDecisionCache();
-            EntitlementEngine.getInstance().resetCacheInvalidateState();
+        if (engine.getPolicyCache().isInvalidate()) {
+            engine.resetCacheInvalidateState();
+            init();
+            engine.clearDecisionCache();
             if (log.isDebugEnabled()) {
-                int tenantId = CarbonContext.getThreadLocalCarbonContext().getTenantId();
                 log.debug("Invalidation cache message is received. " +
                           "Re-initialized policy finder module of current node and invalidate decision " +
                           "caching for tenantId : " + tenantId);
             }
-        } else {
-            Collection<PolicyStatus> policies =
-                    EntitlementEngine.getInstance().getPolicyCache().getInvalidatedPolicies();
-            if (policies != null) {
-                if (policies.size() > 0) {
-                    synchronized (policies) {
-                        boolean isReorder = false;
-                        policyReferenceCache.clear();
-                        EntitlementEngine.getInstance().clearDecisionCache();
-                        for (PolicyStatus policyStatus : policies) {
-
-                            if (EntitlementConstants.PolicyPublish.ACTION_DELETE
-                                    .equals(policyStatus.getPolicyAction())) {
-                                policyCollection.deletePolicy(policyStatus.getPolicyId());
-                                policyCollectionOrder.remove(new PolicyDTO(policyStatus.getPolicyId()));
-                            } else if (EntitlementConstants.PolicyPublish.ACTION_UPDATE
-                                    .equals(policyStatus.getPolicyAction())) {
-                                AbstractPolicy abstractPolicy = loadPolicy(policyStatus.getPolicyId());
-                                policyCollection.addPolicy(abstractPolicy);
-                            } else if (EntitlementConstants.PolicyPublish.ACTION_CREATE
-                                    .equals(policyStatus.getPolicyAction())) {
-                                AbstractPolicy abstractPolicy = loadPolicy(policyStatus.getPolicyId());
-                                policyCollection.addPolicy(abstractPolicy);
-                                isReorder = true;
-                            } else if (EntitlementConstants.PolicyPublish.ACTION_ORDER
-                                    .equals(policyStatus.getPolicyAction())) {
-                                int order = getPolicyOrder(policyStatus.getPolicyId());
-                                if (order != -1) {
-                                    PolicyDTO policyDTO = new PolicyDTO(policyStatus.getPolicyId());
-                                    if (policyCollectionOrder.indexOf(policyDTO) != -1) {
-                                        policyCollectionOrder.get(policyCollectionOrder.indexOf(policyDTO))
-                                                .setPolicyOrder(order);
-                                        isReorder = true;
-                                    }
-                                }
-                            }
+            return;
+        }
 
+        Collection<PolicyStatus> policies = engine.getPolicyCache().getInvalidatedPolicies();
+        if (policies == null) {
+            return;
+        }
+        List<PolicyStatus> policyStatuses;
+        synchronized (policies) {
+            policyStatuses = new ArrayList<PolicyStatus>(policies);
+            policies.clear();
+        }
+        if (policyStatuses.isEmpty()) {
+            return;
+        }
+
+        PolicySnapshot currentSnapshot = snapshot;
+        // versions are retrieved before the policies, so that a policy which is changed in between is never
+        // recorded with a newer version than its content
+        Map<String, Map<String, String>> activePolicyVersions = getActivePolicyVersions(currentSnapshot);
+        LinkedHashMap<URI, AbstractPolicy> newPolicies =
+                new LinkedHashMap<URI, AbstractPolicy>(currentSnapshot.policies);
+        List<PolicyDTO> policyCollectionOrder = new ArrayList<PolicyDTO>(currentSnapshot.policyCollectionOrder);
+        Map<String, AbstractPolicy> changedPolicies = new LinkedHashMap<String, AbstractPolicy>();
+        boolean isReorder = false;
+        OnDemandPolicyCollection onDemandPolicyCollection = null;
+        if (currentSnapshot.policyCollection instanceof OnDemandPolicyCollection) {
+            onDemandPolicyCollection = ((OnDemandPolicyCollection) currentSnapshot.policyCollection).copy();
+        }
+
+        for (PolicyStatus policyStatus : policyStatuses) {
+
+            String policyId = policyStatus.getPolicyId();
+            if (EntitlementConstants.PolicyPublish.ACTION_DELETE.equals(policyStatus.getPolicyAction())) {
+                newPolicies.remove(URI.create(policyId));
+                if (onDemandPolicyCollection != null) {
+                    onDemandPolicyCollection.deletePolicy(policyId);
+                }
+                int index = indexOfPolicy(policyCollectionOrder, policyId);
+                if (index != -1) {
+                    policyCollectionOrder.remove(index);
+                }
+                changedPolicies.put(policyId, null);
+            } else if (EntitlementConstants.PolicyPublish.ACTION_UPDATE.equals(policyStatus.getPolicyAction()) ||
+                    EntitlementConstants.PolicyPublish.ACTION_CREATE.equals(policyStatus.getPolicyAction())) {
+                AbstractPolicy abstractPolicy = loadPolicy(policyId);
+                if (abstractPolicy != null) {
+                    addPolicy(newPolicies, onDemandPolicyCollection, abstractPolicy);
+                    if (indexOfPolicy(policyCollectionOrder, policyId) == -1) {
+                        policyCollectionOrder.add(new PolicyDTO(policyId));
+                        isReorder = true;
+                    }
+                }
+                changedPolicies.put(policyId, abstractPolicy);
+            } else if (EntitlementConstants.PolicyPublish.ACTION_ORDER.equals(policyStatus.getPolicyAction())) {
+                if (indexOfPolicy(policyCollectionOrder, policyId) != -1) {
+                    isReorder = true;
+                }
+                if (!changedPolicies.containsKey(policyId)) {
+                    changedPolicies.put(policyId, null);
+                }
+            }
+        }
+        if (isReorder) {
+            policyCollectionOrder = getStoreOrder(policyCollectionOrder);
+            if (onDemandPolicyCollection == null) {
+                // the policy collection evaluates the policies in the order they are added
+                LinkedHashMap<URI, AbstractPolicy> orderedPolicies = new LinkedHashMap<URI, AbstractPolicy>();
+                for (PolicyDTO policyDTO : policyCollectionOrder) {
+                    URI identifier = URI.create(policyDTO.getPolicyId());
+                    AbstractPolicy policy = newPolicies.remove(identifier);
+                    if (policy != null) {
+                        orderedPolicies.put(identifier, policy);
+                    }
+                }
+                orderedPolicies.putAll(newPolicies);
+                newPolicies = orderedPolicies;
+            }
+        }
+
+        PolicyCollection policyCollection = onDemandPolicyCollection != null ? onDemandPolicyCollection :
+                createPolicyCollection(newPolicies);
+        snapshot = new PolicySnapshot(policyCollection, newPolicies, policyCollectionOrder,
+                getAppliedPolicyVersions(currentSnapshot.policyVersions, activePolicyVersions,
+                        policyCollectionOrder, changedPolicies.keySet()));
+
+        // evict the decisions only after the new snapshot is published, so that no decision evaluated
+        // against the old snapshot is cached afterwards
+        for (Map.Entry<String, AbstractPolicy> changedPolicy : changedPolicies.entrySet()) {
+            engine.invalidateDecisionCache(changedPolicy.getKey(), changedPolicy.getValue());
+        }
+        rewriteSnapshotStore(snapshot.policyVersions);
+        if (log.isDebugEnabled()) {
+            log.debug(changedPolicies.size() + " policy changes are applied for tenantId : " + tenantId);
+        }
+    }
+
+    /**
+     * Rewrites the local snapshots of the modules in the background once policy changes are applied, so that a
+     * restarted node does not load the previous content of a changed policy from its snapshot. The policies
+     * whose versions are not changed are taken from the current snapshot, the others are retrieved from the
+     * module. Rewrites which are scheduled while another is pending are coalesced into the pending one, which
+     * writes the latest versions.
+     *
+     * @param policyVersions versions of the policies of the new snapshot, per finder module
+     */
+    private void rewriteSnapshotStore(Map<String, Map<String, String>> policyVersions) {
+
+        if (snapshotStore == null || this.finderModules == null || policyVersions.isEmpty()) {
+            return;
+        }
+        if (pendingSnapshotVersions.getAndSet(policyVersions) != null) {
+            return;
+        }
+
+        final PolicySnapshotStore store = snapshotStore;
+        final List<PolicyFinderModule> modules = this.finderModules;
+        final int snapshotTenantId = tenantId;
+        final String snapshotTenantDomain = tenantDomain;
+        refreshExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+
+                Map<String, Map<String, String>> latestVersions = pendingSnapshotVersions.getAndSet(null);
+                if (latestVersions == null) {
+                    return;
+                }
+                PrivilegedCarbonContext.startTenantFlow();
+                PrivilegedCarbonContext context = PrivilegedCarbonContext.getThreadLocalCarbonContext();
+                context.setTenantId(snapshotTenantId);
+                context.setTenantDomain(snapshotTenantDomain);
+                try {
+                    for (PolicyFinderModule finderModule : modules) {
+                        Map<String, String> versions = latestVersions.get(finderModule.getModuleName());
+                        if (versions != null) {
+                            rewriteSnapshotStore(store, snapshotTenantId, finderModule, versions);
                         }
-                        if (isReorder) {
-                            orderPolicyCache();
-                        }
-                        policies.clear();
                     }
+                } catch (Exception e) {
+                    log.warn("Error while writing the policy snapshot of tenantId : " + snapshotTenantId, e);
+                } finally {
+                    PrivilegedCarbonContext.endTenantFlow();
+                }
+            }
+        });
+    }
+
+    private static void rewriteSnapshotStore(PolicySnapshotStore store, int tenantId,
+                                             PolicyFinderModule finderModule, Map<String, String> versions) {
+
+        Map<String, PolicyStoreDTO> storedPolicies = store.read(tenantId, finderModule.getModuleName());
+        Map<String, String> storedVersions = new LinkedHashMap<String, String>();
+        if (storedPolicies != null) {
+            for (PolicyStoreDTO storedPolicy : storedPolicies.values()) {
+                storedVersions.put(storedPolicy.getPolicyId(), storedPolicy.getVersion());
+            }
+            if (PolicySnapshotStore.getFingerprint(versions).equals(
+                    PolicySnapshotStore.getFingerprint(storedVersions))) {
+                return;
+            }
+        }
+
+        List<PolicyStoreDTO> snapshotPolicies = new ArrayList<PolicyStoreDTO>();
+        for (Map.Entry<String, String> entry : versions.entrySet()) {
+            String policy;
+            if (entry.getValue().equals(storedVersions.get(entry.getKey()))) {
+                policy = storedPolicies.get(entry.getKey()).getPolicy();
+            } else {
+                // the retrieved policy is never older than its version, a newer one is retrieved again on start up
+                policy = finderModule.getPolicy(entry.getKey());
+            }
+            if (policy != null && !policy.trim().isEmpty()) {
+                PolicyStoreDTO dto = new PolicyStoreDTO();
+                dto.setPolicyId(entry.getKey());
+                dto.setVersion(entry.getValue());
+                dto.setPolicy(policy);
+                snapshotPolicies.add(dto);
+            }
+        }
+        store.write(tenantId, finderModule.getModuleName(), snapshotPolicies);
+    }
+
+    /**
+     * Gets the current versions of the active policies of the finder modules whose policy versions are loaded.
+     *
+     * @param currentSnapshot current snapshot
+     * @return versions of the active policies, per finder module
+     */
+    private Map<String, Map<String, String>> getActivePolicyVersions(PolicySnapshot currentSnapshot) {
+
+        Map<String, Map<String, String>> activePolicyVersions = new HashMap<String, Map<String, String>>();
+        if (this.finderModules != null && !currentSnapshot.policyVersions.isEmpty()) {
+            for (PolicyFinderModule finderModule : this.finderModules) {
+                if (currentSnapshot.policyVersions.containsKey(finderModule.getModuleName())) {
+                    Map<String, String> versions = finderModule.getActivePolicyVersions();
+                    if (versions != null) {
+                        activePolicyVersions.put(finderModule.getModuleName(), versions);
+                    }
+                }
+            }
+        }
+        return activePolicyVersions;
+    }
+
+    /**
+     * Updates the loaded policy versions with the versions of the policies applied to the snapshot, so that the
+     * policy sync does not reload the policy changes which are already applied through the policy cache.
+     *
+     * @param loadedPolicyVersions  versions of the loaded policies, per finder module
+     * @param activePolicyVersions  versions of the active policies, retrieved before the policies are applied
+     * @param policyCollectionOrder policies of the new snapshot, in policy order
+     * @param appliedPolicyIds      identifiers of the applied policies
+     * @return versions of the policies of the new snapshot, per finder module
+     */
+    private Map<String, Map<String, String>> getAppliedPolicyVersions(
+            Map<String, Map<String, String>> loadedPolicyVersions,
+            Map<String, Map<String, String>> activePolicyVersions, List<PolicyDTO> policyCollectionOrder,
+            Set<String> appliedPolicyIds) {
 
+        if (loadedPolicyVersions.isEmpty() || appliedPolicyIds.isEmpty()) {
+            return loadedPolicyVersions;
+        }
 
+        Map<String, Map<String, String>> policyVersions = new LinkedHashMap<String, Map<String, String>>();
+        for (Map.Entry<String, Map<String, String>> moduleVersions : loadedPolicyVersions.entrySet()) {
+            Map<String, String> loadedVersions = moduleVersions.getValue();
+            Map<String, String> versions = activePolicyVersions.get(moduleVersions.getKey());
+            if (versions == null) {
+                policyVersions.put(moduleVersions.getKey(), loadedVersions);
+                continue;
+            }
+
+            Map<String, String> appliedVersions = new LinkedHashMap<String, String>();
+            for (PolicyDTO policyDTO : policyCollectionOrder) {
+                String policyId = policyDTO.getPolicyId();
+                if (appliedPolicyIds.contains(policyId)) {
+                    if (versions.containsKey(policyId)) {
+                        appliedVersions.put(policyId, versions.get(policyId));
+                    }
+                } else if (loadedVersions.containsKey(policyId)) {
+                    appliedVersions.put(policyId, loadedVersions.get(policyId));
+                }
+            }
+            // policies which could not be parsed are kept, so that they are not retried on each sync
+            for (Map.Entry<String, String> entry : loadedVersions.entrySet()) {
+                if (!appliedVersions.containsKey(entry.getKey()) && !appliedPolicyIds.contains(entry.getKey())) {
+                    appliedVersions.put(entry.getKey(), entry.getValue());
                 }
             }
+            policyVersions.put(moduleVersions.getKey(), appliedVersions);
         }
+        return policyVersions;
+    }
 
+    /**
+     * Schedules the policy sync of this policy finder, if it is enabled and not already scheduled.
+     */
+    private synchronized void schedulePolicySync() {
+
+        if (policySyncInterval <= 0 || policySyncTask != null) {
+            return;
+        }
+        PolicySyncTask task = new PolicySyncTask(this);
+        policySyncTask = syncExecutor.scheduleWithFixedDelay(task, policySyncInterval, policySyncInterval,
+                TimeUnit.MILLISECONDS);
+        task.future = policySyncTask;
+    }
+
+    private void runPolicySync() {
+
+        PrivilegedCarbonContext.startTenantFlow();
+        PrivilegedCarbonContext context = PrivilegedCarbonContext.getThreadLocalCarbonContext();
+        context.setTenantId(tenantId);
+        context.setTenantDomain(tenantDomain);
         try {
-            AbstractPolicy policy = policyCollection.getEffectivePolicy(context);
+            syncPolicies();
+        } catch (Exception e) {
+            log.error("Error while synchronizing the policies of tenant : " + tenantId, e);
+        } finally {
+            PrivilegedCarbonContext.endTenantFlow();
+        }
+    }
+
+    /**
+     * Compares the versions of the active policies of each module with the versions of the loaded policies,
+     * and publishes a new snapshot in which only the created, updated, deleted and reordered policies are
+     * applied. Unchanged policies are taken from the current snapshot without being retrieved or parsed again.
+     */
+    private synchronized void syncPolicies() {
+
+        PolicySnapshot currentSnapshot = snapshot;
+        if (this.finderModules == null || this.finderModules.isEmpty()) {
+            return;
+        }
+
+        Map<String, Map<String, String>> newPolicyVersions = new LinkedHashMap<String, Map<String, String>>();
+        boolean changed = false;
+        for (PolicyFinderModule finderModule : this.finderModules) {
+            Map<String, String> loadedVersions = currentSnapshot.policyVersions.get(finderModule.getModuleName());
+            Map<String, String> versions = loadedVersions != null ? finderModule.getActivePolicyVersions() : null;
+            if (versions == null) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Policy versions are not supported by " + finderModule + ". Policies of tenantId : " +
+                            tenantId + " are only refreshed through the policy cache");
+                }
+                return;
+            }
+            if (isPolicyVersionsChanged(loadedVersions, versions)) {
+                changed = true;
+            }
+            newPolicyVersions.put(finderModule.getModuleName(), versions);
+        }
+        if (!changed) {
+            return;
+        }
+
+        Map<String, AbstractPolicy> loadedPolicies = new HashMap<String, AbstractPolicy>();
+        for (AbstractPolicy policy : currentSnapshot.policies.values()) {
+            loadedPolicies.put(policy.getId().toString(), policy);
+        }
+        Set<String> loadedPolicyIds = new HashSet<String>();
+        for (PolicyDTO policyDTO : currentSnapshot.policyCollectionOrder) {
+            loadedPolicyIds.add(policyDTO.getPolicyId());
+        }
+
+        LinkedHashMap<URI, AbstractPolicy> newPolicies = new LinkedHashMap<URI, AbstractPolicy>();
+        List<PolicyDTO> policyCollectionOrder = new ArrayList<PolicyDTO>();
+        Map<String, AbstractPolicy> changedPolicies = new LinkedHashMap<String, AbstractPolicy>();
+        OnDemandPolicyCollection onDemandPolicyCollection = null;
+        if (currentSnapshot.policyCollection instanceof OnDemandPolicyCollection) {
+            onDemandPolicyCollection = ((OnDemandPolicyCollection) currentSnapshot.policyCollection).copy();
+        }
+
+        for (PolicyFinderModule finderModule : this.finderModules) {
+            Map<String, String> loadedVersions = currentSnapshot.policyVersions.get(finderModule.getModuleName());
+            Map<String, String> versions = newPolicyVersions.get(finderModule.getModuleName());
+
+            for (String policyId : getDeletedPolicies(loadedVersions, versions)) {
+                if (onDemandPolicyCollection != null) {
+                    onDemandPolicyCollection.deletePolicy(policyId);
+                }
+                changedPolicies.put(policyId, null);
+            }
+            for (String policyId : getReorderedPolicies(loadedVersions, versions)) {
+                changedPolicies.put(policyId, null);
+            }
+
+            Set<String> updatedPolicyIds = new HashSet<String>(getUpdatedPolicies(loadedVersions, versions));
+            int order = 0;
+            for (String policyId : versions.keySet()) {
+                boolean isLoaded;
+                if (!updatedPolicyIds.contains(policyId)) {
+                    AbstractPolicy policy = loadedPolicies.get(policyId);
+                    if (policy != null) {
+                        addPolicy(newPolicies, null, policy);
+                    }
+                    isLoaded = policy != null || (onDemandPolicyCollection != null &&
+                            loadedPolicyIds.contains(policyId));
+                } else {
+                    AbstractPolicy policy = loadPolicy(finderModule, policyId);
+                    if (policy != null) {
+                        addPolicy(newPolicies, onDemandPolicyCollection, policy);
+                    }
+                    changedPolicies.put(policyId, policy);
+                    isLoaded = policy != null;
+                }
+                if (isLoaded) {
+                    PolicyDTO policyDTO = new PolicyDTO(policyId);
+                    policyDTO.setPolicyOrder(order);
+                    policyCollectionOrder.add(policyDTO);
+                }
+                order++;
+            }
+        }
+
+        PolicyCollection policyCollection = onDemandPolicyCollection != null ? onDemandPolicyCollection :
+                createPolicyCollection(newPolicies);
+        snapshot = new PolicySnapshot(policyCollection, newPolicies, policyCollectionOrder, newPolicyVersions);
+
+        EntitlementEngine engine = EntitlementEngine.getInstance();
+        for (Map.Entry<String, AbstractPolicy> changedPolicy : changedPolicies.entrySet()) {
+            engine.invalidateDecisionCache(changedPolicy.getKey(), changedPolicy.getValue());
+        }
+        rewriteSnapshotStore(newPolicyVersions);
+        log.info(changedPolicies.size() + " policy changes are synchronized from the policy store for tenantId : " +
+                tenantId);
+    }
+
+    /**
+     * Checks whether the active policies differ from the loaded policies in their identifiers, versions or
+     * order. Versions are compared as opaque values, hence a policy whose version is reused after it is deleted
+     * and created again is only detected when the module includes the content revision in the version.
+     *
+     * @param loadedVersions versions of the loaded policies, in policy order
+     * @param versions       versions of the active policies, in policy order
+     * @return true if the policies are to be synchronized
+     */
+    static boolean isPolicyVersionsChanged(Map<String, String> loadedVersions, Map<String, String> versions) {
+
+        return !versions.equals(loadedVersions) ||
+                !new ArrayList<String>(versions.keySet()).equals(new ArrayList<String>(loadedVersions.keySet()));
+    }
+
+    /**
+     * Finds the loaded policies which are no longer active.
+     *
+     * @param loadedVersions versions of the loaded policies, in policy order
+     * @param versions       versions of the active policies, in policy order
+     * @return identifiers of the deleted policies
+     */
+    static List<String> getDeletedPolicies(Map<String, String> loadedVersions, Map<String, String> versions) {
+
+        List<String> deletedPolicies = new ArrayList<String>();
+        for (String policyId : loadedVersions.keySet()) {
+            if (!versions.containsKey(policyId)) {
+                deletedPolicies.add(policyId);
+            }
+        }
+        return deletedPolicies;
+    }
+
+    /**
+     * Finds the active policies which are not loaded, or whose versions differ from the loaded versions, in
+     * policy order. These policies are retrieved and parsed again.
+     *
+     * @param loadedVersions versions of the loaded policies, in policy order
+     * @param versions       versions of the active policies, in policy order
+     * @return identifiers of the created and updated policies
+     */
+    static List<String> getUpdatedPolicies(Map<String, String> loadedVersions, Map<String, String> versions) {
+
+        List<String> updatedPolicies = new ArrayList<String>();
+        for (Map.Entry<String, String> entry : versions.entrySet()) {
+            if (!entry.getValue().equals(loadedVersions.get(entry.getKey()))) {
+                updatedPolicies.add(entry.getKey());
+            }
+        }
+        return updatedPolicies;
+    }
+
+    /**
+     * Finds the policies which are kept in both version maps but whose relative order has changed.
+     *
+     * @param loadedVersions versions of the loaded policies, in policy order
+     * @param versions       versions of the active policies, in policy order
+     * @return identifiers of the reordered policies
+     */
+    static List<String> getReorderedPolicies(Map<String, String> loadedVersions, Map<String, String> versions) {
+
+        List<String> loadedOrder = new ArrayList<String>();
+        for (String policyId : loadedVersions.keySet()) {
+            if (versions.containsKey(policyId)) {
+                loadedOrder.add(policyId);
+            }
+        }
+        List<String> newOrder = new ArrayList<String>();
+        for (String policyId : versions.keySet()) {
+            if (loadedVersions.containsKey(policyId)) {
+                newOrder.add(policyId);
+            }
+        }
+
+        List<String> reorderedPolicies = new ArrayList<String>();
+        for (int i = 0; i < newOrder.size(); i++) {
+            if (!newOrder.get(i).equals(loadedOrder.get(i))) {
+                reorderedPolicies.add(newOrder.get(i));
+            }
+        }
+        return reorderedPolicies;
+    }
+
+    private static ThreadPoolExecutor createRefreshPool() {
+
+        // each tenant hands at most one task at a time to the pool, hence the queue is bound by the tenants
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(REFRESH_THREADS, REFRESH_THREADS, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "CarbonPolicyFinder-refresh");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    private void addPolicy(LinkedHashMap<URI, AbstractPolicy> policies,
+                           OnDemandPolicyCollection onDemandPolicyCollection, AbstractPolicy policy) {
+
+        if (onDemandPolicyCollection != null) {
+            onDemandPolicyCollection.addPolicy(policy);
+        } else {
+            policies.put(policy.getId(), policy);
+        }
+    }
+
+    @Override
+    public PolicyFinderResult findPolicy(EvaluationCtx context) {
+
+        refreshInvalidatedPolicies();
+
+        PolicySnapshot currentSnapshot = snapshot;
+        try {
+            AbstractPolicy policy = currentSnapshot.policyCollection.getEffectivePolicy(context);
             if (policy == null) {
                 return new PolicyFinderResult();
             } else {
+                recordPolicy(policy);
+                if (attributePrefetch) {
+                    prefetchAttributes(currentSnapshot, policy, context);
+                }
                 return new PolicyFinderResult(policy);
             }
         } catch (EntitlementException e) {
+            DecisionCacheContext.markNotCacheable();
             ArrayList<String> code = new ArrayList<String>();
             code.add(Status.STATUS_PROCESSING_ERROR);
             Status status = new Status(code, e.getMessage());
@@ -286,21 +1097,56 @@ public class CarbonPolicyFinder extends org.wso2.balana.finder.PolicyFinderModul
     }
 
 
+    /**
+     * Orders the given policies in the same way as the policy store, by the current order of each policy.
+     *
+     * @param policyCollectionOrder loaded policies
+     * @return policies sorted by their order in the policy store
+     */
+    private List<PolicyDTO> getStoreOrder(List<PolicyDTO> policyCollectionOrder) {
+
+        List<PolicyDTO> orderedPolicies = new ArrayList<PolicyDTO>(policyCollectionOrder.size());
+        for (PolicyDTO policyDTO : policyCollectionOrder) {
+            PolicyDTO orderedPolicyDTO = new PolicyDTO(policyDTO.getPolicyId());
+            orderedPolicyDTO.setPolicyOrder(getPolicyOrder(policyDTO.getPolicyId()));
+            orderedPolicies.add(orderedPolicyDTO);
+        }
+        // stable sort, policies with the same order keep their relative order
+        Collections.sort(orderedPolicies, new PolicyOrderComparator());
+        return orderedPolicies;
+    }
+
+    private int indexOfPolicy(List<PolicyDTO> policyCollectionOrder, String policyId) {
+
+        for (int i = 0; i < policyCollectionOrder.size(); i++) {
+            if (policyId.equals(policyCollectionOrder.get(i).getPolicyId())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     private AbstractPolicy loadPolicy(String policyId) {
         if (this.finderModules != null) {
             for (PolicyFinderModule finderModule : this.finderModules) {
-                String policyString = finderModule.getPolicy(policyId);
-                if (policyString != null) {
-                    AbstractPolicy policy = policyReader.getPolicy(policyString);
-                    if (policy != null) {
-                        return policy;
-                    }
+                AbstractPolicy policy = loadPolicy(finderModule, policyId);
+                if (policy != null) {
+                    return policy;
                 }
             }
         }
         return null;
     }
 
+    private AbstractPolicy loadPolicy(PolicyFinderModule finderModule, String policyId) {
+
+        String policyString = finderModule.getPolicy(policyId);
+        if (policyString != null) {
+            return policyReader.getPolicy(policyString);
+        }
+        return null;
+    }
+
     private int getPolicyOrder(String policyId) {
         int order = -1;
         if (this.finderModules != null) {
@@ -318,6 +1164,7 @@ public class CarbonPolicyFinder extends org.wso2.balana.finder.PolicyFinderModul
     public PolicyFinderResult findPolicy(URI idReference, int type, VersionConstraints constraints,
                                          PolicyMetaData parentMetaData) {
 
+        Map<URI, AbstractPolicy> policyReferenceCache = snapshot.policyReferenceCache;
         AbstractPolicy policy = policyReferenceCache.get(idReference);
 
         if (policy == null) {
@@ -327,6 +1174,13 @@ public class CarbonPolicyFinder extends org.wso2.balana.finder.PolicyFinderModul
                     if (policyString != null) {
                         policy = policyReader.getPolicy(policyString);
                         if (policy != null) {
+                            if (policyReferenceCache.size() >= maxReferenceCacheEntries) {
+                                // drop an arbitrary entry, the cache is only bounded to limit memory usage
+                                Iterator<URI> iterator = policyReferenceCache.keySet().iterator();
+                                if (iterator.hasNext()) {
+                                    policyReferenceCache.remove(iterator.next());
+                                }
+                            }
                             policyReferenceCache.put(idReference, policy);
                             break;
                         }
@@ -336,6 +1190,7 @@ public class CarbonPolicyFinder extends org.wso2.balana.finder.PolicyFinderModul
         }
 
         if (policy != null) {
+            DecisionCacheContext.recordPolicy(idReference.toString());
             // we found a valid version, so see if it's the right kind,
             // and if it is then we return it
             if (type == PolicyReference.POLICY_REFERENCE) {
@@ -352,7 +1207,204 @@ public class CarbonPolicyFinder extends org.wso2.balana.finder.PolicyFinderModul
         return new PolicyFinderResult();
     }
 
+    /**
+     * Resolves the attributes designated by the effective policy which are not carried by the request,
+     * concurrently, before the policy is evaluated.
+     */
+    private void prefetchAttributes(PolicySnapshot currentSnapshot, AbstractPolicy policy, EvaluationCtx context) {
+
+        CarbonAttributeFinder attributeFinder = EntitlementEngine.getInstance().getCarbonAttributeFinder();
+        if (attributeFinder != null) {
+            attributeFinder.prefetchAttributes(currentSnapshot.getDesignators(policy), context);
+        }
+    }
+
+    /**
+     * Records the policies which contributed to the decision, including the top-level policies which are
+     * wrapped in to a policy set by the policy collection.
+     *
+     * @param policy effective policy
+     */
+    private void recordPolicy(AbstractPolicy policy) {
+
+        if (policy.getId() != null) {
+            DecisionCacheContext.recordPolicy(policy.getId().toString());
+        }
+        if (policy instanceof PolicySet && policy.getChildren() != null) {
+            for (Object child : policy.getChildren()) {
+                if (child instanceof AbstractPolicy && ((AbstractPolicy) child).getId() != null) {
+                    DecisionCacheContext.recordPolicy(((AbstractPolicy) child).getId().toString());
+                }
+            }
+        }
+    }
+
     public void clearPolicyCache() {
         EntitlementEngine.getInstance().getPolicyCache().clear();
     }
+
+    /**
+     * Returns the attributes designated by the loaded policies. When policies are loaded on demand, the
+     * loaded policies are not kept by the snapshot, hence no attributes are returned.
+     *
+     * @return attributes designated by the loaded policies
+     */
+    public Set<RequestAttribute> getPolicyDesignators() {
+
+        return snapshot.getDesignators();
+    }
+
+    /**
+     * Parses a range of policies, splitting the range until it is small enough to be parsed by one thread.
+     */
+    private static final class PolicyParsingTask extends RecursiveAction {
+
+        private static final int THRESHOLD = 16;
+
+        private final PolicyReader policyReader;
+
+        private final String[] policies;
+
+        private final AbstractPolicy[] abstractPolicies;
+
+        private final int start;
+
+        private final int end;
+
+        private PolicyParsingTask(PolicyReader policyReader, String[] policies, AbstractPolicy[] abstractPolicies,
+                                  int start, int end) {
+
+            this.policyReader = policyReader;
+            this.policies = policies;
+            this.abstractPolicies = abstractPolicies;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (end - start <= THRESHOLD) {
+                for (int i = start; i < end; i++) {
+                    abstractPolicies[i] = policyReader.getPolicy(policies[i]);
+                }
+                return;
+            }
+            int middle = (start + end) >>> 1;
+            invokeAll(new PolicyParsingTask(policyReader, policies, abstractPolicies, start, middle),
+                    new PolicyParsingTask(policyReader, policies, abstractPolicies, middle, end));
+        }
+    }
+
+    /**
+     * Runs the policy sync of a policy finder. The policy finder is only weakly referenced, so that the task is
+     * cancelled once the policy finder of an unloaded tenant is collected.
+     */
+    private static final class PolicySyncTask implements Runnable {
+
+        private final WeakReference<CarbonPolicyFinder> policyFinder;
+
+        private volatile ScheduledFuture<?> future;
+
+        private PolicySyncTask(CarbonPolicyFinder policyFinder) {
+
+            this.policyFinder = new WeakReference<CarbonPolicyFinder>(policyFinder);
+        }
+
+        @Override
+        public void run() {
+
+            CarbonPolicyFinder finder = policyFinder.get();
+            if (finder == null) {
+                if (future != null) {
+                    future.cancel(false);
+                }
+                return;
+            }
+            finder.runPolicySync();
+        }
+    }
+
+    /**
+     * Immutable view of the loaded policies. The policy collection of a snapshot is never modified once the
+     * snapshot is published. Referenced policies are cached per snapshot, so that a new snapshot starts with
+     * an empty reference cache. When policies are loaded on demand, the parsed policies are only kept by the
+     * policy collection and the policy map of the snapshot is empty. The versions of the loaded policies are
+     * kept per finder module when the modules support policy versions.
+     */
+    private static final class PolicySnapshot {
+
+        private final PolicyCollection policyCollection;
+
+        private final Map<URI, AbstractPolicy> policies;
+
+        private final List<PolicyDTO> policyCollectionOrder;
+
+        private final Map<URI, AbstractPolicy> policyReferenceCache = new ConcurrentHashMap<URI, AbstractPolicy>();
+
+        private volatile Set<RequestAttribute> designators;
+
+        private final Map<URI, List<AttributeDesignator>> policyDesignators =
+                new ConcurrentHashMap<URI, List<AttributeDesignator>>();
+
+        private final Map<String, Map<String, String>> policyVersions;
+
+        private PolicySnapshot(PolicyCollection policyCollection, LinkedHashMap<URI, AbstractPolicy> policies,
+                               List<PolicyDTO> policyCollectionOrder,
+                               Map<String, Map<String, String>> policyVersions) {
+
+            this.policyCollection = policyCollection;
+            this.policies = Collections.unmodifiableMap(policies);
+            this.policyCollectionOrder = Collections.unmodifiableList(policyCollectionOrder);
+            this.policyVersions = Collections.unmodifiableMap(policyVersions);
+        }
+
+        /**
+         * Finds the attributes designated by the policies of the snapshot, on first use.
+         */
+        private Set<RequestAttribute> getDesignators() {
+
+            Set<RequestAttribute> result = designators;
+            if (result == null) {
+                result = new HashSet<RequestAttribute>();
+                for (AbstractPolicy policy : policies.values()) {
+                    for (AttributeDesignator designator : PolicyDesignatorUtil.getDesignators(policy)) {
+                        result.add(new RequestAttribute(designator.getCategory().toString(),
+                                designator.getId().toString()));
+                    }
+                }
+                result = Collections.unmodifiableSet(result);
+                designators = result;
+            }
+            return result;
+        }
+
+        /**
+         * Finds the attribute designators of an effective policy. The designators of the loaded top-level
+         * policies are found once per snapshot. A policy set which wraps multiple applicable policies is
+         * built per request, hence the designators of its policies are combined.
+         */
+        private List<AttributeDesignator> getDesignators(AbstractPolicy policy) {
+
+            URI policyId = policy.getId();
+            if (policyId != null && policies.get(policyId) == policy) {
+                List<AttributeDesignator> result = policyDesignators.get(policyId);
+                if (result == null) {
+                    result = PolicyDesignatorUtil.getDesignators(policy);
+                    policyDesignators.put(policyId, result);
+                }
+                return result;
+            }
+            if (policy instanceof PolicySet && policy.getChildren() != null) {
+                List<AttributeDesignator> result = new ArrayList<AttributeDesignator>();
+                for (Object child : policy.getChildren()) {
+                    if (child instanceof AbstractPolicy) {
+                        result.addAll(getDesignators((AbstractPolicy) child));
+                    }
+                }
+                return result;
+            }
+            return PolicyDesignatorUtil.getDesignators(policy);
+        }
+    }
 }
@@ -103,6 +103,18 @@ public interface PolicyFinderModule {
 
     public int getPolicyOrder(String policyId);
 
+    /**
+     * gets the versions of all supported active policies, without retrieving the policies. This is used
+     * to validate a local snapshot of the policies. The policies must be ordered in the same way as
+     * <code>getActivePolicies</code>. The version of a policy must change whenever its content changes,
+     * including when the policy is deleted and created again with a version number which is used before
+     *
+     * @return map of policy id and version, or null if policy versions are not supported by the module
+     */
+    public default Map<String, String> getActivePolicyVersions() {
+
+        return null;
+    }
 
     /**
      * gets reference policy for given policy Id
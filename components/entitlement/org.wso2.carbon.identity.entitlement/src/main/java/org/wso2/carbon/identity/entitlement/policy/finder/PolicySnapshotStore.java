@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2024, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.entitlement.policy.finder;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.entitlement.dto.PolicyStoreDTO;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps a local, compressed snapshot of the active policies of a tenant and a policy finder module. The
+ * snapshot is stored with a fingerprint of the policy versions, so that the PDP can load the policies from the
+ * snapshot on start up and retrieve only the policies whose versions have changed from the policy store.
+ */
+public class PolicySnapshotStore {
+
+    private static Log log = LogFactory.getLog(PolicySnapshotStore.class);
+
+    private static final int MAGIC = 0x58504F4C;
+
+    /**
+     * version 2 stores the revisions of the policies instead of their version numbers, which are reused once a
+     * policy is deleted. Snapshots of version 1 are ignored, hence the policies are retrieved again.
+     */
+    private static final int FORMAT_VERSION = 2;
+
+    private static final String HASH_ALGORITHM = "SHA-256";
+
+    private final File directory;
+
+    public PolicySnapshotStore(File directory) {
+
+        this.directory = directory;
+    }
+
+    /**
+     * Calculates the fingerprint of an ordered set of policy versions.
+     *
+     * @param versions map of policy id and version, in policy order
+     * @return fingerprint
+     */
+    public static String getFingerprint(Map<String, String> versions) {
+
+        MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException("Hash algorithm " + HASH_ALGORITHM + " is not available", e);
+        }
+        for (Map.Entry<String, String> entry : versions.entrySet()) {
+            messageDigest.update(entry.getKey().getBytes(StandardCharsets.UTF_8));
+            messageDigest.update((byte) 0);
+            messageDigest.update(String.valueOf(entry.getValue()).getBytes(StandardCharsets.UTF_8));
+            messageDigest.update((byte) 0);
+        }
+        return Base64.getEncoder().withoutPadding().encodeToString(messageDigest.digest());
+    }
+
+    /**
+     * Reads the snapshot of the given tenant and module.
+     *
+     * @param tenantId   tenant id
+     * @param moduleName name of the policy finder module
+     * @return map of policy id and policy with its version, in policy order. null if there is no valid snapshot
+     */
+    public Map<String, PolicyStoreDTO> read(int tenantId, String moduleName) {
+
+        File file = getFile(tenantId, moduleName);
+        if (!file.isFile()) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(new FileInputStream(file))))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || in.readInt() != tenantId) {
+                log.warn("Ignoring incompatible policy snapshot " + file.getAbsolutePath());
+                return null;
+            }
+            String fingerprint = in.readUTF();
+            int count = in.readInt();
+            Map<String, PolicyStoreDTO> policies = new LinkedHashMap<String, PolicyStoreDTO>();
+            Map<String, String> versions = new LinkedHashMap<String, String>();
+            for (int i = 0; i < count; i++) {
+                PolicyStoreDTO dto = new PolicyStoreDTO();
+                dto.setPolicyId(readString(in));
+                dto.setVersion(readString(in));
+                dto.setPolicy(readString(in));
+                policies.put(dto.getPolicyId(), dto);
+                versions.put(dto.getPolicyId(), dto.getVersion());
+            }
+            if (!fingerprint.equals(getFingerprint(versions))) {
+                log.warn("Ignoring corrupted policy snapshot " + file.getAbsolutePath());
+                return null;
+            }
+            return policies;
+        } catch (IOException e) {
+            log.warn("Error while reading policy snapshot " + file.getAbsolutePath(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Replaces the snapshot of the given tenant and module.
+     *
+     * @param tenantId   tenant id
+     * @param moduleName name of the policy finder module
+     * @param policies   policies with their versions, in policy order
+     */
+    public void write(int tenantId, String moduleName, List<PolicyStoreDTO> policies) {
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            log.warn("Policy snapshot directory " + directory.getAbsolutePath() + " can not be created");
+            return;
+        }
+
+        // only the first policy of a duplicated policy id is written
+        Map<String, PolicyStoreDTO> uniquePolicies = new LinkedHashMap<String, PolicyStoreDTO>();
+        Map<String, String> versions = new LinkedHashMap<String, String>();
+        for (PolicyStoreDTO dto : policies) {
+            if (!uniquePolicies.containsKey(dto.getPolicyId())) {
+                uniquePolicies.put(dto.getPolicyId(), dto);
+                versions.put(dto.getPolicyId(), dto.getVersion());
+            }
+        }
+
+        File file = getFile(tenantId, moduleName);
+        File tempFile = new File(directory, file.getName() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new GZIPOutputStream(new FileOutputStream(tempFile))))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(tenantId);
+                out.writeUTF(getFingerprint(versions));
+                out.writeInt(uniquePolicies.size());
+                for (PolicyStoreDTO dto : uniquePolicies.values()) {
+                    writeString(out, dto.getPolicyId());
+                    writeString(out, dto.getVersion());
+                    writeString(out, dto.getPolicy());
+                }
+            }
+            try {
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Policy snapshot " + file.getAbsolutePath() + " is written with " + uniquePolicies.size() +
+                        " policies");
+            }
+        } catch (IOException e) {
+            log.warn("Error while writing policy snapshot " + file.getAbsolutePath(), e);
+            if (tempFile.exists() && !tempFile.delete()) {
+                log.warn("Temporary policy snapshot " + tempFile.getAbsolutePath() + " can not be deleted");
+            }
+        }
+    }
+
+    private File getFile(int tenantId, String moduleName) {
+
+        String name = String.valueOf(moduleName).replaceAll("[^A-Za-z0-9._-]", "_");
+        return new File(directory, "policies-" + tenantId + "-" + name + ".bin");
+    }
+
+    private String readString(DataInputStream in) throws IOException {
+
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void writeString(DataOutputStream out, String value) throws IOException {
+
+        byte[] bytes = String.valueOf(value).getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
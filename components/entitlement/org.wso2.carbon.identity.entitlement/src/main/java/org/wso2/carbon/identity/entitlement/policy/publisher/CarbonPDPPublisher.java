@@ -69,4 +69,30 @@ public class CarbonPDPPublisher implements PolicyPublisherModule {
             manager.orderPolicy(policyDTO);
         }
     }
+
+    /**
+     * Publishes several policies with the same action. Created policies are added to the policy store in bulk,
+     * other actions are applied one policy at a time.
+     *
+     * @param policyDTOs policies to publish, with distinct policy ids
+     * @param action     publishing action
+     * @param enabled    whether policies must be enabled or not
+     * @param order      order of the policies
+     * @throws EntitlementException throws, if fails
+     */
+    public void publish(PolicyDTO[] policyDTOs, String action, boolean enabled, int order)
+            throws EntitlementException {
+
+        if (EntitlementConstants.PolicyPublish.ACTION_CREATE.equals(action)) {
+            for (PolicyDTO policyDTO : policyDTOs) {
+                policyDTO.setPolicyOrder(order);
+                policyDTO.setActive(enabled);
+            }
+            EntitlementAdminEngine.getInstance().getPolicyStoreManager().addPolicies(policyDTOs);
+        } else {
+            for (PolicyDTO policyDTO : policyDTOs) {
+                publish(policyDTO, action, enabled, order);
+            }
+        }
+    }
 }
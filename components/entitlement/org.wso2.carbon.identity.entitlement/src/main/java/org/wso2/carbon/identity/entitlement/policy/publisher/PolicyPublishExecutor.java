@@ -37,7 +37,10 @@ import org.wso2.carbon.registry.api.Registry;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -170,55 +173,63 @@ public class PolicyPublishExecutor {
                 log.error("Error while calling the post verification publisher module", e);
             }
 
-            for (String policyId : policyIds) {
+            // policies created in the PDP are written to the policy store at once
+            if (policyPublisherModule instanceof CarbonPDPPublisher &&
+                    EntitlementConstants.PolicyPublish.ACTION_CREATE.equals(action) && policyIds.length > 1) {
+                publishInBulk((CarbonPDPPublisher) policyPublisherModule, subscriberId, subscriberHolders,
+                        papStatusDataHandler);
+            } else {
+                for (String policyId : policyIds) {
+
+                    PolicyDTO policyDTO = null;
+
+                    if (EntitlementConstants.PolicyPublish.ACTION_CREATE.equalsIgnoreCase(action) ||
+                            EntitlementConstants.PolicyPublish.ACTION_UPDATE.equalsIgnoreCase(action)) {
+                        PolicyPersistenceManager policyStore =
+                                EntitlementAdminEngine.getInstance().getPolicyPersistenceManager();
+                        try {
+                            policyDTO = policyStore.getPolicy(policyId, version);
+                        } catch (EntitlementException e) {
+                            //  ignore
+                        }
+                    } else {
+                        policyDTO = new PolicyDTO();
+                        policyDTO.setPolicyId(policyId);
+                        policyDTO.setVersion(version);
+                        policyDTO.setPolicyOrder(order);
+                    }
 
-                PolicyDTO policyDTO = null;
+                    if (policyDTO == null) {
+                        subscriberHolders.add(new StatusHolder(EntitlementConstants.StatusTypes.PUBLISH_POLICY,
+                                subscriberId, version, policyId, action, false,
+                                "Can not found policy under policy id : " + policyId));
+                        policyHolders.add(new StatusHolder(EntitlementConstants.StatusTypes.PUBLISH_POLICY,
+                                policyId, version, subscriberId, action, false,
+                                "Can not found policy under policy id : " + policyId));
+                        continue;
+                    }
 
-                if (EntitlementConstants.PolicyPublish.ACTION_CREATE.equalsIgnoreCase(action) ||
-                        EntitlementConstants.PolicyPublish.ACTION_UPDATE.equalsIgnoreCase(action)) {
-                    PolicyPersistenceManager policyStore = EntitlementAdminEngine.getInstance().getPolicyPersistenceManager();
                     try {
-                        policyDTO = policyStore.getPolicy(policyId, version);
-                    } catch (EntitlementException e) {
-                        //  ignore
+                        policyPublisherModule.publish(policyDTO, action, enabled, order);
+                        subscriberHolders.add(new StatusHolder(EntitlementConstants.StatusTypes.PUBLISH_POLICY,
+                                subscriberId, version, policyId, action));
+                        policyHolders.add(new StatusHolder(EntitlementConstants.StatusTypes.PUBLISH_POLICY,
+                                policyId, version, subscriberId, action));
+                    } catch (Exception e) {
+                        subscriberHolders.add(new StatusHolder(EntitlementConstants.StatusTypes.PUBLISH_POLICY,
+                                subscriberId, version, policyId, action, false, e.getMessage()));
+                        policyHolders.add(new StatusHolder(EntitlementConstants.StatusTypes.PUBLISH_POLICY,
+                                policyId, version, subscriberId, action, false, e.getMessage()));
                     }
-                } else {
-                    policyDTO = new PolicyDTO();
-                    policyDTO.setPolicyId(policyId);
-                    policyDTO.setVersion(version);
-                    policyDTO.setPolicyOrder(order);
-                }
-
-                if (policyDTO == null) {
-                    subscriberHolders.add(new StatusHolder(EntitlementConstants.StatusTypes.PUBLISH_POLICY,
-                            subscriberId, version, policyId, action, false,
-                            "Can not found policy under policy id : " + policyId));
-                    policyHolders.add(new StatusHolder(EntitlementConstants.StatusTypes.PUBLISH_POLICY,
-                            policyId, version, subscriberId, action, false,
-                            "Can not found policy under policy id : " + policyId));
-                    continue;
-                }
-
-                try {
-                    policyPublisherModule.publish(policyDTO, action, enabled, order);
-                    subscriberHolders.add(new StatusHolder(EntitlementConstants.StatusTypes.PUBLISH_POLICY,
-                            subscriberId, version, policyId, action));
-                    policyHolders.add(new StatusHolder(EntitlementConstants.StatusTypes.PUBLISH_POLICY,
-                            policyId, version, subscriberId, action));
-                } catch (Exception e) {
-                    subscriberHolders.add(new StatusHolder(EntitlementConstants.StatusTypes.PUBLISH_POLICY,
-                            subscriberId, version, policyId, action, false, e.getMessage()));
-                    policyHolders.add(new StatusHolder(EntitlementConstants.StatusTypes.PUBLISH_POLICY,
-                            policyId, version, subscriberId, action, false, e.getMessage()));
-                }
 
-                for (PAPStatusDataHandler module : papStatusDataHandler) {
-                    try {
-                        module.handle(EntitlementConstants.Status.ABOUT_POLICY, policyId, policyHolders);
-                        policyHolders = new ArrayList<StatusHolder>();
-                    } catch (EntitlementException e) {
-                        // ignore
-                        log.error("Error while calling post publishers", e);
+                    for (PAPStatusDataHandler module : papStatusDataHandler) {
+                        try {
+                            module.handle(EntitlementConstants.Status.ABOUT_POLICY, policyId, policyHolders);
+                            policyHolders = new ArrayList<StatusHolder>();
+                        } catch (EntitlementException e) {
+                            // ignore
+                            log.error("Error while calling post publishers", e);
+                        }
                     }
                 }
             }
@@ -240,6 +251,78 @@ public class PolicyPublishExecutor {
         }
     }
 
+    /**
+     * Publishes the policies to the PDP in bulk and records the publishing status of each policy.
+     *
+     * @param publisherModule     PDP publisher module
+     * @param subscriberId        subscriber id
+     * @param subscriberHolders   status holders of the subscriber
+     * @param papStatusDataHandler status data handlers
+     */
+    private void publishInBulk(CarbonPDPPublisher publisherModule, String subscriberId,
+                               List<StatusHolder> subscriberHolders,
+                               Set<PAPStatusDataHandler> papStatusDataHandler) {
+
+        PolicyPersistenceManager policyStore = EntitlementAdminEngine.getInstance().getPolicyPersistenceManager();
+        Map<String, List<StatusHolder>> policyHolders = new LinkedHashMap<String, List<StatusHolder>>();
+        List<PolicyDTO> policyDTOs = new ArrayList<PolicyDTO>();
+        for (String policyId : new LinkedHashSet<String>(Arrays.asList(policyIds))) {
+            PolicyDTO policyDTO = null;
+            try {
+                policyDTO = policyStore.getPolicy(policyId, version);
+            } catch (EntitlementException e) {
+                //  ignore
+            }
+
+            List<StatusHolder> holders = new ArrayList<StatusHolder>();
+            policyHolders.put(policyId, holders);
+            if (policyDTO == null) {
+                subscriberHolders.add(new StatusHolder(EntitlementConstants.StatusTypes.PUBLISH_POLICY,
+                        subscriberId, version, policyId, action, false,
+                        "Can not found policy under policy id : " + policyId));
+                holders.add(new StatusHolder(EntitlementConstants.StatusTypes.PUBLISH_POLICY,
+                        policyId, version, subscriberId, action, false,
+                        "Can not found policy under policy id : " + policyId));
+            } else {
+                policyDTOs.add(policyDTO);
+            }
+        }
+
+        if (!policyDTOs.isEmpty()) {
+            String message = null;
+            try {
+                publisherModule.publish(policyDTOs.toArray(new PolicyDTO[0]), action, enabled, order);
+            } catch (Exception e) {
+                message = e.getMessage();
+            }
+            for (PolicyDTO policyDTO : policyDTOs) {
+                String policyId = policyDTO.getPolicyId();
+                if (message == null) {
+                    subscriberHolders.add(new StatusHolder(EntitlementConstants.StatusTypes.PUBLISH_POLICY,
+                            subscriberId, version, policyId, action));
+                    policyHolders.get(policyId).add(new StatusHolder(EntitlementConstants.StatusTypes.PUBLISH_POLICY,
+                            policyId, version, subscriberId, action));
+                } else {
+                    subscriberHolders.add(new StatusHolder(EntitlementConstants.StatusTypes.PUBLISH_POLICY,
+                            subscriberId, version, policyId, action, false, message));
+                    policyHolders.get(policyId).add(new StatusHolder(EntitlementConstants.StatusTypes.PUBLISH_POLICY,
+                            policyId, version, subscriberId, action, false, message));
+                }
+            }
+        }
+
+        for (Map.Entry<String, List<StatusHolder>> entry : policyHolders.entrySet()) {
+            for (PAPStatusDataHandler module : papStatusDataHandler) {
+                try {
+                    module.handle(EntitlementConstants.Status.ABOUT_POLICY, entry.getKey(), entry.getValue());
+                } catch (EntitlementException e) {
+                    // ignore
+                    log.error("Error while calling post publishers", e);
+                }
+            }
+        }
+    }
+
     /**
      * Helper method
      *
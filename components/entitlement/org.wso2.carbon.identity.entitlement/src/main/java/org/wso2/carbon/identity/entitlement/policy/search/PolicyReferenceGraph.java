@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2024, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.entitlement.policy.search;
+
+import org.apache.commons.lang.ArrayUtils;
+import org.wso2.carbon.identity.entitlement.dto.AttributeDTO;
+import org.wso2.carbon.identity.entitlement.dto.PolicyDTO;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Graph of the policy ID and policy set ID references between policies, which is used to resolve the search
+ * attributes of the policies. The search attributes of a policy are its own attributes and the attributes of
+ * all the policies it references, directly or transitively. Resolved attributes are kept until the policy, or
+ * a policy it references, is added or removed, hence the graph can be maintained as policies are published.
+ */
+public class PolicyReferenceGraph implements Serializable {
+
+    private static final long serialVersionUID = -3514706286145393012L;
+
+    /**
+     * policies of the graph, by policy id
+     */
+    private final Map<String, PolicyDTO> policies = new LinkedHashMap<>();
+
+    /**
+     * ids of the policies which reference a policy, by the referenced policy id
+     */
+    private final Map<String, Set<String>> referencedBy = new HashMap<>();
+
+    /**
+     * resolved search attributes, by policy id
+     */
+    private final Map<String, Set<AttributeDTO>> resolvedAttributes = new HashMap<>();
+
+    public PolicyReferenceGraph() {
+
+    }
+
+    public PolicyReferenceGraph(PolicyDTO[] policyDTOs) {
+
+        for (PolicyDTO policyDTO : policyDTOs) {
+            addPolicy(policyDTO);
+        }
+    }
+
+    /**
+     * Adds a policy to the graph, replacing the policy with the same id if there is one.
+     *
+     * @param policyDTO policy with its attributes and references.
+     */
+    public synchronized void addPolicy(PolicyDTO policyDTO) {
+
+        removePolicy(policyDTO.getPolicyId());
+        PolicyDTO policy = new PolicyDTO(policyDTO);
+        policies.put(policy.getPolicyId(), policy);
+        for (String reference : getReferences(policy)) {
+            Set<String> referencingPolicies = referencedBy.get(reference);
+            if (referencingPolicies == null) {
+                referencingPolicies = new HashSet<>();
+                referencedBy.put(reference, referencingPolicies);
+            }
+            referencingPolicies.add(policy.getPolicyId());
+        }
+        invalidate(policy.getPolicyId());
+    }
+
+    /**
+     * Removes a policy from the graph.
+     *
+     * @param policyId policy id.
+     * @return true if the policy was in the graph.
+     */
+    public synchronized boolean removePolicy(String policyId) {
+
+        PolicyDTO policy = policies.remove(policyId);
+        if (policy == null) {
+            return false;
+        }
+        for (String reference : getReferences(policy)) {
+            Set<String> referencingPolicies = referencedBy.get(reference);
+            if (referencingPolicies != null) {
+                referencingPolicies.remove(policyId);
+                if (referencingPolicies.isEmpty()) {
+                    referencedBy.remove(reference);
+                }
+            }
+        }
+        invalidate(policyId);
+        return true;
+    }
+
+    /**
+     * Returns a copy of the policies of the graph, in the order they were added.
+     *
+     * @return policies.
+     */
+    public synchronized PolicyDTO[] getPolicies() {
+
+        PolicyDTO[] policyDTOs = new PolicyDTO[policies.size()];
+        int i = 0;
+        for (PolicyDTO policy : policies.values()) {
+            policyDTOs[i++] = new PolicyDTO(policy);
+        }
+        return policyDTOs;
+    }
+
+    public synchronized boolean isEmpty() {
+
+        return policies.isEmpty();
+    }
+
+    /**
+     * Returns the search attributes of a policy, including the attributes of the policies it references,
+     * directly or transitively.
+     *
+     * @param policyId policy id.
+     * @return unmodifiable set of search attributes, or null if the policy is not in the graph.
+     */
+    public synchronized Set<AttributeDTO> getSearchAttributes(String policyId) {
+
+        if (!policies.containsKey(policyId)) {
+            return null;
+        }
+        return resolve(policyId);
+    }
+
+    /**
+     * Returns the search attributes of all the policies of the graph.
+     *
+     * @return map of policy id with unmodifiable sets of search attributes.
+     */
+    public synchronized Map<String, Set<AttributeDTO>> getSearchAttributes() {
+
+        Map<String, Set<AttributeDTO>> attributeMap = new HashMap<>();
+        for (String policyId : policies.keySet()) {
+            attributeMap.put(policyId, resolve(policyId));
+        }
+        return attributeMap;
+    }
+
+    private Set<AttributeDTO> resolve(String policyId) {
+
+        Set<AttributeDTO> attributes = resolvedAttributes.get(policyId);
+        if (attributes != null) {
+            return attributes;
+        }
+
+        // walk the reachable policies once, reusing the attributes already resolved for a referenced policy,
+        // since they cover everything reachable from it. A visited set guards against reference cycles.
+        attributes = new HashSet<>();
+        Set<String> visited = new HashSet<>();
+        Deque<String> pending = new ArrayDeque<>();
+        visited.add(policyId);
+        pending.push(policyId);
+        while (!pending.isEmpty()) {
+            String id = pending.pop();
+            Set<AttributeDTO> resolved = id.equals(policyId) ? null : resolvedAttributes.get(id);
+            if (resolved != null) {
+                attributes.addAll(resolved);
+                continue;
+            }
+            PolicyDTO policy = policies.get(id);
+            if (policy == null) {
+                continue;
+            }
+            attributes.addAll(Arrays.asList(policy.getAttributeDTOs()));
+            for (String reference : getReferences(policy)) {
+                if (visited.add(reference)) {
+                    pending.push(reference);
+                }
+            }
+        }
+
+        attributes = Collections.unmodifiableSet(attributes);
+        resolvedAttributes.put(policyId, attributes);
+        return attributes;
+    }
+
+    /**
+     * Drops the resolved attributes of a policy and of all the policies which reference it, directly or
+     * transitively.
+     */
+    private void invalidate(String policyId) {
+
+        Set<String> visited = new HashSet<>();
+        Deque<String> pending = new ArrayDeque<>();
+        visited.add(policyId);
+        pending.push(policyId);
+        while (!pending.isEmpty()) {
+            String id = pending.pop();
+            resolvedAttributes.remove(id);
+            Set<String> referencingPolicies = referencedBy.get(id);
+            if (referencingPolicies != null) {
+                for (String referencingPolicy : referencingPolicies) {
+                    if (visited.add(referencingPolicy)) {
+                        pending.push(referencingPolicy);
+                    }
+                }
+            }
+        }
+    }
+
+    private List<String> getReferences(PolicyDTO policy) {
+
+        List<String> references = new ArrayList<>();
+        if (ArrayUtils.isNotEmpty(policy.getPolicyIdReferences())) {
+            references.addAll(Arrays.asList(policy.getPolicyIdReferences()));
+        }
+        if (ArrayUtils.isNotEmpty(policy.getPolicySetIdReferences())) {
+            references.addAll(Arrays.asList(policy.getPolicySetIdReferences()));
+        }
+        return references;
+    }
+}
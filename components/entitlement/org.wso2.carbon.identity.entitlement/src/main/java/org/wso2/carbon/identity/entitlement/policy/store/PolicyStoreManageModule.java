@@ -22,7 +22,10 @@ import org.wso2.carbon.identity.entitlement.EntitlementException;
 import org.wso2.carbon.identity.entitlement.dto.PolicyStoreDTO;
 import org.wso2.carbon.identity.entitlement.policy.finder.PolicyFinderModule;
 
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.Properties;
+import java.util.Set;
 
 /**
  * Carbon policy manage module is an extension point where XACML policies can be stored and
@@ -45,6 +48,18 @@ public interface PolicyStoreManageModule extends PolicyFinderModule {
      */
     public void addPolicy(PolicyStoreDTO policy) throws EntitlementException;
 
+    /**
+     * Add policies in to the store in bulk. Policy ids of the given policies must be distinct.
+     *
+     * @param policies policies as <code>PolicyStoreDTO</code> array.
+     */
+    public default void addPolicies(PolicyStoreDTO[] policies) throws EntitlementException {
+
+        for (PolicyStoreDTO policy : policies) {
+            addPolicy(policy);
+        }
+    }
+
     /**
      * Update policy in to the store.
      *
@@ -66,4 +81,21 @@ public interface PolicyStoreManageModule extends PolicyFinderModule {
      * @return whether true or false.
      */
     public boolean isPolicyExist(String policyId);
+
+    /**
+     * Gets the given policies which are published in the store.
+     *
+     * @param policyIds policy ids as <code>Collection</code>.
+     * @return ids of the published policies out of the given policies.
+     */
+    public default Set<String> getExistingPolicies(Collection<String> policyIds) throws EntitlementException {
+
+        Set<String> existingPolicies = new HashSet<>();
+        for (String policyId : policyIds) {
+            if (isPolicyExist(policyId)) {
+                existingPolicies.add(policyId);
+            }
+        }
+        return existingPolicies;
+    }
 }
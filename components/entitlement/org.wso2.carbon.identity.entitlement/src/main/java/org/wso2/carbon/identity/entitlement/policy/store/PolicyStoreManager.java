@@ -31,6 +31,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 
 /**
  * This manages the storing and reading of policies and policy meta data that is related
@@ -78,6 +79,43 @@ public class PolicyStoreManager {
                 .invalidateCache(dto.getPolicyId(), EntitlementConstants.PolicyPublish.ACTION_UPDATE);
     }
 
+    /**
+     * Publishes the given policies to the policy store in bulk. Policy ids of the given policies must be distinct.
+     *
+     * @param policyDTOs policies
+     * @throws EntitlementException throws, if fails
+     */
+    public void addPolicies(PolicyDTO[] policyDTOs) throws EntitlementException {
+
+        List<String> policyIds = new ArrayList<>(policyDTOs.length);
+        for (PolicyDTO policyDTO : policyDTOs) {
+            policyIds.add(policyDTO.getPolicyId());
+        }
+        Set<String> existingPolicies = policyStore.getExistingPolicies(policyIds);
+
+        PolicyStoreDTO[] dtos = new PolicyStoreDTO[policyDTOs.length];
+        for (int i = 0; i < policyDTOs.length; i++) {
+            PolicyDTO policyDTO = policyDTOs[i];
+            PolicyStoreDTO dto = new PolicyStoreDTO();
+            dto.setPolicyId(policyDTO.getPolicyId());
+            dto.setPolicy(policyDTO.getPolicy());
+            dto.setActive(policyDTO.isActive());
+            dto.setPolicyOrder(policyDTO.getPolicyOrder());
+            dto.setAttributeDTOs(policyDTO.getAttributeDTOs());
+            dto.setVersion(policyDTO.getVersion());
+
+            boolean exists = existingPolicies.contains(policyDTO.getPolicyId());
+            dto.setSetActive(!exists);
+            dto.setSetOrder(!exists);
+            dtos[i] = dto;
+        }
+        policyStore.addPolicies(dtos);
+        for (PolicyStoreDTO dto : dtos) {
+            policyDataStore.setPolicyData(dto.getPolicyId(), dto);
+        }
+        AbstractPolicyFinderModule.invalidateCache(policyIds, EntitlementConstants.PolicyPublish.ACTION_UPDATE);
+    }
+
     public void updatePolicy(PolicyDTO policyDTO) throws EntitlementException {
 
         if (!policyStore.isPolicyExist(policyDTO.getPolicyId())) {
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2024, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.entitlement.cache;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.common.testng.WithCarbonHome;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+/**
+ * This class tests the expiry of the roles associated with applications cached by the ApplicationRoleCache class.
+ */
+@WithCarbonHome
+public class ApplicationRoleCacheTest {
+
+    private static final int TENANT_ID = -1234;
+    private static final String APPLICATION_NAME = "travel-app";
+
+    @AfterMethod
+    public void tearDown() {
+
+        ApplicationRoleCache.getInstance().clear(TENANT_ID);
+    }
+
+    @Test
+    public void testRolesAreServedWithinCachingInterval() {
+
+        Set<String> roleNames = new HashSet<>(Collections.singleton("Internal/traveller"));
+        ApplicationRoleCache.getInstance().addToCache(APPLICATION_NAME, roleNames, TENANT_ID);
+
+        assertEquals(ApplicationRoleCache.getInstance().getRolesFromCache(APPLICATION_NAME, TENANT_ID, 60000),
+                roleNames);
+    }
+
+    @Test
+    public void testRolesAreNotServedAfterCachingInterval() throws Exception {
+
+        ApplicationRoleCache.getInstance().addToCache(APPLICATION_NAME,
+                Collections.singleton("Internal/traveller"), TENANT_ID);
+        Thread.sleep(20);
+
+        assertNull(ApplicationRoleCache.getInstance().getRolesFromCache(APPLICATION_NAME, TENANT_ID, 10));
+        // the expired roles are removed, so that a longer interval does not serve them either
+        assertNull(ApplicationRoleCache.getInstance().getRolesFromCache(APPLICATION_NAME, TENANT_ID, 60000));
+    }
+
+    @Test
+    public void testRolesAreNotServedWhenCachingIsDisabled() {
+
+        ApplicationRoleCache.getInstance().addToCache(APPLICATION_NAME,
+                Collections.singleton("Internal/traveller"), TENANT_ID);
+
+        assertNull(ApplicationRoleCache.getInstance().getRolesFromCache(APPLICATION_NAME, TENANT_ID, 0));
+    }
+
+    @Test
+    public void testRolesOfOtherApplicationsAreNotServed() {
+
+        ApplicationRoleCache.getInstance().addToCache(APPLICATION_NAME,
+                Collections.singleton("Internal/traveller"), TENANT_ID);
+
+        assertNull(ApplicationRoleCache.getInstance().getRolesFromCache("payroll-app", TENANT_ID, 60000));
+    }
+}
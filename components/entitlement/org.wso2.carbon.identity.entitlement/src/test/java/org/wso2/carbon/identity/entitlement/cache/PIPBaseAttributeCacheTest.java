@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2024, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.entitlement.cache;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.common.testng.WithCarbonHome;
+import org.wso2.carbon.identity.entitlement.PDPConstants;
+
+import java.util.Collections;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * This class tests the stale-while-revalidate mode of the PIP attribute caches, implemented by the
+ * PIPBaseAttributeCache class.
+ */
+@WithCarbonHome
+public class PIPBaseAttributeCacheTest {
+
+    private static final int TENANT_ID = -1234;
+    private static final String KEY = "admin|http://wso2.org/claims/role";
+    private static final String SUBJECT = "admin";
+    private static final Set<String> OLD_VALUES = Collections.singleton("Internal/everyone");
+    private static final Set<String> NEW_VALUES = Collections.singleton("Internal/admin");
+
+    private static final AtomicInteger cacheCount = new AtomicInteger();
+
+    private PIPBaseAttributeCache cache;
+    private ExecutorService executor;
+
+    @BeforeMethod
+    public void setUp() {
+
+        Properties properties = new Properties();
+        properties.setProperty(PDPConstants.ATTRIBUTE_CACHING_STALE_WHILE_REVALIDATE, "true");
+        properties.setProperty(PDPConstants.ATTRIBUTE_CACHING_STALE_INTERVAL, "300");
+        // attributes are reloaded when they are read 100 ms after they are cached
+        properties.setProperty(PDPConstants.ATTRIBUTE_CACHING_REFRESH_AHEAD_FACTOR, "0.1");
+        cache = new PIPBaseAttributeCache("PIPBaseAttributeCacheTest" + cacheCount.incrementAndGet(), 1,
+                properties);
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterMethod
+    public void tearDown() {
+
+        cache.clearCache();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testConcurrentMissesAreLoadedOnce() throws Exception {
+
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Future<Set<String>> first = executor.submit(() -> cache.getFromCache(TENANT_ID, KEY, SUBJECT, () -> {
+            loads.incrementAndGet();
+            loading.countDown();
+            release.await();
+            return NEW_VALUES;
+        }));
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+        Future<Set<String>> second = executor.submit(() -> cache.getFromCache(TENANT_ID, KEY, SUBJECT, () -> {
+            loads.incrementAndGet();
+            return OLD_VALUES;
+        }));
+        // the second miss waits for the load of the first one
+        Thread.sleep(100);
+        release.countDown();
+
+        assertEquals(first.get(5, TimeUnit.SECONDS), NEW_VALUES);
+        assertEquals(second.get(5, TimeUnit.SECONDS), NEW_VALUES);
+        assertEquals(loads.get(), 1);
+    }
+
+    @Test
+    public void testStaleAttributesAreServedWhileReloaded() throws Exception {
+
+        cache.addToCache(TENANT_ID, KEY, OLD_VALUES, SUBJECT);
+        Thread.sleep(150);
+
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        Set<String> attributes = cache.getFromCache(TENANT_ID, KEY, SUBJECT, () -> {
+            loads.incrementAndGet();
+            return NEW_VALUES;
+        }, () -> {
+            release.await();
+            return NEW_VALUES;
+        });
+
+        // the cached attributes are returned without waiting for the reload
+        assertEquals(attributes, OLD_VALUES);
+        assertEquals(cache.getFromCache(TENANT_ID, KEY), OLD_VALUES);
+        release.countDown();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!NEW_VALUES.equals(cache.getFromCache(TENANT_ID, KEY)) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(cache.getFromCache(TENANT_ID, KEY), NEW_VALUES);
+        // the loader of the calling thread is only used for misses
+        assertEquals(loads.get(), 0);
+    }
+
+    @Test
+    public void testAttributesEvictedWhileLoadedAreNotCached() throws Exception {
+
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Future<Set<String>> load = executor.submit(() -> cache.getFromCache(TENANT_ID, KEY, SUBJECT, () -> {
+            loading.countDown();
+            release.await();
+            return OLD_VALUES;
+        }));
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+        // the subject is updated while its attributes are being loaded
+        cache.clearCache(TENANT_ID, Collections.singleton(SUBJECT));
+        release.countDown();
+
+        assertEquals(load.get(5, TimeUnit.SECONDS), OLD_VALUES);
+        assertNull(cache.getFromCache(TENANT_ID, KEY));
+        assertEquals(cache.getFromCache(TENANT_ID, KEY, SUBJECT, () -> NEW_VALUES), NEW_VALUES);
+        assertEquals(cache.getFromCache(TENANT_ID, KEY), NEW_VALUES);
+    }
+}
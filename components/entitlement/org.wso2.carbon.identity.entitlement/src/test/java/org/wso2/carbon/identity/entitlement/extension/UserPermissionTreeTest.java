@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2024, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.entitlement.extension;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.Test;
+import org.wso2.carbon.user.core.AuthorizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * This class tests the permission checks of the UserPermissionTree class, and compares them with checking
+ * each permission through the authorization manager.
+ */
+public class UserPermissionTreeTest {
+
+    @Test
+    public void testGrantedPermissionCoversPermissionsBelowIt() {
+
+        UserPermissionTree permissionTree = new UserPermissionTree(new String[]{"/permission/admin/configure/",
+                "/permission/admin/manage/identity/usermgt/view"});
+
+        assertTrue(permissionTree.isAuthorized("/permission/admin/configure"));
+        assertTrue(permissionTree.isAuthorized("/permission/admin/configure/security/usermgt"));
+        assertTrue(permissionTree.isAuthorized("/permission/admin/manage/identity/usermgt/view/"));
+        assertFalse(permissionTree.isAuthorized("/permission/admin/configurex"));
+        assertFalse(permissionTree.isAuthorized("/permission/admin/manage/identity/usermgt"));
+        assertFalse(permissionTree.isAuthorized("/permission/admin"));
+        assertFalse(new UserPermissionTree(null).isAuthorized("/permission/admin"));
+        assertTrue(new UserPermissionTree(new String[]{"/permission"}).isAuthorized("/permission/admin/login"));
+    }
+
+    @Test
+    public void testPermissionResources() {
+
+        assertTrue(UserPermissionTree.isPermissionResource("/permission"));
+        assertTrue(UserPermissionTree.isPermissionResource("/permission/admin"));
+        assertFalse(UserPermissionTree.isPermissionResource("/permissions/admin"));
+        assertFalse(UserPermissionTree.isPermissionResource("/_system/config"));
+    }
+
+    @Test
+    public void testPermissionTreeAgainstAuthorizationManager() throws Exception {
+
+        final List<String> grantedPermissions = new ArrayList<String>();
+        for (int i = 0; i < 50; i++) {
+            grantedPermissions.add("/permission/admin/manage/feature" + i + "/view");
+        }
+        grantedPermissions.add("/permission/admin/configure");
+
+        AuthorizationManager authorizationManager = mock(AuthorizationManager.class);
+        when(authorizationManager.isUserAuthorized(eq("admin"), anyString(), eq("ui.execute"))).thenAnswer(
+                new Answer<Boolean>() {
+                    @Override
+                    public Boolean answer(InvocationOnMock invocation) {
+                        String resource = invocation.getArgument(1);
+                        for (String permission : grantedPermissions) {
+                            if (resource.equals(permission) || resource.startsWith(permission + "/")) {
+                                return true;
+                            }
+                        }
+                        return false;
+                    }
+                });
+        when(authorizationManager.getAllowedUIResourcesForUser("admin", UserPermissionTree.PERMISSION_ROOT))
+                .thenReturn(grantedPermissions.toArray(new String[0]));
+
+        List<String> resources = new ArrayList<String>();
+        for (int i = 0; i < 100; i++) {
+            resources.add("/permission/admin/manage/feature" + i + "/view/list");
+            resources.add("/permission/admin/configure/feature" + i);
+        }
+
+        UserPermissionTree permissionTree = new UserPermissionTree(authorizationManager.getAllowedUIResourcesForUser(
+                "admin", UserPermissionTree.PERMISSION_ROOT));
+        int authorized = 0;
+        for (String resource : resources) {
+            boolean isAuthorized = authorizationManager.isUserAuthorized("admin", resource, "ui.execute");
+            assertEquals(permissionTree.isAuthorized(resource), isAuthorized, resource);
+            if (isAuthorized) {
+                authorized++;
+            }
+        }
+        assertEquals(authorized, 150);
+
+        // granted resource
+        assertTrue(permissionTree.isAuthorized("/permission/admin/manage/feature0/view"));
+        // resources granted through an ancestor
+        assertTrue(permissionTree.isAuthorized("/permission/admin/manage/feature0/view/list"));
+        assertTrue(permissionTree.isAuthorized("/permission/admin/configure/feature99"));
+        // resources which are not granted
+        assertFalse(permissionTree.isAuthorized("/permission/admin/manage/feature50/view/list"));
+        assertFalse(permissionTree.isAuthorized("/permission/admin/manage/feature0"));
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2024, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.entitlement.pdp;
+
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.entitlement.pip.RequestAttribute;
+
+import java.util.Collections;
+import java.util.Set;
+
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * This class tests whether the decisions tracked by the DecisionCacheContext class are cacheable.
+ */
+public class DecisionCacheContextTest {
+
+    @Test
+    public void testPIPDependencyOnExcludedAttributeIsNotCacheable() {
+
+        Set<RequestAttribute> excludedAttributes = Collections.singleton(
+                new RequestAttribute("http://wso2.org/identity/auth", "http://wso2.org/identity/auth/auth-ctx-id"));
+
+        DecisionCacheContext.start(excludedAttributes, null, 0);
+        DecisionCacheContext.recordPIPDependencies(Collections.singleton(new RequestAttribute(
+                "urn:oasis:names:tc:xacml:1.0:subject-category:access-subject",
+                "urn:oasis:names:tc:xacml:1.0:subject:subject-id")));
+        assertTrue(DecisionCacheContext.end().isCacheable());
+
+        DecisionCacheContext.start(excludedAttributes, null, 0);
+        DecisionCacheContext.recordPIPDependencies(excludedAttributes);
+        assertFalse(DecisionCacheContext.end().isCacheable());
+
+        DecisionCacheContext.start(excludedAttributes, null, 0);
+        DecisionCacheContext.recordPIPDependencies(null);
+        assertFalse(DecisionCacheContext.end().isCacheable());
+    }
+}
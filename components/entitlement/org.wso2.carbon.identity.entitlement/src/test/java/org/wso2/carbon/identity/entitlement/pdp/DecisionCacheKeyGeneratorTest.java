@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2024, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.entitlement.pdp;
+
+import org.testng.annotations.Test;
+import org.wso2.balana.ctx.RequestCtxFactory;
+import org.wso2.carbon.identity.entitlement.EntitlementUtil;
+import org.wso2.carbon.identity.entitlement.pip.RequestAttribute;
+
+import java.util.Collections;
+import java.util.Set;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+
+/**
+ * This class tests the canonical decision cache keys generated by the DecisionCacheKeyGenerator class.
+ */
+public class DecisionCacheKeyGeneratorTest {
+
+    private static final String REQUEST_START = "<Request xmlns=\"urn:oasis:names:tc:xacml:3.0:core:schema:wd-17\" " +
+            "CombinedDecision=\"false\" ReturnPolicyIdList=\"false\">";
+
+    private final DecisionCacheKeyGenerator keyGenerator = new DecisionCacheKeyGenerator();
+
+    @Test
+    public void testAttributeOrderDoesNotChangeKey() throws Exception {
+
+        String request1 = REQUEST_START +
+                attributes("urn:oasis:names:tc:xacml:3.0:attribute-category:action",
+                        attribute("urn:oasis:names:tc:xacml:1.0:action:action-id", "read")) +
+                attributes("urn:oasis:names:tc:xacml:3.0:attribute-category:resource",
+                        attribute("urn:oasis:names:tc:xacml:1.0:resource:resource-id", "foo") +
+                        attribute("http://wso2.org/claims/resource-type", "file")) + "</Request>";
+        String request2 = REQUEST_START + "\n  " +
+                attributes("urn:oasis:names:tc:xacml:3.0:attribute-category:resource",
+                        attribute("http://wso2.org/claims/resource-type", "file") +
+                        attribute("urn:oasis:names:tc:xacml:1.0:resource:resource-id", "foo")) + "\n  " +
+                attributes("urn:oasis:names:tc:xacml:3.0:attribute-category:action",
+                        attribute("urn:oasis:names:tc:xacml:1.0:action:action-id", "read")) + "\n</Request>";
+
+        assertEquals(keyGenerator.generateKey(RequestCtxFactory.getFactory().getRequestCtx(request1)),
+                keyGenerator.generateKey(RequestCtxFactory.getFactory().getRequestCtx(request2)));
+    }
+
+    @Test
+    public void testAttributeValueChangesKey() throws Exception {
+
+        String request1 = REQUEST_START + attributes("urn:oasis:names:tc:xacml:3.0:attribute-category:action",
+                attribute("urn:oasis:names:tc:xacml:1.0:action:action-id", "read")) + "</Request>";
+        String request2 = REQUEST_START + attributes("urn:oasis:names:tc:xacml:3.0:attribute-category:action",
+                attribute("urn:oasis:names:tc:xacml:1.0:action:action-id", "write")) + "</Request>";
+
+        assertNotEquals(keyGenerator.generateKey(RequestCtxFactory.getFactory().getRequestCtx(request1)),
+                keyGenerator.generateKey(RequestCtxFactory.getFactory().getRequestCtx(request2)));
+    }
+
+    @Test
+    public void testSimpleRequestSharesKeyWithXacmlRequest() throws Exception {
+
+        String request = EntitlementUtil.createSimpleXACMLRequest("alice", "foo", "read", "env");
+
+        assertEquals(keyGenerator.generateKey("alice", "foo", "read", "env"),
+                keyGenerator.generateKey(RequestCtxFactory.getFactory().getRequestCtx(request)));
+        assertNotEquals(keyGenerator.generateKey("alice", "foo", "read", "env"),
+                keyGenerator.generateKey("alicef", "oo", "read", "env"));
+    }
+
+    @Test
+    public void testExcludedAttributeDoesNotChangeKey() throws Exception {
+
+        Set<RequestAttribute> excludedAttributes = Collections.singleton(
+                new RequestAttribute("http://wso2.org/identity/auth", "http://wso2.org/identity/auth/auth-ctx-id"));
+        DecisionCacheKeyGenerator excludingKeyGenerator = new DecisionCacheKeyGenerator(excludedAttributes);
+
+        String action = attributes("urn:oasis:names:tc:xacml:3.0:attribute-category:action",
+                attribute("urn:oasis:names:tc:xacml:1.0:action:action-id", "read"));
+        String request1 = REQUEST_START + action + attributes("http://wso2.org/identity/auth",
+                attribute("http://wso2.org/identity/auth/auth-ctx-id", "context1")) + "</Request>";
+        String request2 = REQUEST_START + action + attributes("http://wso2.org/identity/auth",
+                attribute("http://wso2.org/identity/auth/auth-ctx-id", "context2")) + "</Request>";
+
+        assertEquals(excludingKeyGenerator.generateKey(RequestCtxFactory.getFactory().getRequestCtx(request1)),
+                excludingKeyGenerator.generateKey(RequestCtxFactory.getFactory().getRequestCtx(request2)));
+        assertNotEquals(keyGenerator.generateKey(RequestCtxFactory.getFactory().getRequestCtx(request1)),
+                keyGenerator.generateKey(RequestCtxFactory.getFactory().getRequestCtx(request2)));
+    }
+
+    private String attributes(String category, String attributes) {
+
+        return "<Attributes Category=\"" + category + "\">" + attributes + "</Attributes>";
+    }
+
+    private String attribute(String attributeId, String value) {
+
+        return "<Attribute AttributeId=\"" + attributeId + "\" IncludeInResult=\"false\">" +
+                "<AttributeValue DataType=\"http://www.w3.org/2001/XMLSchema#string\">" + value +
+                "</AttributeValue></Attribute>";
+    }
+}
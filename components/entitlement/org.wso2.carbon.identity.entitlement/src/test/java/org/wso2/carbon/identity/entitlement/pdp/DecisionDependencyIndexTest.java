@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2024, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.entitlement.pdp;
+
+import org.testng.annotations.Test;
+import org.wso2.balana.AbstractPolicy;
+import org.wso2.balana.Policy;
+import org.wso2.carbon.identity.entitlement.pip.RequestAttribute;
+import org.wso2.carbon.identity.entitlement.policy.collection.PolicyTargetIndexUtil;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * This class tests the selective eviction of the DecisionDependencyIndex class.
+ */
+public class DecisionDependencyIndexTest {
+
+    private static final String RESOURCE_CATEGORY = "urn:oasis:names:tc:xacml:3.0:attribute-category:resource";
+    private static final String RESOURCE_ID = "urn:oasis:names:tc:xacml:1.0:resource:resource-id";
+    private static final String ROLE_ATTRIBUTE = "http://wso2.org/claims/role";
+    private static final String SUBJECT_CATEGORY = "urn:oasis:names:tc:xacml:1.0:subject-category:access-subject";
+    private static final String SUBJECT_ID = "urn:oasis:names:tc:xacml:1.0:subject:subject-id";
+
+    @Test
+    public void testPolicyChangeEvictsOnlyDependentDecisions() {
+
+        DecisionDependencyIndex index = new DecisionDependencyIndex(100);
+        assertTrue(index.addDependencies("key1", record(index, "resource1", "policy1", null)));
+        assertTrue(index.addDependencies("key2", record(index, "resource2", "policy2", null)));
+
+        assertEquals(index.removePolicyDependents("policy1"), Collections.singleton("key1"));
+        assertTrue(index.removePolicyDependents("policy1").isEmpty());
+        assertEquals(index.removePolicyDependents("policy2"), Collections.singleton("key2"));
+    }
+
+    @Test
+    public void testNewPolicyEvictsDecisionsOfMatchingRequests() throws Exception {
+
+        DecisionDependencyIndex index = new DecisionDependencyIndex(100);
+        assertTrue(index.addDependencies("key1", record(index, "resource1", "policy1", null)));
+        assertTrue(index.addDependencies("key2", record(index, "resource2", "policy2", null)));
+        assertTrue(index.addDependencies("key3", record(index, null, "policy3", null)));
+
+        // key3 does not carry the resource id, which may then be resolved through a PIP
+        Set<String> expected = new HashSet<String>();
+        expected.add("key2");
+        expected.add("key3");
+        assertEquals(index.removeTargetDependents(buildPolicy("resource2", true).getTarget()), expected);
+        assertNull(index.removeTargetDependents(buildPolicy("resource2", false).getTarget()));
+    }
+
+    @Test
+    public void testAttributeChangeEvictsOnlyDependentDecisions() {
+
+        DecisionDependencyIndex index = new DecisionDependencyIndex(100);
+        assertTrue(index.addDependencies("key1", record(index, "resource1", "policy1", ROLE_ATTRIBUTE)));
+        assertTrue(index.addDependencies("key2", record(index, "resource2", "policy2", null)));
+
+        assertEquals(index.removeAttributeDependents(Collections.singleton("http://wso2.org/claims/email")).size(),
+                0);
+        assertEquals(index.removeAttributeDependents(null), Collections.singleton("key1"));
+    }
+
+    @Test
+    public void testUserChangeEvictsOnlyDecisionsOfTheUser() {
+
+        Set<RequestAttribute> subjectDependencies = Collections.singleton(new RequestAttribute(SUBJECT_CATEGORY,
+                SUBJECT_ID));
+        DecisionDependencyIndex index = new DecisionDependencyIndex(100);
+        assertTrue(index.addDependencies("key1", recordSubject(index, "PRIMARY/Alice@carbon.super",
+                subjectDependencies, ROLE_ATTRIBUTE)));
+        assertTrue(index.addDependencies("key2", recordSubject(index, "bob", subjectDependencies, ROLE_ATTRIBUTE)));
+        assertTrue(index.addDependencies("key3", recordSubject(index, "bob", subjectDependencies, null)));
+        assertTrue(index.addDependencies("key4", recordSubject(index, null, subjectDependencies, ROLE_ATTRIBUTE)));
+        assertTrue(index.addDependencies("key5", recordSubject(index, "carol", null, ROLE_ATTRIBUTE)));
+
+        // decisions which do not depend on a single subject are evicted by any user change
+        Set<String> expected = new HashSet<String>();
+        expected.add("key1");
+        expected.add("key4");
+        expected.add("key5");
+        assertEquals(index.removeSubjectDependents(Collections.singleton("alice")), expected);
+        assertTrue(index.removeSubjectDependents(Collections.singleton("alice")).isEmpty());
+        assertEquals(index.removeSubjectDependents(Collections.singleton("bob")), Collections.singleton("key2"));
+    }
+
+    @Test
+    public void testDecisionEvaluatedBeforeChangeIsNotAdded() {
+
+        DecisionDependencyIndex index = new DecisionDependencyIndex(100);
+        DecisionCacheContext context = record(index, "resource1", "policy1", null);
+        index.removePolicyDependents("policy2");
+
+        assertFalse(index.addDependencies("key1", context));
+    }
+
+    private DecisionCacheContext record(DecisionDependencyIndex index, String resource, String policyId,
+                                        String attributeId) {
+
+        Map<String, Set<String>> requestValues = new HashMap<String, Set<String>>();
+        if (resource != null) {
+            requestValues.put(PolicyTargetIndexUtil.getAttributeKey(RESOURCE_CATEGORY, RESOURCE_ID),
+                    Collections.singleton(resource));
+        }
+        DecisionCacheContext.start(null, requestValues, index.getGeneration());
+        DecisionCacheContext.recordPolicy(policyId);
+        DecisionCacheContext.recordAttribute(attributeId);
+        return DecisionCacheContext.end();
+    }
+
+    private DecisionCacheContext recordSubject(DecisionDependencyIndex index, String subject,
+                                               Set<RequestAttribute> dependencies, String attributeId) {
+
+        Map<String, Set<String>> requestValues = new HashMap<String, Set<String>>();
+        if (subject != null) {
+            requestValues.put(PolicyTargetIndexUtil.getAttributeKey(SUBJECT_CATEGORY, SUBJECT_ID),
+                    Collections.singleton(subject));
+        }
+        DecisionCacheContext.start(null, requestValues, index.getGeneration());
+        DecisionCacheContext.recordPolicy("policy");
+        if (attributeId != null) {
+            DecisionCacheContext.recordPIPDependencies(dependencies);
+            DecisionCacheContext.recordAttribute(attributeId);
+        }
+        return DecisionCacheContext.end();
+    }
+
+    private AbstractPolicy buildPolicy(String resource, boolean indexable) throws Exception {
+
+        String target = indexable ? "<AnyOf><AllOf>" +
+                "<Match MatchId=\"urn:oasis:names:tc:xacml:1.0:function:string-equal\">" +
+                "<AttributeValue DataType=\"http://www.w3.org/2001/XMLSchema#string\">" + resource +
+                "</AttributeValue>" +
+                "<AttributeDesignator AttributeId=\"" + RESOURCE_ID + "\" Category=\"" + RESOURCE_CATEGORY + "\" " +
+                "DataType=\"http://www.w3.org/2001/XMLSchema#string\" MustBePresent=\"false\"/>" +
+                "</Match></AllOf></AnyOf>" : "";
+        String policy = "<Policy xmlns=\"urn:oasis:names:tc:xacml:3.0:core:schema:wd-17\" PolicyId=\"policy\" " +
+                "RuleCombiningAlgId=\"urn:oasis:names:tc:xacml:3.0:rule-combining-algorithm:deny-overrides\" " +
+                "Version=\"1.0\"><Target>" + target + "</Target><Rule Effect=\"Permit\" RuleId=\"permit\"/>" +
+                "</Policy>";
+
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        return Policy.getInstance(factory.newDocumentBuilder().parse(
+                new ByteArrayInputStream(policy.getBytes(StandardCharsets.UTF_8))).getDocumentElement());
+    }
+}
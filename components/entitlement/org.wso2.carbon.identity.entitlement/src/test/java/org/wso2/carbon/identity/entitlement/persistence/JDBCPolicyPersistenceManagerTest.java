@@ -19,13 +19,28 @@
 package org.wso2.carbon.identity.entitlement.persistence;
 
 import org.testng.annotations.Test;
+import org.wso2.carbon.context.CarbonContext;
 import org.wso2.carbon.identity.common.testng.WithCarbonHome;
 import org.wso2.carbon.identity.common.testng.WithH2Database;
 import org.wso2.carbon.identity.common.testng.WithRealmService;
 import org.wso2.carbon.identity.common.testng.WithRegistry;
+import org.wso2.carbon.identity.entitlement.PDPConstants;
+import org.wso2.carbon.identity.entitlement.dto.AttributeDTO;
+import org.wso2.carbon.identity.entitlement.dto.PolicyDTO;
+import org.wso2.carbon.identity.entitlement.dto.PolicyStoreDTO;
 import org.wso2.carbon.identity.entitlement.internal.EntitlementConfigHolder;
+import org.wso2.carbon.identity.entitlement.persistence.dao.PolicyDAO;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 
@@ -38,6 +53,18 @@ import static org.testng.Assert.assertTrue;
 @WithH2Database(files = {"dbscripts/h2.sql"})
 public class JDBCPolicyPersistenceManagerTest extends PolicyPersistenceManagerTest {
 
+    private static final String SAMPLE_POLICY_SET_ID = "sample_policy_set";
+    private static final String SAMPLE_POLICY_SET_STRING =
+            "<PolicySet xmlns=\"urn:oasis:names:tc:xacml:3.0:core:schema:wd-17\" PolicySetId=\"" +
+                    SAMPLE_POLICY_SET_ID + "\" PolicyCombiningAlgId=\"urn:oasis:names:tc:xacml:1.0:" +
+                    "policy-combining-algorithm:first-applicable\" Version=\"1.0\"><Target/>" +
+                    "<PolicyIdReference>" + SAMPLE_POLICY_ID_1 + "</PolicyIdReference>" +
+                    "<PolicyIdReference>" + SAMPLE_POLICY_ID_2 + "</PolicyIdReference>" +
+                    "<PolicySetIdReference>other_policy_set</PolicySetIdReference></PolicySet>";
+
+    private static final String BULK_POLICY_ID_PREFIX = "bulk_policy_";
+    private static final int BULK_POLICY_COUNT = 2000;
+
     public PolicyPersistenceManager createPolicyPersistenceManager() {
 
         return new JDBCPolicyPersistenceManager();
@@ -62,4 +89,185 @@ public class JDBCPolicyPersistenceManagerTest extends PolicyPersistenceManagerTe
         policyPersistenceManager.addOrUpdatePolicy(samplePAPPolicy1, false);
         assertNull(policyPersistenceManager.getPAPPolicy(samplePAPPolicy1.getPolicyId()));
     }
+
+    @Test(priority = 14)
+    public void testBulkLoadedPoliciesMatchSingleLoadedPolicies() throws Exception {
+
+        PolicyDTO samplePolicySet = new PolicyDTO(SAMPLE_POLICY_SET_ID);
+        samplePolicySet.setPolicy(SAMPLE_POLICY_SET_STRING);
+
+        policyPersistenceManager.addOrUpdatePolicy(samplePAPPolicy1, true);
+        policyPersistenceManager.addOrUpdatePolicy(samplePAPPolicy2, true);
+        policyPersistenceManager.addOrUpdatePolicy(samplePAPPolicy3, true);
+        policyPersistenceManager.addOrUpdatePolicy(samplePolicySet, true);
+        policyPersistenceManager.addOrUpdatePolicy(sampleUpdatedPAPPolicy1, true);
+        policyPersistenceManager.addPolicy(samplePDPPolicy1);
+        policyPersistenceManager.addPolicy(samplePDPPolicy3);
+
+        try {
+            PolicyDAO policyDAO = new PolicyDAO();
+            int tenantId = CarbonContext.getThreadLocalCarbonContext().getTenantId();
+
+            List<PolicyDTO> papPolicies = policyDAO.getAllPAPPolicies(tenantId);
+            assertEquals(papPolicies.size(), 4);
+            for (PolicyDTO policy : papPolicies) {
+                PolicyDTO expected = policyDAO.getPAPPolicy(policy.getPolicyId(), tenantId);
+                assertEquals(policy.getVersion(), expected.getVersion());
+                assertEquals(policy.getPolicy(), expected.getPolicy());
+                assertEquals(policy.getLastModifiedTime(), expected.getLastModifiedTime());
+                assertEquals(policy.getLastModifiedUser(), expected.getLastModifiedUser());
+                assertEquals(policy.isActive(), expected.isActive());
+                assertEquals(policy.getPolicyOrder(), expected.getPolicyOrder());
+                assertEquals(policy.getPolicyType(), expected.getPolicyType());
+                assertEquals(policy.getPolicyEditor(), expected.getPolicyEditor());
+                assertEquals(policy.getPolicyEditorData(), expected.getPolicyEditorData());
+                assertEqualsNoOrder(policy.getPolicyIdReferences(), expected.getPolicyIdReferences());
+                assertEqualsNoOrder(policy.getPolicySetIdReferences(), expected.getPolicySetIdReferences());
+                assertEqualsNoOrder(policy.getAttributeDTOs(), expected.getAttributeDTOs());
+                if (SAMPLE_POLICY_SET_ID.equals(policy.getPolicyId())) {
+                    assertEquals(policy.getPolicyIdReferences().length, 2);
+                    assertEquals(policy.getPolicySetIdReferences().length, 1);
+                }
+            }
+
+            PolicyStoreDTO[] pdpPolicies = policyDAO.getAllPDPPolicies(tenantId);
+            assertEquals(pdpPolicies.length, 2);
+            for (PolicyStoreDTO policy : pdpPolicies) {
+                PolicyStoreDTO expected = policyDAO.getPDPPolicy(policy.getPolicyId(), tenantId);
+                assertEquals(policy.getVersion(), expected.getVersion());
+                assertEquals(policy.getPolicy(), expected.getPolicy());
+                assertEquals(policy.isActive(), expected.isActive());
+                assertEquals(policy.getPolicyOrder(), expected.getPolicyOrder());
+                assertEqualsNoOrder(policy.getAttributeDTOs(), expected.getAttributeDTOs());
+            }
+        } finally {
+            policyPersistenceManager.removePolicy(SAMPLE_POLICY_SET_ID);
+        }
+    }
+
+    @Test(priority = 14)
+    public void testSearchAttributesAreUpdatedOnPublish() throws Exception {
+
+        policyPersistenceManager.addOrUpdatePolicy(samplePAPPolicy1, true);
+        policyPersistenceManager.addOrUpdatePolicy(samplePAPPolicy3, true);
+        policyPersistenceManager.addPolicy(samplePDPPolicy1);
+
+        // Load the search attributes in to the cache.
+        Map<String, Set<AttributeDTO>> attributes = policyPersistenceManager.getSearchAttributes(null, null);
+        assertEquals(attributes.size(), 1);
+        assertTrue(hasAttributeValue(attributes.get(SAMPLE_POLICY_ID_1), "Sri Lanka"));
+
+        policyPersistenceManager.addPolicy(samplePDPPolicy3);
+        attributes = policyPersistenceManager.getSearchAttributes(null, null);
+        assertEquals(attributes.size(), 2);
+
+        // Publish a new version of the policy.
+        policyPersistenceManager.addOrUpdatePolicy(sampleUpdatedPAPPolicy1, true);
+        policyPersistenceManager.updatePolicy(updatedSamplePDPPolicy1);
+        attributes = policyPersistenceManager.getSearchAttributes(null, null);
+        assertEquals(attributes.size(), 2);
+        assertFalse(hasAttributeValue(attributes.get(SAMPLE_POLICY_ID_1), "Sri Lanka"));
+        assertTrue(hasAttributeValue(attributes.get(SAMPLE_POLICY_ID_1), "India"));
+
+        // Deactivate the policy.
+        policyPersistenceManager.updatePolicy(inactiveSamplePDPPolicy1);
+        attributes = policyPersistenceManager.getSearchAttributes(null, null);
+        assertEquals(attributes.size(), 1);
+        assertFalse(attributes.containsKey(SAMPLE_POLICY_ID_1));
+
+        // Unpublish the policy.
+        policyPersistenceManager.deletePolicy(SAMPLE_POLICY_ID_3);
+        attributes = policyPersistenceManager.getSearchAttributes(null, null);
+        assertEquals(attributes.size(), 0);
+    }
+
+    @Test(priority = 14)
+    public void testBulkAddAndPublishPolicies() throws Exception {
+
+        // Use a small batch size, so that the policies are stored in several chunks.
+        EntitlementConfigHolder.getInstance().getEngineProperties().put(PDPConstants.POLICY_STORE_BATCH_SIZE, "150");
+
+        List<PolicyDTO> papPolicies = new ArrayList<>();
+        PolicyStoreDTO[] pdpPolicies = new PolicyStoreDTO[BULK_POLICY_COUNT];
+        for (int i = 0; i < BULK_POLICY_COUNT; i++) {
+            String policyId = BULK_POLICY_ID_PREFIX + i;
+            PolicyDTO papPolicy = new PolicyDTO(policyId);
+            papPolicy.setPolicy(SAMPLE_POLICY_STRING_1.replace(SAMPLE_POLICY_ID_1, policyId));
+            papPolicies.add(papPolicy);
+
+            PolicyStoreDTO pdpPolicy = new PolicyStoreDTO();
+            pdpPolicy.setPolicyId(policyId);
+            pdpPolicy.setVersion("1");
+            pdpPolicy.setActive(i % 2 == 0);
+            pdpPolicy.setSetActive(true);
+            pdpPolicy.setPolicyOrder(i + 1);
+            pdpPolicy.setSetOrder(true);
+            pdpPolicies[i] = pdpPolicy;
+        }
+
+        try {
+            policyPersistenceManager.addPolicies(papPolicies);
+            List<String> papPolicyIds = policyPersistenceManager.listPolicyIds();
+            assertEquals(papPolicyIds.size(), BULK_POLICY_COUNT);
+            PolicyDTO papPolicy = policyPersistenceManager.getPAPPolicy(BULK_POLICY_ID_PREFIX + 151);
+            assertEquals(papPolicy.getVersion(), "1");
+            assertEquals(papPolicy.getPolicy(), papPolicies.get(151).getPolicy());
+            assertEquals(papPolicy.getAttributeDTOs().length, 4);
+
+            policyPersistenceManager.addPolicies(pdpPolicies);
+            assertEquals(policyPersistenceManager.listPublishedPolicyIds().size(), BULK_POLICY_COUNT);
+            assertEquals(((JDBCPolicyPersistenceManager) policyPersistenceManager).getActivePolicies().length,
+                    BULK_POLICY_COUNT / 2);
+            for (int i : new int[]{0, 151, BULK_POLICY_COUNT - 1}) {
+                PolicyStoreDTO publishedPolicy =
+                        policyPersistenceManager.getPublishedPolicy(BULK_POLICY_ID_PREFIX + i);
+                assertEquals(publishedPolicy.getVersion(), "1");
+                assertEquals(publishedPolicy.isActive(), i % 2 == 0);
+                assertEquals(publishedPolicy.getPolicyOrder(), i + 1);
+            }
+        } finally {
+            for (PolicyDTO papPolicy : papPolicies) {
+                policyPersistenceManager.deletePolicy(papPolicy.getPolicyId());
+                policyPersistenceManager.removePolicy(papPolicy.getPolicyId());
+            }
+        }
+    }
+
+    @Test(priority = 14)
+    public void testActivePolicyVersionChangesWhenPolicyIsCreatedAgain() throws Exception {
+
+        JDBCPolicyPersistenceManager persistenceManager = (JDBCPolicyPersistenceManager) policyPersistenceManager;
+        policyPersistenceManager.addOrUpdatePolicy(samplePAPPolicy1, true);
+        policyPersistenceManager.addPolicy(samplePDPPolicy1);
+        String version = persistenceManager.getActivePolicyVersions().get(SAMPLE_POLICY_ID_1);
+        assertTrue(version.startsWith("1@"));
+        assertEquals(persistenceManager.getActivePolicyVersions().get(SAMPLE_POLICY_ID_1), version);
+
+        // Delete the policy and create it again, which numbers its versions from 1 again.
+        policyPersistenceManager.deletePolicy(SAMPLE_POLICY_ID_1);
+        policyPersistenceManager.removePolicy(SAMPLE_POLICY_ID_1);
+        Thread.sleep(10);
+        policyPersistenceManager.addOrUpdatePolicy(sampleUpdatedPAPPolicy1, true);
+        policyPersistenceManager.addPolicy(samplePDPPolicy1);
+
+        String newVersion = persistenceManager.getActivePolicyVersions().get(SAMPLE_POLICY_ID_1);
+        assertTrue(newVersion.startsWith("1@"));
+        assertNotEquals(newVersion, version);
+    }
+
+    private boolean hasAttributeValue(Set<AttributeDTO> attributes, String value) {
+
+        for (AttributeDTO attribute : attributes) {
+            if (value.equals(attribute.getAttributeValue())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void assertEqualsNoOrder(Object[] actual, Object[] expected) {
+
+        assertEquals(actual.length, expected.length);
+        assertEquals(new HashSet<>(Arrays.asList(actual)), new HashSet<>(Arrays.asList(expected)));
+    }
 }
@@ -335,6 +335,25 @@ public abstract class PolicyPersistenceManagerTest {
         assertTrue(policyPersistenceManager.isPolicyExist(samplePDPPolicy1.getPolicyId()));
     }
 
+    @Test(priority = 7)
+    public void testGetExistingPolicies() throws Exception {
+
+        List<String> policyIds = Arrays.asList(SAMPLE_POLICY_ID_1, SAMPLE_POLICY_ID_2, SAMPLE_POLICY_ID_3);
+        assertTrue(policyPersistenceManager.getExistingPolicies(policyIds).isEmpty());
+
+        policyPersistenceManager.addOrUpdatePolicy(samplePAPPolicy1, true);
+        policyPersistenceManager.addOrUpdatePolicy(samplePAPPolicy2, true);
+        policyPersistenceManager.addOrUpdatePolicy(samplePAPPolicy3, true);
+        policyPersistenceManager.addPolicy(samplePDPPolicy1);
+        policyPersistenceManager.addPolicy(samplePDPPolicy3);
+
+        Set<String> existingPolicies = policyPersistenceManager.getExistingPolicies(policyIds);
+        assertEquals(existingPolicies.size(), 2);
+        assertTrue(existingPolicies.contains(SAMPLE_POLICY_ID_1));
+        assertTrue(existingPolicies.contains(SAMPLE_POLICY_ID_3));
+        assertEquals(policyPersistenceManager.getExistingPolicies(Arrays.asList(SAMPLE_POLICY_ID_2)).size(), 0);
+    }
+
     @Test(priority = 7)
     public void testAddInvalidPDPPolicy() throws Exception {
 
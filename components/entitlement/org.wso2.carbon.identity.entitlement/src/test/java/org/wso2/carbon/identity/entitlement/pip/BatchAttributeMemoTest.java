@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2024, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.entitlement.pip;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Mockito.mock;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.fail;
+
+/**
+ * This class tests the sharing of attribute lookups among the requests of a batch by the BatchAttributeMemo class.
+ */
+public class BatchAttributeMemoTest {
+
+    @Test
+    public void testConcurrentLookupsAreResolvedOnce() throws Exception {
+
+        final BatchAttributeMemo memo = new BatchAttributeMemo();
+        final PIPAttributeFinder finder = mock(PIPAttributeFinder.class);
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Set<String>>> futures = new ArrayList<Future<Set<String>>>();
+            for (int i = 0; i < 32; i++) {
+                futures.add(executor.submit(new Callable<Set<String>>() {
+                    @Override
+                    public Set<String> call() throws Exception {
+                        start.await();
+                        return memo.getAttributeValues(finder, "alice", new Callable<Set<String>>() {
+                            @Override
+                            public Set<String> call() throws Exception {
+                                loads.incrementAndGet();
+                                Thread.sleep(50);
+                                return Collections.singleton("admin");
+                            }
+                        });
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<Set<String>> future : futures) {
+                assertEquals(future.get(), Collections.singleton("admin"));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(loads.get(), 1);
+    }
+
+    @Test
+    public void testLookupsAreKeyedByFinderAndKey() throws Exception {
+
+        BatchAttributeMemo memo = new BatchAttributeMemo();
+        PIPAttributeFinder finder1 = mock(PIPAttributeFinder.class);
+        PIPAttributeFinder finder2 = mock(PIPAttributeFinder.class);
+
+        assertEquals(memo.getAttributeValues(finder1, "alice", values("1")), Collections.singleton("1"));
+        assertEquals(memo.getAttributeValues(finder1, "bob", values("2")), Collections.singleton("2"));
+        assertEquals(memo.getAttributeValues(finder2, "alice", values("3")), Collections.singleton("3"));
+        assertEquals(memo.getAttributeValues(finder1, "alice", values("4")), Collections.singleton("1"));
+    }
+
+    @Test
+    public void testFailedLookupsAreNotRemembered() throws Exception {
+
+        BatchAttributeMemo memo = new BatchAttributeMemo();
+        PIPAttributeFinder finder = mock(PIPAttributeFinder.class);
+
+        try {
+            memo.getAttributeValues(finder, "alice", new Callable<Set<String>>() {
+                @Override
+                public Set<String> call() throws Exception {
+                    throw new IllegalStateException("user store is not available");
+                }
+            });
+            fail("Expected the lookup to fail");
+        } catch (IllegalStateException e) {
+            assertEquals(e.getMessage(), "user store is not available");
+        }
+        assertEquals(memo.getAttributeValues(finder, "alice", values("admin")), Collections.singleton("admin"));
+    }
+
+    private Callable<Set<String>> values(final String value) {
+
+        return new Callable<Set<String>>() {
+            @Override
+            public Set<String> call() {
+                return Collections.singleton(value);
+            }
+        };
+    }
+}
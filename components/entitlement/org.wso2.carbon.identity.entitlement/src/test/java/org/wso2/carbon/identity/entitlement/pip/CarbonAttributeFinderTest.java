@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2024, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.entitlement.pip;
+
+import org.mockito.MockedStatic;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.balana.attr.BagAttribute;
+import org.wso2.balana.cond.EvaluationResult;
+import org.wso2.balana.ctx.EvaluationCtx;
+import org.wso2.carbon.identity.common.testng.WithCarbonHome;
+import org.wso2.carbon.identity.entitlement.PDPConstants;
+import org.wso2.carbon.identity.entitlement.internal.EntitlementConfigHolder;
+import org.wso2.carbon.identity.entitlement.internal.EntitlementServiceComponent;
+import org.wso2.carbon.identity.entitlement.pdp.DecisionCacheContext;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * This class tests the resolution of an attribute through PIP attribute finders called concurrently by the
+ * CarbonAttributeFinder class.
+ */
+@WithCarbonHome
+public class CarbonAttributeFinderTest {
+
+    private static final String ATTRIBUTE_ID = "http://wso2.org/claims/role";
+    private static final URI STRING_TYPE = URI.create("http://www.w3.org/2001/XMLSchema#string");
+    private static final URI SUBJECT_CATEGORY =
+            URI.create("urn:oasis:names:tc:xacml:1.0:subject-category:access-subject");
+    private static final long TIMEOUT = 300;
+
+    private final Map<PIPAttributeFinder, Properties> designators = new LinkedHashMap<>();
+    private MockedStatic<EntitlementServiceComponent> entitlementServiceComponent;
+
+    @BeforeMethod
+    public void setUp() {
+
+        Properties engineProperties = new Properties();
+        engineProperties.setProperty(PDPConstants.ATTRIBUTE_FINDERS_PARALLEL_ENABLE, "true");
+        engineProperties.setProperty(PDPConstants.ATTRIBUTE_FINDERS_PARALLEL_TIMEOUT, String.valueOf(TIMEOUT));
+
+        EntitlementConfigHolder mockEntitlementConfigHolder = mock(EntitlementConfigHolder.class);
+        when(mockEntitlementConfigHolder.getEngineProperties()).thenReturn(engineProperties);
+        when(mockEntitlementConfigHolder.getDesignators()).thenReturn(designators);
+
+        entitlementServiceComponent = mockStatic(EntitlementServiceComponent.class);
+        entitlementServiceComponent.when(EntitlementServiceComponent::getEntitlementConfig)
+                .thenReturn(mockEntitlementConfigHolder);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+
+        designators.clear();
+        entitlementServiceComponent.close();
+    }
+
+    @Test
+    public void testSlowFindersAreLeftOutAtOneDeadline() throws Exception {
+
+        final int slowFinders = 4;
+        final CountDownLatch started = new CountDownLatch(slowFinders);
+        // called by the evaluating thread, once the slow finders are started on the prefetch executor
+        addFinder("fast", () -> {
+            started.await();
+            return Collections.singleton("admin");
+        });
+        for (int i = 0; i < slowFinders; i++) {
+            addFinder("slow" + i, () -> {
+                started.countDown();
+                Thread.sleep(10000);
+                return Collections.singleton("guest");
+            });
+        }
+        CarbonAttributeFinder attributeFinder = new CarbonAttributeFinder(-1234);
+        attributeFinder.init();
+
+        DecisionCacheContext.start(null, null, 0);
+        long start = System.nanoTime();
+        EvaluationResult result = attributeFinder.findAttribute(STRING_TYPE, URI.create(ATTRIBUTE_ID), null,
+                SUBJECT_CATEGORY, mock(EvaluationCtx.class));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        DecisionCacheContext decisionCacheContext = DecisionCacheContext.end();
+
+        assertTrue(elapsed < slowFinders * TIMEOUT, "Waited " + elapsed + " ms for the slow finders");
+        BagAttribute bag = (BagAttribute) result.getAttributeValue();
+        assertEquals(bag.size(), 1);
+        assertEquals(bag.iterator().next().encode(), "admin");
+        assertFalse(decisionCacheContext.isCacheable());
+    }
+
+    @Test
+    public void testValuesOfAllFindersAreMergedWithinDeadline() throws Exception {
+
+        addFinder("first", () -> Collections.singleton("admin"));
+        addFinder("second", () -> Collections.singleton("manager"));
+        addFinder("third", () -> Collections.singleton("guest"));
+        CarbonAttributeFinder attributeFinder = new CarbonAttributeFinder(-1234);
+        attributeFinder.init();
+
+        DecisionCacheContext.start(null, null, 0);
+        EvaluationResult result = attributeFinder.findAttribute(STRING_TYPE, URI.create(ATTRIBUTE_ID), null,
+                SUBJECT_CATEGORY, mock(EvaluationCtx.class));
+        DecisionCacheContext decisionCacheContext = DecisionCacheContext.end();
+
+        BagAttribute bag = (BagAttribute) result.getAttributeValue();
+        assertEquals(bag.size(), 3);
+        assertTrue(decisionCacheContext.isCacheable());
+    }
+
+    private void addFinder(String name, Callable<Set<String>> values) throws Exception {
+
+        PIPAttributeFinder finder = mock(PIPAttributeFinder.class);
+        when(finder.getModuleName()).thenReturn(name);
+        when(finder.getSupportedAttributes()).thenReturn(Collections.singleton(ATTRIBUTE_ID));
+        when(finder.getAttributeValues(any(), any(), any(), any(), any())).thenAnswer(invocation -> values.call());
+        designators.put(finder, new Properties());
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2024, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.entitlement.pip;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * This class tests the concurrent calls made by the ConcurrentCalls class.
+ */
+public class ConcurrentCallsTest {
+
+    @Test
+    public void testCallsRejectedByExecutorAreMadeByCaller() throws Exception {
+
+        Executor executor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException();
+            }
+        };
+
+        List<FutureTask<Integer>> futures = ConcurrentCalls.call(executor, getCalls(3), 100);
+
+        assertEquals(futures.size(), 3);
+        for (int i = 0; i < futures.size(); i++) {
+            assertEquals(futures.get(i).get(), Integer.valueOf(i));
+        }
+    }
+
+    @Test
+    public void testCallsQueuedByExecutorAreMadeByCaller() throws Exception {
+
+        // an executor which is saturated by other tenants and never gets to the queued calls
+        final List<Runnable> queue = new ArrayList<Runnable>();
+        Executor executor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                queue.add(command);
+            }
+        };
+
+        List<FutureTask<Integer>> futures = ConcurrentCalls.call(executor, getCalls(3), 100);
+
+        assertEquals(queue.size(), 2);
+        for (int i = 0; i < futures.size(); i++) {
+            assertFalse(futures.get(i).isCancelled());
+            assertEquals(futures.get(i).get(), Integer.valueOf(i));
+        }
+    }
+
+    @Test
+    public void testSlowCallsAreCancelledAtOneDeadline() throws Exception {
+
+        final int slowCalls = 4;
+        final long timeout = 300;
+        final CountDownLatch started = new CountDownLatch(slowCalls);
+        Executor executor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                Thread thread = new Thread(command);
+                thread.setDaemon(true);
+                thread.start();
+            }
+        };
+
+        List<Callable<Integer>> calls = new ArrayList<Callable<Integer>>();
+        calls.add(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                // made by the caller, once the executor has started all the slow calls
+                started.await();
+                return 0;
+            }
+        });
+        for (int i = 1; i <= slowCalls; i++) {
+            calls.add(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    started.countDown();
+                    Thread.sleep(10000);
+                    return -1;
+                }
+            });
+        }
+
+        long start = System.nanoTime();
+        List<FutureTask<Integer>> futures = ConcurrentCalls.call(executor, calls, timeout);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(elapsed < slowCalls * timeout, "Waited " + elapsed + " ms for the slow calls");
+        assertEquals(futures.get(0).get(), Integer.valueOf(0));
+        for (int i = 1; i <= slowCalls; i++) {
+            assertTrue(futures.get(i).isCancelled());
+        }
+    }
+
+    @Test
+    public void testCallsCompletedWithinDeadlineAreNotCancelled() throws Exception {
+
+        Executor executor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                Thread thread = new Thread(command);
+                thread.setDaemon(true);
+                thread.start();
+            }
+        };
+
+        List<FutureTask<Integer>> futures = ConcurrentCalls.call(executor, getCalls(8), 5000);
+
+        for (int i = 0; i < futures.size(); i++) {
+            assertTrue(futures.get(i).isDone());
+            assertFalse(futures.get(i).isCancelled());
+            assertEquals(futures.get(i).get(), Integer.valueOf(i));
+        }
+    }
+
+    private List<Callable<Integer>> getCalls(int count) {
+
+        List<Callable<Integer>> calls = new ArrayList<Callable<Integer>>();
+        for (int i = 0; i < count; i++) {
+            final int value = i;
+            calls.add(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    return value;
+                }
+            });
+        }
+        return calls;
+    }
+}
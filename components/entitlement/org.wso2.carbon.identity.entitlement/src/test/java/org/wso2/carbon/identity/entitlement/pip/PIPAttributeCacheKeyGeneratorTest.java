@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2024, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.entitlement.pip;
+
+import org.testng.annotations.Test;
+import org.wso2.balana.ctx.AbstractRequestCtx;
+import org.wso2.balana.ctx.RequestCtxFactory;
+import org.wso2.carbon.identity.entitlement.EntitlementUtil;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.mock;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNull;
+
+/**
+ * This class tests the PIP attribute cache keys generated by the PIPAttributeCacheKeyGenerator class.
+ */
+public class PIPAttributeCacheKeyGeneratorTest {
+
+    private static final URI STRING_TYPE = URI.create("http://www.w3.org/2001/XMLSchema#string");
+    private static final URI ROLE_ID = URI.create("http://wso2.org/claims/role");
+    private static final URI SUBJECT_CATEGORY = URI.create(
+            "urn:oasis:names:tc:xacml:1.0:subject-category:access-subject");
+
+    private final PIPAttributeCacheKeyGenerator keyGenerator = new PIPAttributeCacheKeyGenerator();
+
+    @Test
+    public void testRequestsOfSameSubjectShareKey() throws Exception {
+
+        PIPAttributeFinder finder = mock(PIPAttributeFinder.class);
+        Set<RequestAttribute> keyAttributes = Collections.singleton(new RequestAttribute(
+                "urn:oasis:names:tc:xacml:1.0:subject-category:access-subject",
+                "urn:oasis:names:tc:xacml:1.0:subject:subject-id"));
+
+        assertEquals(generateKey(finder, keyAttributes, request("alice", "foo", "read")),
+                generateKey(finder, keyAttributes, request("alice", "bar", "write")));
+        assertNotEquals(generateKey(finder, keyAttributes, request("alice", "foo", "read")),
+                generateKey(finder, keyAttributes, request("bob", "foo", "read")));
+    }
+
+    @Test
+    public void testUnknownKeyAttributesKeyOnWholeRequest() throws Exception {
+
+        PIPAttributeFinder finder = mock(PIPAttributeFinder.class, CALLS_REAL_METHODS);
+        Set<RequestAttribute> keyAttributes = finder.getCacheKeyAttributes();
+
+        assertNull(keyAttributes);
+        assertEquals(generateKey(finder, keyAttributes, request("alice", "foo", "read")),
+                generateKey(finder, keyAttributes, request("alice", "foo", "read")));
+        assertNotEquals(generateKey(finder, keyAttributes, request("alice", "foo", "read")),
+                generateKey(finder, keyAttributes, request("alice", "bar", "read")));
+        assertNotEquals(generateKey(finder, keyAttributes, request("alice", "foo", "read")),
+                generateKey(finder, keyAttributes, request("alice", "foo", "write")));
+        assertNotEquals(generateKey(finder, keyAttributes, request("alice", "foo", "read")),
+                generateKey(finder, keyAttributes, request("bob", "foo", "read")));
+    }
+
+    @Test
+    public void testDeclaredKeyAttributesChangeKey() throws Exception {
+
+        PIPAttributeFinder finder = mock(PIPAttributeFinder.class);
+        Set<RequestAttribute> keyAttributes = Collections.singleton(new RequestAttribute(
+                "urn:oasis:names:tc:xacml:3.0:attribute-category:resource",
+                "urn:oasis:names:tc:xacml:1.0:resource:resource-id"));
+
+        assertEquals(generateKey(finder, keyAttributes, request("alice", "foo", "read")),
+                generateKey(finder, keyAttributes, request("bob", "foo", "write")));
+        assertNotEquals(generateKey(finder, keyAttributes, request("alice", "foo", "read")),
+                generateKey(finder, keyAttributes, request("alice", "bar", "read")));
+    }
+
+    @Test
+    public void testLookedUpAttributeChangesKey() throws Exception {
+
+        PIPAttributeFinder finder = mock(PIPAttributeFinder.class, CALLS_REAL_METHODS);
+        AbstractRequestCtx requestCtx = request("alice", "foo", "read");
+
+        assertNotEquals(generateKey(finder, finder.getCacheKeyAttributes(), requestCtx),
+                keyGenerator.generateKey(finder, STRING_TYPE, URI.create("http://wso2.org/claims/emailaddress"),
+                        SUBJECT_CATEGORY, null, finder.getCacheKeyAttributes(), requestCtx));
+        assertNotEquals(generateKey(finder, finder.getCacheKeyAttributes(), requestCtx),
+                keyGenerator.generateKey(finder, STRING_TYPE, ROLE_ID, SUBJECT_CATEGORY, "issuer",
+                        finder.getCacheKeyAttributes(), requestCtx));
+    }
+
+    @Test
+    public void testSubjectOfLookup() throws Exception {
+
+        PIPAttributeFinder finder = mock(PIPAttributeFinder.class, CALLS_REAL_METHODS);
+        Set<RequestAttribute> resourceKeyAttributes = Collections.singleton(new RequestAttribute(
+                "urn:oasis:names:tc:xacml:3.0:attribute-category:resource",
+                "urn:oasis:names:tc:xacml:1.0:resource:resource-id"));
+
+        assertEquals(keyGenerator.getSubject(finder.getCacheKeyAttributes(), request("alice", "foo", "read")),
+                "alice");
+        assertNull(keyGenerator.getSubject(resourceKeyAttributes, request("alice", "foo", "read")));
+    }
+
+    private String generateKey(PIPAttributeFinder finder, Set<RequestAttribute> keyAttributes,
+                               AbstractRequestCtx requestCtx) {
+
+        return keyGenerator.generateKey(finder, STRING_TYPE, ROLE_ID, SUBJECT_CATEGORY, null, keyAttributes,
+                requestCtx);
+    }
+
+    private AbstractRequestCtx request(String subject, String resource, String action) throws Exception {
+
+        return RequestCtxFactory.getFactory().getRequestCtx(
+                EntitlementUtil.createSimpleXACMLRequest(subject, resource, action, "env"));
+    }
+}
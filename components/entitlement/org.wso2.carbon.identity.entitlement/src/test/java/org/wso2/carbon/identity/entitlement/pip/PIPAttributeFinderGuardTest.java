@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2024, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.entitlement.pip;
+
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.common.testng.WithCarbonHome;
+
+import java.util.Collections;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * This class tests the call timeout, concurrency limit and circuit breaker of the PIPAttributeFinderGuard class.
+ */
+@WithCarbonHome
+public class PIPAttributeFinderGuardTest {
+
+    @Test
+    public void testSlowCallTimesOut() throws Exception {
+
+        PIPAttributeFinderGuard guard = new PIPAttributeFinderGuard("slow", properties("CallTimeout", "100"));
+
+        long start = System.currentTimeMillis();
+        try {
+            guard.call(sleepingCall(5000));
+            fail("Slow call did not time out");
+        } catch (PIPCallRejectedException e) {
+            fail("Slow call was rejected instead of timing out");
+        } catch (Exception e) {
+            // expected
+        }
+        assertTrue(System.currentTimeMillis() - start < 2000);
+        assertEquals(guard.getTimeouts(), 1);
+        assertEquals(guard.getFailures(), 1);
+
+        assertEquals(guard.call(sleepingCall(0)), Collections.singleton("value"));
+        assertEquals(guard.getCalls(), 2);
+    }
+
+    @Test
+    public void testCallsOverConcurrencyLimitAreRejected() throws Exception {
+
+        final PIPAttributeFinderGuard guard = new PIPAttributeFinderGuard("bulkhead",
+                properties("MaxConcurrentCalls", "1"));
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Set<String>> blocked = executor.submit(new Callable<Set<String>>() {
+                @Override
+                public Set<String> call() throws Exception {
+                    return guard.call(new Callable<Set<String>>() {
+                        @Override
+                        public Set<String> call() throws Exception {
+                            started.countDown();
+                            release.await(5, TimeUnit.SECONDS);
+                            return Collections.singleton("value");
+                        }
+                    });
+                }
+            });
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            try {
+                guard.call(sleepingCall(0));
+                fail("Call over the concurrency limit was not rejected");
+            } catch (PIPCallRejectedException e) {
+                // expected
+            }
+            assertEquals(guard.getBulkheadRejections(), 1);
+
+            release.countDown();
+            assertEquals(blocked.get(5, TimeUnit.SECONDS), Collections.singleton("value"));
+            assertEquals(guard.call(sleepingCall(0)), Collections.singleton("value"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testPermitIsReleasedAfterTimedOutCalls() throws Exception {
+
+        Properties properties = properties("CallTimeout", "100");
+        properties.setProperty("MaxConcurrentCalls", "1");
+        PIPAttributeFinderGuard guard = new PIPAttributeFinderGuard("timeout", properties);
+
+        for (int i = 0; i < 3; i++) {
+            try {
+                guard.call(sleepingCall(5000));
+                fail("Slow call did not time out");
+            } catch (PIPCallRejectedException e) {
+                fail("Call was rejected, the permit of the timed out call is not released");
+            } catch (Exception e) {
+                // expected
+            }
+            // the timed out call is interrupted, and releases the permit when it returns
+            Thread.sleep(200);
+        }
+        assertEquals(guard.getTimeouts(), 3);
+        assertEquals(guard.call(sleepingCall(0)), Collections.singleton("value"));
+        assertEquals(guard.getBulkheadRejections(), 0);
+    }
+
+    @Test
+    public void testCircuitBreakerOpensOnFailuresAndClosesOnTrialCall() throws Exception {
+
+        Properties properties = properties("CircuitBreakerFailureRate", "50");
+        properties.setProperty("CircuitBreakerWindowSize", "4");
+        properties.setProperty("CircuitBreakerOpenInterval", "200");
+        PIPAttributeFinderGuard guard = new PIPAttributeFinderGuard("failing", properties);
+
+        guard.call(sleepingCall(0));
+        guard.call(sleepingCall(0));
+        callFailing(guard);
+        assertFalse(guard.isCircuitBreakerOpen());
+        callFailing(guard);
+        assertTrue(guard.isCircuitBreakerOpen());
+
+        long start = System.currentTimeMillis();
+        try {
+            guard.call(sleepingCall(1000));
+            fail("Call was not short circuited");
+        } catch (PIPCallRejectedException e) {
+            // expected
+        }
+        assertTrue(System.currentTimeMillis() - start < 500);
+        assertEquals(guard.getCircuitBreakerRejections(), 1);
+        assertEquals(guard.getCalls(), 4);
+
+        Thread.sleep(300);
+        assertEquals(guard.call(sleepingCall(0)), Collections.singleton("value"));
+        assertFalse(guard.isCircuitBreakerOpen());
+    }
+
+    private void callFailing(PIPAttributeFinderGuard guard) {
+
+        try {
+            guard.call(new Callable<Set<String>>() {
+                @Override
+                public Set<String> call() throws Exception {
+                    throw new Exception("attribute source is not available");
+                }
+            });
+            fail("Failing call did not fail");
+        } catch (Exception e) {
+            // expected
+        }
+    }
+
+    private Callable<Set<String>> sleepingCall(final long sleep) {
+
+        return new Callable<Set<String>>() {
+            @Override
+            public Set<String> call() throws Exception {
+                if (sleep > 0) {
+                    Thread.sleep(sleep);
+                }
+                return Collections.singleton("value");
+            }
+        };
+    }
+
+    private Properties properties(String name, String value) {
+
+        Properties properties = new Properties();
+        properties.setProperty(name, value);
+        return properties;
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2024, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.entitlement.pip;
+
+import org.testng.annotations.Test;
+import org.wso2.balana.ctx.EvaluationCtx;
+
+import java.util.Collections;
+import java.util.Set;
+
+import static org.mockito.Mockito.mock;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+/**
+ * This class tests the scoping of prefetched attribute values by the PrefetchedAttributes class.
+ */
+public class PrefetchedAttributesTest {
+
+    @Test
+    public void testValuesAreOnlyServedToTheirEvaluation() {
+
+        EvaluationCtx evaluationCtx = mock(EvaluationCtx.class);
+        PIPAttributeFinder finder = mock(PIPAttributeFinder.class);
+        Set<String> values = Collections.singleton("admin");
+
+        PrefetchedAttributes prefetchedAttributes = new PrefetchedAttributes(evaluationCtx);
+        prefetchedAttributes.addAttributeValues(finder, "role", values);
+        PrefetchedAttributes.bind(prefetchedAttributes);
+
+        assertSame(PrefetchedAttributes.getCurrent(evaluationCtx), prefetchedAttributes);
+        assertEquals(PrefetchedAttributes.getCurrent(evaluationCtx).getAttributeValues(finder, "role"), values);
+        assertNull(prefetchedAttributes.getAttributeValues(finder, "email"));
+        assertNull(prefetchedAttributes.getAttributeValues(mock(PIPAttributeFinder.class), "role"));
+
+        assertNull(PrefetchedAttributes.getCurrent(mock(EvaluationCtx.class)));
+        // the values of a previous evaluation are released once another evaluation looks up an attribute
+        assertNull(PrefetchedAttributes.getCurrent(evaluationCtx));
+    }
+
+    @Test
+    public void testValuesAreReleasedWhenUnbound() {
+
+        EvaluationCtx evaluationCtx = mock(EvaluationCtx.class);
+        PrefetchedAttributes prefetchedAttributes = new PrefetchedAttributes(evaluationCtx);
+        prefetchedAttributes.addAttributeValues(mock(PIPAttributeFinder.class), "role",
+                Collections.singleton("admin"));
+        PrefetchedAttributes.bind(prefetchedAttributes);
+
+        CarbonAttributeFinder.clearPrefetchedAttributes();
+
+        assertNull(PrefetchedAttributes.getCurrent(evaluationCtx));
+    }
+}
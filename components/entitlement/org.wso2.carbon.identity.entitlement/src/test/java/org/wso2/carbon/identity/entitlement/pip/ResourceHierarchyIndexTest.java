@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2024, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.entitlement.pip;
+
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * This class tests the serving and invalidation of subtrees by the ResourceHierarchyIndex class.
+ */
+public class ResourceHierarchyIndexTest {
+
+    @Test
+    public void testDescendantsAreServedFromLoadedSubtree() {
+
+        ResourceHierarchyIndex index = new ResourceHierarchyIndex(0);
+        index.addDescendants("/a", resources("/a/b", "/a/b/c", "/a/b/d", "/a/bc", "/a/e"), index.getGeneration());
+
+        assertEquals(index.getDescendants("/a/"), resources("/a/b", "/a/b/c", "/a/b/d", "/a/bc", "/a/e"));
+        assertEquals(index.getDescendants("/a/b"), resources("/a/b/c", "/a/b/d"));
+        assertTrue(index.getDescendants("/a/b/c").isEmpty());
+        assertTrue(index.getDescendants("/a/x").isEmpty());
+        assertNull(index.getDescendants("/f"));
+        assertNull(index.getChildren("/a"));
+    }
+
+    @Test
+    public void testNonHierarchicalResourcesAreOnlyServedForTheParent() {
+
+        ResourceHierarchyIndex index = new ResourceHierarchyIndex(0);
+        index.addDescendants("/a", resources("/a/b", "/a/b/c", "other"), index.getGeneration());
+        index.addDescendants("/g", null, index.getGeneration());
+
+        assertEquals(index.getDescendants("/a"), resources("/a/b", "/a/b/c", "other"));
+        assertNull(index.getDescendants("/a/b"));
+        assertTrue(index.getDescendants("/g").isEmpty());
+        assertNull(index.getDescendants("/g/h"));
+    }
+
+    @Test
+    public void testChangedResourceInvalidatesContainingSubtrees() {
+
+        ResourceHierarchyIndex index = new ResourceHierarchyIndex(0);
+        index.addDescendants("/a", resources("/a/b", "/a/b/c"), index.getGeneration());
+        index.addDescendants("/a/b", resources("/a/b/c"), index.getGeneration());
+        index.addDescendants("/a/b/c", resources(), index.getGeneration());
+        index.addDescendants("/x", resources("/x/y"), index.getGeneration());
+        index.addChildren("/a/b", resources("/a/b/c"), index.getGeneration());
+
+        index.invalidate("/a/b");
+
+        assertNull(index.getDescendants("/a"));
+        assertNull(index.getDescendants("/a/b"));
+        assertNull(index.getDescendants("/a/b/c"));
+        assertNull(index.getChildren("/a/b"));
+        assertEquals(index.getDescendants("/x"), resources("/x/y"));
+    }
+
+    @Test
+    public void testLoadStartedBeforeInvalidationIsNotAdded() {
+
+        ResourceHierarchyIndex index = new ResourceHierarchyIndex(0);
+        long generation = index.getGeneration();
+        index.invalidate("/a/b");
+        index.addDescendants("/a", resources("/a/b"), generation);
+
+        assertNull(index.getDescendants("/a"));
+    }
+
+    @Test
+    public void testExpiredResourcesAreNotServed() throws Exception {
+
+        ResourceHierarchyIndex index = new ResourceHierarchyIndex(50);
+        index.addDescendants("/a", resources("/a/b"), index.getGeneration());
+        assertEquals(index.getDescendants("/a"), resources("/a/b"));
+
+        Thread.sleep(100);
+        assertNull(index.getDescendants("/a"));
+    }
+
+    private Set<String> resources(String... resources) {
+
+        return new HashSet<String>(Arrays.asList(resources));
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2024, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.entitlement.policy;
+
+import org.testng.annotations.Test;
+import org.wso2.balana.AbstractPolicy;
+import org.wso2.balana.attr.xacml3.AttributeDesignator;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * This class tests the designator analysis of the PolicyDesignatorUtil class.
+ */
+public class PolicyDesignatorUtilTest {
+
+    private static final String SUBJECT_CATEGORY = "urn:oasis:names:tc:xacml:1.0:subject-category:access-subject";
+    private static final String RESOURCE_CATEGORY = "urn:oasis:names:tc:xacml:3.0:attribute-category:resource";
+
+    @Test
+    public void testDesignatorsOfTargetsAndConditionsAreFound() {
+
+        String policy = "<Policy xmlns=\"urn:oasis:names:tc:xacml:3.0:core:schema:wd-17\" PolicyId=\"policy1\" " +
+                "RuleCombiningAlgId=\"urn:oasis:names:tc:xacml:3.0:rule-combining-algorithm:deny-overrides\" " +
+                "Version=\"1.0\"><Target><AnyOf><AllOf>" +
+                "<Match MatchId=\"urn:oasis:names:tc:xacml:1.0:function:string-equal\">" +
+                "<AttributeValue DataType=\"http://www.w3.org/2001/XMLSchema#string\">foo</AttributeValue>" +
+                designator(RESOURCE_CATEGORY, "urn:oasis:names:tc:xacml:1.0:resource:resource-id") +
+                "</Match></AllOf></AnyOf></Target>" +
+                "<Rule Effect=\"Permit\" RuleId=\"rule1\"><Condition>" +
+                "<Apply FunctionId=\"urn:oasis:names:tc:xacml:1.0:function:and\">" +
+                isIn("admin", "http://wso2.org/claims/role") +
+                isIn("finance", "http://wso2.org/claims/department") +
+                isIn("admin", "http://wso2.org/claims/role") +
+                "</Apply></Condition></Rule></Policy>";
+
+        AbstractPolicy abstractPolicy = PolicyReader.getInstance(null).getPolicy(policy);
+        List<AttributeDesignator> designators = PolicyDesignatorUtil.getDesignators(abstractPolicy);
+
+        Set<String> attributeIds = new HashSet<String>();
+        for (AttributeDesignator designator : designators) {
+            attributeIds.add(designator.getCategory() + "|" + designator.getId());
+        }
+        assertEquals(designators.size(), 3);
+        assertEquals(attributeIds.size(), 3);
+        assertTrue(attributeIds.contains(RESOURCE_CATEGORY + "|urn:oasis:names:tc:xacml:1.0:resource:resource-id"));
+        assertTrue(attributeIds.contains(SUBJECT_CATEGORY + "|http://wso2.org/claims/role"));
+        assertTrue(attributeIds.contains(SUBJECT_CATEGORY + "|http://wso2.org/claims/department"));
+    }
+
+    private String isIn(String value, String attributeId) {
+
+        return "<Apply FunctionId=\"urn:oasis:names:tc:xacml:1.0:function:string-is-in\">" +
+                "<AttributeValue DataType=\"http://www.w3.org/2001/XMLSchema#string\">" + value +
+                "</AttributeValue>" + designator(SUBJECT_CATEGORY, attributeId) + "</Apply>";
+    }
+
+    private String designator(String category, String attributeId) {
+
+        return "<AttributeDesignator AttributeId=\"" + attributeId + "\" Category=\"" + category + "\" " +
+                "DataType=\"http://www.w3.org/2001/XMLSchema#string\" MustBePresent=\"false\"/>";
+    }
+}
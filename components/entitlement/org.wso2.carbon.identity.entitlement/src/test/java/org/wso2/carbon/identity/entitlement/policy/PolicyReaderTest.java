@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2024, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.entitlement.policy;
+
+import org.testng.annotations.Test;
+import org.wso2.balana.AbstractPolicy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+
+/**
+ * This class tests concurrent policy parsing of the PolicyReader class.
+ */
+public class PolicyReaderTest {
+
+    @Test
+    public void testConcurrentParsing() throws Exception {
+
+        final PolicyReader policyReader = PolicyReader.getInstance(null);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<AbstractPolicy>> futures = new ArrayList<Future<AbstractPolicy>>();
+            for (int i = 0; i < 500; i++) {
+                final String policy = buildPolicy("policy" + i);
+                futures.add(executor.submit(new Callable<AbstractPolicy>() {
+                    @Override
+                    public AbstractPolicy call() {
+                        return policyReader.getPolicy(policy);
+                    }
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                AbstractPolicy policy = futures.get(i).get();
+                assertNotNull(policy);
+                assertEquals(policy.getId().toString(), "policy" + i);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testInvalidPolicyIsNotParsed() {
+
+        assertNull(PolicyReader.getInstance(null).getPolicy("<Policy"));
+    }
+
+    private String buildPolicy(String policyId) {
+
+        return "<Policy xmlns=\"urn:oasis:names:tc:xacml:3.0:core:schema:wd-17\" PolicyId=\"" + policyId +
+                "\" RuleCombiningAlgId=\"urn:oasis:names:tc:xacml:3.0:rule-combining-algorithm:deny-overrides\" " +
+                "Version=\"1.0\"><Target/><Rule Effect=\"Permit\" RuleId=\"permit\"/></Policy>";
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2024, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.entitlement.policy.collection;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+import org.w3c.dom.Document;
+import org.wso2.balana.AbstractPolicy;
+import org.wso2.balana.Balana;
+import org.wso2.balana.Policy;
+import org.wso2.balana.combine.xacml3.DenyOverridesPolicyAlg;
+import org.wso2.balana.ctx.AbstractRequestCtx;
+import org.wso2.balana.ctx.EvaluationCtx;
+import org.wso2.balana.ctx.EvaluationCtxFactory;
+import org.wso2.balana.ctx.RequestCtxFactory;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * This class tests the target index of the IndexedPolicyCollection class.
+ */
+public class IndexedPolicyCollectionTest {
+
+    private static final String ACTION_CATEGORY = "urn:oasis:names:tc:xacml:3.0:attribute-category:action";
+    private static final String RESOURCE_CATEGORY = "urn:oasis:names:tc:xacml:3.0:attribute-category:resource";
+    private static final String ACTION_ID = "urn:oasis:names:tc:xacml:1.0:action:action-id";
+    private static final String RESOURCE_ID = "urn:oasis:names:tc:xacml:1.0:resource:resource-id";
+
+    @Test
+    public void testCandidatesAreSelectedByTargetValue() throws Exception {
+
+        IndexedPolicyCollection collection = createCollection();
+        collection.addPolicy(buildPolicy("policy1", indexedTarget(RESOURCE_CATEGORY, RESOURCE_ID, "resource1")));
+        collection.addPolicy(buildPolicy("policy2", indexedTarget(RESOURCE_CATEGORY, RESOURCE_ID, "resource2")));
+        collection.addPolicy(buildPolicy("policy3", ""));
+
+        List<AbstractPolicy> candidates = collection.getCandidatePolicies(buildContext("resource1", "read"));
+        assertEquals(candidates.size(), 2);
+        assertEquals(candidates.get(0).getId().toString(), "policy1");
+        assertEquals(candidates.get(1).getId().toString(), "policy3");
+
+        AbstractPolicy effectivePolicy = collection.getEffectivePolicy(buildContext("resource2", "read"));
+        assertNotNull(effectivePolicy);
+    }
+
+    @Test
+    public void testPoliciesOnMissingAttributeAreCandidates() throws Exception {
+
+        IndexedPolicyCollection collection = createCollection();
+        collection.addPolicy(buildPolicy("policy1", indexedTarget(ACTION_CATEGORY, ACTION_ID, "read")));
+        collection.addPolicy(buildPolicy("policy2",
+                indexedTarget(ACTION_CATEGORY, "http://wso2.org/claims/custom", "value")));
+
+        List<AbstractPolicy> candidates = collection.getCandidatePolicies(buildContext("resource1", "write"));
+        assertEquals(candidates.size(), 1);
+        assertEquals(candidates.get(0).getId().toString(), "policy2");
+    }
+
+    @Test
+    public void testDeletedAndUpdatedPoliciesAreReindexed() throws Exception {
+
+        IndexedPolicyCollection collection = createCollection();
+        collection.addPolicy(buildPolicy("policy1", indexedTarget(RESOURCE_CATEGORY, RESOURCE_ID, "resource1")));
+        collection.addPolicy(buildPolicy("policy2", indexedTarget(RESOURCE_CATEGORY, RESOURCE_ID, "resource1")));
+
+        collection.addPolicy(buildPolicy("policy1", indexedTarget(RESOURCE_CATEGORY, RESOURCE_ID, "resource2")));
+        assertTrue(collection.deletePolicy("policy2"));
+
+        assertEquals(collection.getCandidatePolicies(buildContext("resource1", "read")).size(), 0);
+        assertNull(collection.getEffectivePolicy(buildContext("resource1", "read")));
+        assertEquals(collection.getCandidatePolicies(buildContext("resource2", "read")).size(), 1);
+    }
+
+    @DataProvider(name = "policyCounts")
+    public Object[][] policyCounts() {
+
+        return new Object[][]{{10}, {100}, {500}};
+    }
+
+    @Test(dataProvider = "policyCounts")
+    public void testCandidateCountIsIndependentOfPolicyCount(int policyCount) throws Exception {
+
+        IndexedPolicyCollection collection = createCollection();
+        for (int i = 0; i < policyCount; i++) {
+            collection.addPolicy(buildPolicy("policy" + i, indexedTarget(RESOURCE_CATEGORY, RESOURCE_ID,
+                    "resource" + i)));
+        }
+
+        EvaluationCtx context = buildContext("resource" + (policyCount / 2), "read");
+        List<AbstractPolicy> candidates = collection.getCandidatePolicies(context);
+        assertEquals(candidates.size(), 1);
+        assertEquals(candidates.get(0).getId().toString(), "policy" + (policyCount / 2));
+        assertEquals(collection.getCandidatePolicies(buildContext("unknown", "read")).size(), 0);
+    }
+
+    private IndexedPolicyCollection createCollection() {
+
+        IndexedPolicyCollection collection = new IndexedPolicyCollection();
+        collection.setPolicyCombiningAlgorithm(new DenyOverridesPolicyAlg());
+        return collection;
+    }
+
+    private String indexedTarget(String category, String attributeId, String value) {
+
+        return "<AnyOf><AllOf>" +
+                "<Match MatchId=\"urn:oasis:names:tc:xacml:1.0:function:string-equal\">" +
+                "<AttributeValue DataType=\"http://www.w3.org/2001/XMLSchema#string\">" + value +
+                "</AttributeValue>" +
+                "<AttributeDesignator AttributeId=\"" + attributeId + "\" Category=\"" + category + "\" " +
+                "DataType=\"http://www.w3.org/2001/XMLSchema#string\" MustBePresent=\"false\"/>" +
+                "</Match></AllOf></AnyOf>";
+    }
+
+    private AbstractPolicy buildPolicy(String policyId, String target) throws Exception {
+
+        String policy = "<Policy xmlns=\"urn:oasis:names:tc:xacml:3.0:core:schema:wd-17\" PolicyId=\"" +
+                policyId + "\" RuleCombiningAlgId=\"urn:oasis:names:tc:xacml:3.0:rule-combining-algorithm:" +
+                "deny-overrides\" Version=\"1.0\"><Target>" + target + "</Target>" +
+                "<Rule Effect=\"Permit\" RuleId=\"permit\"/></Policy>";
+        return Policy.getInstance(parse(policy).getDocumentElement());
+    }
+
+    private EvaluationCtx buildContext(String resource, String action) throws Exception {
+
+        String request = "<Request xmlns=\"urn:oasis:names:tc:xacml:3.0:core:schema:wd-17\" " +
+                "CombinedDecision=\"false\" ReturnPolicyIdList=\"false\">" +
+                attributes(RESOURCE_CATEGORY, RESOURCE_ID, resource) +
+                attributes(ACTION_CATEGORY, ACTION_ID, action) + "</Request>";
+        AbstractRequestCtx requestCtx = RequestCtxFactory.getFactory().getRequestCtx(request);
+        return EvaluationCtxFactory.getFactory().getEvaluationCtx(requestCtx,
+                Balana.getInstance().getPdpConfig());
+    }
+
+    private String attributes(String category, String attributeId, String value) {
+
+        return "<Attributes Category=\"" + category + "\"><Attribute AttributeId=\"" + attributeId + "\" " +
+                "IncludeInResult=\"false\"><AttributeValue DataType=\"http://www.w3.org/2001/XMLSchema#string\">" +
+                value + "</AttributeValue></Attribute></Attributes>";
+    }
+
+    private Document parse(String xml) throws Exception {
+
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        return factory.newDocumentBuilder().parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    }
+}
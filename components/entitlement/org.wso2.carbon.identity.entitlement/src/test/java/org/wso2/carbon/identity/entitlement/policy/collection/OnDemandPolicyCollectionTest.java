@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2024, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.entitlement.policy.collection;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.w3c.dom.Document;
+import org.wso2.balana.AbstractPolicy;
+import org.wso2.balana.Balana;
+import org.wso2.balana.Policy;
+import org.wso2.balana.combine.xacml3.DenyOverridesPolicyAlg;
+import org.wso2.balana.ctx.AbstractRequestCtx;
+import org.wso2.balana.ctx.EvaluationCtx;
+import org.wso2.balana.ctx.EvaluationCtxFactory;
+import org.wso2.balana.ctx.RequestCtxFactory;
+import org.wso2.carbon.identity.entitlement.EntitlementException;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+
+/**
+ * This class tests the on demand policy loading of the OnDemandPolicyCollection class.
+ */
+public class OnDemandPolicyCollectionTest {
+
+    private static final String RESOURCE_CATEGORY = "urn:oasis:names:tc:xacml:3.0:attribute-category:resource";
+    private static final String RESOURCE_ID = "urn:oasis:names:tc:xacml:1.0:resource:resource-id";
+
+    private final Map<String, AbstractPolicy> store = new HashMap<String, AbstractPolicy>();
+
+    private final List<String> loadedPolicies = new ArrayList<String>();
+
+    private final OnDemandPolicyCollection.PolicyLoader policyLoader = new OnDemandPolicyCollection.PolicyLoader() {
+        @Override
+        public AbstractPolicy loadPolicy(String policyId) {
+            loadedPolicies.add(policyId);
+            return store.get(policyId);
+        }
+    };
+
+    @BeforeMethod
+    public void setUp() {
+
+        store.clear();
+        loadedPolicies.clear();
+    }
+
+    @Test
+    public void testEvictedPoliciesAreLoadedOnDemand() throws Exception {
+
+        OnDemandPolicyCollection collection = createCollection(3);
+        for (int i = 0; i < 10; i++) {
+            AbstractPolicy policy = buildPolicy("policy" + i, "resource" + i);
+            store.put("policy" + i, policy);
+            collection.addPolicy(policy);
+        }
+        assertEquals(collection.getPolicyMap().size(), 2);
+
+        AbstractPolicy effectivePolicy = collection.getEffectivePolicy(buildContext("resource0"));
+        assertNotNull(effectivePolicy);
+        assertEquals(effectivePolicy.getId().toString(), "policy0");
+        assertEquals(loadedPolicies.size(), 1);
+        assertEquals(loadedPolicies.get(0), "policy0");
+
+        collection.getEffectivePolicy(buildContext("resource0"));
+        assertEquals(loadedPolicies.size(), 1);
+        assertNull(collection.getEffectivePolicy(buildContext("unknown")));
+        assertEquals(loadedPolicies.size(), 1);
+    }
+
+    @Test
+    public void testCopyIsIndependentOfOriginal() throws Exception {
+
+        OnDemandPolicyCollection collection = createCollection(10);
+        collection.addPolicy(buildPolicy("policy1", "resource1"));
+
+        OnDemandPolicyCollection copy = collection.copy();
+        copy.deletePolicy("policy1");
+        copy.addPolicy(buildPolicy("policy2", "resource2"));
+
+        assertNotNull(collection.getEffectivePolicy(buildContext("resource1")));
+        assertNull(collection.getEffectivePolicy(buildContext("resource2")));
+        assertNull(copy.getEffectivePolicy(buildContext("resource1")));
+        assertNotNull(copy.getEffectivePolicy(buildContext("resource2")));
+        assertNull(copy.getPolicy(new URI("policy1")));
+    }
+
+    @Test(expectedExceptions = EntitlementException.class)
+    public void testPolicyWhichCanNotBeLoadedFailsEvaluation() throws Exception {
+
+        OnDemandPolicyCollection collection = createCollection(2);
+        collection.addPolicy(buildPolicy("policy1", "resource1"));
+        collection.addPolicy(buildPolicy("policy2", "resource1"));
+
+        collection.getEffectivePolicy(buildContext("resource1"));
+    }
+
+    private OnDemandPolicyCollection createCollection(int maxInMemoryPolicies) {
+
+        OnDemandPolicyCollection collection = new OnDemandPolicyCollection(policyLoader, maxInMemoryPolicies);
+        collection.setPolicyCombiningAlgorithm(new DenyOverridesPolicyAlg());
+        return collection;
+    }
+
+    private AbstractPolicy buildPolicy(String policyId, String resource) throws Exception {
+
+        String policy = "<Policy xmlns=\"urn:oasis:names:tc:xacml:3.0:core:schema:wd-17\" PolicyId=\"" +
+                policyId + "\" RuleCombiningAlgId=\"urn:oasis:names:tc:xacml:3.0:rule-combining-algorithm:" +
+                "deny-overrides\" Version=\"1.0\"><Target><AnyOf><AllOf>" +
+                "<Match MatchId=\"urn:oasis:names:tc:xacml:1.0:function:string-equal\">" +
+                "<AttributeValue DataType=\"http://www.w3.org/2001/XMLSchema#string\">" + resource +
+                "</AttributeValue>" +
+                "<AttributeDesignator AttributeId=\"" + RESOURCE_ID + "\" Category=\"" + RESOURCE_CATEGORY + "\" " +
+                "DataType=\"http://www.w3.org/2001/XMLSchema#string\" MustBePresent=\"false\"/>" +
+                "</Match></AllOf></AnyOf></Target><Rule Effect=\"Permit\" RuleId=\"permit\"/></Policy>";
+        return Policy.getInstance(parse(policy).getDocumentElement());
+    }
+
+    private EvaluationCtx buildContext(String resource) throws Exception {
+
+        String request = "<Request xmlns=\"urn:oasis:names:tc:xacml:3.0:core:schema:wd-17\" " +
+                "CombinedDecision=\"false\" ReturnPolicyIdList=\"false\">" +
+                "<Attributes Category=\"" + RESOURCE_CATEGORY + "\"><Attribute AttributeId=\"" + RESOURCE_ID + "\" " +
+                "IncludeInResult=\"false\"><AttributeValue DataType=\"http://www.w3.org/2001/XMLSchema#string\">" +
+                resource + "</AttributeValue></Attribute></Attributes></Request>";
+        AbstractRequestCtx requestCtx = RequestCtxFactory.getFactory().getRequestCtx(request);
+        return EvaluationCtxFactory.getFactory().getEvaluationCtx(requestCtx,
+                Balana.getInstance().getPdpConfig());
+    }
+
+    private Document parse(String xml) throws Exception {
+
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        return factory.newDocumentBuilder().parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    }
+}
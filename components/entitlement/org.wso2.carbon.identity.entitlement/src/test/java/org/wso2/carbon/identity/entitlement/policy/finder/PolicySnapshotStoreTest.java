@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2024, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.entitlement.policy.finder;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.entitlement.dto.PolicyStoreDTO;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNull;
+
+/**
+ * This class tests the local policy snapshots of the PolicySnapshotStore class.
+ */
+public class PolicySnapshotStoreTest {
+
+    private File directory;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+
+        directory = Files.createTempDirectory("policy-snapshots").toFile();
+    }
+
+    @AfterMethod
+    public void tearDown() {
+
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void testSnapshotIsReadInPolicyOrder() {
+
+        PolicySnapshotStore store = new PolicySnapshotStore(directory);
+        List<PolicyStoreDTO> policies = new ArrayList<PolicyStoreDTO>();
+        policies.add(createPolicy("policy2", "3", "<Policy PolicyId=\"policy2\"/>"));
+        policies.add(createPolicy("policy1", "1", "<Policy PolicyId=\"policy1\"/>"));
+        store.write(-1234, "JDBC Policy Persistence Manager", policies);
+
+        Map<String, PolicyStoreDTO> storedPolicies = store.read(-1234, "JDBC Policy Persistence Manager");
+        assertEquals(new ArrayList<String>(storedPolicies.keySet()), Arrays.asList("policy2", "policy1"));
+        assertEquals(storedPolicies.get("policy2").getVersion(), "3");
+        assertEquals(storedPolicies.get("policy1").getPolicy(), "<Policy PolicyId=\"policy1\"/>");
+
+        assertNull(store.read(1, "JDBC Policy Persistence Manager"));
+        assertNull(store.read(-1234, "Registry Policy Finder Module"));
+    }
+
+    @Test
+    public void testCorruptedSnapshotIsIgnored() throws Exception {
+
+        PolicySnapshotStore store = new PolicySnapshotStore(directory);
+        store.write(-1234, "module", Arrays.asList(createPolicy("policy1", "1", "<Policy/>")));
+
+        File[] files = directory.listFiles();
+        assertEquals(files.length, 1);
+        Files.write(files[0].toPath(), new byte[]{1, 2, 3});
+        assertNull(store.read(-1234, "module"));
+    }
+
+    @Test
+    public void testFingerprintDependsOnVersionsAndOrder() {
+
+        Map<String, String> versions1 = new LinkedHashMap<String, String>();
+        versions1.put("policy1", "1");
+        versions1.put("policy2", "1");
+        Map<String, String> versions2 = new LinkedHashMap<String, String>();
+        versions2.put("policy2", "1");
+        versions2.put("policy1", "1");
+        Map<String, String> versions3 = new LinkedHashMap<String, String>();
+        versions3.put("policy1", "2");
+        versions3.put("policy2", "1");
+
+        assertEquals(PolicySnapshotStore.getFingerprint(versions1),
+                PolicySnapshotStore.getFingerprint(new LinkedHashMap<String, String>(versions1)));
+        assertNotEquals(PolicySnapshotStore.getFingerprint(versions1), PolicySnapshotStore.getFingerprint(versions2));
+        assertNotEquals(PolicySnapshotStore.getFingerprint(versions1), PolicySnapshotStore.getFingerprint(versions3));
+    }
+
+    private PolicyStoreDTO createPolicy(String policyId, String version, String policy) {
+
+        PolicyStoreDTO dto = new PolicyStoreDTO();
+        dto.setPolicyId(policyId);
+        dto.setVersion(version);
+        dto.setPolicy(policy);
+        return dto;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2024, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.entitlement.policy.finder;
+
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * This class tests the comparison of the loaded and active policy versions by the policy sync of the
+ * CarbonPolicyFinder class.
+ */
+public class PolicySyncTest {
+
+    @Test
+    public void testUnchangedPoliciesAreNotSynchronized() {
+
+        Map<String, String> loadedVersions = getVersions("policy1", "1@1000", "policy2", "3@2000");
+        Map<String, String> versions = getVersions("policy1", "1@1000", "policy2", "3@2000");
+
+        assertFalse(CarbonPolicyFinder.isPolicyVersionsChanged(loadedVersions, versions));
+        assertTrue(CarbonPolicyFinder.getUpdatedPolicies(loadedVersions, versions).isEmpty());
+        assertTrue(CarbonPolicyFinder.getDeletedPolicies(loadedVersions, versions).isEmpty());
+        assertTrue(CarbonPolicyFinder.getReorderedPolicies(loadedVersions, versions).isEmpty());
+    }
+
+    @Test
+    public void testPolicyCreatedAgainWithRecycledVersionIsSynchronized() {
+
+        // the policy is deleted and created again, hence its version restarts while its revision changes
+        Map<String, String> loadedVersions = getVersions("policy1", "1@1000", "policy2", "1@2000");
+        Map<String, String> versions = getVersions("policy1", "1@1000", "policy2", "1@5000");
+
+        assertTrue(CarbonPolicyFinder.isPolicyVersionsChanged(loadedVersions, versions));
+        assertEquals(CarbonPolicyFinder.getUpdatedPolicies(loadedVersions, versions),
+                Collections.singletonList("policy2"));
+        assertTrue(CarbonPolicyFinder.getDeletedPolicies(loadedVersions, versions).isEmpty());
+    }
+
+    @Test
+    public void testCreatedUpdatedAndDeletedPoliciesAreSynchronized() {
+
+        Map<String, String> loadedVersions = getVersions("policy1", "1@1000", "policy2", "1@2000",
+                "policy3", "2@3000");
+        Map<String, String> versions = getVersions("policy1", "2@4000", "policy3", "2@3000", "policy4", "1@5000");
+
+        assertTrue(CarbonPolicyFinder.isPolicyVersionsChanged(loadedVersions, versions));
+        assertEquals(CarbonPolicyFinder.getUpdatedPolicies(loadedVersions, versions),
+                Arrays.asList("policy1", "policy4"));
+        assertEquals(CarbonPolicyFinder.getDeletedPolicies(loadedVersions, versions),
+                Collections.singletonList("policy2"));
+        assertTrue(CarbonPolicyFinder.getReorderedPolicies(loadedVersions, versions).isEmpty());
+    }
+
+    @Test
+    public void testReorderedPoliciesAreSynchronizedWithoutReloading() {
+
+        Map<String, String> loadedVersions = getVersions("policy1", "1@1000", "policy2", "1@2000",
+                "policy3", "1@3000");
+        Map<String, String> versions = getVersions("policy2", "1@2000", "policy1", "1@1000", "policy3", "1@3000");
+
+        assertTrue(CarbonPolicyFinder.isPolicyVersionsChanged(loadedVersions, versions));
+        assertTrue(CarbonPolicyFinder.getUpdatedPolicies(loadedVersions, versions).isEmpty());
+        assertEquals(CarbonPolicyFinder.getReorderedPolicies(loadedVersions, versions),
+                Arrays.asList("policy2", "policy1"));
+    }
+
+    private Map<String, String> getVersions(String... policyVersions) {
+
+        Map<String, String> versions = new LinkedHashMap<>();
+        for (int i = 0; i < policyVersions.length; i += 2) {
+            versions.put(policyVersions[i], policyVersions[i + 1]);
+        }
+        return versions;
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2024, WSO2 LLC. (http://www.wso2.com).
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.entitlement.policy.search;
+
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.entitlement.EntitlementUtil;
+import org.wso2.carbon.identity.entitlement.dto.AttributeDTO;
+import org.wso2.carbon.identity.entitlement.dto.PolicyDTO;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * This class tests the resolution of search attributes through the PolicyReferenceGraph class.
+ */
+public class PolicyReferenceGraphTest {
+
+    private static final AttributeDTO READ = attribute("read");
+    private static final AttributeDTO WRITE = attribute("write");
+    private static final AttributeDTO DELETE = attribute("delete");
+
+    @Test
+    public void testReferencesAreResolvedTransitively() {
+
+        PolicyDTO[] policies = new PolicyDTO[]{
+                policy("policySet1", new AttributeDTO[]{READ}, new String[0], new String[]{"policySet2"}),
+                policy("policySet2", new AttributeDTO[0], new String[]{"policy1"}, new String[0]),
+                policy("policy1", new AttributeDTO[]{WRITE}, new String[0], new String[0]),
+                policy("policy2", new AttributeDTO[]{DELETE}, new String[0], new String[0])};
+
+        Map<String, Set<AttributeDTO>> attributes = EntitlementUtil.getAttributesFromPolicies(policies);
+
+        assertEquals(attributes.size(), 4);
+        assertEquals(attributes.get("policySet1"), new HashSet<>(Arrays.asList(READ, WRITE)));
+        assertEquals(attributes.get("policySet2"), new HashSet<>(Arrays.asList(WRITE)));
+        assertEquals(attributes.get("policy1"), new HashSet<>(Arrays.asList(WRITE)));
+        assertEquals(attributes.get("policy2"), new HashSet<>(Arrays.asList(DELETE)));
+    }
+
+    @Test
+    public void testReferenceCycleIsResolved() {
+
+        PolicyReferenceGraph graph = new PolicyReferenceGraph(new PolicyDTO[]{
+                policy("policySet1", new AttributeDTO[]{READ}, new String[0], new String[]{"policySet2"}),
+                policy("policySet2", new AttributeDTO[]{WRITE}, new String[0], new String[]{"policySet1"}),
+                policy("policySet3", new AttributeDTO[]{DELETE}, new String[0], new String[]{"policySet3"})});
+
+        assertEquals(graph.getSearchAttributes("policySet1"), new HashSet<>(Arrays.asList(READ, WRITE)));
+        assertEquals(graph.getSearchAttributes("policySet2"), new HashSet<>(Arrays.asList(READ, WRITE)));
+        assertEquals(graph.getSearchAttributes("policySet3"), new HashSet<>(Arrays.asList(DELETE)));
+    }
+
+    @Test
+    public void testResolvedAttributesAreUpdatedWithReferencedPolicies() {
+
+        PolicyReferenceGraph graph = new PolicyReferenceGraph(new PolicyDTO[]{
+                policy("policySet1", new AttributeDTO[]{READ}, new String[0], new String[]{"policySet2"}),
+                policy("policySet2", new AttributeDTO[0], new String[]{"policy1"}, new String[0])});
+        assertEquals(graph.getSearchAttributes("policySet1"), new HashSet<>(Arrays.asList(READ)));
+        assertNull(graph.getSearchAttributes("policy1"));
+
+        // a referenced policy which is published later is resolved for all the policies referencing it
+        graph.addPolicy(policy("policy1", new AttributeDTO[]{WRITE}, new String[0], new String[0]));
+        assertEquals(graph.getSearchAttributes("policySet1"), new HashSet<>(Arrays.asList(READ, WRITE)));
+        assertEquals(graph.getSearchAttributes("policySet2"), new HashSet<>(Arrays.asList(WRITE)));
+
+        graph.addPolicy(policy("policy1", new AttributeDTO[]{DELETE}, new String[0], new String[0]));
+        assertEquals(graph.getSearchAttributes("policySet1"), new HashSet<>(Arrays.asList(READ, DELETE)));
+
+        assertTrue(graph.removePolicy("policy1"));
+        assertFalse(graph.removePolicy("policy1"));
+        assertEquals(graph.getSearchAttributes("policySet1"), new HashSet<>(Arrays.asList(READ)));
+
+        graph.addPolicy(policy("policySet2", new AttributeDTO[]{DELETE}, new String[0], new String[0]));
+        assertEquals(graph.getSearchAttributes("policySet1"), new HashSet<>(Arrays.asList(READ, DELETE)));
+        assertEquals(graph.getPolicies().length, 2);
+    }
+
+    private static PolicyDTO policy(String policyId, AttributeDTO[] attributes, String[] policyIdReferences,
+                                    String[] policySetIdReferences) {
+
+        PolicyDTO policyDTO = new PolicyDTO(policyId);
+        policyDTO.setAttributeDTOs(attributes);
+        policyDTO.setPolicyIdReferences(policyIdReferences);
+        policyDTO.setPolicySetIdReferences(policySetIdReferences);
+        return policyDTO;
+    }
+
+    private static AttributeDTO attribute(String action) {
+
+        AttributeDTO attributeDTO = new AttributeDTO();
+        attributeDTO.setCategory("urn:oasis:names:tc:xacml:3.0:attribute-category:action");
+        attributeDTO.setAttributeId("urn:oasis:names:tc:xacml:1.0:action:action-id");
+        attributeDTO.setAttributeDataType("http://www.w3.org/2001/XMLSchema#string");
+        attributeDTO.setAttributeValue(action);
+        return attributeDTO;
+    }
+}